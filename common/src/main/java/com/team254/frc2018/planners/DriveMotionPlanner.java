@@ -5,6 +5,7 @@ import com.flybotix.hfr.util.log.Logger;
 import com.team254.lib.geometry.Pose2d;
 import com.team254.lib.geometry.Pose2dWithCurvature;
 import com.team254.lib.geometry.Rotation2d;
+import com.team254.lib.geometry.Translation2d;
 import com.team254.lib.physics.DifferentialDrive;
 import com.team254.lib.trajectory.*;
 import com.team254.lib.trajectory.timing.TimedState;
@@ -12,7 +13,10 @@ import com.team254.lib.util.CSVWritable;
 import com.team254.lib.util.Units;
 import us.ilite.common.lib.control.AController;
 import com.team254.lib.physics.DriveOutput;
+import us.ilite.common.lib.trajectory.CompiledTrajectory;
 import us.ilite.common.lib.trajectory.TrajectoryGenerator;
+import us.ilite.common.lib.trajectory.TrajectorySample;
+import us.ilite.common.lib.trajectory.TrajectorySampler;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
@@ -61,13 +65,29 @@ public class DriveMotionPlanner implements CSVWritable {
 
     DriveOutput mOutput = new DriveOutput();
 
+    // Compiled trajectories are followed without allocating - the setpoint and error are only made into objects if
+    // something asks for them
+    private TrajectorySampler mSampler = null;
+    private TrajectorySample mSample = new TrajectorySample();
+    private TrajectorySample mNextSample = new TrajectorySample();
+    private final DifferentialDrive.DriveDynamics mDynamics = new DifferentialDrive.DriveDynamics();
+    private boolean mSetpointStale = false;
+    private boolean mErrorStale = false;
+
+    // mError, by component, so it can be read without making it into an object
+    private double mErrorX = 0.0;
+    private double mErrorY = 0.0;
+    private double mErrorCos = 1.0;
+    private double mErrorSin = 0.0;
+
     public void reset() {
-        mError = Pose2d.identity();
+        setError(Pose2d.identity());
         mOutput = new DriveOutput();
         mLastTime = Double.POSITIVE_INFINITY;
     }
 
     public void setTrajectory(final TrajectoryIterator<TimedState<Pose2dWithCurvature>> trajectory) {
+        mSampler = null;
         mCurrentTrajectory = trajectory;
         mSetpoint = trajectory.getState();
         mIsReversed = TrajectoryGenerator.isReversed(trajectory);
@@ -88,18 +108,36 @@ public class DriveMotionPlanner implements CSVWritable {
 
         TrajectoryIterator<TimedState<Pose2dWithCurvature>> trajectoryIterator = new TrajectoryIterator<>(new TimedView<>(new Trajectory<>(timedRotationPoses)));
 
+        mSampler = null;
         mCurrentTrajectory = trajectoryIterator;
         mSetpoint = trajectoryIterator.getState();
         mIsTurnInPlace = true;
     }
 
+    /**
+     * Follows a compiled trajectory, which allocates nothing per update as long as the controller overrides
+     * {@link AController#update(TrajectorySample, DifferentialDrive.DriveDynamics, DifferentialDrive.ChassisState, Pose2d, double, DriveOutput)}.
+     * Read the error with {@link #errorX()} and friends rather than {@link #error()}, which makes it into an object.
+     * @param pIsTurnInPlace Whether the trajectory's poses are headings to turn to in place
+     */
+    public void setTrajectory(final CompiledTrajectory trajectory, boolean pIsTurnInPlace) {
+        mCurrentTrajectory = null;
+        mSampler = new TrajectorySampler(trajectory);
+        mSampler.advance(0.0, mSample);
+        mSetpoint = mSample.toTimedState();
+        mSetpointStale = false;
+        mErrorStale = false;
+        mIsReversed = trajectory.isReversed();
+        mIsTurnInPlace = pIsTurnInPlace;
+    }
+
     @Override
     public String toCSV() {
         DecimalFormat fmt = new DecimalFormat("#0.000");
         return fmt.format(mOutput.left_velocity) + "," + fmt.format(mOutput.right_velocity) + "," +
                 fmt.format(mOutput.left_accel) + ", " + fmt.format(mOutput.right_accel) +
                 fmt.format(mOutput.left_feedforward_voltage) + "," + fmt.format(mOutput.right_feedforward_voltage) + "," +
-                mSetpoint.toCSV();
+                setpoint().toCSV();
     }
 
     /**
@@ -109,6 +147,8 @@ public class DriveMotionPlanner implements CSVWritable {
      * @return A DriveOutput object containing velocity, acceleration, and voltage
      */
     public DriveOutput update(double timestamp, Pose2d current_state) {
+        if (mSampler != null) return updateCompiled(timestamp, current_state);
+
         // No trajectory? Do nothing!
         if (mCurrentTrajectory == null) return new DriveOutput();
 
@@ -125,7 +165,7 @@ public class DriveMotionPlanner implements CSVWritable {
         if (!mCurrentTrajectory.isDone()) {
 
             mSetpoint = sample_point.state();
-            mError = current_state.inverse().transformBy(mSetpoint.state().getPose());
+            setError(current_state.inverse().transformBy(mSetpoint.state().getPose()));
 
             DifferentialDrive.DriveDynamics dynamics;
 
@@ -196,16 +236,192 @@ public class DriveMotionPlanner implements CSVWritable {
         return mOutput;
     }
 
+    /**
+     * The same as update(), but samples a compiled trajectory and reuses the same dynamics and output every cycle.
+     */
+    private DriveOutput updateCompiled(double timestamp, Pose2d current_state) {
+        if (mSampler.getProgress() == mSampler.getTrajectory().getStartTime() && !Double.isFinite(mLastTime)) {
+            mLog.info("Starting compiled trajectory with timestamp: ", timestamp);
+            mLastTime = timestamp;
+        }
+
+        mDt = timestamp - mLastTime;
+        mSampler.advance(mDt, mNextSample);
+
+        if (!mSampler.isDone()) {
+            // Like update(), the setpoint and error are left alone once the trajectory is done
+            TrajectorySample sample = mNextSample;
+            mNextSample = mSample;
+            mSample = sample;
+            mSetpointStale = true;
+            // From the sampled pose, before a turn in place moves the setpoint to the robot's position
+            setError(current_state, mSample);
+
+            if(mIsTurnInPlace) {
+                solveInverseDynamics(mDriveModel, mDynamics, 0.0, mSample.getVelocity(), 0.0, mSample.getAcceleration());
+                // Modify our setpoint to our current (x,y) position. This way we can use the controller without having it compensate for cross-track error.
+                mSample.setTranslation(current_state.getTranslation().x(), current_state.getTranslation().y());
+                mSample.setCurvature(Double.POSITIVE_INFINITY, 0.0);
+                setOutput(mDynamics.voltage.left, mDynamics.voltage.right);
+            } else {
+                // Generate feedforward voltages and convert everything to SI.
+                final double velocity_m = Units.inches_to_meters(mSample.getVelocity());
+                final double curvature_m = Units.meters_to_inches(mSample.getCurvature());
+                final double dcurvature_ds_m = Units.meters_to_inches(Units.meters_to_inches(mSample.getDCurvatureDs()));
+                final double acceleration_m = Units.inches_to_meters(mSample.getAcceleration());
+
+                solveInverseDynamics(mDriveModel, mDynamics, velocity_m, velocity_m * curvature_m,
+                        acceleration_m, acceleration_m * curvature_m + velocity_m * velocity_m * dcurvature_ds_m);
+
+                switch(mPlannerMode) {
+                    case FEEDFORWARD_ONLY:
+                        setOutput(mDynamics.voltage.left, mDynamics.voltage.right);
+                        break;
+                    case FEEDBACK:
+                        mOutput = mController.update(mSample, mDynamics, prev_velocity_, current_state, mDt, mOutput);
+                        break;
+                    case FEEDBACK_NO_DYNAMICS:
+                        mOutput = mController.update(mSample, mDynamics, prev_velocity_, current_state, mDt, mOutput);
+                        // Only account for friction
+                        mOutput.left_feedforward_voltage = mDriveModel.left_transmission().friction_voltage();
+                        mOutput.right_feedforward_voltage = mDriveModel.right_transmission().friction_voltage();
+                        break;
+                    case FEEDFORWARD_NO_DYNAMICS:
+                        // Only account for friction
+                        setOutput(mDriveModel.left_transmission().friction_voltage(), mDriveModel.right_transmission().friction_voltage());
+                        break;
+                }
+            }
+
+            prev_velocity_.linear = mDynamics.chassis_velocity.linear;
+            prev_velocity_.angular = mDynamics.chassis_velocity.angular;
+
+        } else {
+            // The same as the new DriveOutput() in update()
+            mOutput.left_velocity = 0.0;
+            mOutput.right_velocity = 0.0;
+            mOutput.left_accel = 0.0;
+            mOutput.right_accel = 0.0;
+            mOutput.left_feedforward_voltage = 0.0;
+            mOutput.right_feedforward_voltage = 0.0;
+        }
+
+        mLastTime = timestamp;
+
+        return mOutput;
+    }
+
+    /**
+     * DifferentialDrive.solveInverseDynamics(ChassisState, ChassisState), into pDynamics instead of a new object
+     */
+    static void solveInverseDynamics(DifferentialDrive pDriveModel, DifferentialDrive.DriveDynamics pDynamics,
+                                     double pLinearVelocity, double pAngularVelocity, double pLinearAcceleration, double pAngularAcceleration) {
+        final DifferentialDrive.DriveDynamics dynamics = pDynamics;
+        dynamics.chassis_velocity.linear = pLinearVelocity;
+        dynamics.chassis_velocity.angular = pAngularVelocity;
+        dynamics.chassis_acceleration.linear = pLinearAcceleration;
+        dynamics.chassis_acceleration.angular = pAngularAcceleration;
+
+        dynamics.curvature = pAngularVelocity / pLinearVelocity;
+        if (Double.isNaN(dynamics.curvature)) dynamics.curvature = 0.0;
+        dynamics.dcurvature = (pAngularAcceleration - pLinearAcceleration * dynamics.curvature) / (pLinearVelocity * pLinearVelocity);
+        if (Double.isNaN(dynamics.dcurvature)) dynamics.dcurvature = 0.0;
+
+        // solveInverseKinematics()
+        final double wheelbase_radius = pDriveModel.effective_wheelbase_radius();
+        final double wheel_radius = pDriveModel.wheel_radius();
+        dynamics.wheel_velocity.left = (pLinearVelocity - wheelbase_radius * pAngularVelocity) / wheel_radius;
+        dynamics.wheel_velocity.right = (pLinearVelocity + wheelbase_radius * pAngularVelocity) / wheel_radius;
+        dynamics.wheel_acceleration.left = (pLinearAcceleration - wheelbase_radius * pAngularAcceleration) / wheel_radius;
+        dynamics.wheel_acceleration.right = (pLinearAcceleration + wheelbase_radius * pAngularAcceleration) / wheel_radius;
+
+        pDriveModel.solveInverseDynamics(dynamics);
+    }
+
+    private void setError(Pose2d pError) {
+        mError = pError;
+        mErrorX = pError.getTranslation().x();
+        mErrorY = pError.getTranslation().y();
+        mErrorCos = pError.getRotation().cos();
+        mErrorSin = pError.getRotation().sin();
+        mErrorStale = false;
+    }
+
+    /**
+     * current_state.inverse().transformBy(pSetpoint's pose), into mErrorX/Y/Cos/Sin instead of new objects
+     */
+    private void setError(Pose2d pCurrentState, TrajectorySample pSetpoint) {
+        final double cos = pCurrentState.getRotation().cos();
+        final double sin = pCurrentState.getRotation().sin();
+        final double dx = pSetpoint.getX() - pCurrentState.getTranslation().x();
+        final double dy = pSetpoint.getY() - pCurrentState.getTranslation().y();
+        mErrorX = dx * cos + dy * sin;
+        mErrorY = dy * cos - dx * sin;
+        final double error_cos = cos * pSetpoint.getCos() + sin * pSetpoint.getSin();
+        final double error_sin = cos * pSetpoint.getSin() - sin * pSetpoint.getCos();
+        // Rotation2d.rotateBy() normalizes
+        final double magnitude = Math.hypot(error_cos, error_sin);
+        mErrorCos = magnitude > 1E-9 ? error_cos / magnitude : 1.0;
+        mErrorSin = magnitude > 1E-9 ? error_sin / magnitude : 0.0;
+        mErrorStale = true;
+    }
+
+    private void setOutput(double pLeftFeedforwardVoltage, double pRightFeedforwardVoltage) {
+        mOutput.left_velocity = mDynamics.wheel_velocity.left;
+        mOutput.right_velocity = mDynamics.wheel_velocity.right;
+        mOutput.left_accel = mDynamics.wheel_acceleration.left;
+        mOutput.right_accel = mDynamics.wheel_acceleration.right;
+        mOutput.left_feedforward_voltage = pLeftFeedforwardVoltage;
+        mOutput.right_feedforward_voltage = pRightFeedforwardVoltage;
+    }
+
     public boolean isDone() {
+        if (mSampler != null) return mSampler.isDone();
         return mCurrentTrajectory != null && mCurrentTrajectory.isDone();
 //        return (mError.getTranslation().x() < 3.0 && mError.getTranslation().y() < 3.0);
     }
 
     public Pose2d error() {
+        if (mErrorStale) {
+            mError = new Pose2d(new Translation2d(mErrorX, mErrorY), new Rotation2d(mErrorCos, mErrorSin, false));
+            mErrorStale = false;
+        }
         return mError;
     }
 
+    /**
+     * @return error()'s x, in inches, without making it into an object
+     */
+    public double errorX() {
+        return mErrorX;
+    }
+
+    /**
+     * @return error()'s y, in inches, without making it into an object
+     */
+    public double errorY() {
+        return mErrorY;
+    }
+
+    /**
+     * @return The cosine of error()'s rotation, without making it into an object
+     */
+    public double errorCos() {
+        return mErrorCos;
+    }
+
+    /**
+     * @return The sine of error()'s rotation, without making it into an object
+     */
+    public double errorSin() {
+        return mErrorSin;
+    }
+
     public TimedState<Pose2dWithCurvature> setpoint() {
+        if (mSetpointStale) {
+            mSetpoint = mSample.toTimedState();
+            mSetpointStale = false;
+        }
         return mSetpoint;
     }
     public DifferentialDrive getDriveModel() {
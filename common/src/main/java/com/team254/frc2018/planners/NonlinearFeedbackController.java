@@ -9,6 +9,7 @@ import com.team254.lib.util.Util;
 import com.team254.lib.util.Units;
 import us.ilite.common.lib.control.AController;
 import com.team254.lib.physics.DriveOutput;
+import us.ilite.common.lib.trajectory.TrajectorySample;
 
 /**
  * Implementation from Team 254's 2018 robot code (https://github.com/Team254/FRC-2018-Public)
@@ -69,6 +70,61 @@ public class NonlinearFeedbackController extends AController {
         
     }
 
+    /**
+     * The same as the other update(), but by component, into pDynamics and pOutput, so a compiled trajectory can be
+     * followed without allocating.  Doesn't update getError() - read the error from the planner instead.
+     */
+    @Override
+    public DriveOutput update(TrajectorySample pSetpoint,
+                              DifferentialDrive.DriveDynamics pDynamics,
+                              DifferentialDrive.ChassisState pPrevVelocity,
+                              Pose2d pCurrentState,
+                              double pDt,
+                              DriveOutput pOutput) {
+
+        // pCurrentState.inverse().transformBy(pSetpoint's pose), by component
+        final double cos = pCurrentState.getRotation().cos();
+        final double sin = pCurrentState.getRotation().sin();
+        final double dx = pSetpoint.getX() - pCurrentState.getTranslation().x();
+        final double dy = pSetpoint.getY() - pCurrentState.getTranslation().y();
+        final double error_x = dx * cos + dy * sin;
+        final double error_y = dy * cos - dx * sin;
+        final double error_cos = cos * pSetpoint.getCos() + sin * pSetpoint.getSin();
+        final double error_sin = cos * pSetpoint.getSin() - sin * pSetpoint.getCos();
+
+        // Compute gain parameter.
+        final double k = 2.0 * mZeta * Math.sqrt(mBeta * pDynamics.chassis_velocity.linear * pDynamics.chassis_velocity
+                .linear + pDynamics.chassis_velocity.angular * pDynamics.chassis_velocity.angular);
+
+        // Compute error components.  atan2() doesn't care that the rotation isn't normalized, but cos and sin do.
+        final double error_magnitude = Math.hypot(error_cos, error_sin);
+        final double angle_error_rads = Math.atan2(error_sin, error_cos);
+        final double sin_x_over_x = Util.epsilonEquals(angle_error_rads, 0.0, 1E-2) ?
+                1.0 : error_sin / error_magnitude / angle_error_rads;
+        final double linear = pDynamics.chassis_velocity.linear * error_cos / error_magnitude +
+                k * Units.inches_to_meters(error_x);
+        final double angular = pDynamics.chassis_velocity.angular + k * angle_error_rads +
+                pDynamics.chassis_velocity.linear * mBeta * sin_x_over_x * Units.inches_to_meters(error_y);
+
+        final double linear_acceleration = pDt == 0 ? 0.0 : (linear - pPrevVelocity.linear) / pDt;
+        final double angular_acceleration = pDt == 0 ? 0.0 : (angular - pPrevVelocity.angular) / pDt;
+
+        // Feedforward voltages for the adjusted velocity, but the wheel accelerations stay the setpoint's, like the
+        // other update()
+        final double left_accel = pDynamics.wheel_acceleration.left;
+        final double right_accel = pDynamics.wheel_acceleration.right;
+        DriveMotionPlanner.solveInverseDynamics(mDriveModel, pDynamics, linear, angular, linear_acceleration,
+                angular_acceleration);
+
+        pOutput.left_velocity = pDynamics.wheel_velocity.left;
+        pOutput.right_velocity = pDynamics.wheel_velocity.right;
+        pOutput.left_accel = left_accel;
+        pOutput.right_accel = right_accel;
+        pOutput.left_feedforward_voltage = pDynamics.voltage.left;
+        pOutput.right_feedforward_voltage = pDynamics.voltage.right;
+        return pOutput;
+    }
+
     public void setGains(double pBeta, double pZeta) {
         mBeta = pBeta;
         mZeta = pZeta;
@@ -1,17 +1,19 @@
 package us.ilite.common;
 
 import com.flybotix.hfr.codex.Codex;
-import com.flybotix.hfr.codex.CodexSender;
-import com.flybotix.hfr.io.MessageProtocols;
-import com.flybotix.hfr.io.sender.ISendProtocol;
 import com.flybotix.hfr.util.log.ILog;
 import com.flybotix.hfr.util.log.Logger;
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableInstance;
 import us.ilite.common.config.SystemSettings;
+import us.ilite.common.io.CodexBatchSender;
 import us.ilite.common.io.CodexNetworkTables;
 import us.ilite.common.io.CodexNetworkTablesParser;
 import us.ilite.common.io.CodexCsvLogger;
+import us.ilite.common.io.CodexLogPipeline;
+import us.ilite.common.io.CodexRateScheduler;
+import us.ilite.common.io.FlightRecorder;
+import us.ilite.common.io.ICodexLogger;
 import us.ilite.common.lib.util.SimpleNetworkTable;
 import us.ilite.common.types.ETargetingData;
 import us.ilite.common.types.MatchMetadata;
@@ -47,7 +49,7 @@ public class Data {
     public final Codex<Double, EIntake> intake = Codex.of.thisEnum(EIntake.class);
     public Codex<Double, ETargetingData> limelight = Codex.of.thisEnum(ETargetingData.class);
 
-    private final List<CodexSender> mSenders = new ArrayList<>();
+    private volatile CodexBatchSender mCodexSender = null;
 
     public final Codex[] mAllCodexes = new Codex[] {
             /*imu, drive, IGNORE THESE WE HANDLE TIMESTAMP MANUALLY*/ driverinput, operatorinput, elevator, cargospit, pdp, intake, /*limelight,*/ fourbar
@@ -58,9 +60,13 @@ public class Data {
     };
 
     public final Codex[] mDisplayedCodexes = new Codex[] {
-            imu, /*drive,*/ driverinput, operatorinput, elevator, cargospit, pdp
+            imu, drive, driverinput, operatorinput, elevator, cargospit, pdp
     };
 
+    // Decides which codexes go out to NetworkTables and the logs on each cycle - see initTelemetryRates()
+    private final CodexRateScheduler mPublishSchedule = new CodexRateScheduler();
+    private final CodexRateScheduler mLogSchedule = new CodexRateScheduler();
+
     public static NetworkTableInstance kInst = NetworkTableInstance.getDefault();
     public static SimpleNetworkTable kLoggingTable = new SimpleNetworkTable("LoggingTable");
     public static SimpleNetworkTable kSmartDashboard = new SimpleNetworkTable("SmartDashboard");
@@ -77,19 +83,56 @@ public class Data {
     private Map<String, Writer> mNetworkTableWriters = new HashMap<>();
 
     private List<CodexNetworkTablesParser<?>> mNetworkTableParsers;
-    private List<CodexCsvLogger> mCodexCsvLoggers;
+    private List<ICodexLogger> mCodexLoggers;
+    private CodexLogPipeline mLogPipeline;
+    private FlightRecorder mFlightRecorder;
     private MatchMetadata mMatchData;
     private boolean mLogging;
 
 
     public Data(boolean pLogging) {
         mLogging = pLogging;
+        initTelemetryRates();
     }
 
     public Data() {
         this(true);
     }
 
+    /**
+     * Publish and log rates for each codex.  Spend the CPU and bandwidth on the signals that need it.
+     */
+    private void initTelemetryRates() {
+        //                 codex          publish (NetworkTables)             log
+        setTelemetryRate(imu,           SystemSettings.kTelemetryFastHz,    SystemSettings.kTelemetryFastHz);
+        setTelemetryRate(drive,         SystemSettings.kTelemetryFastHz,    SystemSettings.kTelemetryFastHz);
+        setTelemetryRate(limelight,     SystemSettings.kTelemetryFastHz,    SystemSettings.kTelemetryFastHz);
+        setTelemetryRate(elevator,      SystemSettings.kTelemetryMediumHz,  SystemSettings.kTelemetryMediumHz);
+        setTelemetryRate(fourbar,       SystemSettings.kTelemetryMediumHz,  SystemSettings.kTelemetryMediumHz);
+        setTelemetryRate(cargospit,     SystemSettings.kTelemetryMediumHz,  SystemSettings.kTelemetryMediumHz);
+        setTelemetryRate(intake,        SystemSettings.kTelemetryMediumHz,  SystemSettings.kTelemetryMediumHz);
+        setTelemetryRate(pdp,           SystemSettings.kTelemetrySlowHz,    SystemSettings.kTelemetrySlowHz);
+        setTelemetryRate(driverinput,   CodexRateScheduler.kOnChange,       CodexRateScheduler.kOnChange);
+        setTelemetryRate(operatorinput, CodexRateScheduler.kOnChange,       CodexRateScheduler.kOnChange);
+    }
+
+    /**
+     * @param pPublishHz Rate to send pCodex to NetworkTables at, or one of the special rates in {@link CodexRateScheduler}
+     * @param pLogHz Rate to log pCodex at, or one of the special rates in {@link CodexRateScheduler}
+     */
+    public void setTelemetryRate(Codex pCodex, double pPublishHz, double pLogHz) {
+        mPublishSchedule.setRate(pCodex, pPublishHz);
+        mLogSchedule.setRate(pCodex, pLogHz);
+    }
+
+    /**
+     * Checks whether pCodex should be logged this cycle.  Call this once per codex per cycle, from the thread
+     * that owns the codex.
+     */
+    public boolean isLogDue(Codex pCodex, double pNow) {
+        return mLogSchedule.isDue(pCodex, pNow);
+    }
+
     public void addMatchMetadata(MatchMetadata pMatchData) {
         if (mLogging) {
             mMatchData = pMatchData;
@@ -109,8 +152,42 @@ public class Data {
 //            new CodexNetworkTablesParser<EPowerDistPanel>( pdp, "PDP" ),
 //            new CodexNetworkTablesParser<EFourBarData>(fourbar, "FOURBAR")
 //        );
-        mCodexCsvLoggers = new ArrayList<>();
-//        for(Codex c : mLoggedCodexes) mCodexCsvLoggers.add(new CodexCsvLogger(c, mMatchData));
+        mCodexLoggers = new ArrayList<>();
+        if(SystemSettings.kLogCodexesAsBinary) {
+            mLogPipeline = new CodexLogPipeline(mMatchData, mLoggedCodexes);
+        } else {
+//            for(Codex c : mLoggedCodexes) mCodexLoggers.add(new CodexCsvLogger(c, mMatchData));
+        }
+    }
+
+    /**
+     * Maps the always-on flight recorder for mLoggedCodexes.  This is independent of USB logging, and dumps
+     * anything left over from the previous run (e.g. a crash) before it's reused.
+     */
+    public void initFlightRecorder() {
+        try {
+            mFlightRecorder = new FlightRecorder(new File(SystemSettings.kFlightRecorderPath),
+                                                 new File(SystemSettings.kFlightRecorderDumpPath),
+                                                 mMatchData == null ? 0 : mMatchData.hash,
+                                                 mLoggedCodexes);
+        } catch (IOException e) {
+            mLogger.error("Unable to create flight recorder: ", e.getMessage());
+        }
+    }
+
+    /**
+     * @return The flight recorder, or null if it hasn't been initialized
+     */
+    public FlightRecorder getFlightRecorder() {
+        return mFlightRecorder;
+    }
+
+    /**
+     * @return The asynchronous binary log pipeline for mLoggedCodexes, or null if logging is disabled or
+     * we're logging to CSV instead.
+     */
+    public CodexLogPipeline getLogPipeline() {
+        return mLogPipeline;
     }
 
     /**
@@ -152,10 +229,14 @@ public class Data {
         }
     }
 
+    /**
+     * Writes the header of every codex log.  Depending on <code>SystemSettings.kLogCodexesAsBinary</code>
+     * these are either binary logs or CSV logs.
+     */
     public boolean logFromCodexToCSVHeader() {
         boolean keepLogging = false;
         try {
-            for (CodexCsvLogger c : mCodexCsvLoggers) {
+            for (ICodexLogger c : mCodexLoggers) {
                 keepLogging = c.writeHeader();
                 if(!keepLogging) {
                     break;
@@ -171,7 +252,7 @@ public class Data {
     public boolean logFromCodexToCSVLog() {
         boolean keepLogging = false;
         try {
-            for (CodexCsvLogger c : mCodexCsvLoggers) {
+            for (ICodexLogger c : mCodexLoggers) {
                 keepLogging = c.writeLine();
                 if(!keepLogging) {
                     break;
@@ -214,7 +295,7 @@ public class Data {
             }
         }
 
-        mCodexCsvLoggers.forEach(c -> c.closeWriter());
+        if(mCodexLoggers != null) mCodexLoggers.forEach(c -> c.closeWriter());
     }
 
     /**
@@ -237,19 +318,25 @@ public class Data {
     }
 
     /**
-     * Sends the codexes across the network to the IP's found when the DS connected.
+     * Sends the displayed codexes that changed this cycle across the network to the IP's found when the DS
+     * connected, as a single datagram per IP.
      */
-    public void sendCodices() {
-        for(CodexSender cs : mSenders) {
-            for(Codex<?, ?> c : mDisplayedCodexes) {
-                cs.sendIfChanged(c);
-            }
+    public void sendCodices(double pNow) {
+        CodexBatchSender sender = mCodexSender;
+        if(sender != null) {
+            sender.send(pNow);
         }
     }
 
-    public void sendCodicesToNetworkTables() {
+    /**
+     * Pushes the fields of mLoggedCodexes that changed since the last call to NetworkTables, for every codex
+     * that is due at its publish rate.  Cheap enough to call every cycle.
+     */
+    public void sendCodicesToNetworkTables(double pNow) {
         for(Codex<?, ?> c : mLoggedCodexes) {
-            mCodexNT.send(c);
+            if(mPublishSchedule.isDue(c, pNow)) {
+                mCodexNT.send(c);
+            }
         }
     }
 
@@ -272,9 +359,11 @@ public class Data {
     public void initCodexSender(List<String> pIpAddresses) {
         for(String ip : pIpAddresses) {
             mLogger.warn("======> Initializing sender to " + ip + ":" + SystemSettings.sCODEX_COMMS_PORT);
-            ISendProtocol protocol = MessageProtocols.createSender(MessageProtocols.EProtocol.UDP, SystemSettings.sCODEX_COMMS_PORT, SystemSettings.sCODEX_COMMS_PORT, ip);
-            CodexSender sender = new CodexSender(protocol);
-            mSenders.add(sender);
+        }
+        try {
+            mCodexSender = new CodexBatchSender(SystemSettings.sCODEX_COMMS_PORT, pIpAddresses, mDisplayedCodexes);
+        } catch (IOException e) {
+            mLogger.error("Unable to initialize codex sender: ", e.getMessage());
         }
     }
 }
\ No newline at end of file
@@ -19,6 +19,7 @@ public class SystemSettings extends NetworkTablesConstantsBase {
     public static double kNetworkTableUpdateRate = 0.01;
 
     public static int sCODEX_COMMS_PORT = 5805;
+    public static double kCodexBatchKeyframePeriod = 1.0; // seconds between sending every codex, changed or not
 
     // ===========================
     // System ID's
@@ -31,6 +32,76 @@ public class SystemSettings extends NetworkTablesConstantsBase {
 
     public static int kCANTimeoutMs = 10; //use for on the fly updates
     public static int kLongCANTimeoutMs = 100; //use for constructors
+    // CAN devices are configured in parallel at robotInit
+    public static int kCANConfigThreads = 4;
+    public static int kCANConfigRetries = 2; // per setting
+    public static int kCANConfigMaxConsecutiveFailures = 3; // before a device is assumed to be missing
+    // Status frame periods are planned from the signals each module reads - see StatusFramePlanner
+    public static int kCANControlSignalPeriodMs = 10; // signals read by control loops, every kControlLoopPeriod
+    public static int kCANTelemetrySignalPeriodMs = 100; // signals that are only logged
+    public static int kStatusFrameMinPeriodMs = 5;
+    public static int kStatusFrameMaxPeriodMs = 255; // frames nothing reads are slowed to this
+    public static int kCANBitRate = 1000000; // bits/s
+    public static int kCANFrameBits = 135; // 29-bit ID and 8 data bytes, plus some bit stuffing
+    public static double kCANMaxUtilization = 0.7; // warn if status frames are projected to use more than this
+
+    // Auto trajectories generated ahead of time by the precompileTrajectories task, in the deploy directory
+    public static String kTrajectoryCacheFile = "trajectories.bin";
+    // Trajectories generated on the fly are kept, and reused for requests that round to the same waypoints
+    public static int kRecentTrajectoryCacheSize = 32;
+    public static double kRecentTrajectoryPositionTolerance = 0.5; // inches
+    public static double kRecentTrajectoryHeadingTolerance = 0.5; // degrees
+    public static double kRecentTrajectoryVelocityTolerance = 0.5; // inches/s
+    public static int kTrajectoryGenerationThreads = 0; // 0 for one per core
+    // Follow trajectories from primitive arrays, so the motion planner doesn't allocate every cycle.  Rotation trajectories aren't compiled.
+    public static boolean kFollowCompiledTrajectories = true;
+    // Generated trajectories are resampled at a fixed time step, so the follower finds setpoints by index - 0 to turn
+    // off.  Resampled trajectories that stray further than this from the original aren't used.
+    public static double kTrajectoryResampleStep = 0.01; // seconds, kControlLoopPeriod or an even fraction of it
+    public static double kTrajectoryResampleMaxPositionError = 0.1; // inches
+    public static double kTrajectoryResampleMaxHeadingError = 0.25; // degrees
+    public static double kTrajectoryResampleMaxVelocityError = 1.0; // inches/s
+
+    // Binary codex logs are much cheaper to write than CSV - use CodexLogExporter to convert them.  Off by default,
+    // like CSV logging, so codexes are only logged to USB when this is turned on.
+    public static boolean kLogCodexesAsBinary = false;
+    public static boolean kCompressCodexLogs = true; // Delta/XOR compression - about half the size of fixed-width rows
+    public static int kLogPipelineCapacity = 1024; // rows - ~2 seconds of every logged codex at 50hz
+    public static double kLogPipelineDrainPeriod = 0.1; // seconds
+
+    // Always-on memory-mapped flight recorder
+    public static String kFlightRecorderPath = "/home/lvuser/flight_recorder.bin";
+    public static String kFlightRecorderDumpPath = "/home/lvuser/flight";
+    public static double kFlightRecorderSeconds = 45.0;
+    public static int kFlightRecorderRowsPerSecond = 600; // See the telemetry rates in Data
+    public static int kFlightRecorderMaxDumps = 10; // kept on the RIO
+    public static int kFlightRecorderMaxDumpsPerBoot = 3; // each is ~10MB - more are skipped until the next boot
+
+    // Telemetry rate tiers, in hz.  See Data for which codexes are published and logged at which rate.
+    public static double kTelemetryFastHz = 100.0;
+    public static double kTelemetryMediumHz = 50.0;
+    public static double kTelemetrySlowHz = 5.0;
+
+    // Module execution time histograms are published and reset this often
+    public static double kTimingReportPeriod = 1.0; // seconds
+
+    // Load shedding - low priority modules run less often while the control loop keeps overrunning
+    public static boolean kLoadSheddingEnabled = true;
+    public static int kLoadShedWindowCycles = 20; // at most 63
+    public static int kLoadShedOverrunCycles = 5; // overruns within the window before shedding another level
+    public static int kLoadShedRecoveryCycles = 100; // on-time cycles in a row before restoring a level
+    public static int kLoadShedDecimation = 5; // decimated modules run once every this many cycles
+
+    // Module scheduler rates, in hz.  Module rates should divide the base rate evenly.
+    public static double kSchedulerBaseHz = 200.0;
+    public static double kDefaultModuleRateHz = 50.0;
+    public static double kLEDControlRateHz = 10.0;
+
+    // Motor outputs are only sent when they change by more than this, or every refresh period regardless
+    public static double kOutputEpsilon = 1e-3;
+    public static double kOutputRefreshPeriod = 0.1; // seconds
+    // Repeated Spark MAX setpoints are skipped for this long - shorter than the refresh period, so refreshes get through
+    public static double kLazySetpointMaxAge = 0.05; // seconds
 
     // =============================================================================
     // Drive Train Constants
@@ -130,6 +201,9 @@ public class SystemSettings extends NetworkTablesConstantsBase {
 
     // If the elevator's PDP slot draws more than this much current we flash the LEDs
     public static int kElevatorWarnCurrentLimitThreshold = 30;
+    public static EPowerDistPanel[] kElevatorPdpSlots = new EPowerDistPanel[] {
+            EPowerDistPanel.CURRENT9
+    };
 
     /*
     Smart Motion Constants
@@ -369,11 +443,15 @@ public class SystemSettings extends NetworkTablesConstantsBase {
     };
 
     public static int kPowerDistPanelAddress = 21;
+    public static double kPdpSamplePeriod = 0.02; // seconds
+    public static double kPdpMaxSampleAge = 0.1; // seconds - older PDP samples aren't used
     public static int kCargoSpitLeftSPXAddress = 13;
     public static int kCargoSpitRightSPXAddress = 14;
     public static int kCargoSpitBeamBreakAddress = 1;
     public static double kCargoSpitRollerPower = 0.20; // 15% seems like adequate power (maybe more?)
     public static double kCargoSpitSPXCurrentRatioLimit = 8.5; // Voltage ~ 1.8
+    public static EPowerDistPanel kCargoSpitLeftPdpSlot = EPowerDistPanel.CURRENT10;
+    public static EPowerDistPanel kCargoSpitRightPdpSlot = EPowerDistPanel.CURRENT5;
 
     // TO-DO: Elevator encoder address?
     // public static int kElevatorRedundantEncoderAddress = -1;
@@ -0,0 +1,239 @@
+package us.ilite.common.io;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.flybotix.hfr.codex.Codex;
+import com.flybotix.hfr.codex.CodexOf;
+import com.flybotix.hfr.util.lang.EnumUtils;
+import com.flybotix.hfr.util.log.ILog;
+import com.flybotix.hfr.util.log.Logger;
+
+/**
+ * Receives the batched frames sent by {@link CodexBatchSender} and unpacks them for registered listeners.
+ *
+ * Frames are checked against the sequence number of the newest frame so far.  A jump forward counts the skipped
+ * frames as lost.  A frame older than the newest one arrived out of order - it's counted as reordered and
+ * dropped, since everything in it is older than what was already applied.  A frame from a different session means
+ * the robot code restarted, so its sequence number starts over.
+ */
+public class CodexBatchReceiver implements Runnable {
+
+    /**
+     * Notified on the receive thread when a registered codex is unpacked from a frame.  The arrays are reused for
+     * the next frame, so copy anything that needs to be kept.
+     */
+    public interface IListener {
+        /**
+         * @param pMask Set bitmask (see {@link CodexRow})
+         * @param pValues Values indexed by ordinal.  Unset fields are NaN.
+         * @param pTimestamp The robot's cycle timestamp
+         */
+        void onReceived(long[] pMask, double[] pValues, long pSequence, double pTimestamp);
+    }
+
+    private final ILog mLog = Logger.createLog(CodexBatchReceiver.class);
+
+    private final int mPort;
+    private final List<Target> mTargets = new ArrayList<>();
+
+    private DatagramSocket mSocket = null;
+    private Thread mThread = null;
+
+    private boolean mHasSession = false;
+    private long mSession = 0;
+    private long mNewestSequence = -1;
+    private volatile long mReceivedFrames = 0;
+    private volatile long mLostFrames = 0;
+    private volatile long mReorderedFrames = 0;
+    private volatile long mMalformedFrames = 0;
+
+    public CodexBatchReceiver(int pPort) {
+        mPort = pPort;
+    }
+
+    /**
+     * Passes the pInstance'th codex of pEnum in each frame to pListener.  Register everything before calling
+     * {@link #start()}.
+     */
+    public <E extends Enum<E> & CodexOf<Double>> void register(Class<E> pEnum, int pInstance, IListener pListener) {
+        mTargets.add(new Target(CodexBatchSender.enumId(pEnum), pInstance, EnumUtils.getLength(pEnum), pListener));
+    }
+
+    /**
+     * Unpacks the pInstance'th codex of pEnum in each frame into pCodex, on the receive thread.
+     */
+    public <E extends Enum<E> & CodexOf<Double>> void register(Class<E> pEnum, int pInstance, Codex<Double, E> pCodex) {
+        CodexRow<E> row = new CodexRow<>(pEnum);
+        register(pEnum, pInstance, (mask, values, sequence, timestamp) -> row.write(values, 0, mask, 0, pCodex));
+    }
+
+    public synchronized void start() throws SocketException {
+        if(mThread != null) {
+            return;
+        }
+        mSocket = new DatagramSocket(mPort);
+        mThread = new Thread(this, "CodexBatchReceiver");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    public synchronized void stop() {
+        if(mSocket != null) {
+            mSocket.close();
+        }
+        mThread = null;
+    }
+
+    @Override
+    public void run() {
+        byte[] data = new byte[CodexBatchSender.kMaxFrameBytes];
+        DatagramPacket packet = new DatagramPacket(data, data.length);
+        ByteBuffer frame = ByteBuffer.wrap(data);
+        while(!mSocket.isClosed()) {
+            try {
+                packet.setLength(data.length);
+                mSocket.receive(packet);
+                frame.clear();
+                frame.limit(packet.getLength());
+                receive(frame);
+            } catch (IOException e) {
+                if(!mSocket.isClosed()) {
+                    mLog.error("Codex receive failed: ", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Unpacks a single frame
+     * @return false if the frame was malformed or out of order
+     */
+    public boolean receive(ByteBuffer pFrame) {
+        try {
+            if(pFrame.getInt() != CodexBatchSender.MAGIC || pFrame.getShort() != CodexBatchSender.VERSION) {
+                mMalformedFrames++;
+                return false;
+            }
+            long session = pFrame.getLong();
+            long sequence = pFrame.getLong();
+            double timestamp = pFrame.getDouble();
+            if(!checkSequence(session, sequence)) {
+                return false;
+            }
+            mReceivedFrames++;
+
+            int codexCount = pFrame.getShort();
+            for(int c = 0; c < codexCount; c++) {
+                int enumId = pFrame.getInt();
+                int instance = pFrame.get();
+                int fieldCount = pFrame.getShort();
+                int start = pFrame.position();
+                boolean known = false;
+                for(int t = 0; t < mTargets.size(); t++) {
+                    Target target = mTargets.get(t);
+                    if(target.mEnumId != enumId || target.mInstance != instance || target.mValues.length != fieldCount) {
+                        // Not this target, or the two ends were built with different enums
+                        continue;
+                    }
+                    pFrame.position(start);
+                    target.read(pFrame);
+                    target.mListener.onReceived(target.mMask, target.mValues, sequence, timestamp);
+                    known = true;
+                }
+                if(!known) {
+                    skip(pFrame, fieldCount);
+                }
+            }
+            return true;
+        } catch (RuntimeException e) {
+            // Truncated frame
+            mMalformedFrames++;
+            return false;
+        }
+    }
+
+    private boolean checkSequence(long pSession, long pSequence) {
+        if(!mHasSession || pSession != mSession) {
+            if(mHasSession) {
+                mLog.warn("Codex session changed at sequence ", pSequence, " - robot code restarted?");
+            }
+            mHasSession = true;
+            mSession = pSession;
+            mNewestSequence = pSequence;
+            return true;
+        }
+        if(pSequence > mNewestSequence) {
+            mLostFrames += pSequence - mNewestSequence - 1;
+            mNewestSequence = pSequence;
+            return true;
+        }
+        // An older frame that was counted as lost has shown up late
+        mReorderedFrames++;
+        if(mLostFrames > 0) {
+            mLostFrames--;
+        }
+        return false;
+    }
+
+    private static void skip(ByteBuffer pFrame, int pFieldCount) {
+        int setFields = 0;
+        for(int w = 0; w < CodexRow.maskWords(pFieldCount); w++) {
+            setFields += Long.bitCount(pFrame.getLong());
+        }
+        pFrame.position(pFrame.position() + (setFields * Double.BYTES));
+    }
+
+    public long getReceivedFrames() {
+        return mReceivedFrames;
+    }
+
+    /**
+     * @return Frames that never arrived
+     */
+    public long getLostFrames() {
+        return mLostFrames;
+    }
+
+    /**
+     * @return Frames that arrived after a newer frame, and were dropped
+     */
+    public long getReorderedFrames() {
+        return mReorderedFrames;
+    }
+
+    public long getMalformedFrames() {
+        return mMalformedFrames;
+    }
+
+    private static class Target {
+        private final int mEnumId;
+        private final int mInstance;
+        private final IListener mListener;
+        private final double[] mValues;
+        private final long[] mMask;
+
+        private Target(int pEnumId, int pInstance, int pFieldCount, IListener pListener) {
+            mEnumId = pEnumId;
+            mInstance = pInstance;
+            mListener = pListener;
+            mValues = new double[pFieldCount];
+            mMask = new long[CodexRow.maskWords(pFieldCount)];
+        }
+
+        private void read(ByteBuffer pFrame) {
+            for(int w = 0; w < mMask.length; w++) {
+                mMask[w] = pFrame.getLong();
+            }
+            for(int f = 0; f < mValues.length; f++) {
+                mValues[f] = CodexRow.isSet(mMask, 0, f) ? pFrame.getDouble() : Double.NaN;
+            }
+        }
+    }
+
+}
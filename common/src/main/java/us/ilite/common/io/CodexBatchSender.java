@@ -0,0 +1,259 @@
+package us.ilite.common.io;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.flybotix.hfr.codex.Codex;
+import com.flybotix.hfr.util.log.ILog;
+import com.flybotix.hfr.util.log.Logger;
+
+import us.ilite.common.config.SystemSettings;
+
+/**
+ * Sends every codex that changed during a cycle to the driver station in a single UDP datagram, instead of one
+ * datagram per codex per IP.  Each frame looks like:
+ * <pre>
+ *     int    magic
+ *     short  version
+ *     long   session id - random for each sender, so the receiver can tell when the robot code restarted
+ *     long   sequence number - incremented for every datagram, so the receiver can detect gaps and reordering
+ *     double cycle timestamp
+ *     short  codex count
+ *     per codex:
+ *         int    enum id - see {@link #enumId(Class)}
+ *         byte   instance - which codex of that enum this is, in the order they were given to the sender
+ *         short  field count
+ *         long[] set bitmask (see {@link CodexRow})
+ *         double value of each set field, in ordinal order
+ * </pre>
+ * Unchanged codexes are skipped, except every <code>SystemSettings.kCodexBatchKeyframePeriod</code> when
+ * everything is sent so a display that connects late still gets every value.
+ * Read the frames with {@link CodexBatchReceiver}.
+ */
+public class CodexBatchSender {
+
+    public static final int MAGIC = 0x43444246; // "CDBF"
+    public static final short VERSION = 2;
+    public static final int kMaxFrameBytes = 8 * 1024;
+
+    private final ILog mLog = Logger.createLog(CodexBatchSender.class);
+
+    private final Codex[] mCodexes;
+    private final CodexRow[] mRows;
+    private final int[] mEnumIds;
+    private final byte[] mInstances;
+    private final double[] mValues;
+    private final long[] mMask;
+    // The last row sent for each codex, to skip the ones that haven't changed
+    private final double[][] mLastValues;
+    private final long[][] mLastMasks;
+    private final boolean[] mHasSent;
+
+    private final DatagramChannel mChannel;
+    private final List<InetSocketAddress> mAddresses = new ArrayList<>();
+    private final ByteBuffer mFrame = ByteBuffer.allocateDirect(kMaxFrameBytes);
+    private int mCodexCountIndex = 0;
+    private short mCodexCount = 0;
+
+    private final long mSession = new Random().nextLong();
+    private long mSequence = 0;
+    private double mLastKeyframe = Double.NEGATIVE_INFINITY;
+    private long mSentDatagrams = 0;
+    private long mSentBytes = 0;
+    private long mFailedDatagrams = 0;
+
+    public CodexBatchSender(int pPort, List<String> pAddresses, Codex ... pCodexes) throws IOException {
+        mCodexes = pCodexes;
+        mRows = new CodexRow[pCodexes.length];
+        mEnumIds = new int[pCodexes.length];
+        mInstances = new byte[pCodexes.length];
+        mLastValues = new double[pCodexes.length][];
+        mLastMasks = new long[pCodexes.length][];
+        mHasSent = new boolean[pCodexes.length];
+        int maxFields = 0;
+        int maxMaskWords = 0;
+        for(int i = 0; i < pCodexes.length; i++) {
+            Class<?> enumClass = pCodexes[i].meta().getEnum();
+            mRows[i] = new CodexRow(enumClass);
+            mEnumIds[i] = enumId(enumClass);
+            for(int j = 0; j < i; j++) {
+                if(mEnumIds[j] == mEnumIds[i]) mInstances[i]++;
+            }
+            mLastValues[i] = new double[mRows[i].size()];
+            mLastMasks[i] = new long[mRows[i].maskWords()];
+            maxFields = Math.max(maxFields, mRows[i].size());
+            maxMaskWords = Math.max(maxMaskWords, mRows[i].maskWords());
+        }
+        mValues = new double[maxFields];
+        mMask = new long[maxMaskWords];
+
+        for(String address : pAddresses) {
+            mAddresses.add(new InetSocketAddress(address, pPort));
+        }
+        mChannel = DatagramChannel.open();
+        mChannel.configureBlocking(false);
+    }
+
+    /**
+     * Sends every codex that changed since the last call, as one datagram per address.  Never blocks - if the
+     * socket buffer is full the datagram is counted as failed and dropped.
+     * @param pNow The cycle timestamp
+     * @return The number of codexes sent
+     */
+    public int send(double pNow) {
+        boolean keyframe = pNow - mLastKeyframe >= SystemSettings.kCodexBatchKeyframePeriod;
+        if(keyframe) {
+            mLastKeyframe = pNow;
+        }
+
+        int sent = 0;
+        startFrame(pNow);
+        for(int i = 0; i < mCodexes.length; i++) {
+            CodexRow row = mRows[i];
+            row.read(mCodexes[i], mValues, 0, mMask, 0);
+            // Always check for changes so the last-sent row stays current during keyframes
+            boolean changed = updateLastRow(i);
+            if(!changed && !keyframe) {
+                continue;
+            }
+            int size = codexSizeBytes(row, mMask);
+            if(mFrame.remaining() < size && mCodexCount > 0) {
+                // Too big for one datagram - send what we have and continue in a new frame
+                sendFrame();
+                startFrame(pNow);
+            }
+            if(mFrame.remaining() < size) {
+                mLog.error("Codex ", row.getEnum().getSimpleName(), " is too large to send");
+                continue;
+            }
+            mFrame.putInt(mEnumIds[i]);
+            mFrame.put(mInstances[i]);
+            mFrame.putShort((short)row.size());
+            for(int w = 0; w < row.maskWords(); w++) {
+                mFrame.putLong(mMask[w]);
+            }
+            for(int f = 0; f < row.size(); f++) {
+                if(CodexRow.isSet(mMask, 0, f)) {
+                    mFrame.putDouble(mValues[f]);
+                }
+            }
+            mCodexCount++;
+            sent++;
+        }
+        if(mCodexCount > 0) {
+            sendFrame();
+        }
+        return sent;
+    }
+
+    /**
+     * Compares the row just read into mValues/mMask against the last one sent for codex pIndex, and keeps it if it
+     * changed.
+     * @return true if the row changed
+     */
+    private boolean updateLastRow(int pIndex) {
+        double[] lastValues = mLastValues[pIndex];
+        long[] lastMask = mLastMasks[pIndex];
+        boolean changed = !mHasSent[pIndex];
+        for(int w = 0; !changed && w < lastMask.length; w++) {
+            changed = mMask[w] != lastMask[w];
+        }
+        for(int f = 0; !changed && f < lastValues.length; f++) {
+            changed = Double.doubleToRawLongBits(mValues[f]) != Double.doubleToRawLongBits(lastValues[f]);
+        }
+        if(changed) {
+            System.arraycopy(mMask, 0, lastMask, 0, lastMask.length);
+            System.arraycopy(mValues, 0, lastValues, 0, lastValues.length);
+            mHasSent[pIndex] = true;
+        }
+        return changed;
+    }
+
+    private void startFrame(double pNow) {
+        mFrame.clear();
+        mFrame.putInt(MAGIC);
+        mFrame.putShort(VERSION);
+        mFrame.putLong(mSession);
+        mFrame.putLong(mSequence);
+        mFrame.putDouble(pNow);
+        mCodexCountIndex = mFrame.position();
+        mFrame.putShort((short)0);
+        mCodexCount = 0;
+    }
+
+    private void sendFrame() {
+        mFrame.putShort(mCodexCountIndex, mCodexCount);
+        mFrame.flip();
+        for(int i = 0; i < mAddresses.size(); i++) {
+            mFrame.rewind();
+            try {
+                int bytes = mChannel.send(mFrame, mAddresses.get(i));
+                if(bytes == 0) {
+                    mFailedDatagrams++;
+                } else {
+                    mSentDatagrams++;
+                    mSentBytes += bytes;
+                }
+            } catch (IOException e) {
+                mFailedDatagrams++;
+            }
+        }
+        mSequence++;
+    }
+
+    public void close() {
+        try {
+            mChannel.close();
+        } catch (IOException e) {
+            mLog.error("Unable to close codex sender: ", e.getMessage());
+        }
+    }
+
+    /**
+     * @return The session id sent in every frame
+     */
+    public long getSession() {
+        return mSession;
+    }
+
+    /**
+     * @return The sequence number of the next frame
+     */
+    public long getSequence() {
+        return mSequence;
+    }
+
+    public long getSentDatagrams() {
+        return mSentDatagrams;
+    }
+
+    public long getSentBytes() {
+        return mSentBytes;
+    }
+
+    public long getFailedDatagrams() {
+        return mFailedDatagrams;
+    }
+
+    private static int codexSizeBytes(CodexRow pRow, long[] pMask) {
+        int setFields = 0;
+        for(int w = 0; w < pRow.maskWords(); w++) {
+            setFields += Long.bitCount(pMask[w]);
+        }
+        return Integer.BYTES + Byte.BYTES + Short.BYTES + (pRow.maskWords() * Long.BYTES) + (setFields * Double.BYTES);
+    }
+
+    /**
+     * Identifies a codex enum on both ends of the connection.  String.hashCode() is part of the Java spec, so
+     * this is the same on the robot and the driver station.
+     */
+    public static int enumId(Class<?> pEnum) {
+        return pEnum.getName().hashCode();
+    }
+
+}
@@ -0,0 +1,129 @@
+package us.ilite.common.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a log written by {@link CodexBinaryLogger}.  This intentionally doesn't need the codex enum on the
+ * classpath - the field names come from the header - so logs can be read on any computer.
+ * Both fixed-width and compressed logs are supported.
+ */
+public class CodexBinaryLogReader implements Closeable {
+
+    private final DataInputStream mInput;
+
+    private final int mGlobalId;
+    private final String mEnumName;
+    private final String[] mFieldNames;
+    private final int mMaskWords;
+    private final CodexRowDecompressor mDecompressor;
+    private byte[] mBlock = new byte[0];
+
+    private double mTimestamp = Double.NaN;
+    private final long[] mMask;
+    private final double[] mValues;
+
+    public CodexBinaryLogReader(File pFile) throws IOException {
+        this(new FileInputStream(pFile));
+    }
+
+    public CodexBinaryLogReader(InputStream pInput) throws IOException {
+        mInput = new DataInputStream(new BufferedInputStream(pInput));
+
+        int magic = mInput.readInt();
+        if(magic != CodexBinaryLogger.MAGIC) {
+            throw new IOException("Not a binary codex log (bad magic number " + Integer.toHexString(magic) + ")");
+        }
+        short version = mInput.readShort();
+        if(version != CodexBinaryLogger.VERSION && version != CodexBinaryLogger.VERSION_COMPRESSED) {
+            throw new IOException("Unsupported binary codex log version " + version);
+        }
+        mGlobalId = mInput.readInt();
+        mEnumName = mInput.readUTF();
+        mFieldNames = new String[mInput.readShort()];
+        for(int i = 0; i < mFieldNames.length; i++) {
+            mFieldNames[i] = mInput.readUTF();
+        }
+        mMaskWords = mInput.readShort();
+
+        mMask = new long[mMaskWords];
+        mValues = new double[mFieldNames.length];
+        mDecompressor = version == CodexBinaryLogger.VERSION_COMPRESSED ? new CodexRowDecompressor(mFieldNames.length, mMaskWords) : null;
+    }
+
+    /**
+     * Advances to the next row.
+     * @return false once the end of the log is reached.  A partially-written final row or block is ignored.
+     */
+    public boolean next() throws IOException {
+        if(mDecompressor != null) {
+            return nextCompressed();
+        }
+        try {
+            mTimestamp = mInput.readDouble();
+            for(int i = 0; i < mMask.length; i++) {
+                mMask[i] = mInput.readLong();
+            }
+            for(int i = 0; i < mValues.length; i++) {
+                mValues[i] = mInput.readDouble();
+            }
+            return true;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    private boolean nextCompressed() throws IOException {
+        try {
+            while(!mDecompressor.hasNext()) {
+                int rows = mInput.readInt();
+                int length = mInput.readInt();
+                if(mBlock.length < length) {
+                    mBlock = new byte[length];
+                }
+                mInput.readFully(mBlock, 0, length);
+                mDecompressor.reset(mBlock, length, rows);
+            }
+        } catch (EOFException e) {
+            return false;
+        }
+        mTimestamp = mDecompressor.decompress(mMask, 0, mValues, 0);
+        return true;
+    }
+
+    public double getTimestamp() {
+        return mTimestamp;
+    }
+
+    public boolean isSet(int pOrdinal) {
+        return CodexRow.isSet(mMask, 0, pOrdinal);
+    }
+
+    public double get(int pOrdinal) {
+        return mValues[pOrdinal];
+    }
+
+    public int getGlobalId() {
+        return mGlobalId;
+    }
+
+    public String getEnumName() {
+        return mEnumName;
+    }
+
+    public String[] getFieldNames() {
+        return mFieldNames;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mInput.close();
+    }
+
+}
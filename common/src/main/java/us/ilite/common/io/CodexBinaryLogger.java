@@ -0,0 +1,325 @@
+package us.ilite.common.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import com.flybotix.hfr.codex.Codex;
+import com.flybotix.hfr.codex.CodexOf;
+import com.flybotix.hfr.util.log.ILog;
+import com.flybotix.hfr.util.log.Logger;
+
+import us.ilite.common.Data;
+import us.ilite.common.config.SystemSettings;
+import us.ilite.common.types.MatchMetadata;
+
+/**
+ * Logs a codex to a compact binary file instead of CSV.  The schema (enum class, field names and the
+ * match's global id) is written once in the header.  Every row after that is a fixed-width record:
+ * <pre>
+ *     double   timestamp
+ *     long[]   set bitmask, one bit per field (see {@link CodexRow})
+ *     double[] raw IEEE-754 values, indexed by ordinal.  Unset fields are NaN.
+ * </pre>
+ * Rows are staged in a direct buffer and handed to the file channel in large blocks, so a row costs a
+ * handful of puts instead of formatting every double into a String.
+ *
+ * If compression is enabled (version {@link #VERSION_COMPRESSED}) rows are packed by a {@link CodexRowCompressor}
+ * instead, and written as self-contained blocks:
+ * <pre>
+ *     int    row count
+ *     int    byte length
+ *     byte[] compressed rows
+ * </pre>
+ * A block is written every time the logger is flushed, so at most one flush period is lost if the robot dies.
+ * Use {@link CodexLogExporter} to turn these files back into CSV for plotting.
+ */
+public class CodexBinaryLogger<E extends Enum<E> & CodexOf<Double>> implements ICodexLogger {
+
+    public static final int MAGIC = 0x43445842; // "CDXB"
+    public static final short VERSION = 1;
+    public static final short VERSION_COMPRESSED = 2;
+    public static final String EXTENSION = "codexlog";
+
+    private static final int kBufferSizeBytes = 64 * 1024;
+
+    private final ILog mLog = Logger.createLog(CodexBinaryLogger.class);
+
+    private final Codex<Double, E> mCodex;
+    private final CodexRow<E> mRow;
+    private final MatchMetadata mMatchData;
+    private File mFile;
+
+    private final double[] mValues;
+    private final long[] mMask;
+    private final int mRowSizeBytes;
+    private final ByteBuffer mBuffer;
+    private final CodexRowCompressor mCompressor;
+
+    private FileChannel mChannel = null;
+
+    public CodexBinaryLogger(Codex<Double, E> pCodex, MatchMetadata pMatchData) {
+        this(pCodex, pMatchData, CodexCsvLogger.logFile(pCodex.meta().getEnum(), pMatchData, EXTENSION));
+    }
+
+    public CodexBinaryLogger(Codex<Double, E> pCodex, MatchMetadata pMatchData, File pFile) {
+        this(pCodex, pMatchData, pFile, SystemSettings.kCompressCodexLogs);
+    }
+
+    /**
+     * @param pCompress true to write delta/XOR compressed blocks instead of fixed-width rows
+     */
+    public CodexBinaryLogger(Codex<Double, E> pCodex, MatchMetadata pMatchData, File pFile, boolean pCompress) {
+        mCodex = pCodex;
+        mMatchData = pMatchData;
+        mFile = pFile;
+        mRow = new CodexRow<>(pCodex.meta().getEnum());
+        mValues = new double[mRow.size()];
+        mMask = new long[mRow.maskWords()];
+        mRowSizeBytes = rowSizeBytes(mRow.size(), mRow.maskWords());
+        mBuffer = ByteBuffer.allocateDirect(Math.max(kBufferSizeBytes, mRowSizeBytes));
+        if(pCompress) {
+            // A whole block, plus its row count and length, has to fit in mBuffer
+            mCompressor = new CodexRowCompressor(mRow.size(), mRow.maskWords(), mBuffer.capacity() - (2 * Integer.BYTES));
+        } else {
+            mCompressor = null;
+        }
+    }
+
+    /**
+     * Opens the file and writes the schema.  The file is opened here rather than in the constructor so that
+     * constructing a logger with no USB stick present doesn't throw.  If the file was already written to
+     * (e.g. autonomous and then teleop of the same match) new rows are appended to it, as long as it has exactly the
+     * same header - the same format version and codex layout.  A row or block that was only partly written before the
+     * robot lost power is cut off first.  If the header doesn't match, rows go to a new file next to it instead.
+     */
+    @Override
+    public boolean writeHeader() {
+        try {
+            short version = mCompressor == null ? VERSION : VERSION_COMPRESSED;
+            byte[] header = header(mRow, mMatchData == null ? 0 : mMatchData.hash, version);
+            long end = -1;
+            if(mFile.exists() && mFile.length() > 0) {
+                end = appendPosition(header);
+                if(end < 0) {
+                    File previous = mFile;
+                    mFile = nextFile(mFile);
+                    mLog.warn("Binary log ", previous, " was written by a different format or codex, logging to ", mFile, " instead");
+                }
+            }
+            Data.handleCreation(mFile);
+            mChannel = FileChannel.open(mFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if(end < 0) {
+                mChannel.truncate(0);
+                writeFully(ByteBuffer.wrap(header));
+            } else {
+                mChannel.truncate(end);
+                mChannel.position(end);
+            }
+            return true;
+        } catch (IOException pE) {
+            mLog.error("Unable to open binary log ", mFile, ": ", pE.getMessage());
+            closeWriter();
+            return false;
+        }
+    }
+
+    /**
+     * @return Where to append rows to mFile - the end of its last complete row or block - or -1 if its header isn't
+     * pHeader
+     */
+    private long appendPosition(byte[] pHeader) throws IOException {
+        try(FileChannel channel = FileChannel.open(mFile.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if(length < pHeader.length) {
+                return -1;
+            }
+            ByteBuffer existing = ByteBuffer.allocate(pHeader.length);
+            readFully(channel, existing, 0);
+            if(!Arrays.equals(existing.array(), pHeader)) {
+                return -1;
+            }
+
+            if(mCompressor == null) {
+                return pHeader.length + (((length - pHeader.length) / mRowSizeBytes) * mRowSizeBytes);
+            }
+            // Walk the blocks - each starts with its row count and byte length
+            ByteBuffer blockHeader = ByteBuffer.allocate(2 * Integer.BYTES);
+            long position = pHeader.length;
+            while(position + blockHeader.capacity() <= length) {
+                blockHeader.clear();
+                readFully(channel, blockHeader, position);
+                int byteLength = blockHeader.getInt(Integer.BYTES);
+                long next = position + blockHeader.capacity() + byteLength;
+                if(byteLength < 0 || next > length) {
+                    break;
+                }
+                position = next;
+            }
+            return position;
+        }
+    }
+
+    private static void readFully(FileChannel pChannel, ByteBuffer pBuffer, long pPosition) throws IOException {
+        while(pBuffer.hasRemaining()) {
+            if(pChannel.read(pBuffer, pPosition + pBuffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * @return The first of name_1.ext, name_2.ext... that doesn't exist yet
+     */
+    private static File nextFile(File pFile) {
+        String name = pFile.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot < 0 ? name : name.substring(0, dot);
+        String extension = dot < 0 ? "" : name.substring(dot);
+        File file;
+        int i = 1;
+        do {
+            file = new File(pFile.getParentFile(), base + "_" + i + extension);
+            i++;
+        } while(file.exists());
+        return file;
+    }
+
+    @Override
+    public boolean writeLine() {
+        if(mChannel == null) {
+            return false;
+        }
+        mRow.read(mCodex, mValues, 0, mMask, 0);
+        return writeRow(mCodex.meta().timestamp(), mMask, 0, mValues, 0);
+    }
+
+    /**
+     * Writes a row that was already copied out of the codex, for example by {@link CodexLogPipeline}.
+     * @param pMask Set bitmask, starting at pMaskOffset.  This logger reads {@link CodexRow#maskWords()} words.
+     * @param pValues Values indexed by ordinal, starting at pValueOffset
+     */
+    public boolean writeRow(double pTimestamp, long[] pMask, int pMaskOffset, double[] pValues, int pValueOffset) {
+        if(mChannel == null) {
+            return false;
+        }
+        try {
+            if(mCompressor != null) {
+                if(!mCompressor.hasRoomForRow()) {
+                    flush();
+                }
+                mCompressor.compress(pTimestamp, pMask, pMaskOffset, pValues, pValueOffset);
+                return true;
+            }
+            if(mBuffer.remaining() < mRowSizeBytes) {
+                flush();
+            }
+            mBuffer.putDouble(pTimestamp);
+            for(int i = 0; i < mMask.length; i++) {
+                mBuffer.putLong(pMask[pMaskOffset + i]);
+            }
+            for(int i = 0; i < mValues.length; i++) {
+                mBuffer.putDouble(pValues[pValueOffset + i]);
+            }
+            return true;
+        } catch (Exception pE) {
+            // Usually a full or unplugged USB stick - don't keep trying every row
+            mLog.error("Unable to write binary log ", mFile, ", no longer logging to it: ", pE.getMessage());
+            disable();
+            return false;
+        }
+    }
+
+    public void flush() throws IOException {
+        if(mChannel == null) {
+            return;
+        }
+        if(mCompressor != null && mCompressor.rowCount() > 0) {
+            mBuffer.putInt(mCompressor.rowCount());
+            mBuffer.putInt(mCompressor.byteLength());
+            mBuffer.put(mCompressor.array(), 0, mCompressor.byteLength());
+            mCompressor.reset();
+        }
+        mBuffer.flip();
+        writeFully(mBuffer);
+        mBuffer.clear();
+    }
+
+    @Override
+    public void closeWriter() {
+        if(mChannel == null) {
+            return;
+        }
+        try {
+            flush();
+            mChannel.close();
+        } catch (IOException pE) {
+            pE.printStackTrace();
+        }
+        mChannel = null;
+    }
+
+    /**
+     * Closes the file without flushing, since whatever is buffered can't be written anyway
+     */
+    private void disable() {
+        try {
+            mChannel.close();
+        } catch (IOException pE) {
+            // Already failing - nothing more to report
+        }
+        mChannel = null;
+        mBuffer.clear();
+        if(mCompressor != null) {
+            mCompressor.reset();
+        }
+    }
+
+    public File file() {
+        return mFile;
+    }
+
+    private void writeFully(ByteBuffer pBuffer) throws IOException {
+        while(pBuffer.hasRemaining()) {
+            mChannel.write(pBuffer);
+        }
+    }
+
+    /**
+     * @return The size of a single row, in bytes
+     */
+    public static int rowSizeBytes(int pFieldCount, int pMaskWords) {
+        return Double.BYTES + (pMaskWords * Long.BYTES) + (pFieldCount * Double.BYTES);
+    }
+
+    /**
+     * Serializes the schema for a codex log.  Shared with the other binary writers so every binary log
+     * in the project can be read by {@link CodexBinaryLogReader}.
+     */
+    public static byte[] header(CodexRow<?> pRow, int pGlobalId) throws IOException {
+        return header(pRow, pGlobalId, VERSION);
+    }
+
+    public static byte[] header(CodexRow<?> pRow, int pGlobalId, short pVersion) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(pVersion);
+        out.writeInt(pGlobalId);
+        out.writeUTF(pRow.getEnum().getName());
+        out.writeShort(pRow.size());
+        for(Enum<?> field : pRow.fields()) {
+            out.writeUTF(field.name());
+        }
+        out.writeShort(pRow.maskWords());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+}
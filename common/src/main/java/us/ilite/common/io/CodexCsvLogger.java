@@ -16,12 +16,13 @@ import edu.wpi.first.wpilibj.DriverStation;
 import us.ilite.common.Data;
 import us.ilite.common.types.MatchMetadata;
 
-public class CodexCsvLogger {
+public class CodexCsvLogger implements ICodexLogger {
 
-    private final ILog mLog = Logger.createLog(CodexCsvLogger.class);
+    private static final ILog sLog = Logger.createLog(CodexCsvLogger.class);
     public static final String ROBOT_DIR = "/u";
     // private static final String USER_DIR = System.getProperty("user.home");
-    private static final String LOG_PATH_FORMAT = "/logs/%s/%s-%s-%s.csv";
+    private static final String LOG_PATH_FORMAT = "/logs/%s/%s-%s-%s.%s";
+    public static final String CSV_EXTENSION = "csv";
 
     // private final ILog mLog = Logger.createLog(CodexCsvLogger.class);
 
@@ -31,6 +32,7 @@ public class CodexCsvLogger {
 
     public CodexCsvLogger(Codex<?, ?> pCodex, MatchMetadata pMatchData) {
         mCodex = pCodex;
+        mMatchData = pMatchData;
 
         File file = file(false);
         Data.handleCreation( file );
@@ -40,10 +42,9 @@ public class CodexCsvLogger {
             pE.printStackTrace();
         }
 
-        mMatchData = pMatchData;
-
     }
 
+    @Override
     public boolean writeHeader() {
         boolean continueWriting = false;
         try {
@@ -57,6 +58,7 @@ public class CodexCsvLogger {
         return continueWriting;
     }
 
+    @Override
     public boolean writeLine() {
         boolean continueWriting = false;
         try {
@@ -71,6 +73,17 @@ public class CodexCsvLogger {
     }
 
     public File file(boolean handleUSBConnection) {
+        return logFile(mCodex.meta().getEnum(), mMatchData, CSV_EXTENSION);
+    }
+
+    /**
+     * Builds the path of a codex log file on the USB stick.  Shared by every codex log format so that
+     * CSV and binary logs for the same match end up next to each other.
+     * @param pEnum The codex enumeration, used as the log folder name
+     * @param pMatchData Match information used to name the file.  If null, the DS is queried instead.
+     * @param pExtension File extension, without the '.'
+     */
+    public static File logFile(Class<?> pEnum, MatchMetadata pMatchData, String pExtension) {
 
         String dir = ROBOT_DIR;
         // if(!handleUSBConnection) {
@@ -85,10 +98,10 @@ public class CodexCsvLogger {
         String mEventName;
         String mMatchType;
         Integer mMatchNumber;
-        if(mMatchData != null) {
-            mEventName = mMatchData.mEventName;
-            mMatchType = mMatchData.mMatchType.toString();
-            mMatchNumber = mMatchData.mMatchNumber;
+        if(pMatchData != null) {
+            mEventName = pMatchData.mEventName;
+            mMatchType = pMatchData.mMatchType.toString();
+            mMatchNumber = pMatchData.mMatchNumber;
         } else {
             mEventName = DriverStation.getInstance().getEventName();
             mMatchType = DriverStation.getInstance().getMatchType().toString();
@@ -99,17 +112,19 @@ public class CodexCsvLogger {
             mEventName =  new SimpleDateFormat("MM-dd-YYYY_HH-mm-ss").format(Calendar.getInstance().getTime());
         }
         File file = new File(String.format( dir + LOG_PATH_FORMAT,
-                            mCodex.meta().getEnum().getSimpleName(),
+                            pEnum.getSimpleName(),
                             mEventName,
                             mMatchType,
-                            Integer.toString(mMatchNumber)
+                            Integer.toString(mMatchNumber),
+                            pExtension
                             ));
 
-        mLog.error("Creating log file at ", file.toPath());
+        sLog.error("Creating log file at ", file.toPath());
 
         return file;
     }
 
+    @Override
     public void closeWriter() {
         try {
             // writer.flush();
@@ -0,0 +1,253 @@
+package us.ilite.common.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import com.flybotix.hfr.codex.Codex;
+
+import us.ilite.common.types.drive.EDriveData;
+
+/**
+ * Compares the size and CPU cost of the codex log formats on a recorded match:
+ * <ul>
+ *     <li>CSV - what {@link CodexCsvLogger} writes</li>
+ *     <li>Fixed-width binary rows - {@link CodexBinaryLogger} with compression off</li>
+ *     <li>Delta/XOR compressed blocks - {@link CodexBinaryLogger} with compression on</li>
+ * </ul>
+ * Every format starts from a populated codex, so ns/row includes copying the row out of the codex.
+ * Output is counted rather than written to disk, so USB speed doesn't skew the results.
+ *
+ * Usage: <code>./gradlew :common:benchmarkCodexLogs -PlogPath=path/to/EDriveData.codexlog</code>
+ * The codex enum must be on the classpath.  Without a log, a simulated 150 second match of EDriveData is used.
+ */
+public class CodexLogBenchmark {
+
+    private static final int kWarmupIterations = 5;
+    private static final int kTimedIterations = 20;
+    private static final int kBlockBytes = 64 * 1024;
+
+    private final Codex mCodex;
+    private final CodexRow mRow;
+    private final int mRowCount;
+    private final double[] mTimestamps;
+    private final long[] mMasks;
+    private final double[] mValues;
+
+    // Scratch row for the binary formats
+    private final long[] mMask;
+    private final double[] mRowValues;
+
+    private CodexLogBenchmark(Class pEnum, int pRowCount) {
+        mCodex = Codex.of.thisEnum(pEnum);
+        mRow = new CodexRow(pEnum);
+        mRowCount = pRowCount;
+        mTimestamps = new double[pRowCount];
+        mMasks = new long[pRowCount * mRow.maskWords()];
+        mValues = new double[pRowCount * mRow.size()];
+        mMask = new long[mRow.maskWords()];
+        mRowValues = new double[mRow.size()];
+    }
+
+    public static void main(String[] pArgs) throws Exception {
+        CodexLogBenchmark benchmark = pArgs.length > 0 ? recorded(new File(pArgs[0])) : simulated(150.0, 0.01);
+        benchmark.run();
+    }
+
+    /**
+     * Loads every row of a binary codex log
+     */
+    public static CodexLogBenchmark recorded(File pLog) throws IOException, ClassNotFoundException {
+        int rows = 0;
+        try(CodexBinaryLogReader reader = new CodexBinaryLogReader(pLog)) {
+            while(reader.next()) rows++;
+        }
+        try(CodexBinaryLogReader reader = new CodexBinaryLogReader(pLog)) {
+            CodexLogBenchmark benchmark = new CodexLogBenchmark(Class.forName(reader.getEnumName()), rows);
+            int fields = benchmark.mRow.size();
+            for(int r = 0; reader.next(); r++) {
+                benchmark.mTimestamps[r] = reader.getTimestamp();
+                for(int i = 0; i < fields; i++) {
+                    if(reader.isSet(i)) {
+                        benchmark.mValues[(r * fields) + i] = reader.get(i);
+                        benchmark.mMasks[(r * benchmark.mRow.maskWords()) + (i >>> 6)] |= 1L << (i & 63);
+                    } else {
+                        benchmark.mValues[(r * fields) + i] = Double.NaN;
+                    }
+                }
+            }
+            return benchmark;
+        }
+    }
+
+    /**
+     * Simulates EDriveData logged every pPeriod seconds: slowly-changing positions and velocities, noisy currents
+     * and voltages, a few fields that never change and vision fields that are usually unset.
+     */
+    public static CodexLogBenchmark simulated(double pDuration, double pPeriod) {
+        int rows = (int)(pDuration / pPeriod);
+        CodexLogBenchmark benchmark = new CodexLogBenchmark(EDriveData.class, rows);
+        int fields = benchmark.mRow.size();
+        Random random = new Random(1234);
+        double time = 0.0, position = 0.0, heading = 0.0, x = 0.0, y = 0.0;
+        for(int r = 0; r < rows; r++) {
+            // The loop period jitters by up to a millisecond
+            time += pPeriod + ((random.nextInt(2000) - 1000) / 1e6);
+            double output = Math.sin(time / 3.0);
+            double velocity = output * 120.0;
+            position += velocity * pPeriod;
+            heading += output * 0.5;
+            x += Math.cos(Math.toRadians(heading)) * velocity * pPeriod;
+            y += Math.sin(Math.toRadians(heading)) * velocity * pPeriod;
+            boolean vision = (r / 500) % 4 == 0;
+
+            double[] values = benchmark.mValues;
+            int offset = r * fields;
+            for(int i = 0; i < fields; i++) values[offset + i] = Double.NaN;
+            values[offset + EDriveData.LEFT_POS_INCHES.ordinal()] = position;
+            values[offset + EDriveData.RIGHT_POS_INCHES.ordinal()] = position * 1.01;
+            values[offset + EDriveData.LEFT_VEL_IPS.ordinal()] = velocity;
+            values[offset + EDriveData.RIGHT_VEL_IPS.ordinal()] = velocity * 1.01;
+            values[offset + EDriveData.LEFT_VEL_TICKS.ordinal()] = Math.round(velocity * 10.0);
+            values[offset + EDriveData.RIGHT_VEL_TICKS.ordinal()] = Math.round(velocity * 10.1);
+            values[offset + EDriveData.LEFT_CURRENT.ordinal()] = Math.round((Math.abs(output) * 40.0 + random.nextDouble()) * 8.0) / 8.0;
+            values[offset + EDriveData.RIGHT_CURRENT.ordinal()] = Math.round((Math.abs(output) * 40.0 + random.nextDouble()) * 8.0) / 8.0;
+            values[offset + EDriveData.LEFT_VOLTAGE.ordinal()] = Math.round(output * 12.0 * 1023.0) / 1023.0;
+            values[offset + EDriveData.RIGHT_VOLTAGE.ordinal()] = Math.round(output * 12.0 * 1023.0) / 1023.0;
+            values[offset + EDriveData.TARGET_X.ordinal()] = 0.0;
+            values[offset + EDriveData.TARGET_Y.ordinal()] = 0.0;
+            values[offset + EDriveData.TARGET_HEADING.ordinal()] = 0.0;
+            values[offset + EDriveData.ODOM_X.ordinal()] = x;
+            values[offset + EDriveData.ODOM_Y.ordinal()] = y;
+            values[offset + EDriveData.ODOM_HEADING.ordinal()] = heading;
+            if(vision) {
+                values[offset + EDriveData.VISION_TRACKING_TARGET_X.ordinal()] = random.nextInt(320) / 10.0;
+                values[offset + EDriveData.VISION_TRACKING_ERROR.ordinal()] = random.nextDouble();
+                values[offset + EDriveData.VISION_TRACKING_OUTPUT.ordinal()] = random.nextDouble() * 0.3;
+            }
+            values[offset + EDriveData.LEFT_MESSAGE_OUTPUT.ordinal()] = output;
+            values[offset + EDriveData.RIGHT_MESSAGE_OUTPUT.ordinal()] = output;
+            values[offset + EDriveData.LEFT_MESSAGE_CONTROL_MODE.ordinal()] = 0.0;
+            values[offset + EDriveData.RIGHT_MESSAGE_CONTROL_MODE.ordinal()] = 0.0;
+            values[offset + EDriveData.LEFT_MESSAGE_NEUTRAL_MODE.ordinal()] = 2.0;
+            values[offset + EDriveData.RIGHT_MESSAGE_NEUTRAL_MODE.ordinal()] = 2.0;
+            values[offset + EDriveData.LEFT_MESSAGE_DEMAND.ordinal()] = output;
+            values[offset + EDriveData.RIGHT_MESSAGE_DEMAND.ordinal()] = output;
+
+            benchmark.mTimestamps[r] = time;
+            for(int i = 0; i < fields; i++) {
+                if(!Double.isNaN(values[offset + i])) {
+                    benchmark.mMasks[(r * benchmark.mRow.maskWords()) + (i >>> 6)] |= 1L << (i & 63);
+                }
+            }
+        }
+        return benchmark;
+    }
+
+    public void run() throws IOException {
+        System.out.println(mRow.getEnum().getSimpleName() + ": " + mRowCount + " rows of " + mRow.size() + " fields");
+        System.out.println(String.format("%-12s %12s %12s", "format", "bytes/row", "ns/row"));
+        report("csv", csv());
+        report("fixed", fixedWidth());
+        report("compressed", compressed());
+    }
+
+    private interface IFormat {
+        /**
+         * @return The number of bytes written for every row
+         */
+        long writeAll() throws IOException;
+    }
+
+    private void report(String pName, IFormat pFormat) throws IOException {
+        long bytes = 0;
+        for(int i = 0; i < kWarmupIterations; i++) {
+            bytes = pFormat.writeAll();
+        }
+        long start = System.nanoTime();
+        for(int i = 0; i < kTimedIterations; i++) {
+            pFormat.writeAll();
+        }
+        double nsPerRow = (System.nanoTime() - start) / (double)(kTimedIterations * (long)mRowCount);
+        System.out.println(String.format("%-12s %12.1f %12.1f", pName, bytes / (double)mRowCount, nsPerRow));
+    }
+
+    private IFormat csv() {
+        return () -> {
+            CountingOutputStream out = new CountingOutputStream();
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out));
+            writer.append(mCodex.getCSVHeader());
+            writer.write('\n');
+            for(int r = 0; r < mRowCount; r++) {
+                loadRow(r);
+                writer.append(mCodex.toCSV());
+                writer.write('\n');
+            }
+            writer.flush();
+            return out.mCount;
+        };
+    }
+
+    private IFormat fixedWidth() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(kBlockBytes);
+        int rowSize = CodexBinaryLogger.rowSizeBytes(mRow.size(), mRow.maskWords());
+        return () -> {
+            long bytes = 0;
+            buffer.clear();
+            for(int r = 0; r < mRowCount; r++) {
+                loadRow(r);
+                mRow.read(mCodex, mRowValues, 0, mMask, 0);
+                if(buffer.remaining() < rowSize) {
+                    bytes += buffer.position();
+                    buffer.clear();
+                }
+                buffer.putDouble(mTimestamps[r]);
+                for(long word : mMask) buffer.putLong(word);
+                for(double value : mRowValues) buffer.putDouble(value);
+            }
+            return bytes + buffer.position();
+        };
+    }
+
+    private IFormat compressed() {
+        CodexRowCompressor compressor = new CodexRowCompressor(mRow.size(), mRow.maskWords(), kBlockBytes);
+        return () -> {
+            long bytes = 0;
+            compressor.reset();
+            for(int r = 0; r < mRowCount; r++) {
+                loadRow(r);
+                mRow.read(mCodex, mRowValues, 0, mMask, 0);
+                if(!compressor.hasRoomForRow()) {
+                    bytes += (2 * Integer.BYTES) + compressor.byteLength();
+                    compressor.reset();
+                }
+                compressor.compress(mTimestamps[r], mMask, 0, mRowValues, 0);
+            }
+            return bytes + (2 * Integer.BYTES) + compressor.byteLength();
+        };
+    }
+
+    private void loadRow(int pRow) {
+        mRow.write(mValues, pRow * mRow.size(), mMasks, pRow * mRow.maskWords(), mCodex);
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long mCount = 0;
+
+        @Override
+        public void write(int pByte) {
+            mCount++;
+        }
+
+        @Override
+        public void write(byte[] pBytes, int pOffset, int pLength) {
+            mCount += pLength;
+        }
+    }
+
+}
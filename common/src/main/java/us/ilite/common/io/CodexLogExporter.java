@@ -0,0 +1,96 @@
+package us.ilite.common.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Converts binary codex logs into CSV so they can be opened in a spreadsheet or plotted with the gnuplot
+ * scripts in <code>plots/</code>.
+ *
+ * Usage: <code>./gradlew :common:exportCodexLogs -PlogPath=path/to/logs</code>
+ * where logPath is either a single .codexlog file or a folder, which is searched recursively.
+ * Each log is written next to itself with a .csv extension.
+ */
+public class CodexLogExporter {
+
+    public static void main(String[] pArgs) throws IOException {
+        if(pArgs.length < 1) {
+            System.err.println("Usage: CodexLogExporter <log file or folder> [output csv]");
+            return;
+        }
+
+        File input = new File(pArgs[0]);
+        if(input.isDirectory()) {
+            exportFolder(input);
+        } else {
+            File output = pArgs.length > 1 ? new File(pArgs[1]) : csvFileFor(input);
+            export(input, output);
+        }
+    }
+
+    public static void exportFolder(File pFolder) throws IOException {
+        File[] files = pFolder.listFiles();
+        if(files == null) {
+            return;
+        }
+        for(File file : files) {
+            if(file.isDirectory()) {
+                exportFolder(file);
+            } else if(file.getName().endsWith("." + CodexBinaryLogger.EXTENSION)) {
+                export(file, csvFileFor(file));
+            }
+        }
+    }
+
+    /**
+     * Writes a CSV with one column per codex field, plus the match's global id and the row timestamp.
+     * Unset fields are left empty.
+     * @return The number of rows exported
+     */
+    public static int export(File pInput, File pOutput) throws IOException {
+        int rows = 0;
+        try(CodexBinaryLogReader reader = new CodexBinaryLogReader(pInput);
+            Writer writer = new BufferedWriter(new FileWriter(pOutput))) {
+            rows = export(reader, writer);
+        }
+        System.out.println("Exported " + rows + " rows of " + pInput + " to " + pOutput);
+        return rows;
+    }
+
+    public static int export(CodexBinaryLogReader pReader, Writer pWriter) throws IOException {
+        String[] fields = pReader.getFieldNames();
+
+        StringBuilder line = new StringBuilder("GLOBAL_ID,TIME");
+        for(String field : fields) {
+            line.append(',').append(field);
+        }
+        pWriter.append(line).append('\n');
+
+        int rows = 0;
+        while(pReader.next()) {
+            line.setLength(0);
+            line.append(pReader.getGlobalId()).append(',').append(pReader.getTimestamp());
+            for(int i = 0; i < fields.length; i++) {
+                line.append(',');
+                if(pReader.isSet(i)) {
+                    line.append(pReader.get(i));
+                }
+            }
+            pWriter.append(line).append('\n');
+            rows++;
+        }
+        pWriter.flush();
+        return rows;
+    }
+
+    private static File csvFileFor(File pInput) {
+        String name = pInput.getName();
+        int extension = name.lastIndexOf('.');
+        String base = extension > 0 ? name.substring(0, extension) : name;
+        return new File(pInput.getParentFile(), base + "." + CodexCsvLogger.CSV_EXTENSION);
+    }
+
+}
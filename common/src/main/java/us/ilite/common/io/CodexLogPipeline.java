@@ -0,0 +1,307 @@
+package us.ilite.common.io;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import com.flybotix.hfr.codex.Codex;
+import com.flybotix.hfr.util.log.ILog;
+import com.flybotix.hfr.util.log.Logger;
+
+import us.ilite.common.config.SystemSettings;
+import us.ilite.common.types.MatchMetadata;
+
+/**
+ * Decouples codex logging from the threads that own the codexes.
+ *
+ * Control threads call {@link #publish(Codex)} once per cycle.  That copies the codex into a slot of a
+ * pre-allocated ring of primitive arrays and returns immediately - no I/O and no allocation.  A single
+ * background thread drains the ring in batches and hands the rows to one {@link CodexBinaryLogger} per codex,
+ * which writes them to the USB stick in large blocks.
+ *
+ * The ring is a bounded multi-producer/single-consumer queue (each slot carries a sequence number), so any
+ * thread can publish the codexes it owns.  If the USB stick can't keep up the ring fills and new rows are
+ * dropped and counted, rather than blocking the control loop.
+ */
+public class CodexLogPipeline implements Runnable {
+
+    private final ILog mLog = Logger.createLog(CodexLogPipeline.class);
+
+    private final Codex[] mCodexes;
+    private final CodexRow[] mRows;
+    private final CodexBinaryLogger[] mLoggers;
+
+    // Ring storage.  Slot i holds one codex row at mValues[i * mValueStride], mMasks[i * mMaskStride]
+    private final int mCapacity;
+    private final int mIndexMask;
+    private final int mValueStride;
+    private final int mMaskStride;
+    private final double[] mValues;
+    private final long[] mMasks;
+    private final double[] mTimestamps;
+    private final int[] mCodexIndices;
+    private final AtomicLongArray mSequences;
+
+    private final AtomicLong mHead = new AtomicLong(0);
+    private long mTail = 0;
+
+    private final AtomicLong mPublishedRows = new AtomicLong(0);
+    private final AtomicLong mDroppedRows = new AtomicLong(0);
+    private volatile long mWrittenRows = 0;
+    private long mLastReportedDrops = 0;
+
+    private volatile boolean mIsRunning = false;
+    // Threads part way through publish(), so stop() can wait for their rows before the last drain
+    private final AtomicInteger mPublishers = new AtomicInteger(0);
+    private volatile boolean mWriteFailed = false;
+    private Thread mWriterThread = null;
+
+    public CodexLogPipeline(MatchMetadata pMatchData, Codex ... pCodexes) {
+        this(pMatchData, SystemSettings.kLogPipelineCapacity, pCodexes);
+    }
+
+    /**
+     * @param pCapacity Number of rows the ring can hold.  Rounded up to a power of 2.
+     */
+    public CodexLogPipeline(MatchMetadata pMatchData, int pCapacity, Codex ... pCodexes) {
+        mCodexes = pCodexes;
+        mRows = new CodexRow[pCodexes.length];
+        mLoggers = new CodexBinaryLogger[pCodexes.length];
+        int maxFields = 0;
+        int maxMaskWords = 0;
+        for(int i = 0; i < pCodexes.length; i++) {
+            mRows[i] = new CodexRow(pCodexes[i].meta().getEnum());
+            mLoggers[i] = new CodexBinaryLogger(pCodexes[i], pMatchData);
+            maxFields = Math.max(maxFields, mRows[i].size());
+            maxMaskWords = Math.max(maxMaskWords, mRows[i].maskWords());
+        }
+
+        int capacity = 1;
+        while(capacity < pCapacity) capacity <<= 1;
+        mCapacity = capacity;
+        mIndexMask = capacity - 1;
+        mValueStride = maxFields;
+        mMaskStride = maxMaskWords;
+        mValues = new double[mCapacity * mValueStride];
+        mMasks = new long[mCapacity * mMaskStride];
+        mTimestamps = new double[mCapacity];
+        mCodexIndices = new int[mCapacity];
+        mSequences = new AtomicLongArray(mCapacity);
+        for(int i = 0; i < mCapacity; i++) {
+            mSequences.set(i, i);
+        }
+    }
+
+    /**
+     * Opens the log files and starts the writer thread.
+     */
+    public synchronized void start() {
+        if(mIsRunning) {
+            return;
+        }
+        mWriteFailed = false;
+        for(CodexBinaryLogger logger : mLoggers) {
+            if(!logger.writeHeader()) {
+                mWriteFailed = true;
+            }
+        }
+        if(mWriteFailed) {
+            mLog.error("USB not found! Codex rows will be counted as dropped until logging is restarted.");
+        }
+        mIsRunning = true;
+        mWriterThread = new Thread(this, "CodexLogPipeline");
+        mWriterThread.setDaemon(true);
+        mWriterThread.setPriority(Thread.MIN_PRIORITY);
+        mWriterThread.start();
+    }
+
+    /**
+     * Stops the writer thread after it drains whatever is left in the ring, then closes the log files.  Every row
+     * published before this returns is either written or counted as dropped.
+     */
+    public synchronized void stop() {
+        if(!mIsRunning) {
+            return;
+        }
+        mIsRunning = false;
+        try {
+            // Not interrupted - an interrupt during a write would close the log file's channel
+            LockSupport.unpark(mWriterThread);
+            mWriterThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for(CodexBinaryLogger logger : mLoggers) {
+            logger.closeWriter();
+        }
+        mLog.warn("Logged ", mWrittenRows, "/", mPublishedRows.get(), " codex rows, dropped ", mDroppedRows.get());
+    }
+
+    /**
+     * Copies the current state of pCodex into the ring.  Safe to call from any thread, and never blocks.
+     * @return false if the pipeline isn't running, pCodex isn't one of the codexes this pipeline was created
+     * with, or the row was dropped because the ring is full or the writer has failed.
+     */
+    public boolean publish(Codex pCodex) {
+        int codexIndex = indexOf(pCodex);
+        if(!mIsRunning || codexIndex < 0) {
+            return false;
+        }
+        mPublishers.incrementAndGet();
+        try {
+            // stop() may have started since the check above - if so, it could already be past its last drain
+            if(!mIsRunning) {
+                return false;
+            }
+            return claimAndCopy(pCodex, codexIndex);
+        } finally {
+            mPublishers.decrementAndGet();
+        }
+    }
+
+    private boolean claimAndCopy(Codex pCodex, int pCodexIndex) {
+        mPublishedRows.incrementAndGet();
+        if(mWriteFailed) {
+            mDroppedRows.incrementAndGet();
+            return false;
+        }
+
+        // Claim a slot
+        long position = mHead.get();
+        int slot;
+        while(true) {
+            slot = (int)(position & mIndexMask);
+            long difference = mSequences.get(slot) - position;
+            if(difference == 0) {
+                if(mHead.compareAndSet(position, position + 1)) break;
+                position = mHead.get();
+            } else if(difference < 0) {
+                // The writer hasn't freed this slot yet - the ring is full
+                mDroppedRows.incrementAndGet();
+                return false;
+            } else {
+                position = mHead.get();
+            }
+        }
+
+        mCodexIndices[slot] = pCodexIndex;
+        mTimestamps[slot] = pCodex.meta().timestamp();
+        mRows[pCodexIndex].read(pCodex, mValues, slot * mValueStride, mMasks, slot * mMaskStride);
+        mSequences.lazySet(slot, position + 1);
+        return true;
+    }
+
+    public void publish(Codex[] pCodexes) {
+        for(Codex codex : pCodexes) {
+            publish(codex);
+        }
+    }
+
+    @Override
+    public void run() {
+        long drainPeriodNanos = (long)(SystemSettings.kLogPipelineDrainPeriod * 1e9);
+        long lastFlush = System.currentTimeMillis();
+        while(mIsRunning) {
+            drain();
+            if(System.currentTimeMillis() - lastFlush > 1000) {
+                flush();
+                reportDrops();
+                lastFlush = System.currentTimeMillis();
+            }
+            // stop() unparks us to finish up immediately
+            LockSupport.parkNanos(this, drainPeriodNanos);
+        }
+        // Publishers that got in before stop() finish their rows, and no more can start
+        while(mPublishers.get() > 0) {
+            Thread.yield();
+        }
+        drain();
+        reportDrops();
+    }
+
+    /**
+     * Writes every row currently in the ring.  Only called from the writer thread.
+     */
+    private void drain() {
+        while(true) {
+            int slot = (int)(mTail & mIndexMask);
+            if(mSequences.get(slot) != mTail + 1) {
+                // Nothing published in this slot yet
+                return;
+            }
+            if(!mWriteFailed) {
+                int codexIndex = mCodexIndices[slot];
+                boolean written = mLoggers[codexIndex].writeRow(mTimestamps[slot], mMasks, slot * mMaskStride, mValues, slot * mValueStride);
+                if(written) {
+                    mWrittenRows++;
+                } else {
+                    mLog.error("USB write failed! Codex rows will be counted as dropped until logging is restarted.");
+                    mWriteFailed = true;
+                }
+            } else {
+                mDroppedRows.incrementAndGet();
+            }
+            mSequences.lazySet(slot, mTail + mCapacity);
+            mTail++;
+        }
+    }
+
+    private void flush() {
+        if(mWriteFailed) {
+            return;
+        }
+        try {
+            for(CodexBinaryLogger logger : mLoggers) {
+                logger.flush();
+            }
+        } catch (IOException e) {
+            mLog.error("USB flush failed! ", e.getMessage());
+            mWriteFailed = true;
+        }
+    }
+
+    private void reportDrops() {
+        long drops = mDroppedRows.get();
+        if(drops != mLastReportedDrops) {
+            mLog.warn("Codex log pipeline has dropped ", drops, " rows (", drops - mLastReportedDrops, " since last report)");
+            mLastReportedDrops = drops;
+        }
+    }
+
+    private int indexOf(Codex pCodex) {
+        for(int i = 0; i < mCodexes.length; i++) {
+            if(mCodexes[i] == pCodex) return i;
+        }
+        return -1;
+    }
+
+    public long getPublishedRows() {
+        return mPublishedRows.get();
+    }
+
+    public long getDroppedRows() {
+        return mDroppedRows.get();
+    }
+
+    public long getWrittenRows() {
+        return mWrittenRows;
+    }
+
+    /**
+     * @return Approximate number of rows waiting to be written
+     */
+    public long getPendingRows() {
+        return Math.max(0, mHead.get() - mTail);
+    }
+
+    public boolean isRunning() {
+        return mIsRunning;
+    }
+
+    public boolean hasWriteFailed() {
+        return mWriteFailed;
+    }
+
+}
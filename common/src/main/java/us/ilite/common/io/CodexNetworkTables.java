@@ -1,8 +1,9 @@
 package us.ilite.common.io;
 
-import java.util.EnumSet;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.flybotix.hfr.codex.Codex;
 import com.flybotix.hfr.codex.CodexOf;
@@ -13,20 +14,27 @@ import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableEntry;
 import edu.wpi.first.networktables.NetworkTableInstance;
 
+/**
+ * Publishes codexes to NetworkTables.  Every entry is resolved once when a codex is registered, and only fields
+ * whose value changed since the last send are pushed, so sending every codex every cycle is cheap.
+ */
 public class CodexNetworkTables {
   private final ILog mLog = Logger.createLog(CodexNetworkTables.class);
-  private Map<Integer, NetworkTable> mTables = new HashMap<>();
-  private Map<Integer, Map<String, NetworkTableEntry>> mEntries = new HashMap<>();
-  private Map<Integer, Put<?>> mWriters = new HashMap<>();
+  // Codexes are sent from both the main and loop threads, and module timings register as modules start
+  private final List<Publisher<?, ?>> mPublishers = new CopyOnWriteArrayList<>();
   private final static NetworkTableInstance sNETWORK_TABLES = NetworkTableInstance.getDefault();
 
+  // Added to from whichever thread sends a codex
+  private final LongAdder mPublishedValues = new LongAdder();
+  private final LongAdder mUnchangedValues = new LongAdder();
+
   /**
    * Initializes a few items related to writing elements of a codex to a network table.
    * Do this ahead of time to prevent issues with timing on the first cycle.
    */
   public <V, E extends Enum<E> & CodexOf<V>> void registerCodex(Codex<V, E> pCodex) {
     Class<E> enumClass = pCodex.meta().getEnum();
-    registerCodexWithTableName(CodexNetworkTablesParser.constructNetworkTableName(enumClass), pCodex);
+    registerCodexWithTableName(null, CodexNetworkTablesParser.constructNetworkTableName(enumClass), pCodex);
   }
 
   /**
@@ -35,15 +43,16 @@ public class CodexNetworkTables {
    */
   public <V, E extends Enum<E> & CodexOf<V>> void registerCodex(String pName, Codex<V, E> pCodex) {
     Class<E> enumClass = pCodex.meta().getEnum();
-    registerCodexWithTableName(CodexNetworkTablesParser.constructNetworkTableName(enumClass, pName), pCodex);
+    registerCodexWithTableName(pName, CodexNetworkTablesParser.constructNetworkTableName(enumClass, pName), pCodex);
   }
-  
-  private <V, E extends Enum<E> & CodexOf<V>> void registerCodexWithTableName(String pTableName, Codex<V, E> pCodex) {
-      Integer hash = pTableName.hashCode();
-      mLog.debug("Registering codex " + pTableName + " with hash " + hash);
-      mTables.put(hash, sNETWORK_TABLES.getTable(pTableName));
-  
-      mWriters.put(hash, ((nt, key, val) -> nt.getEntry(key).setValue(val)));
+
+  private <V, E extends Enum<E> & CodexOf<V>> void registerCodexWithTableName(String pName, String pTableName, Codex<V, E> pCodex) {
+    if(find(pName, pCodex) != null) {
+      mLog.warn("Codex " + pTableName + " is already registered");
+      return;
+    }
+    mLog.debug("Registering codex " + pTableName);
+    mPublishers.add(new Publisher<>(pName, pCodex, sNETWORK_TABLES.getTable(pTableName)));
   }
 
   /**
@@ -51,8 +60,7 @@ public class CodexNetworkTables {
    * corresponds to the Codex's enum class name.
    */
   public <V, E extends Enum<E> & CodexOf<V>> void send(Codex<V,E> pCodex) {
-    String tableName = CodexNetworkTablesParser.constructNetworkTableName(pCodex.meta().getEnum());
-    sendWithTableName(tableName, pCodex);
+    send(null, pCodex);
   }
 
   /**
@@ -60,29 +68,116 @@ public class CodexNetworkTables {
    * corresponds to the Codex's enum class name.
    */
   public <V, E extends Enum<E> & CodexOf<V>> void send(String pName, Codex<V,E> pCodex) {
-    String tableName = CodexNetworkTablesParser.constructNetworkTableName(pCodex.meta().getEnum(), pName);
-    sendWithTableName(tableName, pCodex);
+    Publisher<?, ?> publisher = find(pName, pCodex);
+    if(publisher == null) {
+      mLog.warn("Cannot send codex " + pCodex.meta().getEnum().getSimpleName() + " because it has not been registered.");
+      return;
+    }
+    publisher.publish();
+  }
+
+  /**
+   * @return The number of field values pushed to NetworkTables
+   */
+  public long getPublishedValues() {
+    return mPublishedValues.sum();
   }
 
-  private <V, E extends Enum<E> & CodexOf<V>> void sendWithTableName(String pTableName, Codex<V,E> pCodex) {
-    int hash = pTableName.hashCode();
+  /**
+   * @return The number of set field values that weren't pushed because they hadn't changed
+   */
+  public long getUnchangedValues() {
+    return mUnchangedValues.sum();
+  }
 
-    if(!mWriters.containsKey(hash) || !mTables.containsKey(hash)) {
-      mLog.warn("Cannot send codex " + pTableName + " because it has not been registered.");
-      return;
+  /**
+   * Linear search by identity - there are only a handful of codexes, and this avoids building the table name
+   */
+  private Publisher<?, ?> find(String pName, Codex<?, ?> pCodex) {
+    for(int i = 0; i < mPublishers.size(); i++) {
+      Publisher<?, ?> publisher = mPublishers.get(i);
+      if(publisher.mCodex == pCodex && Objects.equals(publisher.mName, pName)) {
+        return publisher;
+      }
     }
+    return null;
+  }
 
-    @SuppressWarnings("unchecked")
-    Put<V> writer = (Put<V>)mWriters.get(hash);
-    NetworkTable nt = mTables.get(hash);
+  /**
+   * The pre-resolved entries for one codex, indexed by ordinal, and the last value pushed to each of them
+   */
+  private class Publisher<V, E extends Enum<E> & CodexOf<V>> {
+    private final String mName;
+    private final Codex<V, E> mCodex;
+    private final E[] mFields;
+
+    private final NetworkTableEntry mIdEntry;
+    private final NetworkTableEntry mKeyEntry;
+    private final NetworkTableEntry mTimeEntry;
+    private final NetworkTableEntry[] mEntries;
+
+    private int mLastId = Integer.MIN_VALUE;
+    private int mLastKey = Integer.MIN_VALUE;
+    private double mLastTime = Double.NaN;
+    private final long[] mLastValues;
+    private final boolean[] mIsPublished;
+
+    private Publisher(String pName, Codex<V, E> pCodex, NetworkTable pTable) {
+      mName = pName;
+      mCodex = pCodex;
+      mFields = pCodex.meta().getEnum().getEnumConstants();
+      mIdEntry = pTable.getEntry("ID");
+      mKeyEntry = pTable.getEntry("KEY");
+      mTimeEntry = pTable.getEntry("TIME_MS");
+      mEntries = new NetworkTableEntry[mFields.length];
+      for(E e : mFields) {
+        mEntries[e.ordinal()] = pTable.getEntry(e.name().toUpperCase());
+      }
+      mLastValues = new long[mFields.length];
+      mIsPublished = new boolean[mFields.length];
+    }
+
+    private void publish() {
+      int id = mCodex.meta().id();
+      if(id != mLastId) {
+        mIdEntry.setDouble(id);
+        mLastId = id;
+      }
+      int key = mCodex.meta().key();
+      if(key != mLastKey) {
+        mKeyEntry.setDouble(key);
+        mLastKey = key;
+      }
+      double time = mCodex.meta().timestamp();
+      if(Double.doubleToRawLongBits(time) != Double.doubleToRawLongBits(mLastTime)) {
+        mTimeEntry.setDouble(time);
+        mLastTime = time;
+      }
 
-    nt.getEntry("ID").setNumber(pCodex.meta().id());
-    nt.getEntry("KEY").setNumber(pCodex.meta().key());
-    nt.getEntry("TIME_MS").setNumber(pCodex.meta().timestamp());
-    for(E e : EnumSet.allOf(pCodex.meta().getEnum())) {
-      if(pCodex.isSet(e)) {
-        writer.write(nt, e.name().toUpperCase(), pCodex.get(e));
+      int published = 0;
+      int unchanged = 0;
+      for(int i = 0; i < mFields.length; i++) {
+        if(!mCodex.isSet(mFields[i])) {
+          continue;
+        }
+        V value = mCodex.get(mFields[i]);
+        if(value instanceof Number) {
+          double number = ((Number)value).doubleValue();
+          long bits = Double.doubleToRawLongBits(number);
+          if(mIsPublished[i] && bits == mLastValues[i]) {
+            unchanged++;
+            continue;
+          }
+          mEntries[i].setDouble(number);
+          mLastValues[i] = bits;
+          mIsPublished[i] = true;
+        } else {
+          mEntries[i].setValue(value);
+        }
+        published++;
       }
+      mPublishedValues.add(published);
+      mUnchangedValues.add(unchanged);
     }
   }
 
@@ -97,8 +192,4 @@ public class CodexNetworkTables {
     private final static CodexNetworkTables instance = new CodexNetworkTables();
   }
 
- private interface Put<V> {
-   void write(NetworkTable nt, String pKey, V pValue);
- }
-
 }
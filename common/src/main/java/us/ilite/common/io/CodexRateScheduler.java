@@ -0,0 +1,133 @@
+package us.ilite.common.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.flybotix.hfr.codex.Codex;
+
+/**
+ * Decides which codexes are due to be serialized on a given cycle, so each codex can go out at its own rate
+ * instead of every codex going out every cycle.  Use one scheduler per destination (e.g. NetworkTables, logs).
+ *
+ * A codex can be scheduled at a fixed rate, only when one of its values changes ({@link #kOnChange}), or never
+ * ({@link #kNever}).  Codexes that were never given a rate are due every time they're checked.
+ *
+ * Rates are set once at startup.  After that, {@link #isDue(Codex, double)} doesn't allocate and is safe to call
+ * from several threads as long as each codex is only checked by one thread.
+ */
+public class CodexRateScheduler {
+
+    public static final double kOnChange = 0.0;
+    public static final double kNever = -1.0;
+
+    // Fraction of a period a cycle may come early and still count as due, so loop jitter doesn't skip cycles
+    private static final double kEarlyTolerance = 0.25;
+
+    private final List<Entry> mEntries = new ArrayList<>();
+
+    /**
+     * @param pHz Rate to serialize pCodex at, {@link #kOnChange} or {@link #kNever}
+     */
+    public void setRate(Codex pCodex, double pHz) {
+        Entry entry = find(pCodex);
+        if(entry == null) {
+            entry = new Entry(pCodex);
+            mEntries.add(entry);
+        }
+        entry.mPeriod = pHz > 0.0 ? 1.0 / pHz : pHz;
+        entry.mNextTime = Double.NEGATIVE_INFINITY;
+        entry.mHasLastRow = false;
+    }
+
+    /**
+     * @return The rate pCodex is scheduled at, or Double.POSITIVE_INFINITY if it is due every time it's checked
+     */
+    public double getRate(Codex pCodex) {
+        Entry entry = find(pCodex);
+        if(entry == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return entry.mPeriod > 0.0 ? 1.0 / entry.mPeriod : entry.mPeriod;
+    }
+
+    /**
+     * Checks whether pCodex should be serialized this cycle.  A true result counts as serializing it, so call
+     * this exactly once per codex per cycle.
+     */
+    public boolean isDue(Codex pCodex, double pNow) {
+        Entry entry = find(pCodex);
+        if(entry == null) {
+            return true;
+        }
+        if(entry.mPeriod > 0.0) {
+            if(pNow < entry.mNextTime - (entry.mPeriod * kEarlyTolerance)) {
+                return false;
+            }
+            // Stay phase-locked to the schedule unless we fell a whole period behind
+            entry.mNextTime += entry.mPeriod;
+            if(entry.mNextTime <= pNow) {
+                entry.mNextTime = pNow + entry.mPeriod;
+            }
+            return true;
+        } else if(entry.mPeriod == kOnChange) {
+            return entry.hasChanged();
+        } else {
+            return false;
+        }
+    }
+
+    private Entry find(Codex pCodex) {
+        for(int i = 0; i < mEntries.size(); i++) {
+            if(mEntries.get(i).mCodex == pCodex) {
+                return mEntries.get(i);
+            }
+        }
+        return null;
+    }
+
+    private static class Entry {
+        private final Codex mCodex;
+        private double mPeriod = 0.0;
+        private double mNextTime = Double.NEGATIVE_INFINITY;
+
+        // On-change detection - the last row that was due, and a scratch row to compare it against
+        private final CodexRow mRow;
+        private double[] mLastValues;
+        private long[] mLastMask;
+        private double[] mValues;
+        private long[] mMask;
+        private boolean mHasLastRow = false;
+
+        private Entry(Codex pCodex) {
+            mCodex = pCodex;
+            mRow = new CodexRow(pCodex.meta().getEnum());
+            mLastValues = new double[mRow.size()];
+            mLastMask = new long[mRow.maskWords()];
+            mValues = new double[mRow.size()];
+            mMask = new long[mRow.maskWords()];
+        }
+
+        private boolean hasChanged() {
+            mRow.read(mCodex, mValues, 0, mMask, 0);
+            boolean changed = !mHasLastRow;
+            for(int w = 0; !changed && w < mMask.length; w++) {
+                changed = mMask[w] != mLastMask[w];
+            }
+            for(int i = 0; !changed && i < mValues.length; i++) {
+                changed = Double.doubleToRawLongBits(mValues[i]) != Double.doubleToRawLongBits(mLastValues[i]);
+            }
+            if(changed) {
+                // Swap rather than copy - the scratch row becomes the last row
+                double[] values = mLastValues;
+                mLastValues = mValues;
+                mValues = values;
+                long[] mask = mLastMask;
+                mLastMask = mMask;
+                mMask = mask;
+                mHasLastRow = true;
+            }
+            return changed;
+        }
+    }
+
+}
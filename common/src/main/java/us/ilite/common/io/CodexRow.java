@@ -0,0 +1,106 @@
+package us.ilite.common.io;
+
+import java.nio.ByteBuffer;
+
+import com.flybotix.hfr.codex.Codex;
+import com.flybotix.hfr.codex.CodexOf;
+
+/**
+ * Converts a codex to and from a flat row of primitive doubles plus a "set" bitmask.
+ * Each field lives at its enum ordinal, and unset fields are stored as NaN with their mask bit cleared.
+ * The field array is resolved once so copying a row never allocates.
+ * @param <E> The codex enumeration
+ */
+public class CodexRow<E extends Enum<E> & CodexOf<Double>> {
+
+    private final Class<E> mEnum;
+    private final E[] mFields;
+    private final int mMaskWords;
+
+    public CodexRow(Class<E> pEnum) {
+        mEnum = pEnum;
+        mFields = pEnum.getEnumConstants();
+        mMaskWords = maskWords(mFields.length);
+    }
+
+    /**
+     * Copies the codex into a row.
+     * @param pCodex The codex to read from
+     * @param pValues Destination for the values, indexed by ordinal starting at pValueOffset
+     * @param pMask Destination for the set bitmask, starting at pMaskOffset
+     */
+    public void read(Codex<Double, E> pCodex, double[] pValues, int pValueOffset, long[] pMask, int pMaskOffset) {
+        for(int w = 0; w < mMaskWords; w++) {
+            pMask[pMaskOffset + w] = 0L;
+        }
+        for(int i = 0; i < mFields.length; i++) {
+            Double value = pCodex.isSet(mFields[i]) ? pCodex.get(mFields[i]) : null;
+            if(value != null) {
+                pValues[pValueOffset + i] = value;
+                pMask[pMaskOffset + (i >>> 6)] |= 1L << (i & 63);
+            } else {
+                pValues[pValueOffset + i] = Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * Copies the codex into a buffer using absolute puts, so the buffer's position is untouched and several
+     * threads can write to different parts of the same buffer.
+     * @param pMaskIndex Byte index of the first set bitmask word
+     * @param pValueIndex Byte index of the first value
+     */
+    public void read(Codex<Double, E> pCodex, ByteBuffer pBuffer, int pMaskIndex, int pValueIndex) {
+        long mask = 0L;
+        for(int i = 0; i < mFields.length; i++) {
+            Double value = pCodex.isSet(mFields[i]) ? pCodex.get(mFields[i]) : null;
+            if(value != null) {
+                pBuffer.putDouble(pValueIndex + (i * Double.BYTES), value);
+                mask |= 1L << (i & 63);
+            } else {
+                pBuffer.putDouble(pValueIndex + (i * Double.BYTES), Double.NaN);
+            }
+            if((i & 63) == 63 || i == mFields.length - 1) {
+                pBuffer.putLong(pMaskIndex + ((i >>> 6) * Long.BYTES), mask);
+                mask = 0L;
+            }
+        }
+    }
+
+    /**
+     * Copies a row back into a codex.  Fields whose mask bit is cleared are set to null.
+     */
+    public void write(double[] pValues, int pValueOffset, long[] pMask, int pMaskOffset, Codex<Double, E> pCodex) {
+        for(int i = 0; i < mFields.length; i++) {
+            pCodex.set(mFields[i], isSet(pMask, pMaskOffset, i) ? pValues[pValueOffset + i] : null);
+        }
+    }
+
+    public Class<E> getEnum() {
+        return mEnum;
+    }
+
+    public E[] fields() {
+        return mFields;
+    }
+
+    public int size() {
+        return mFields.length;
+    }
+
+    public int maskWords() {
+        return mMaskWords;
+    }
+
+    /**
+     * @return The number of 64-bit words needed to hold a set bitmask for pFieldCount fields
+     */
+    public static int maskWords(int pFieldCount) {
+        return Math.max(1, (pFieldCount + 63) / 64);
+    }
+
+    public static boolean isSet(long[] pMask, int pMaskOffset, int pOrdinal) {
+        return (pMask[pMaskOffset + (pOrdinal >>> 6)] & (1L << (pOrdinal & 63))) != 0L;
+    }
+
+}
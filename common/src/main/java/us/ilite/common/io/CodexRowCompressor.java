@@ -0,0 +1,197 @@
+package us.ilite.common.io;
+
+/**
+ * Streaming Gorilla-style compressor for codex rows (see Pelkonen et al, "Gorilla: A Fast, Scalable, In-Memory
+ * Time Series Database").  Rows are packed into a fixed-size block of bits:
+ * <ul>
+ *     <li>Timestamps are stored as the delta-of-delta of whole microseconds.  The robot logs on a fixed period,
+ *     so most rows take a single bit.</li>
+ *     <li>Each set bitmask word takes a single bit if it's the same as the previous row.</li>
+ *     <li>Each value is XOR'd with the same field in the previous row.  A value that didn't change takes a single
+ *     bit, and one that changed a little only stores the bits that differ.</li>
+ * </ul>
+ * The first row of each block is encoded against zeros, so every block can be decoded on its own by
+ * {@link CodexRowDecompressor}.  Nothing is allocated after construction.
+ */
+public class CodexRowCompressor {
+
+    public static final double kTimestampUnitsPerSecond = 1e6;
+
+    // Worst case bits per row - a raw timestamp, every mask word changed, and every value changed completely
+    private static final int kTimestampWorstCaseBits = 4 + 64;
+    private static final int kMaskWordWorstCaseBits = 1 + 64;
+    private static final int kValueWorstCaseBits = 2 + 5 + 6 + 64;
+
+    private final int mFieldCount;
+    private final int mMaskWords;
+    private final int mWorstCaseRowBytes;
+
+    private final byte[] mBlock;
+    private int mBytePosition = 0;
+    private long mPendingBits = 0L;
+    private int mPendingBitCount = 0;
+    private int mRowCount = 0;
+
+    // Previous row state
+    private long mPreviousTime = 0;
+    private long mPreviousDelta = 0;
+    private final long[] mPreviousMask;
+    private final long[] mPreviousBits;
+    private final int[] mPreviousLeading;
+    private final int[] mPreviousTrailing;
+
+    /**
+     * @param pBlockBytes Maximum size of a compressed block
+     */
+    public CodexRowCompressor(int pFieldCount, int pMaskWords, int pBlockBytes) {
+        mFieldCount = pFieldCount;
+        mMaskWords = pMaskWords;
+        mWorstCaseRowBytes = worstCaseRowBytes(pFieldCount, pMaskWords);
+        mBlock = new byte[Math.max(pBlockBytes, mWorstCaseRowBytes)];
+        mPreviousMask = new long[pMaskWords];
+        mPreviousBits = new long[pFieldCount];
+        mPreviousLeading = new int[pFieldCount];
+        mPreviousTrailing = new int[pFieldCount];
+        reset();
+    }
+
+    /**
+     * Starts a new block
+     */
+    public void reset() {
+        mBytePosition = 0;
+        mPendingBits = 0L;
+        mPendingBitCount = 0;
+        mRowCount = 0;
+        mPreviousTime = 0;
+        mPreviousDelta = 0;
+        for(int i = 0; i < mMaskWords; i++) {
+            mPreviousMask[i] = 0L;
+        }
+        for(int i = 0; i < mFieldCount; i++) {
+            mPreviousBits[i] = 0L;
+            mPreviousLeading[i] = -1;
+            mPreviousTrailing[i] = 0;
+        }
+    }
+
+    /**
+     * @return true if another row is guaranteed to fit in the current block
+     */
+    public boolean hasRoomForRow() {
+        return mBlock.length - byteLength() >= mWorstCaseRowBytes;
+    }
+
+    /**
+     * Appends a row to the current block.  Check {@link #hasRoomForRow()} first.
+     * @param pMask Set bitmask, starting at pMaskOffset
+     * @param pValues Values indexed by ordinal, starting at pValueOffset
+     */
+    public void compress(double pTimestamp, long[] pMask, int pMaskOffset, double[] pValues, int pValueOffset) {
+        long time = Math.round(pTimestamp * kTimestampUnitsPerSecond);
+        if(mRowCount == 0) {
+            writeBits(time, 64);
+        } else {
+            long delta = time - mPreviousTime;
+            long deltaOfDelta = delta - mPreviousDelta;
+            if(deltaOfDelta == 0) {
+                writeBits(0b0, 1);
+            } else if(deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+                writeBits(0b10, 2);
+                writeBits(deltaOfDelta, 7);
+            } else if(deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+                writeBits(0b110, 3);
+                writeBits(deltaOfDelta, 12);
+            } else if(deltaOfDelta >= -524288 && deltaOfDelta <= 524287) {
+                writeBits(0b1110, 4);
+                writeBits(deltaOfDelta, 20);
+            } else {
+                writeBits(0b1111, 4);
+                writeBits(deltaOfDelta, 64);
+            }
+            mPreviousDelta = delta;
+        }
+        mPreviousTime = time;
+
+        for(int w = 0; w < mMaskWords; w++) {
+            long mask = pMask[pMaskOffset + w];
+            if(mask == mPreviousMask[w]) {
+                writeBits(0b0, 1);
+            } else {
+                writeBits(0b1, 1);
+                writeBits(mask, 64);
+                mPreviousMask[w] = mask;
+            }
+        }
+
+        for(int i = 0; i < mFieldCount; i++) {
+            long bits = Double.doubleToRawLongBits(pValues[pValueOffset + i]);
+            long xor = bits ^ mPreviousBits[i];
+            if(xor == 0L) {
+                writeBits(0b0, 1);
+                continue;
+            }
+            int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if(mPreviousLeading[i] >= 0 && leading >= mPreviousLeading[i] && trailing >= mPreviousTrailing[i]) {
+                // The changed bits fit in the previous window
+                writeBits(0b10, 2);
+                writeBits(xor >>> mPreviousTrailing[i], 64 - mPreviousLeading[i] - mPreviousTrailing[i]);
+            } else {
+                int significant = 64 - leading - trailing;
+                writeBits(0b11, 2);
+                writeBits(leading, 5);
+                writeBits(significant, 6); // 64 wraps around to 0
+                writeBits(xor >>> trailing, significant);
+                mPreviousLeading[i] = leading;
+                mPreviousTrailing[i] = trailing;
+            }
+            mPreviousBits[i] = bits;
+        }
+        mRowCount++;
+    }
+
+    /**
+     * @return The compressed block.  Only the first {@link #byteLength()} bytes are valid.
+     */
+    public byte[] array() {
+        if(mPendingBitCount > 0) {
+            // Pad the last partial byte with zeros without consuming it, so more rows can still be added
+            mBlock[mBytePosition] = (byte)(mPendingBits << (8 - mPendingBitCount));
+        }
+        return mBlock;
+    }
+
+    public int byteLength() {
+        return mBytePosition + (mPendingBitCount > 0 ? 1 : 0);
+    }
+
+    public int rowCount() {
+        return mRowCount;
+    }
+
+    /**
+     * Writes the low pBits bits of pValue, most significant bit first
+     */
+    private void writeBits(long pValue, int pBits) {
+        if(pBits > 56) {
+            // Keep the pending bits from overflowing a long
+            writeBits(pValue >>> 32, pBits - 32);
+            pValue &= 0xFFFFFFFFL;
+            pBits = 32;
+        }
+        mPendingBits = (mPendingBits << pBits) | (pValue & ((1L << pBits) - 1L));
+        mPendingBitCount += pBits;
+        while(mPendingBitCount >= 8) {
+            mPendingBitCount -= 8;
+            mBlock[mBytePosition++] = (byte)(mPendingBits >>> mPendingBitCount);
+        }
+        mPendingBits &= (1L << mPendingBitCount) - 1L;
+    }
+
+    public static int worstCaseRowBytes(int pFieldCount, int pMaskWords) {
+        long bits = kTimestampWorstCaseBits + ((long)pMaskWords * kMaskWordWorstCaseBits) + ((long)pFieldCount * kValueWorstCaseBits);
+        return (int)((bits + 7) / 8);
+    }
+
+}
@@ -0,0 +1,149 @@
+package us.ilite.common.io;
+
+/**
+ * Streaming decoder for blocks written by {@link CodexRowCompressor}.
+ * Call {@link #reset(byte[], int, int)} with each block, then {@link #decompress(long[], int, double[], int)}
+ * once per row in the block.
+ */
+public class CodexRowDecompressor {
+
+    private final int mFieldCount;
+    private final int mMaskWords;
+
+    private byte[] mBlock = new byte[0];
+    private int mByteLength = 0;
+    private int mBytePosition = 0;
+    private long mPendingBits = 0L;
+    private int mPendingBitCount = 0;
+    private int mRowCount = 0;
+    private int mRowsRead = 0;
+
+    // Previous row state
+    private long mPreviousTime = 0;
+    private long mPreviousDelta = 0;
+    private final long[] mPreviousMask;
+    private final long[] mPreviousBits;
+    private final int[] mPreviousLeading;
+    private final int[] mPreviousTrailing;
+
+    public CodexRowDecompressor(int pFieldCount, int pMaskWords) {
+        mFieldCount = pFieldCount;
+        mMaskWords = pMaskWords;
+        mPreviousMask = new long[pMaskWords];
+        mPreviousBits = new long[pFieldCount];
+        mPreviousLeading = new int[pFieldCount];
+        mPreviousTrailing = new int[pFieldCount];
+    }
+
+    /**
+     * Starts decoding a new block
+     * @param pBlock The compressed bytes, as returned by {@link CodexRowCompressor#array()}
+     * @param pByteLength Number of valid bytes in pBlock
+     * @param pRowCount Number of rows in the block
+     */
+    public void reset(byte[] pBlock, int pByteLength, int pRowCount) {
+        mBlock = pBlock;
+        mByteLength = pByteLength;
+        mBytePosition = 0;
+        mPendingBits = 0L;
+        mPendingBitCount = 0;
+        mRowCount = pRowCount;
+        mRowsRead = 0;
+        mPreviousTime = 0;
+        mPreviousDelta = 0;
+        for(int i = 0; i < mMaskWords; i++) {
+            mPreviousMask[i] = 0L;
+        }
+        for(int i = 0; i < mFieldCount; i++) {
+            mPreviousBits[i] = 0L;
+            mPreviousLeading[i] = 0;
+            mPreviousTrailing[i] = 0;
+        }
+    }
+
+    /**
+     * @return true if there are rows left in the current block
+     */
+    public boolean hasNext() {
+        return mRowsRead < mRowCount;
+    }
+
+    /**
+     * Decodes the next row of the block
+     * @param pMask Destination for the set bitmask, starting at pMaskOffset
+     * @param pValues Destination for the values, indexed by ordinal starting at pValueOffset
+     * @return The row's timestamp, in seconds
+     */
+    public double decompress(long[] pMask, int pMaskOffset, double[] pValues, int pValueOffset) {
+        long time;
+        if(mRowsRead == 0) {
+            time = readBits(64);
+        } else {
+            long deltaOfDelta;
+            if(readBits(1) == 0) {
+                deltaOfDelta = 0;
+            } else if(readBits(1) == 0) {
+                deltaOfDelta = readSigned(7);
+            } else if(readBits(1) == 0) {
+                deltaOfDelta = readSigned(12);
+            } else if(readBits(1) == 0) {
+                deltaOfDelta = readSigned(20);
+            } else {
+                deltaOfDelta = readBits(64);
+            }
+            mPreviousDelta += deltaOfDelta;
+            time = mPreviousTime + mPreviousDelta;
+        }
+        mPreviousTime = time;
+
+        for(int w = 0; w < mMaskWords; w++) {
+            if(readBits(1) != 0) {
+                mPreviousMask[w] = readBits(64);
+            }
+            pMask[pMaskOffset + w] = mPreviousMask[w];
+        }
+
+        for(int i = 0; i < mFieldCount; i++) {
+            if(readBits(1) != 0) {
+                if(readBits(1) != 0) {
+                    mPreviousLeading[i] = (int)readBits(5);
+                    int significant = (int)readBits(6);
+                    if(significant == 0) {
+                        significant = 64;
+                    }
+                    mPreviousTrailing[i] = 64 - mPreviousLeading[i] - significant;
+                }
+                long xor = readBits(64 - mPreviousLeading[i] - mPreviousTrailing[i]) << mPreviousTrailing[i];
+                mPreviousBits[i] ^= xor;
+            }
+            pValues[pValueOffset + i] = Double.longBitsToDouble(mPreviousBits[i]);
+        }
+        mRowsRead++;
+        return time / CodexRowCompressor.kTimestampUnitsPerSecond;
+    }
+
+    private long readSigned(int pBits) {
+        return (readBits(pBits) << (64 - pBits)) >> (64 - pBits);
+    }
+
+    /**
+     * Reads pBits bits, most significant bit first.  Reading past the end of the block returns zeros.
+     */
+    private long readBits(int pBits) {
+        if(pBits > 56) {
+            long high = readBits(pBits - 32);
+            return (high << 32) | readBits(32);
+        }
+        while(mPendingBitCount < pBits) {
+            int next = mBytePosition < mByteLength ? (mBlock[mBytePosition] & 0xFF) : 0;
+            mBytePosition++;
+            mPendingBits = (mPendingBits << 8) | next;
+            mPendingBitCount += 8;
+        }
+        mPendingBitCount -= pBits;
+        long value = (mPendingBits >>> mPendingBitCount) & ((1L << pBits) - 1L);
+        mPendingBits &= (1L << mPendingBitCount) - 1L;
+        return value;
+    }
+
+}
@@ -0,0 +1,465 @@
+package us.ilite.common.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.flybotix.hfr.codex.Codex;
+import com.flybotix.hfr.util.log.ILog;
+import com.flybotix.hfr.util.log.Logger;
+
+import us.ilite.common.config.SystemSettings;
+
+/**
+ * An always-on "black box" that holds the last ~45 seconds of every codex in a fixed-size memory-mapped file.
+ *
+ * Recording a codex is a handful of absolute puts into the mapped buffer - no allocation and no syscalls.  The
+ * kernel writes the pages back to flash on its own, so the contents survive a JVM crash.  The header says whether the
+ * ring holds rows that were never dumped, or the recorder was frozen mid-dump.  If so, the next boot dumps the previous
+ * contents before the file is reused - otherwise everything in it is already on disk, and it's reused as-is.
+ *
+ * When something interesting happens (robot disabled, brownout, exception in the control loop) call
+ * {@link #dumpAsync(ETrigger)}.  Recording is frozen while a background thread copies the ring into one binary
+ * codex log per codex (readable with {@link CodexBinaryLogReader} / {@link CodexLogExporter}), then resumes.  Only
+ * SystemSettings.kFlightRecorderMaxDumpsPerBoot dumps are written per boot, so disabling over and over doesn't keep
+ * writing to flash.
+ *
+ * File layout:
+ * <pre>
+ *     [0, kHeaderBytes)  header - sizes, freeze and unsaved state and a CodexBinaryLogger header per codex
+ *     [kHeaderBytes, ..) slots - [long sequence][double timestamp][long codex index][long[] mask][double[] values]
+ * </pre>
+ * A slot's sequence number is cleared before the row is written and set to the row's position afterwards, so a
+ * dump can skip rows that were torn by a crash or a wrap-around.  The newest sequence number is the head of the ring,
+ * so the head itself is never written - rows can be recorded from several threads, and a shared head in the file
+ * could be written out of order.
+ *
+ * Rows may be recorded from any thread.  Each recording thread registers itself before checking whether the recorder
+ * is frozen, and a dump waits until none are left, so a dump never reads a row that's still being written.
+ */
+public class FlightRecorder {
+
+    public static final int MAGIC = 0x464C5452; // "FLTR"
+    public static final int VERSION = 2;
+    public static final String FILE_EXTENSION = CodexBinaryLogger.EXTENSION;
+
+    private static final int kHeaderBytes = 16 * 1024;
+
+    // Header offsets
+    private static final int kMagicIndex = 0;
+    private static final int kVersionIndex = 4;
+    private static final int kSlotSizeIndex = 8;
+    private static final int kSlotCountIndex = 12;
+    private static final int kCodexCountIndex = 16;
+    private static final int kValueIndexIndex = 20;
+    private static final int kFrozenIndex = 32;
+    private static final int kTriggerIndex = 36;
+    private static final int kUnsavedIndex = 40;
+    private static final int kDescriptorIndex = 64;
+
+    // Slot offsets
+    private static final int kSlotSequence = 0;
+    private static final int kSlotTimestamp = 8;
+    private static final int kSlotCodex = 16;
+    private static final int kSlotMask = 24;
+
+    /**
+     * Why the recorder was frozen/dumped
+     */
+    public enum ETrigger {
+        NONE,
+        DISABLED,
+        BROWNOUT,
+        LOOP_EXCEPTION,
+        PREVIOUS_BOOT
+    }
+
+    private final ILog mLog = Logger.createLog(FlightRecorder.class);
+
+    private final File mDumpFolder;
+    private final Codex[] mCodexes;
+    private final CodexRow[] mRows;
+    private final int mSlotSize;
+    private final int mSlotCount;
+    private final int mValueIndex;
+    private final MappedByteBuffer mBuffer;
+
+    private final AtomicLong mHead = new AtomicLong(0);
+    private final AtomicLong mSkippedRows = new AtomicLong(0);
+    // Threads in the middle of record()
+    private final AtomicInteger mRecorders = new AtomicInteger(0);
+    private volatile boolean mIsFrozen = false;
+    // Rows have been recorded since the last successful dump
+    private volatile boolean mHasUnsavedRows = false;
+    private long mLastDumpHead = 0;
+    private int mDumps = 0;
+
+    private final ExecutorService mDumpExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "FlightRecorderDump");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    public FlightRecorder(File pFile, File pDumpFolder, int pGlobalId, Codex ... pCodexes) throws IOException {
+        this(pFile, pDumpFolder, pGlobalId, (int)(SystemSettings.kFlightRecorderSeconds * SystemSettings.kFlightRecorderRowsPerSecond), pCodexes);
+    }
+
+    /**
+     * Maps the recorder file, first dumping whatever the previous run left in it if it wasn't dumped already.
+     * @param pFile The memory-mapped ring file
+     * @param pDumpFolder Dumps are written to sub-folders of this folder
+     * @param pSlotCount Number of codex rows the ring holds
+     */
+    public FlightRecorder(File pFile, File pDumpFolder, int pGlobalId, int pSlotCount, Codex ... pCodexes) throws IOException {
+        mDumpFolder = pDumpFolder;
+        mCodexes = pCodexes;
+        mRows = new CodexRow[pCodexes.length];
+        int maxFields = 0;
+        int maxMaskWords = 0;
+        for(int i = 0; i < pCodexes.length; i++) {
+            mRows[i] = new CodexRow(pCodexes[i].meta().getEnum());
+            maxFields = Math.max(maxFields, mRows[i].size());
+            maxMaskWords = Math.max(maxMaskWords, mRows[i].maskWords());
+        }
+        mValueIndex = kSlotMask + (maxMaskWords * Long.BYTES);
+        mSlotSize = mValueIndex + (maxFields * Double.BYTES);
+        mSlotCount = pSlotCount;
+
+        dumpPreviousRun(pFile);
+
+        File parent = pFile.getAbsoluteFile().getParentFile();
+        if(parent != null) parent.mkdirs();
+        try(RandomAccessFile file = new RandomAccessFile(pFile, "rw")) {
+            long size = kHeaderBytes + ((long)mSlotSize * mSlotCount);
+            file.setLength(size);
+            // The mapping stays valid after the file is closed
+            mBuffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        writeHeader(pGlobalId);
+    }
+
+    /**
+     * Copies the current state of pCodex into the ring, overwriting the oldest row.  Safe to call from any thread.
+     */
+    public void record(Codex pCodex) {
+        int codexIndex = indexOf(pCodex);
+        if(codexIndex < 0) {
+            return;
+        }
+
+        if(mIsFrozen) {
+            mSkippedRows.incrementAndGet();
+            return;
+        }
+        // Register before checking mIsFrozen again - either the dump waits for this row, or this sees the freeze
+        mRecorders.incrementAndGet();
+        try {
+            if(mIsFrozen) {
+                mSkippedRows.incrementAndGet();
+                return;
+            }
+            if(!mHasUnsavedRows) {
+                mHasUnsavedRows = true;
+                mBuffer.putInt(kUnsavedIndex, 1);
+            }
+            long position = mHead.getAndIncrement();
+            int slot = kHeaderBytes + (int)(position % mSlotCount) * mSlotSize;
+            mBuffer.putLong(slot + kSlotSequence, -1L);
+            mBuffer.putDouble(slot + kSlotTimestamp, pCodex.meta().timestamp());
+            mBuffer.putLong(slot + kSlotCodex, codexIndex);
+            mRows[codexIndex].read(pCodex, mBuffer, slot + kSlotMask, slot + mValueIndex);
+            mBuffer.putLong(slot + kSlotSequence, position);
+        } finally {
+            mRecorders.decrementAndGet();
+        }
+    }
+
+    public void record(Codex[] pCodexes) {
+        for(Codex codex : pCodexes) {
+            record(codex);
+        }
+    }
+
+    /**
+     * Stops recording and forces the mapped file out to flash, so the last N seconds are preserved as-is.
+     */
+    public synchronized void freeze(ETrigger pTrigger) {
+        setFrozen(pTrigger);
+        awaitRecorders();
+        mBuffer.force();
+    }
+
+    public synchronized void resume() {
+        mBuffer.putInt(kFrozenIndex, 0);
+        mBuffer.putInt(kTriggerIndex, ETrigger.NONE.ordinal());
+        mIsFrozen = false;
+    }
+
+    /**
+     * Freezes the recorder and dumps it to disk on a background thread.  Recording resumes once the dump is done.
+     * Does nothing if a dump is already in progress, nothing has been recorded since the last dump, or this boot
+     * already has SystemSettings.kFlightRecorderMaxDumpsPerBoot dumps.
+     */
+    public synchronized void dumpAsync(ETrigger pTrigger) {
+        if(mIsFrozen || mHead.get() == mLastDumpHead) {
+            return;
+        }
+        if(mDumps >= SystemSettings.kFlightRecorderMaxDumpsPerBoot) {
+            if(mDumps == SystemSettings.kFlightRecorderMaxDumpsPerBoot) {
+                mLog.warn("Flight recorder has already dumped ", mDumps, " times this boot, not dumping again (", pTrigger, ")");
+                mDumps++;
+            }
+            return;
+        }
+        mDumps++;
+        // Don't wait for recorders or force the buffer out here - this may be called from the control loop
+        setFrozen(pTrigger);
+        mLastDumpHead = mHead.get();
+        mDumpExecutor.execute(() -> {
+            try {
+                awaitRecorders();
+                mBuffer.force();
+                File folder = dumpFolder(pTrigger);
+                int rows = dump(mBuffer, folder);
+                // Still frozen, so nothing has been recorded since the dump started
+                mHasUnsavedRows = false;
+                mBuffer.putInt(kUnsavedIndex, 0);
+                mLog.warn("Flight recorder dumped ", rows, " rows to ", folder, " (", pTrigger, ")");
+                pruneDumps();
+            } catch (IOException e) {
+                mLog.error("Flight recorder dump failed: ", e.getMessage());
+            } finally {
+                resume();
+            }
+        });
+    }
+
+    /**
+     * Waits for rows that started before the recorder was frozen.  Recording a row takes microseconds.
+     */
+    private void awaitRecorders() {
+        while(mRecorders.get() != 0) {
+            Thread.yield();
+        }
+    }
+
+    private void setFrozen(ETrigger pTrigger) {
+        mIsFrozen = true;
+        mBuffer.putInt(kFrozenIndex, 1);
+        mBuffer.putInt(kTriggerIndex, pTrigger.ordinal());
+    }
+
+    public long getRecordedRows() {
+        return mHead.get();
+    }
+
+    /**
+     * @return Rows that weren't recorded because the recorder was frozen
+     */
+    public long getSkippedRows() {
+        return mSkippedRows.get();
+    }
+
+    public boolean isFrozen() {
+        return mIsFrozen;
+    }
+
+    private void writeHeader(int pGlobalId) throws IOException {
+        mBuffer.putInt(kMagicIndex, MAGIC);
+        mBuffer.putInt(kVersionIndex, VERSION);
+        mBuffer.putInt(kSlotSizeIndex, mSlotSize);
+        mBuffer.putInt(kSlotCountIndex, mSlotCount);
+        mBuffer.putInt(kCodexCountIndex, mCodexes.length);
+        mBuffer.putInt(kValueIndexIndex, mValueIndex);
+        mBuffer.putInt(kFrozenIndex, 0);
+        mBuffer.putInt(kTriggerIndex, ETrigger.NONE.ordinal());
+        mBuffer.putInt(kUnsavedIndex, 0);
+
+        int index = kDescriptorIndex;
+        for(CodexRow row : mRows) {
+            byte[] header = CodexBinaryLogger.header(row, pGlobalId);
+            if(index + (3 * Integer.BYTES) + header.length > kHeaderBytes) {
+                throw new IllegalArgumentException("Too many codexes for the flight recorder header");
+            }
+            mBuffer.putInt(index, row.size());
+            mBuffer.putInt(index + 4, row.maskWords());
+            mBuffer.putInt(index + 8, header.length);
+            index += 3 * Integer.BYTES;
+            for(byte b : header) {
+                mBuffer.put(index++, b);
+            }
+        }
+
+        // Invalidate every slot so rows from a previous run are never mistaken for new ones
+        for(int i = 0; i < mSlotCount; i++) {
+            mBuffer.putLong(kHeaderBytes + (i * mSlotSize) + kSlotSequence, -1L);
+        }
+        mBuffer.force();
+    }
+
+    /**
+     * If the previous run froze or ended (maybe in a crash) with rows that were never dumped, dump them before
+     * they're lost.  The flags are cleared once the dump is written, so the same rows are never dumped twice.
+     */
+    private void dumpPreviousRun(File pFile) {
+        if(!pFile.exists() || pFile.length() < kHeaderBytes) {
+            return;
+        }
+        try(RandomAccessFile file = new RandomAccessFile(pFile, "rw")) {
+            MappedByteBuffer previous = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+            if(previous.getInt(kMagicIndex) != MAGIC || previous.getInt(kVersionIndex) != VERSION) {
+                return;
+            }
+            if(previous.getInt(kFrozenIndex) == 0 && previous.getInt(kUnsavedIndex) == 0) {
+                return;
+            }
+            if(head(previous) > 0) {
+                File folder = dumpFolder(ETrigger.PREVIOUS_BOOT);
+                int rows = dump(previous, folder);
+                mLog.warn("Flight recorder dumped ", rows, " rows from the previous run to ", folder);
+                pruneDumps();
+            }
+            previous.putInt(kFrozenIndex, 0);
+            previous.putInt(kUnsavedIndex, 0);
+            previous.force();
+        } catch (Exception e) {
+            mLog.error("Unable to dump previous flight recorder contents: ", e.getMessage());
+        }
+    }
+
+    /**
+     * Writes every valid row in a flight recorder buffer to one binary codex log per codex, oldest row first.
+     * The buffer describes itself, so this works on files written by a previous run.
+     * @return The number of rows written
+     */
+    public static int dump(ByteBuffer pBuffer, File pFolder) throws IOException {
+        int slotSize = pBuffer.getInt(kSlotSizeIndex);
+        int slotCount = pBuffer.getInt(kSlotCountIndex);
+        int codexCount = pBuffer.getInt(kCodexCountIndex);
+        int valueIndex = pBuffer.getInt(kValueIndexIndex);
+        long head = head(pBuffer);
+
+        pFolder.mkdirs();
+        int[] fieldCounts = new int[codexCount];
+        int[] maskWords = new int[codexCount];
+        DataOutputStream[] outputs = new DataOutputStream[codexCount];
+        int rows = 0;
+        try {
+            int index = kDescriptorIndex;
+            for(int c = 0; c < codexCount; c++) {
+                fieldCounts[c] = pBuffer.getInt(index);
+                maskWords[c] = pBuffer.getInt(index + 4);
+                byte[] header = new byte[pBuffer.getInt(index + 8)];
+                index += 3 * Integer.BYTES;
+                for(int b = 0; b < header.length; b++) {
+                    header[b] = pBuffer.get(index++);
+                }
+                outputs[c] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(pFolder, logName(header)))));
+                outputs[c].write(header);
+            }
+
+            for(long position = Math.max(0, head - slotCount); position < head; position++) {
+                int slot = kHeaderBytes + (int)(position % slotCount) * slotSize;
+                if(pBuffer.getLong(slot + kSlotSequence) != position) {
+                    // Torn or overwritten row
+                    continue;
+                }
+                int c = (int)pBuffer.getLong(slot + kSlotCodex);
+                if(c < 0 || c >= codexCount) {
+                    continue;
+                }
+                DataOutputStream out = outputs[c];
+                out.writeDouble(pBuffer.getDouble(slot + kSlotTimestamp));
+                for(int w = 0; w < maskWords[c]; w++) {
+                    out.writeLong(pBuffer.getLong(slot + kSlotMask + (w * Long.BYTES)));
+                }
+                for(int f = 0; f < fieldCounts[c]; f++) {
+                    out.writeDouble(pBuffer.getDouble(slot + valueIndex + (f * Double.BYTES)));
+                }
+                rows++;
+            }
+        } finally {
+            for(DataOutputStream out : outputs) {
+                if(out != null) out.close();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return One past the newest row's position, from the slots' sequence numbers
+     */
+    private static long head(ByteBuffer pBuffer) {
+        int slotSize = pBuffer.getInt(kSlotSizeIndex);
+        int slotCount = pBuffer.getInt(kSlotCountIndex);
+        long head = 0;
+        for(int i = 0; i < slotCount; i++) {
+            long sequence = pBuffer.getLong(kHeaderBytes + (i * slotSize) + kSlotSequence);
+            // A sequence that doesn't belong in this slot is garbage
+            if(sequence >= 0 && sequence % slotCount == i) {
+                head = Math.max(head, sequence + 1);
+            }
+        }
+        return head;
+    }
+
+    /**
+     * Names a dumped log after the codex enum stored in its header, e.g. "EDriveData.codexlog"
+     */
+    private static String logName(byte[] pHeader) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(pHeader));
+        in.readInt();   // magic
+        in.readShort(); // version
+        in.readInt();   // global id
+        String enumName = in.readUTF();
+        String simpleName = enumName.substring(Math.max(enumName.lastIndexOf('.'), enumName.lastIndexOf('$')) + 1);
+        return simpleName + "." + FILE_EXTENSION;
+    }
+
+    private File dumpFolder(ETrigger pTrigger) {
+        String time = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        return new File(mDumpFolder, time + "-" + pTrigger.name());
+    }
+
+    /**
+     * Keeps only the newest SystemSettings.kFlightRecorderMaxDumps dumps so we don't fill up the RIO
+     */
+    private void pruneDumps() {
+        File[] dumps = mDumpFolder.listFiles(File::isDirectory);
+        if(dumps == null || dumps.length <= SystemSettings.kFlightRecorderMaxDumps) {
+            return;
+        }
+        Arrays.sort(dumps);
+        for(int i = 0; i < dumps.length - SystemSettings.kFlightRecorderMaxDumps; i++) {
+            File[] files = dumps[i].listFiles();
+            if(files != null) {
+                for(File file : files) file.delete();
+            }
+            dumps[i].delete();
+        }
+    }
+
+    private int indexOf(Codex pCodex) {
+        for(int i = 0; i < mCodexes.length; i++) {
+            if(mCodexes[i] == pCodex) return i;
+        }
+        return -1;
+    }
+
+}
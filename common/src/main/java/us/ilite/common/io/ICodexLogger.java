@@ -0,0 +1,26 @@
+package us.ilite.common.io;
+
+/**
+ * Common contract for anything that writes a single codex to a match log.  Both the legacy
+ * CSV logger and the binary logger implement this so <code>Data</code> can treat them the same way.
+ */
+public interface ICodexLogger {
+
+    /**
+     * Writes whatever schema/header information the format needs.  Call this once before any rows are written.
+     * @return false if the log can't be written to (USB stick missing, etc.) and logging should stop
+     */
+    boolean writeHeader();
+
+    /**
+     * Writes the current state of the codex as a single row.
+     * @return false if the log can't be written to and logging should stop
+     */
+    boolean writeLine();
+
+    /**
+     * Flushes and closes the underlying file.
+     */
+    void closeWriter();
+
+}
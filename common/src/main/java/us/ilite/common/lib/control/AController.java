@@ -6,6 +6,7 @@ import com.team254.lib.physics.DifferentialDrive;
 import com.team254.lib.physics.DriveOutput;
 import com.team254.lib.trajectory.TrajectoryIterator;
 import com.team254.lib.trajectory.timing.TimedState;
+import us.ilite.common.lib.trajectory.TrajectorySample;
 
 public abstract class AController {
 
@@ -25,6 +26,21 @@ public abstract class AController {
                                        Pose2d pCurrentState,
                                        double pDt);
 
+    /**
+     * The same as the other update(), for a setpoint sampled from a compiled trajectory.  Controllers should override
+     * this to write into pDynamics and pOutput instead of allocating - by default it makes the setpoint into an object
+     * and calls the other update().
+     * @return pOutput, or a new output if this isn't overridden
+     */
+    public DriveOutput update(TrajectorySample pSetpoint,
+                              DifferentialDrive.DriveDynamics pDynamics,
+                              DifferentialDrive.ChassisState pPrevVelocity,
+                              Pose2d pCurrentState,
+                              double pDt,
+                              DriveOutput pOutput) {
+        return update(null, pSetpoint.toTimedState(), pDynamics, pPrevVelocity, pCurrentState, pDt);
+    }
+
     public Pose2d getError() {
         return mError;
     }
@@ -14,8 +14,10 @@ import com.team254.lib.trajectory.TrajectoryIterator;
 import com.team254.lib.trajectory.TrajectoryUtil;
 import com.team254.lib.trajectory.timing.TimedState;
 import com.team254.frc2018.Kinematics;
+import us.ilite.common.config.SystemSettings;
 import us.ilite.common.lib.odometry.RobotStateEstimator;
 import us.ilite.common.lib.RobotProfile;
+import us.ilite.common.lib.trajectory.CompiledTrajectory;
 import us.ilite.common.lib.util.PerfTimer;
 
 /**
@@ -81,9 +83,13 @@ public class DriveController {
     }
 
     public DriveController setTrajectory(Trajectory<TimedState<Pose2dWithCurvature>> pTrajectory, boolean pResetToTrajectoryStart) {
-        TrajectoryIterator<TimedState<Pose2dWithCurvature>> iterator = new TrajectoryIterator<>(new TimedView<>(pTrajectory));
         mDriveMotionPlanner.reset();
-        mDriveMotionPlanner.setTrajectory(iterator);
+        if(SystemSettings.kFollowCompiledTrajectories) {
+            mDriveMotionPlanner.setTrajectory(CompiledTrajectory.compile(pTrajectory), false);
+        } else {
+            TrajectoryIterator<TimedState<Pose2dWithCurvature>> iterator = new TrajectoryIterator<>(new TimedView<>(pTrajectory));
+            mDriveMotionPlanner.setTrajectory(iterator);
+        }
 
         if(pResetToTrajectoryStart) {
             mRobotStateEstimator.reset(pTrajectory.getFirstState().t(), pTrajectory.getFirstState().state().getPose());
@@ -0,0 +1,202 @@
+package us.ilite.common.lib.trajectory;
+
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.geometry.Twist2d;
+import com.team254.lib.trajectory.Trajectory;
+import com.team254.lib.trajectory.timing.TimedState;
+import com.team254.lib.util.Util;
+
+/**
+ * A timed trajectory stored as parallel arrays of primitives instead of a list of objects, so it can be followed with
+ * a {@link TrajectorySampler} without allocating anything.
+ *
+ * The twist and distance between each pair of states is worked out here, once, with the same geometry code
+ * {@link com.team254.lib.trajectory.TimedView} uses, so samples match what a TrajectoryIterator would return.
+ *
+ * If the states are a fixed time step apart - see {@link TrajectoryResampler} - the sampler finds them by index.
+ */
+public class CompiledTrajectory {
+
+    // How far a state's time can be from start + i * step for the states to still count as a fixed step apart
+    private static final double kStepTolerance = 1E-9;
+
+    final int mLength;
+    final double[] mT;
+    final double[] mX;
+    final double[] mY;
+    final double[] mCos;
+    final double[] mSin;
+    final double[] mCurvature;
+    final double[] mDCurvatureDs;
+    final double[] mVelocity;
+    final double[] mAcceleration;
+
+    // From state i - 1 to state i.  Index 0 is unused.
+    final double[] mTwistDx;
+    final double[] mTwistDy;
+    final double[] mTwistDTheta;
+    final double[] mDistance;
+
+    private final boolean mIsReversed;
+    // Seconds between states, or 0 if they aren't a fixed step apart
+    private final double mStep;
+
+    private CompiledTrajectory(int pLength) {
+        mLength = pLength;
+        mT = new double[pLength];
+        mX = new double[pLength];
+        mY = new double[pLength];
+        mCos = new double[pLength];
+        mSin = new double[pLength];
+        mCurvature = new double[pLength];
+        mDCurvatureDs = new double[pLength];
+        mVelocity = new double[pLength];
+        mAcceleration = new double[pLength];
+        mTwistDx = new double[pLength];
+        mTwistDy = new double[pLength];
+        mTwistDTheta = new double[pLength];
+        mDistance = new double[pLength];
+        mIsReversed = false;
+        mStep = 0.0;
+    }
+
+    private CompiledTrajectory(CompiledTrajectory pArrays, boolean pIsReversed, double pStep) {
+        mLength = pArrays.mLength;
+        mT = pArrays.mT;
+        mX = pArrays.mX;
+        mY = pArrays.mY;
+        mCos = pArrays.mCos;
+        mSin = pArrays.mSin;
+        mCurvature = pArrays.mCurvature;
+        mDCurvatureDs = pArrays.mDCurvatureDs;
+        mVelocity = pArrays.mVelocity;
+        mAcceleration = pArrays.mAcceleration;
+        mTwistDx = pArrays.mTwistDx;
+        mTwistDy = pArrays.mTwistDy;
+        mTwistDTheta = pArrays.mTwistDTheta;
+        mDistance = pArrays.mDistance;
+        mIsReversed = pIsReversed;
+        mStep = pStep;
+    }
+
+    public static CompiledTrajectory compile(Trajectory<TimedState<Pose2dWithCurvature>> pTrajectory) {
+        if(pTrajectory.isEmpty()) {
+            throw new IllegalArgumentException("Can't compile an empty trajectory");
+        }
+        CompiledTrajectory compiled = new CompiledTrajectory(pTrajectory.length());
+        boolean reversed = false;
+        boolean foundDirection = false;
+        for(int i = 0; i < compiled.mLength; i++) {
+            TimedState<Pose2dWithCurvature> state = pTrajectory.getState(i);
+            Pose2d pose = state.state().getPose();
+            compiled.mT[i] = state.t();
+            compiled.mX[i] = pose.getTranslation().x();
+            compiled.mY[i] = pose.getTranslation().y();
+            compiled.mCos[i] = pose.getRotation().cos();
+            compiled.mSin[i] = pose.getRotation().sin();
+            compiled.mCurvature[i] = state.state().getCurvature();
+            compiled.mDCurvatureDs[i] = state.state().getDCurvatureDs();
+            compiled.mVelocity[i] = state.velocity();
+            compiled.mAcceleration[i] = state.acceleration();
+
+            if(i > 0) {
+                Pose2d previous = pTrajectory.getState(i - 1).state().getPose();
+                Twist2d twist = Pose2d.log(previous.inverse().transformBy(pose));
+                compiled.mTwistDx[i] = twist.dx;
+                compiled.mTwistDy[i] = twist.dy;
+                compiled.mTwistDTheta[i] = twist.dtheta;
+                compiled.mDistance[i] = pTrajectory.getState(i - 1).state().distance(state.state());
+            }
+
+            // Same as TrajectoryGenerator.isReversed()
+            if(!foundDirection && state.velocity() > Util.kEpsilon) {
+                foundDirection = true;
+            } else if(!foundDirection && state.velocity() < -Util.kEpsilon) {
+                reversed = true;
+                foundDirection = true;
+            }
+        }
+        return new CompiledTrajectory(compiled, reversed, findStep(compiled.mT));
+    }
+
+    /**
+     * @return The time between every state, if all but the last are the same time apart and the last is no further
+     * apart than the rest.  Otherwise 0.
+     */
+    private static double findStep(double[] pT) {
+        int last = pT.length - 1;
+        if(last < 1) return 0.0;
+        double step = pT[1] - pT[0];
+        if(!(step > kStepTolerance)) return 0.0;
+        for(int i = 2; i < last; i++) {
+            if(Math.abs(pT[i] - (pT[0] + i * step)) > kStepTolerance) return 0.0;
+        }
+        double lastStep = pT[last] - pT[last - 1];
+        return lastStep > 0.0 && lastStep <= step + kStepTolerance ? step : 0.0;
+    }
+
+    public int length() {
+        return mLength;
+    }
+
+    public double getStartTime() {
+        return mT[0];
+    }
+
+    public double getEndTime() {
+        return mT[mLength - 1];
+    }
+
+    public boolean isReversed() {
+        return mIsReversed;
+    }
+
+    public boolean isUniform() {
+        return mStep > 0.0;
+    }
+
+    /**
+     * @return Seconds between states, or 0 if they aren't a fixed step apart
+     */
+    public double getStep() {
+        return mStep;
+    }
+
+    public double getT(int pIndex) {
+        return mT[pIndex];
+    }
+
+    public double getX(int pIndex) {
+        return mX[pIndex];
+    }
+
+    public double getY(int pIndex) {
+        return mY[pIndex];
+    }
+
+    public double getCos(int pIndex) {
+        return mCos[pIndex];
+    }
+
+    public double getSin(int pIndex) {
+        return mSin[pIndex];
+    }
+
+    public double getCurvature(int pIndex) {
+        return mCurvature[pIndex];
+    }
+
+    public double getDCurvatureDs(int pIndex) {
+        return mDCurvatureDs[pIndex];
+    }
+
+    public double getVelocity(int pIndex) {
+        return mVelocity[pIndex];
+    }
+
+    public double getAcceleration(int pIndex) {
+        return mAcceleration[pIndex];
+    }
+
+}
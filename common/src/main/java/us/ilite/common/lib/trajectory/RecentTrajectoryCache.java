@@ -0,0 +1,116 @@
+package us.ilite.common.lib.trajectory;
+
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.trajectory.Trajectory;
+import com.team254.lib.trajectory.timing.TimedState;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The most recently generated trajectories, so a command that asks for the same or nearly the same trajectory again -
+ * the same turn, or the same approach to a target from a few tenths of an inch away - doesn't regenerate it.
+ *
+ * Requests are keyed by their waypoints, velocities and constraints, with positions, headings and velocities rounded
+ * to the given tolerances.  A hit can return a trajectory generated for waypoints up to one tolerance away from the
+ * requested ones.  A tolerance of 0 means the value has to match exactly - except headings, which are always rounded
+ * at least as finely as {@link TrajectoryHash} rounds them.  Headings wrap, so -180 and 180 degrees are the same.
+ */
+public class RecentTrajectoryCache {
+
+    private final int mCapacity;
+    private final double mPositionTolerance;
+    private final double mHeadingToleranceDegrees;
+    private final double mVelocityTolerance;
+
+    private final Map<Long, Trajectory<TimedState<Pose2dWithCurvature>>> mTrajectories;
+    private int mHits = 0;
+    private int mMisses = 0;
+
+    /**
+     * @param pCapacity How many trajectories to keep.  The least recently used one is dropped to make room.
+     * @param pPositionTolerance Waypoint x/y, in inches
+     * @param pHeadingToleranceDegrees Waypoint headings
+     * @param pVelocityTolerance Start and end velocities, in inches/s
+     */
+    public RecentTrajectoryCache(int pCapacity, double pPositionTolerance, double pHeadingToleranceDegrees, double pVelocityTolerance) {
+        mCapacity = pCapacity;
+        mPositionTolerance = pPositionTolerance;
+        mHeadingToleranceDegrees = pHeadingToleranceDegrees;
+        mVelocityTolerance = pVelocityTolerance;
+        // Access order, so the eldest entry is the least recently used one
+        mTrajectories = new LinkedHashMap<Long, Trajectory<TimedState<Pose2dWithCurvature>>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Trajectory<TimedState<Pose2dWithCurvature>>> pEldest) {
+                return size() > mCapacity;
+            }
+        };
+    }
+
+    /**
+     * @param pSalt Anything else the trajectory depends on that doesn't change between requests, e.g. the robot profile
+     * @return The key a request is cached under
+     */
+    public long key(boolean pReversed, List<Pose2d> pWaypoints, double pStartVelocity, double pEndVelocity,
+                    TrajectoryConstraints pConstraints, long pSalt) {
+        TrajectoryHash hash = new TrajectoryHash()
+                .add(pSalt)
+                .add(pReversed)
+                .add(pWaypoints.size());
+        for(Pose2d waypoint : pWaypoints) {
+            hash.add(quantize(waypoint.getTranslation().x(), mPositionTolerance))
+                    .add(quantize(waypoint.getTranslation().y(), mPositionTolerance))
+                    .add(TrajectoryHash.headingSteps(waypoint.getRotation().getDegrees(),
+                            Math.max(mHeadingToleranceDegrees, TrajectoryHash.kHeadingResolutionDegrees)));
+        }
+        return hash.add(quantize(pStartVelocity, mVelocityTolerance))
+                .add(quantize(pEndVelocity, mVelocityTolerance))
+                .add(pConstraints)
+                .get();
+    }
+
+    /**
+     * @return The trajectory cached under pKey, or null if there isn't one
+     */
+    public synchronized Trajectory<TimedState<Pose2dWithCurvature>> get(long pKey) {
+        Trajectory<TimedState<Pose2dWithCurvature>> trajectory = mTrajectories.get(pKey);
+        if(trajectory == null) {
+            mMisses++;
+        } else {
+            mHits++;
+        }
+        return trajectory;
+    }
+
+    public synchronized void put(long pKey, Trajectory<TimedState<Pose2dWithCurvature>> pTrajectory) {
+        if(mCapacity > 0) {
+            mTrajectories.put(pKey, pTrajectory);
+        }
+    }
+
+    public synchronized void clear() {
+        mTrajectories.clear();
+    }
+
+    public synchronized int size() {
+        return mTrajectories.size();
+    }
+
+    public synchronized int getHits() {
+        return mHits;
+    }
+
+    public synchronized int getMisses() {
+        return mMisses;
+    }
+
+    private static double quantize(double pValue, double pTolerance) {
+        if(pTolerance <= 0.0) {
+            return pValue;
+        }
+        return Math.round(pValue / pTolerance);
+    }
+
+}
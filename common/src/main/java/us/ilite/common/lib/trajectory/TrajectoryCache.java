@@ -0,0 +1,189 @@
+package us.ilite.common.lib.trajectory;
+
+import com.flybotix.hfr.util.log.ILog;
+import com.flybotix.hfr.util.log.Logger;
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.geometry.Rotation2d;
+import com.team254.lib.geometry.Translation2d;
+import com.team254.lib.trajectory.Trajectory;
+import com.team254.lib.trajectory.timing.TimedState;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trajectories generated ahead of time, looked up by the {@link TrajectoryHash} of what they were generated from.
+ *
+ * The file is written on a dev machine by the robot project's precompileTrajectories task, deployed with the code and
+ * memory-mapped at boot, so only the trajectories actually used are ever read.  A trajectory whose inputs changed
+ * since the file was written simply isn't found, and is generated as usual.
+ *
+ * File layout, big-endian:
+ * <pre>
+ * int magic, int version, int entry count
+ * per entry: long hash, int state count, int offset of its first state
+ * per state: x, y, cos, sin, curvature, dcurvature/ds, t, velocity, acceleration - all doubles
+ * </pre>
+ */
+public class TrajectoryCache {
+
+    public static final int kMagic = 0x54524a43; // "TRJC"
+    // Bump this whenever the file layout or the way trajectories are generated changes
+    public static final int kVersion = 2;
+
+    private static final int kHeaderBytes = 3 * Integer.BYTES;
+    private static final int kEntryBytes = Long.BYTES + 2 * Integer.BYTES;
+    private static final int kStateBytes = 9 * Double.BYTES;
+
+    private static final ILog sLog = Logger.createLog(TrajectoryCache.class);
+
+    private final ByteBuffer mBuffer;
+    private final Map<Long, Entry> mEntries;
+
+    private TrajectoryCache(ByteBuffer pBuffer, Map<Long, Entry> pEntries) {
+        mBuffer = pBuffer;
+        mEntries = pEntries;
+    }
+
+    /**
+     * @return A cache with nothing in it
+     */
+    public static TrajectoryCache empty() {
+        return new TrajectoryCache(ByteBuffer.allocate(0), Collections.emptyMap());
+    }
+
+    /**
+     * Memory-maps a cache file.  If the file is missing or can't be read, every trajectory will be generated instead.
+     */
+    public static TrajectoryCache load(File pFile) {
+        if(!pFile.exists()) {
+            sLog.warn("No trajectory cache at ", pFile, " - trajectories will be generated on the robot");
+            return empty();
+        }
+        try(FileChannel channel = FileChannel.open(pFile.toPath(), StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | RuntimeException e) {
+            sLog.error("Couldn't read trajectory cache ", pFile, ": ", e);
+            return empty();
+        }
+    }
+
+    /**
+     * Reads a cache from an already loaded or mapped file
+     */
+    public static TrajectoryCache read(ByteBuffer pBuffer) throws IOException {
+        if(pBuffer.limit() < kHeaderBytes || pBuffer.getInt(0) != kMagic) {
+            throw new IOException("Not a trajectory cache");
+        }
+        if(pBuffer.getInt(Integer.BYTES) != kVersion) {
+            throw new IOException("Trajectory cache is version " + pBuffer.getInt(Integer.BYTES) + ", expected " + kVersion);
+        }
+        int count = pBuffer.getInt(2 * Integer.BYTES);
+        Map<Long, Entry> entries = new HashMap<>();
+        for(int i = 0; i < count; i++) {
+            int position = kHeaderBytes + i * kEntryBytes;
+            long hash = pBuffer.getLong(position);
+            int states = pBuffer.getInt(position + Long.BYTES);
+            int offset = pBuffer.getInt(position + Long.BYTES + Integer.BYTES);
+            if(offset < 0 || states < 0 || (long) offset + (long) states * kStateBytes > pBuffer.limit()) {
+                throw new IOException("Trajectory cache entry " + i + " is out of bounds");
+            }
+            entries.put(hash, new Entry(states, offset));
+        }
+        return new TrajectoryCache(pBuffer, entries);
+    }
+
+    /**
+     * @return The trajectory generated from whatever hashed to pHash, or null if it isn't cached
+     */
+    public Trajectory<TimedState<Pose2dWithCurvature>> get(long pHash) {
+        Entry entry = mEntries.get(pHash);
+        if(entry == null) {
+            return null;
+        }
+        // Absolute reads only, so lookups from different threads don't interfere
+        List<TimedState<Pose2dWithCurvature>> states = new ArrayList<>(entry.mStates);
+        for(int i = 0; i < entry.mStates; i++) {
+            int position = entry.mOffset + i * kStateBytes;
+            Pose2d pose = new Pose2d(
+                    new Translation2d(mBuffer.getDouble(position), mBuffer.getDouble(position + 8)),
+                    new Rotation2d(mBuffer.getDouble(position + 16), mBuffer.getDouble(position + 24), false));
+            states.add(new TimedState<>(
+                    new Pose2dWithCurvature(pose, mBuffer.getDouble(position + 32), mBuffer.getDouble(position + 40)),
+                    mBuffer.getDouble(position + 48),
+                    mBuffer.getDouble(position + 56),
+                    mBuffer.getDouble(position + 64)));
+        }
+        return new Trajectory<>(states);
+    }
+
+    public boolean contains(long pHash) {
+        return mEntries.containsKey(pHash);
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Writes every trajectory to pFile, replacing it
+     */
+    public static void write(File pFile, Map<Long, Trajectory<TimedState<Pose2dWithCurvature>>> pTrajectories) throws IOException {
+        if(pFile.getParentFile() != null) {
+            pFile.getParentFile().mkdirs();
+        }
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(pFile)))) {
+            out.writeInt(kMagic);
+            out.writeInt(kVersion);
+            out.writeInt(pTrajectories.size());
+
+            int offset = kHeaderBytes + pTrajectories.size() * kEntryBytes;
+            for(Map.Entry<Long, Trajectory<TimedState<Pose2dWithCurvature>>> entry : pTrajectories.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeInt(entry.getValue().length());
+                out.writeInt(offset);
+                offset += entry.getValue().length() * kStateBytes;
+            }
+
+            for(Map.Entry<Long, Trajectory<TimedState<Pose2dWithCurvature>>> entry : pTrajectories.entrySet()) {
+                Trajectory<TimedState<Pose2dWithCurvature>> trajectory = entry.getValue();
+                for(int i = 0; i < trajectory.length(); i++) {
+                    TimedState<Pose2dWithCurvature> state = trajectory.getState(i);
+                    Pose2dWithCurvature pose = state.state();
+                    out.writeDouble(pose.getTranslation().x());
+                    out.writeDouble(pose.getTranslation().y());
+                    out.writeDouble(pose.getRotation().cos());
+                    out.writeDouble(pose.getRotation().sin());
+                    out.writeDouble(pose.getCurvature());
+                    out.writeDouble(pose.getDCurvatureDs());
+                    out.writeDouble(state.t());
+                    out.writeDouble(state.velocity());
+                    out.writeDouble(state.acceleration());
+                }
+            }
+        }
+    }
+
+    private static class Entry {
+        private final int mStates;
+        private final int mOffset;
+
+        private Entry(int pStates, int pOffset) {
+            mStates = pStates;
+            mOffset = pOffset;
+        }
+    }
+
+}
@@ -29,7 +29,8 @@ public class TrajectoryConstraints {
         mMaximumVelocity = pConstraints.getMaximumVelocity();
         mMaximumAcceleration = pConstraints.getMaximumAcceleration();
         mMaximumVoltage = pConstraints.getMaximumVoltage();
-        mTimingConstraints = pConstraints.getTimingConstraints();
+        // Copied, so adding a constraint to the copy doesn't add it to pConstraints
+        mTimingConstraints = new ArrayList<>(pConstraints.getTimingConstraints());
     }
 
     public List<TimingConstraint<Pose2dWithCurvature>> getTimingConstraints() {
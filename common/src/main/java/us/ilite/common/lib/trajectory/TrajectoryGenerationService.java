@@ -0,0 +1,99 @@
+package us.ilite.common.lib.trajectory;
+
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.trajectory.Trajectory;
+import com.team254.lib.trajectory.timing.TimedState;
+import us.ilite.common.config.SystemSettings;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Generates trajectories in the background, spread across every core, so auto sequences can be built at boot without
+ * waiting for their trajectories.  Commands wait on the returned futures when they start, by which point the
+ * trajectories are usually long done.
+ *
+ * Requests for a trajectory that's already being generated share its future, so sequences with paths in common don't
+ * generate them twice.
+ */
+public class TrajectoryGenerationService {
+
+    private final TrajectoryGenerator mGenerator;
+    private final ForkJoinPool mPool;
+    private final Map<Long, CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>>> mInFlight = new ConcurrentHashMap<>();
+
+    public TrajectoryGenerationService(TrajectoryGenerator pGenerator) {
+        this(pGenerator, SystemSettings.kTrajectoryGenerationThreads);
+    }
+
+    /**
+     * @param pThreads How many trajectories to generate at once, or 0 for one per core
+     */
+    public TrajectoryGenerationService(TrajectoryGenerator pGenerator, int pThreads) {
+        mGenerator = pGenerator;
+        int threads = pThreads > 0 ? pThreads : Runtime.getRuntime().availableProcessors();
+        // Async mode, since trajectories are submitted and never joined from inside the pool.  Fork-join threads are
+        // daemons, so an idle pool never keeps the JVM alive.
+        mPool = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    }
+
+    public CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>> submit(
+            boolean pReversed,
+            List<Pose2d> pWaypoints,
+            TrajectoryConstraints pConstraints
+    ) {
+        return submit(pReversed, pWaypoints, 0.0, 0.0, pConstraints);
+    }
+
+    /**
+     * @return The trajectory, once a pool thread has looked it up or generated it
+     */
+    public CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>> submit(
+            boolean pReversed,
+            List<Pose2d> pWaypoints,
+            double pStartVelocity,
+            double pEndVelocity,
+            TrajectoryConstraints pConstraints
+    ) {
+        long hash = mGenerator.hash(pReversed, pWaypoints, pStartVelocity, pEndVelocity, pConstraints);
+        CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>> future = new CompletableFuture<>();
+        CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>> existing = mInFlight.putIfAbsent(hash, future);
+        if(existing != null) {
+            return existing;
+        }
+
+        CompletableFuture.supplyAsync(
+                () -> mGenerator.generateTrajectory(pReversed, pWaypoints, pStartVelocity, pEndVelocity, pConstraints),
+                mPool
+        ).whenComplete((trajectory, error) -> {
+            // Once it's done, the generator's caches take over
+            mInFlight.remove(hash, future);
+            if(error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(trajectory);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @return A future that completes once every one of pFutures has, whether or not they succeeded
+     */
+    public static CompletableFuture<Void> allOf(List<? extends CompletableFuture<?>> pFutures) {
+        return CompletableFuture.allOf(pFutures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    public TrajectoryGenerator getGenerator() {
+        return mGenerator;
+    }
+
+    public int getParallelism() {
+        return mPool.getParallelism();
+    }
+
+}
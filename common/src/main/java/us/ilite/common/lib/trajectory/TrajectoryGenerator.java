@@ -1,8 +1,11 @@
 package us.ilite.common.lib.trajectory;
 
+import com.flybotix.hfr.util.log.ILog;
+import com.flybotix.hfr.util.log.Logger;
 import com.team254.lib.geometry.State;
 import com.team254.lib.trajectory.TrajectoryIterator;
 import com.team254.lib.util.Util;
+import us.ilite.common.config.SystemSettings;
 import us.ilite.common.lib.RobotProfile;
 import us.ilite.common.lib.control.DriveController;
 import com.team254.frc2018.planners.DriveMotionPlanner;
@@ -20,10 +23,16 @@ import com.team254.lib.util.Units;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TrajectoryGenerator {
 
+    private static final ILog sLog = Logger.createLog(TrajectoryGenerator.class);
+
     private static final Pose2d xAxisFlip = Pose2d.fromRotation(new Rotation2d(-1, 0, false));
     private static final Pose2d yAxisFlip = Pose2d.fromRotation(new Rotation2d(0, -1, false));
 
@@ -31,13 +40,55 @@ public class TrajectoryGenerator {
     private static final double kMaxDx = 2.0;
     private static final double kMaxDy = 0.25;
     private static final double kMaxDTheta = Math.toRadians(5.0);
+    // Resampled trajectories are compared to the original this many times per step
+    private static final int kResampleChecksPerStep = 4;
 
     private DriveMotionPlanner mDriveMotionPlanner;
     private RobotProfile mRobotProfile;
+    // Seconds between the states of generated trajectories, or 0 to leave them where they're generated
+    private final double mResampleStep;
+
+    // Hash of everything besides the request that trajectories are generated from
+    private final long mGeneratorHash;
+
+    private volatile TrajectoryCache mCache = TrajectoryCache.empty();
+    private final RecentTrajectoryCache mRecentTrajectories = new RecentTrajectoryCache(
+            SystemSettings.kRecentTrajectoryCacheSize,
+            SystemSettings.kRecentTrajectoryPositionTolerance,
+            SystemSettings.kRecentTrajectoryHeadingTolerance,
+            SystemSettings.kRecentTrajectoryVelocityTolerance);
+    private final AtomicInteger mCacheHits = new AtomicInteger();
+    private final AtomicInteger mCacheMisses = new AtomicInteger();
+    // Every trajectory generated, by hash - only kept while precompiling
+    private Map<Long, Trajectory<TimedState<Pose2dWithCurvature>>> mRecorded = null;
 
     public TrajectoryGenerator(DriveController pDriveController) {
+        this(pDriveController, SystemSettings.kTrajectoryResampleStep);
+    }
+
+    /**
+     * @param pResampleStep Resample every trajectory at this fixed time step, so setpoints are looked up by index
+     *                      instead of searched for - or 0 to leave the states where they're generated.  See
+     *                      {@link TrajectoryResampler}.
+     */
+    public TrajectoryGenerator(DriveController pDriveController, double pResampleStep) {
+        if(pResampleStep < 0.0) {
+            throw new IllegalArgumentException("Resample step can't be negative, was " + pResampleStep);
+        }
         mDriveMotionPlanner = pDriveController.getDriveMotionPlanner();
         mRobotProfile = pDriveController.getRobotProfile();
+        mResampleStep = pResampleStep;
+        mGeneratorHash = new TrajectoryHash()
+                .add(TrajectoryCache.kVersion)
+                .add(kMaxDx)
+                .add(kMaxDy)
+                .add(kMaxDTheta)
+                .add(mRobotProfile)
+                .add(mResampleStep)
+                .add(SystemSettings.kTrajectoryResampleMaxPositionError)
+                .add(SystemSettings.kTrajectoryResampleMaxHeadingError)
+                .add(SystemSettings.kTrajectoryResampleMaxVelocityError)
+                .get();
     }
 
     public Trajectory<TimedState<Pose2dWithCurvature>> generateTrajectory(
@@ -53,6 +104,10 @@ public class TrajectoryGenerator {
                 constraints);
     }
 
+    /**
+     * Looks the trajectory up in the precompiled cache, then in the recently generated trajectories, and only
+     * generates it if it's in neither
+     */
     public Trajectory<TimedState<Pose2dWithCurvature>> generateTrajectory(
             boolean reversed,
             final List<Pose2d> waypoints,
@@ -60,6 +115,89 @@ public class TrajectoryGenerator {
             double end_vel,
             final TrajectoryConstraints constraints
     ) {
+        long hash = hash(reversed, waypoints, start_vel, end_vel, constraints);
+        Trajectory<TimedState<Pose2dWithCurvature>> trajectory = mCache.get(hash);
+        if(trajectory != null) {
+            mCacheHits.incrementAndGet();
+        } else {
+            mCacheMisses.incrementAndGet();
+            long key = mRecentTrajectories.key(reversed, waypoints, start_vel, end_vel, constraints, mGeneratorHash);
+            trajectory = mRecentTrajectories.get(key);
+            if(trajectory == null) {
+                trajectory = timeParameterizeTrajectory(reversed, waypoints, start_vel, end_vel, constraints);
+                mRecentTrajectories.put(key, trajectory);
+            }
+        }
+
+        synchronized(this) {
+            if(mRecorded != null) {
+                mRecorded.put(hash, trajectory);
+            }
+        }
+        return trajectory;
+    }
+
+    /**
+     * @return A hash of everything that goes into generating this trajectory, used to find it in the cache
+     */
+    public long hash(boolean reversed, final List<Pose2d> waypoints, double start_vel, double end_vel,
+                     final TrajectoryConstraints constraints) {
+        return new TrajectoryHash()
+                .add(mGeneratorHash)
+                .add(reversed)
+                .add(waypoints)
+                .add(start_vel)
+                .add(end_vel)
+                .add(constraints)
+                .get();
+    }
+
+    /**
+     * @param pCache Trajectories generated ahead of time
+     */
+    public void setCache(TrajectoryCache pCache) {
+        mCache = pCache;
+    }
+
+    /**
+     * @return Trajectories that weren't precompiled, but were recently generated
+     */
+    public RecentTrajectoryCache getRecentTrajectories() {
+        return mRecentTrajectories;
+    }
+
+    /**
+     * @return How many trajectories were found in the precompiled cache
+     */
+    public int getCacheHits() {
+        return mCacheHits.get();
+    }
+
+    public int getCacheMisses() {
+        return mCacheMisses.get();
+    }
+
+    /**
+     * Keeps every trajectory generated from now on, so they can be written to a {@link TrajectoryCache}
+     */
+    public synchronized void startRecording() {
+        mRecorded = new LinkedHashMap<>();
+    }
+
+    /**
+     * @return Every trajectory generated since {@link #startRecording()}, by hash
+     */
+    public synchronized Map<Long, Trajectory<TimedState<Pose2dWithCurvature>>> getRecorded() {
+        return mRecorded == null ? Collections.emptyMap() : new LinkedHashMap<>(mRecorded);
+    }
+
+    private Trajectory<TimedState<Pose2dWithCurvature>> timeParameterizeTrajectory(
+            boolean reversed,
+            final List<Pose2d> waypoints,
+            double start_vel,
+            double end_vel,
+            final TrajectoryConstraints constraints
+    ) {
 
         // We'll assume that any paths passed to us are pointing in the correct direction (the direction the robot is actually moving) already.
         // In other words, we will consider the heading passed to us to be the heading w.r.t the BACK of the robot, NOT the front.
@@ -93,7 +231,30 @@ public class TrajectoryGenerator {
                 constraints.getMaximumAcceleration()
         );
 
-        return timed_trajectory;
+        return mResampleStep > 0.0 ? resample(timed_trajectory) : timed_trajectory;
+    }
+
+    /**
+     * Resamples at mResampleStep, unless the resampled trajectory strays too far from the original
+     */
+    private Trajectory<TimedState<Pose2dWithCurvature>> resample(Trajectory<TimedState<Pose2dWithCurvature>> pTrajectory) {
+        if(pTrajectory.isEmpty()) {
+            return pTrajectory;
+        }
+        Trajectory<TimedState<Pose2dWithCurvature>> resampled = TrajectoryResampler.resample(pTrajectory, mResampleStep);
+        TrajectoryResampler.ResampleError error = TrajectoryResampler.measure(pTrajectory, resampled,
+                mResampleStep / kResampleChecksPerStep);
+        if(error.getMaxPositionError() > SystemSettings.kTrajectoryResampleMaxPositionError ||
+                error.getMaxHeadingError() > SystemSettings.kTrajectoryResampleMaxHeadingError ||
+                error.getMaxVelocityError() > SystemSettings.kTrajectoryResampleMaxVelocityError) {
+            sLog.warn("Resampled trajectory is too far from the original, using the original - ", error);
+            return pTrajectory;
+        }
+        return resampled;
+    }
+
+    public double getResampleStep() {
+        return mResampleStep;
     }
 
     /**
@@ -0,0 +1,168 @@
+package us.ilite.common.lib.trajectory;
+
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.trajectory.timing.DifferentialDriveDynamicsConstraint;
+import com.team254.lib.trajectory.timing.TimingConstraint;
+import us.ilite.common.lib.RobotProfile;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A 64-bit FNV-1a hash of everything a trajectory is generated from.  Two trajectories with the same hash can be
+ * assumed to be the same, so a trajectory can be looked up in a {@link TrajectoryCache} by what it was generated from.
+ */
+public class TrajectoryHash {
+
+    private static final long kOffsetBasis = 0xcbf29ce484222325L;
+    private static final long kPrime = 0x100000001b3L;
+    // Timing constraints are hashed field by field - this is how deep to follow fields that are objects
+    private static final int kMaxFieldDepth = 3;
+    // Waypoint headings are given in degrees, so this is far finer than any two waypoints would differ by
+    static final double kHeadingResolutionDegrees = 1E-6;
+
+    // Fields are looked up once per class, since trajectories are hashed on the fly while the robot is running
+    private static final ClassValue<Field[]> sFields = new ClassValue<Field[]>() {
+        @Override
+        protected Field[] computeValue(Class<?> pType) {
+            // Sorted, since the order fields are returned in can differ between JVMs
+            Field[] fields = Arrays.stream(pType.getDeclaredFields())
+                    .filter(field -> !Modifier.isStatic(field.getModifiers()) && !field.isSynthetic())
+                    .sorted(Comparator.comparing(Field::getName))
+                    .toArray(Field[]::new);
+            for(Field field : fields) {
+                try {
+                    field.setAccessible(true);
+                } catch (RuntimeException e) {
+                    // Hashed by name instead
+                }
+            }
+            return fields;
+        }
+    };
+
+    private long mHash = kOffsetBasis;
+
+    public TrajectoryHash add(long pValue) {
+        for(int i = 0; i < 8; i++) {
+            mHash ^= (pValue >>> (i * 8)) & 0xff;
+            mHash *= kPrime;
+        }
+        return this;
+    }
+
+    public TrajectoryHash add(double pValue) {
+        // +0.0 and -0.0 generate the same trajectory
+        return add(Double.doubleToLongBits(pValue == 0.0 ? 0.0 : pValue));
+    }
+
+    public TrajectoryHash add(boolean pValue) {
+        return add(pValue ? 1L : 0L);
+    }
+
+    public TrajectoryHash add(String pValue) {
+        add(pValue.length());
+        for(int i = 0; i < pValue.length(); i++) {
+            add(pValue.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * The heading is hashed in whole steps of {@link #kHeadingResolutionDegrees} rather than by its cos and sin, which
+     * can come out an ulp different on the robot than on the machine that precompiled the cache.  -180 and 180 degrees
+     * hash the same.
+     */
+    public TrajectoryHash add(Pose2d pPose) {
+        return add(pPose.getTranslation().x())
+                .add(pPose.getTranslation().y())
+                .add(headingSteps(pPose.getRotation().getDegrees(), kHeadingResolutionDegrees));
+    }
+
+    public TrajectoryHash add(List<Pose2d> pWaypoints) {
+        add(pWaypoints.size());
+        for(Pose2d waypoint : pWaypoints) {
+            add(waypoint);
+        }
+        return this;
+    }
+
+    /**
+     * Timing constraints are hashed by class and field values.  Drive dynamics constraints are skipped - they're
+     * made from the robot profile and maximum voltage, which are hashed on their own.
+     */
+    public TrajectoryHash add(TrajectoryConstraints pConstraints) {
+        add(pConstraints.getMaximumVelocity())
+                .add(pConstraints.getMaximumAcceleration())
+                .add(pConstraints.getMaximumVoltage());
+        for(TimingConstraint<Pose2dWithCurvature> constraint : pConstraints.getTimingConstraints()) {
+            if(!(constraint instanceof DifferentialDriveDynamicsConstraint)) {
+                addFields(constraint, 0);
+            }
+        }
+        return this;
+    }
+
+    public TrajectoryHash add(RobotProfile pProfile) {
+        return add(pProfile.getLeftVoltPerAccel())
+                .add(pProfile.getLeftVoltPerSpeed())
+                .add(pProfile.getLeftFrictionVoltage())
+                .add(pProfile.getRightVoltPerAccel())
+                .add(pProfile.getRightVoltPerSpeed())
+                .add(pProfile.getRightFrictionVoltage())
+                .add(pProfile.getWheelRadiusMeters())
+                .add(pProfile.getWheelbaseRadiusMeters())
+                .add(pProfile.getWheelbaseScrubFactor())
+                .add(pProfile.getLinearInertia())
+                .add(pProfile.getAngularInertia())
+                .add(pProfile.getCylindricalMoi())
+                .add(pProfile.getAngularDrag());
+    }
+
+    public long get() {
+        return mHash;
+    }
+
+    /**
+     * @return pDegrees rounded to a whole number of pResolutionDegrees steps, wrapped to one turn so -180 and 180
+     *         degrees are the same step
+     */
+    static long headingSteps(double pDegrees, double pResolutionDegrees) {
+        return Math.floorMod(Math.round(pDegrees / pResolutionDegrees), Math.round(360.0 / pResolutionDegrees));
+    }
+
+    private void addFields(Object pObject, int pDepth) {
+        if(pObject == null) {
+            add(0L);
+            return;
+        }
+        add(pObject.getClass().getName());
+        if(pDepth >= kMaxFieldDepth) {
+            return;
+        }
+        for(Class<?> type = pObject.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+            for(Field field : sFields.get(type)) {
+                try {
+                    Object value = field.get(pObject);
+                    if(value instanceof Number) {
+                        add(((Number) value).doubleValue());
+                    } else if(value instanceof Boolean) {
+                        add((Boolean) value);
+                    } else if(value instanceof String || value instanceof Character || value instanceof Enum) {
+                        add(value.toString());
+                    } else {
+                        addFields(value, pDepth + 1);
+                    }
+                } catch (IllegalAccessException | RuntimeException e) {
+                    // Can't be read, so it can't be part of the hash
+                    add(field.getName());
+                }
+            }
+        }
+    }
+
+}
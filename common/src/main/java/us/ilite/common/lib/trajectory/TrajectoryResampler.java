@@ -0,0 +1,142 @@
+package us.ilite.common.lib.trajectory;
+
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.trajectory.Trajectory;
+import com.team254.lib.trajectory.timing.TimedState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resamples a timed trajectory at a fixed time step, so a {@link TrajectorySampler} can find the states around any
+ * time with an index instead of a search.
+ *
+ * States are sampled from the original at start + i * step, and the last state is the original's last state, so the
+ * last step may be shorter.
+ * Each state's acceleration is replaced with the average acceleration up to the next state, so velocity is continuous
+ * at every state.  Where the original's acceleration changes in the middle of a step, the resampled trajectory cuts
+ * the corner - {@link #measure} finds out by how much.
+ */
+public class TrajectoryResampler {
+
+    // Stops floating point error from adding a tiny last step
+    private static final double kStepEpsilon = 1E-9;
+
+    /**
+     * @param pStep Seconds between states - SystemSettings.kControlLoopPeriod, or an even fraction of it, so the
+     *              control loop lands on (or evenly between) states
+     */
+    public static Trajectory<TimedState<Pose2dWithCurvature>> resample(Trajectory<TimedState<Pose2dWithCurvature>> pTrajectory,
+                                                                       double pStep) {
+        if(!(pStep > 0.0)) {
+            throw new IllegalArgumentException("Resample step must be positive, was " + pStep);
+        }
+        CompiledTrajectory original = CompiledTrajectory.compile(pTrajectory);
+        TrajectorySampler sampler = new TrajectorySampler(original);
+        double start = original.getStartTime();
+        double end = original.getEndTime();
+        int length = (int)Math.ceil(((end - start) / pStep) - kStepEpsilon) + 1;
+
+        TrajectorySample[] samples = new TrajectorySample[length];
+        for(int i = 0; i < length; i++) {
+            samples[i] = new TrajectorySample();
+            sampler.sample(i == length - 1 ? end : start + i * pStep, samples[i]);
+        }
+
+        List<TimedState<Pose2dWithCurvature>> states = new ArrayList<>(length);
+        for(int i = 0; i < length; i++) {
+            TrajectorySample sample = samples[i];
+            if(i < length - 1) {
+                TrajectorySample next = samples[i + 1];
+                double acceleration = (next.getVelocity() - sample.getVelocity()) / (next.getT() - sample.getT());
+                sample.set(sample.getT(), sample.getX(), sample.getY(), sample.getCos(), sample.getSin(),
+                        sample.getCurvature(), sample.getDCurvatureDs(), sample.getVelocity(), acceleration);
+            }
+            states.add(sample.toTimedState());
+        }
+        return new Trajectory<>(states);
+    }
+
+    /**
+     * Samples both trajectories every pStep seconds and finds the largest differences between them
+     */
+    public static ResampleError measure(Trajectory<TimedState<Pose2dWithCurvature>> pOriginal,
+                                        Trajectory<TimedState<Pose2dWithCurvature>> pResampled, double pStep) {
+        TrajectorySampler original = new TrajectorySampler(CompiledTrajectory.compile(pOriginal));
+        TrajectorySampler resampled = new TrajectorySampler(CompiledTrajectory.compile(pResampled));
+        TrajectorySample expected = new TrajectorySample();
+        TrajectorySample actual = new TrajectorySample();
+        ResampleError error = new ResampleError();
+
+        double end = original.getTrajectory().getEndTime();
+        double t = original.getTrajectory().getStartTime();
+        while(true) {
+            double time = Math.min(t, end);
+            original.sample(time, expected);
+            resampled.sample(time, actual);
+            error.add(expected, actual);
+            if(time >= end) break;
+            t += pStep;
+        }
+        return error;
+    }
+
+    /**
+     * The largest differences found between an original and resampled trajectory
+     */
+    public static class ResampleError {
+
+        private double mMaxPositionError = 0.0;
+        private double mMaxHeadingError = 0.0;
+        private double mMaxVelocityError = 0.0;
+        private double mMaxAccelerationError = 0.0;
+
+        private void add(TrajectorySample pExpected, TrajectorySample pActual) {
+            mMaxPositionError = Math.max(mMaxPositionError,
+                    Math.hypot(pActual.getX() - pExpected.getX(), pActual.getY() - pExpected.getY()));
+            // Angle between the two headings
+            double heading = Math.abs(Math.atan2(
+                    pExpected.getCos() * pActual.getSin() - pExpected.getSin() * pActual.getCos(),
+                    pExpected.getCos() * pActual.getCos() + pExpected.getSin() * pActual.getSin()));
+            mMaxHeadingError = Math.max(mMaxHeadingError, Math.toDegrees(heading));
+            mMaxVelocityError = Math.max(mMaxVelocityError, Math.abs(pActual.getVelocity() - pExpected.getVelocity()));
+            mMaxAccelerationError = Math.max(mMaxAccelerationError,
+                    Math.abs(pActual.getAcceleration() - pExpected.getAcceleration()));
+        }
+
+        /**
+         * @return Inches
+         */
+        public double getMaxPositionError() {
+            return mMaxPositionError;
+        }
+
+        /**
+         * @return Degrees
+         */
+        public double getMaxHeadingError() {
+            return mMaxHeadingError;
+        }
+
+        /**
+         * @return Inches/s
+         */
+        public double getMaxVelocityError() {
+            return mMaxVelocityError;
+        }
+
+        /**
+         * @return Inches/s^2.  Large wherever the original changes acceleration in the middle of a step.
+         */
+        public double getMaxAccelerationError() {
+            return mMaxAccelerationError;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("position %.4f in, heading %.4f deg, velocity %.4f in/s, acceleration %.2f in/s^2",
+                    mMaxPositionError, mMaxHeadingError, mMaxVelocityError, mMaxAccelerationError);
+        }
+    }
+
+}
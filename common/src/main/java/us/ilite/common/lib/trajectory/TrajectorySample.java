@@ -0,0 +1,101 @@
+package us.ilite.common.lib.trajectory;
+
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.geometry.Rotation2d;
+import com.team254.lib.geometry.Translation2d;
+import com.team254.lib.trajectory.timing.TimedState;
+
+/**
+ * A mutable timed pose that a {@link TrajectorySampler} writes samples into, so following a trajectory doesn't
+ * allocate a new state every cycle.  Owned by whoever is following the trajectory.
+ */
+public class TrajectorySample {
+
+    private double mT;
+    private double mX;
+    private double mY;
+    private double mCos = 1.0;
+    private double mSin;
+    private double mCurvature;
+    private double mDCurvatureDs;
+    private double mVelocity;
+    private double mAcceleration;
+
+    public void set(double pT, double pX, double pY, double pCos, double pSin, double pCurvature, double pDCurvatureDs,
+                    double pVelocity, double pAcceleration) {
+        mT = pT;
+        mX = pX;
+        mY = pY;
+        mCos = pCos;
+        mSin = pSin;
+        mCurvature = pCurvature;
+        mDCurvatureDs = pDCurvatureDs;
+        mVelocity = pVelocity;
+        mAcceleration = pAcceleration;
+    }
+
+    /**
+     * Copies state pIndex of pTrajectory
+     */
+    public void set(CompiledTrajectory pTrajectory, int pIndex) {
+        set(pTrajectory.mT[pIndex], pTrajectory.mX[pIndex], pTrajectory.mY[pIndex], pTrajectory.mCos[pIndex],
+                pTrajectory.mSin[pIndex], pTrajectory.mCurvature[pIndex], pTrajectory.mDCurvatureDs[pIndex],
+                pTrajectory.mVelocity[pIndex], pTrajectory.mAcceleration[pIndex]);
+    }
+
+    public void setTranslation(double pX, double pY) {
+        mX = pX;
+        mY = pY;
+    }
+
+    public void setCurvature(double pCurvature, double pDCurvatureDs) {
+        mCurvature = pCurvature;
+        mDCurvatureDs = pDCurvatureDs;
+    }
+
+    /**
+     * Allocates - only for code that needs the state as an object, e.g. logging
+     */
+    public TimedState<Pose2dWithCurvature> toTimedState() {
+        Pose2d pose = new Pose2d(new Translation2d(mX, mY), new Rotation2d(mCos, mSin, false));
+        return new TimedState<>(new Pose2dWithCurvature(pose, mCurvature, mDCurvatureDs), mT, mVelocity, mAcceleration);
+    }
+
+    public double getT() {
+        return mT;
+    }
+
+    public double getX() {
+        return mX;
+    }
+
+    public double getY() {
+        return mY;
+    }
+
+    public double getCos() {
+        return mCos;
+    }
+
+    public double getSin() {
+        return mSin;
+    }
+
+    public double getCurvature() {
+        return mCurvature;
+    }
+
+    public double getDCurvatureDs() {
+        return mDCurvatureDs;
+    }
+
+    public double getVelocity() {
+        return mVelocity;
+    }
+
+    public double getAcceleration() {
+        return mAcceleration;
+    }
+
+}
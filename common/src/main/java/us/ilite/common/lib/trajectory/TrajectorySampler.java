@@ -0,0 +1,158 @@
+package us.ilite.common.lib.trajectory;
+
+import com.team254.lib.util.Util;
+
+/**
+ * Steps through a {@link CompiledTrajectory} by time, writing each sample into a caller-owned
+ * {@link TrajectorySample}.  A drop-in for TrajectoryIterator/TimedView that allocates nothing: samples are
+ * interpolated the same way, but the search for the surrounding states starts from where the last one ended instead of
+ * from the start of the trajectory.  If the trajectory's states are a fixed step apart, they're found by index, so
+ * sampling takes the same time at any point on any trajectory.
+ */
+public class TrajectorySampler {
+
+    // Pose2d.exp() switches to a Taylor series below this
+    private static final double kTwistEpsilon = 1E-9;
+
+    private final CompiledTrajectory mTrajectory;
+    // 0 if the states aren't a fixed step apart
+    private final double mStepsPerSecond;
+    private double mProgress;
+    // The first state at or after the last sampled time
+    private int mCursor = 1;
+
+    public TrajectorySampler(CompiledTrajectory pTrajectory) {
+        mTrajectory = pTrajectory;
+        mStepsPerSecond = pTrajectory.isUniform() ? 1.0 / pTrajectory.getStep() : 0.0;
+        mProgress = pTrajectory.getStartTime();
+    }
+
+    /**
+     * Moves forward by pDt seconds, clamped to the trajectory, and samples the new time
+     */
+    public void advance(double pDt, TrajectorySample pSample) {
+        mProgress = Math.max(mTrajectory.getStartTime(), Math.min(mTrajectory.getEndTime(), mProgress + pDt));
+        sample(mProgress, pSample);
+    }
+
+    /**
+     * Samples the trajectory at pTime without moving the progress
+     */
+    public void sample(double pTime, TrajectorySample pSample) {
+        CompiledTrajectory trajectory = mTrajectory;
+        double[] t = trajectory.mT;
+        int last = trajectory.mLength - 1;
+        if(pTime >= t[last]) {
+            pSample.set(trajectory, last);
+            return;
+        }
+        if(pTime <= t[0]) {
+            pSample.set(trajectory, 0);
+            return;
+        }
+
+        // Find the first state at or after pTime, starting from where it should be if the states are a fixed step
+        // apart, or from the last one.  The loops only correct for rounding when there's a fixed step.
+        int i = mStepsPerSecond > 0.0 ? (int)Math.ceil((pTime - t[0]) * mStepsPerSecond) : mCursor;
+        i = Math.min(Math.max(i, 1), last);
+        while(i > 1 && t[i - 1] >= pTime) {
+            i--;
+        }
+        while(t[i] < pTime) {
+            i++;
+        }
+        mCursor = i;
+
+        if(Util.epsilonEquals(t[i], t[i - 1])) {
+            pSample.set(trajectory, i);
+            return;
+        }
+        interpolate(i, (pTime - t[i - 1]) / (t[i] - t[i - 1]), pSample);
+    }
+
+    public double getProgress() {
+        return mProgress;
+    }
+
+    public double getRemainingProgress() {
+        return Math.max(0.0, mTrajectory.getEndTime() - mProgress);
+    }
+
+    public boolean isDone() {
+        return getRemainingProgress() == 0.0;
+    }
+
+    public CompiledTrajectory getTrajectory() {
+        return mTrajectory;
+    }
+
+    /**
+     * The same as TimedState.interpolate() from state pIndex - 1 to pIndex.  pIndex - 1 is always earlier, so it
+     * never needs to swap the states around.
+     */
+    private void interpolate(int pIndex, double pFraction, TrajectorySample pSample) {
+        CompiledTrajectory trajectory = mTrajectory;
+        int a = pIndex - 1;
+        double velocity = trajectory.mVelocity[a];
+        double acceleration = trajectory.mAcceleration[a];
+
+        double newT = Util.interpolate(trajectory.mT[a], trajectory.mT[pIndex], pFraction);
+        double dt = newT - trajectory.mT[a];
+        boolean reversing = velocity < 0.0 || (Util.epsilonEquals(velocity, 0.0) && acceleration < 0.0);
+        double newV = velocity + acceleration * dt;
+        double newS = (reversing ? -1.0 : 1.0) * (velocity * dt + .5 * acceleration * dt * dt);
+
+        // Pose2dWithCurvature.interpolate()
+        double x = newS / trajectory.mDistance[pIndex];
+        double curvature = Util.interpolate(trajectory.mCurvature[a], trajectory.mCurvature[pIndex], x);
+        double dcurvature = Util.interpolate(trajectory.mDCurvatureDs[a], trajectory.mDCurvatureDs[pIndex], x);
+        if(x <= 0.0) {
+            pSample.set(newT, trajectory.mX[a], trajectory.mY[a], trajectory.mCos[a], trajectory.mSin[a], curvature,
+                    dcurvature, newV, acceleration);
+            return;
+        }
+        if(x >= 1.0) {
+            pSample.set(newT, trajectory.mX[pIndex], trajectory.mY[pIndex], trajectory.mCos[pIndex],
+                    trajectory.mSin[pIndex], curvature, dcurvature, newV, acceleration);
+            return;
+        }
+
+        // Pose2d.interpolate(): a.transformBy(exp(log(a^-1 * b) * x)), with the log worked out in CompiledTrajectory
+        double twistDx = trajectory.mTwistDx[pIndex] * x;
+        double twistDy = trajectory.mTwistDy[pIndex] * x;
+        double twistDTheta = trajectory.mTwistDTheta[pIndex] * x;
+        double sinTheta = Math.sin(twistDTheta);
+        double cosTheta = Math.cos(twistDTheta);
+        double s;
+        double c;
+        if(Math.abs(twistDTheta) < kTwistEpsilon) {
+            s = 1.0 - 1.0 / 6.0 * twistDTheta * twistDTheta;
+            c = .5 * twistDTheta;
+        } else {
+            s = sinTheta / twistDTheta;
+            c = (1.0 - cosTheta) / twistDTheta;
+        }
+        double deltaX = twistDx * s - twistDy * c;
+        double deltaY = twistDx * c + twistDy * s;
+
+        double cosA = trajectory.mCos[a];
+        double sinA = trajectory.mSin[a];
+        double newX = trajectory.mX[a] + (deltaX * cosA - deltaY * sinA);
+        double newY = trajectory.mY[a] + (deltaX * sinA + deltaY * cosA);
+
+        // Rotation2d.rotateBy() normalizes
+        double cos = cosA * cosTheta - sinA * sinTheta;
+        double sin = cosA * sinTheta + sinA * cosTheta;
+        double magnitude = Math.hypot(cos, sin);
+        if(magnitude > Util.kEpsilon) {
+            cos /= magnitude;
+            sin /= magnitude;
+        } else {
+            cos = 1.0;
+            sin = 0.0;
+        }
+
+        pSample.set(newT, newX, newY, cos, sin, curvature, dcurvature, newV, acceleration);
+    }
+
+}
@@ -0,0 +1,115 @@
+package us.ilite.common.lib.util;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-bucket histogram of durations that can be recorded from the control loop without allocating.
+ *
+ * Durations are bucketed in microseconds with 8 buckets per power of two, so every bucket is within 12.5% of the
+ * values in it.  Everything from 1us to ~2s fits in 152 buckets; longer durations go in the last bucket but still
+ * count toward the exact maximum.
+ *
+ * Not thread-safe - record and read from the same thread.
+ */
+public class LatencyHistogram {
+
+    private static final int kSubBucketBits = 3;
+    private static final int kSubBuckets = 1 << kSubBucketBits;
+    private static final int kMaxPowerOfTwo = 20; // Highest power of two with its own buckets - 2^20 us ~= 1 second
+    private static final int kBuckets = (kMaxPowerOfTwo - kSubBucketBits + 2) * kSubBuckets;
+
+    private final long[] mCounts = new long[kBuckets];
+    private long mCount = 0;
+    private long mTotalMicros = 0;
+    private long mMaxMicros = 0;
+
+    public void recordNanos(long pNanos) {
+        recordMicros(pNanos / 1000);
+    }
+
+    public void recordMicros(long pMicros) {
+        long micros = Math.max(pMicros, 0);
+        mCounts[bucket(micros)]++;
+        mCount++;
+        mTotalMicros += micros;
+        mMaxMicros = Math.max(mMaxMicros, micros);
+    }
+
+    /**
+     * @param pPercentile 0.0 to 1.0
+     * @return The upper bound of the bucket containing the percentile, in seconds, or 0 if nothing was recorded
+     */
+    public double getPercentile(double pPercentile) {
+        if(mCount == 0) {
+            return 0.0;
+        }
+        long rank = Math.max(1, (long)Math.ceil(pPercentile * mCount));
+        long seen = 0;
+        for(int i = 0; i < kBuckets; i++) {
+            seen += mCounts[i];
+            if(seen >= rank) {
+                return Math.min(upperBound(i), mMaxMicros) / 1e6;
+            }
+        }
+        return mMaxMicros / 1e6;
+    }
+
+    /**
+     * @return The longest duration recorded, in seconds
+     */
+    public double getMax() {
+        return mMaxMicros / 1e6;
+    }
+
+    /**
+     * @return The average duration, in seconds
+     */
+    public double getMean() {
+        return mCount == 0 ? 0.0 : (double)mTotalMicros / mCount / 1e6;
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public void reset() {
+        Arrays.fill(mCounts, 0);
+        mCount = 0;
+        mTotalMicros = 0;
+        mMaxMicros = 0;
+    }
+
+    /**
+     * Values below 2 * kSubBuckets get a bucket each.  Above that, each power of two is split into kSubBuckets
+     * buckets using the bits just below the highest set bit.
+     */
+    static int bucket(long pMicros) {
+        if(pMicros < kSubBuckets) {
+            return (int)pMicros;
+        }
+        int powerOfTwo = 63 - Long.numberOfLeadingZeros(pMicros);
+        if(powerOfTwo > kMaxPowerOfTwo) {
+            return kBuckets - 1;
+        }
+        int subBucket = (int)(pMicros >>> (powerOfTwo - kSubBucketBits)) & (kSubBuckets - 1);
+        return ((powerOfTwo - kSubBucketBits + 1) * kSubBuckets) + subBucket;
+    }
+
+    /**
+     * @return The smallest value, in microseconds, that is too large for pBucket
+     */
+    static long upperBound(int pBucket) {
+        if(pBucket == kBuckets - 1) {
+            // Also holds everything too long for the other buckets
+            return Long.MAX_VALUE;
+        }
+        if(pBucket < kSubBuckets) {
+            return pBucket + 1;
+        }
+        int powerOfTwo = (pBucket / kSubBuckets) + kSubBucketBits - 1;
+        int subBucket = pBucket % kSubBuckets;
+        long width = 1L << (powerOfTwo - kSubBucketBits);
+        return ((kSubBuckets + subBucket) * width) + width;
+    }
+
+}
@@ -0,0 +1,85 @@
+package us.ilite.common.lib.util;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes a mutable object from a single writer to any number of readers without the writer ever waiting.
+ *
+ * The writer edits the value in place inside a sequence lock.  Readers read optimistically and retry if a write
+ * happened while they were reading, so they never see a half-written value and never hold anything that would
+ * block the writer.  Each retry is counted as a contention.
+ *
+ * Readers should only pull plain fields or immutable objects out of the value.
+ */
+public class SeqLock<T> {
+
+    // A sequence lock - readers never acquire it, and only the writer ever takes the write lock
+    private final StampedLock mSequence = new StampedLock();
+    private final T mValue;
+
+    private volatile long mWrites = 0;
+    private final LongAdder mContentions = new LongAdder();
+
+    public SeqLock(T pValue) {
+        mValue = pValue;
+    }
+
+    /**
+     * Only call this from one thread.
+     * @param pWriter Updates the value in place
+     */
+    public void write(Consumer<T> pWriter) {
+        long stamp = mSequence.writeLock();
+        try {
+            pWriter.accept(mValue);
+        } finally {
+            mSequence.unlockWrite(stamp);
+        }
+        mWrites++;
+    }
+
+    /**
+     * @param pReader Pulls a field out of the value.  May be called more than once, so it shouldn't have side effects.
+     */
+    public double readDouble(ToDoubleFunction<T> pReader) {
+        while(true) {
+            long stamp = mSequence.tryOptimisticRead();
+            double result = pReader.applyAsDouble(mValue);
+            if(stamp != 0L && mSequence.validate(stamp)) {
+                return result;
+            }
+            mContentions.increment();
+        }
+    }
+
+    /**
+     * @param pReader Pulls a field or an immutable object out of the value.  May be called more than once, so it
+     *                shouldn't have side effects.
+     */
+    public <R> R read(Function<T, R> pReader) {
+        while(true) {
+            long stamp = mSequence.tryOptimisticRead();
+            R result = pReader.apply(mValue);
+            if(stamp != 0L && mSequence.validate(stamp)) {
+                return result;
+            }
+            mContentions.increment();
+        }
+    }
+
+    public long getWrites() {
+        return mWrites;
+    }
+
+    /**
+     * @return Reads that overlapped a write and had to be retried
+     */
+    public long getContentions() {
+        return mContentions.sum();
+    }
+
+}
@@ -0,0 +1,131 @@
+package us.ilite.common.lib.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A mailbox that hands the newest value of a mutable object from writers to a single reader without either side
+ * waiting on the other.
+ *
+ * Three copies of the value are pre-allocated.  The writer edits its own copy, copies it into the back buffer and
+ * swaps the back buffer with the middle one.  The reader swaps the middle buffer with its front buffer when there
+ * is a new value.  Both swaps are a single atomic exchange, so the reader never sees a half-written value and is
+ * never blocked, no matter what the writers are doing.
+ *
+ * Values that are written faster than they're read are coalesced - the reader only ever sees the newest one.
+ * Writers are serialized with each other, and are counted as contended if they had to wait for another writer.
+ */
+public class TripleBuffer<T> {
+
+    // The middle buffer's index, plus whether it holds a value the reader hasn't taken yet
+    private static final int kIndexMask = 0x3;
+    private static final int kFresh = 0x4;
+
+    private final Object[] mBuffers = new Object[3];
+    private final BiConsumer<T, T> mCopier;
+    private final AtomicInteger mMiddle = new AtomicInteger(1);
+
+    // Owned by whichever writer holds mWriteLock
+    private final ReentrantLock mWriteLock = new ReentrantLock();
+    private final T mLatest;
+    private int mBack = 0;
+
+    // Owned by the reader
+    private int mFront = 2;
+
+    private volatile long mWrites = 0;
+    private volatile long mReads = 0;
+    private volatile long mOverwrites = 0;
+    private volatile long mContentions = 0;
+
+    /**
+     * @param pFactory Creates each copy of the value.  All copies must start out equal.
+     * @param pCopier Copies the first argument into the second
+     */
+    public TripleBuffer(Supplier<T> pFactory, BiConsumer<T, T> pCopier) {
+        mCopier = pCopier;
+        mLatest = pFactory.get();
+        for(int i = 0; i < mBuffers.length; i++) {
+            mBuffers[i] = pFactory.get();
+        }
+    }
+
+    /**
+     * Edits the newest value written so far and publishes the result.  Safe to call from any thread.
+     * @param pEditor Changes the fields that need changing - every other field keeps its last written value
+     */
+    public void write(Consumer<T> pEditor) {
+        boolean contended = !mWriteLock.tryLock();
+        if(contended) {
+            mWriteLock.lock();
+        }
+        try {
+            if(contended) {
+                mContentions++;
+            }
+            pEditor.accept(mLatest);
+            mCopier.accept(mLatest, buffer(mBack));
+            int previous = mMiddle.getAndSet(mBack | kFresh);
+            if((previous & kFresh) != 0) {
+                mOverwrites++;
+            }
+            mBack = previous & kIndexMask;
+            mWrites++;
+        } finally {
+            mWriteLock.unlock();
+        }
+    }
+
+    /**
+     * Only call this from the reader's thread.
+     * @return The newest value.  It's only valid until the next call to read(), and must not be modified.
+     */
+    public T read() {
+        if((mMiddle.get() & kFresh) != 0) {
+            mFront = mMiddle.getAndSet(mFront) & kIndexMask;
+            mReads++;
+        }
+        return buffer(mFront);
+    }
+
+    /**
+     * @return Whether a value has been written since the last call to {@link #read()}
+     */
+    public boolean hasNew() {
+        return (mMiddle.get() & kFresh) != 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T buffer(int pIndex) {
+        return (T)mBuffers[pIndex];
+    }
+
+    public long getWrites() {
+        return mWrites;
+    }
+
+    /**
+     * @return Values the reader actually took
+     */
+    public long getReads() {
+        return mReads;
+    }
+
+    /**
+     * @return Values that were replaced by a newer one before the reader took them
+     */
+    public long getOverwrites() {
+        return mOverwrites;
+    }
+
+    /**
+     * @return Writes that had to wait for another writer
+     */
+    public long getContentions() {
+        return mContentions;
+    }
+
+}
@@ -0,0 +1,16 @@
+package us.ilite.common.types;
+
+import com.flybotix.hfr.codex.CodexOf;
+
+/**
+ * Execution time statistics of one module, in milliseconds, over the last
+ * <code>SystemSettings.kTimingReportPeriod</code>.
+ */
+public enum ETimingData implements CodexOf<Double> {
+    INPUT_P50, INPUT_P99, INPUT_MAX,
+    UPDATE_P50, UPDATE_P99, UPDATE_MAX,
+    LOOP_P50, LOOP_P99, LOOP_MAX,
+    CYCLES,
+    // Overruns where this module was the slowest, and cycles it was skipped to shed load
+    OVERRUNS, SHED_CYCLES;
+}
@@ -50,7 +50,7 @@ public enum EPowerDistPanel implements CodexOf<Double> {
    * This code takes about 5ms to execute.  If I try to split it to concurrently read the PDP,
    * it takes about 7.5ms.
    * 
-   * Longer-term, we should cut out the PDP current readings we don't need.
+   * The robot reads the PDP with a PdpSampler instead, on its own thread and only for the channels it needs.
    * @param pCodex PDP codex
    * @param pPDP PDP hardware
    */
@@ -88,10 +88,13 @@ public enum EPowerDistPanel implements CodexOf<Double> {
     pCodex.set(TEMPERATURE, pPDP.getTemperature());
   }
 
+  /**
+   * Slots that aren't set - e.g. because the last PDP sample was too old - don't count as limiting.
+   */
   public static boolean isAboveCurrentThreshold(double pCurrentThreshold, Codex<Double, EPowerDistPanel> pPdpCodex, EPowerDistPanel ... pPdpSlots) {
       boolean isCurrentLimiting = false;
       for(EPowerDistPanel slot : pPdpSlots) {
-        if(pPdpCodex.get(slot) >= pCurrentThreshold) isCurrentLimiting = true;
+        if(pPdpCodex.isSet(slot) && pPdpCodex.get(slot) >= pCurrentThreshold) isCurrentLimiting = true;
       }
 
       return isCurrentLimiting;
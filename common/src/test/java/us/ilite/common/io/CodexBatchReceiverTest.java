@@ -0,0 +1,58 @@
+package us.ilite.common.io;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CodexBatchReceiverTest {
+
+    private CodexBatchReceiver mReceiver;
+
+    @Before
+    public void setup() {
+        mReceiver = new CodexBatchReceiver(0);
+    }
+
+    @Test
+    public void testGapsAndReordering() {
+        assertTrue(mReceiver.receive(frame(1L, 0)));
+        assertTrue(mReceiver.receive(frame(1L, 3)));
+        assertEquals(2, mReceiver.getLostFrames());
+
+        // Frame 2 shows up late
+        assertFalse(mReceiver.receive(frame(1L, 2)));
+        assertEquals(1, mReceiver.getReorderedFrames());
+        assertEquals(1, mReceiver.getLostFrames());
+        assertEquals(2, mReceiver.getReceivedFrames());
+    }
+
+    @Test
+    public void testQuickRestartStartsNewSession() {
+        for(int i = 0; i < 50; i++) {
+            assertTrue(mReceiver.receive(frame(1L, i)));
+        }
+        // The robot code restarted a moment later, well within any sequence threshold
+        for(int i = 0; i < 10; i++) {
+            assertTrue(mReceiver.receive(frame(2L, i)));
+        }
+        assertEquals(60, mReceiver.getReceivedFrames());
+        assertEquals(0, mReceiver.getReorderedFrames());
+        assertEquals(0, mReceiver.getLostFrames());
+    }
+
+    private static ByteBuffer frame(long pSession, long pSequence) {
+        ByteBuffer frame = ByteBuffer.allocate(64);
+        frame.putInt(CodexBatchSender.MAGIC);
+        frame.putShort(CodexBatchSender.VERSION);
+        frame.putLong(pSession);
+        frame.putLong(pSequence);
+        frame.putDouble(pSequence * 0.02);
+        frame.putShort((short)0);
+        frame.flip();
+        return frame;
+    }
+
+}
@@ -0,0 +1,146 @@
+package us.ilite.common.io;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.StringWriter;
+
+import com.flybotix.hfr.codex.Codex;
+
+import org.junit.Test;
+
+import us.ilite.common.types.drive.EDriveData;
+
+public class CodexBinaryLoggerTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        roundTrip(false);
+    }
+
+    @Test
+    public void testCompressedRoundTrip() throws Exception {
+        roundTrip(true);
+    }
+
+    private void roundTrip(boolean pCompress) throws Exception {
+        File file = File.createTempFile("drive", "." + CodexBinaryLogger.EXTENSION);
+        file.deleteOnExit();
+
+        Codex<Double, EDriveData> drive = Codex.of.thisEnum(EDriveData.class);
+        CodexBinaryLogger<EDriveData> logger = new CodexBinaryLogger<>(drive, null, file, pCompress);
+        assertTrue(logger.writeHeader());
+
+        for(int i = 0; i < 10; i++) {
+            drive.reset();
+            drive.set(EDriveData.LEFT_POS_INCHES, (double)i);
+            drive.set(EDriveData.RIGHT_POS_INCHES, i * 0.5);
+            assertTrue(logger.writeLine());
+        }
+        logger.closeWriter();
+
+        try(CodexBinaryLogReader reader = new CodexBinaryLogReader(file)) {
+            assertEquals(EDriveData.class.getName(), reader.getEnumName());
+            assertEquals(EDriveData.values().length, reader.getFieldNames().length);
+
+            int rows = 0;
+            while(reader.next()) {
+                assertTrue(reader.isSet(EDriveData.LEFT_POS_INCHES.ordinal()));
+                assertFalse(reader.isSet(EDriveData.ODOM_X.ordinal()));
+                assertEquals(rows, reader.get(EDriveData.LEFT_POS_INCHES.ordinal()), 0.0);
+                assertEquals(rows * 0.5, reader.get(EDriveData.RIGHT_POS_INCHES.ordinal()), 0.0);
+                rows++;
+            }
+            assertEquals(10, rows);
+        }
+    }
+
+    @Test
+    public void testAppendCutsOffTornRow() throws Exception {
+        appendAfterTornRow(false);
+    }
+
+    @Test
+    public void testCompressedAppendCutsOffTornBlock() throws Exception {
+        appendAfterTornRow(true);
+    }
+
+    private void appendAfterTornRow(boolean pCompress) throws Exception {
+        File file = File.createTempFile("drive", "." + CodexBinaryLogger.EXTENSION);
+        file.deleteOnExit();
+        Codex<Double, EDriveData> drive = Codex.of.thisEnum(EDriveData.class);
+
+        writeRows(new CodexBinaryLogger<>(drive, null, file, pCompress), drive, 0, 5);
+        // The robot browned out part way through writing
+        try(FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11});
+        }
+        CodexBinaryLogger<EDriveData> logger = new CodexBinaryLogger<>(drive, null, file, pCompress);
+        writeRows(logger, drive, 5, 10);
+        assertEquals(file, logger.file());
+
+        try(CodexBinaryLogReader reader = new CodexBinaryLogReader(file)) {
+            int rows = 0;
+            while(reader.next()) {
+                assertEquals(rows, reader.get(EDriveData.LEFT_POS_INCHES.ordinal()), 0.0);
+                rows++;
+            }
+            assertEquals(10, rows);
+        }
+    }
+
+    @Test
+    public void testDifferentFormatStartsNewFile() throws Exception {
+        File file = File.createTempFile("drive", "." + CodexBinaryLogger.EXTENSION);
+        file.deleteOnExit();
+        Codex<Double, EDriveData> drive = Codex.of.thisEnum(EDriveData.class);
+
+        writeRows(new CodexBinaryLogger<>(drive, null, file, true), drive, 0, 5);
+        long length = file.length();
+        CodexBinaryLogger<EDriveData> logger = new CodexBinaryLogger<>(drive, null, file, false);
+        writeRows(logger, drive, 5, 10);
+        logger.file().deleteOnExit();
+
+        assertNotEquals(file, logger.file());
+        assertEquals(length, file.length());
+        try(CodexBinaryLogReader reader = new CodexBinaryLogReader(logger.file())) {
+            int rows = 0;
+            while(reader.next()) rows++;
+            assertEquals(5, rows);
+        }
+    }
+
+    private static void writeRows(CodexBinaryLogger<EDriveData> pLogger, Codex<Double, EDriveData> pDrive, int pFrom, int pTo) {
+        assertTrue(pLogger.writeHeader());
+        for(int i = pFrom; i < pTo; i++) {
+            pDrive.reset();
+            pDrive.set(EDriveData.LEFT_POS_INCHES, (double)i);
+            assertTrue(pLogger.writeLine());
+        }
+        pLogger.closeWriter();
+    }
+
+    @Test
+    public void testCsvExport() throws Exception {
+        File file = File.createTempFile("drive", "." + CodexBinaryLogger.EXTENSION);
+        file.deleteOnExit();
+
+        Codex<Double, EDriveData> drive = Codex.of.thisEnum(EDriveData.class);
+        CodexBinaryLogger<EDriveData> logger = new CodexBinaryLogger<>(drive, null, file);
+        logger.writeHeader();
+        drive.set(EDriveData.LEFT_POS_INCHES, 1.0);
+        logger.writeLine();
+        logger.closeWriter();
+
+        StringWriter csv = new StringWriter();
+        try(CodexBinaryLogReader reader = new CodexBinaryLogReader(file)) {
+            assertEquals(1, CodexLogExporter.export(reader, csv));
+        }
+        String[] lines = csv.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("GLOBAL_ID,TIME," + EDriveData.LEFT_POS_INCHES.name()));
+        assertEquals(EDriveData.values().length + 2, lines[1].split(",", -1).length);
+    }
+
+}
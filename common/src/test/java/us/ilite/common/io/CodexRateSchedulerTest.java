@@ -0,0 +1,58 @@
+package us.ilite.common.io;
+
+import static org.junit.Assert.*;
+
+import com.flybotix.hfr.codex.Codex;
+
+import org.junit.Test;
+
+import us.ilite.common.types.drive.EDriveData;
+
+public class CodexRateSchedulerTest {
+
+    @Test
+    public void testFixedRates() {
+        Codex<Double, EDriveData> fast = Codex.of.thisEnum(EDriveData.class);
+        Codex<Double, EDriveData> slow = Codex.of.thisEnum(EDriveData.class);
+        Codex<Double, EDriveData> never = Codex.of.thisEnum(EDriveData.class);
+        Codex<Double, EDriveData> unscheduled = Codex.of.thisEnum(EDriveData.class);
+        CodexRateScheduler scheduler = new CodexRateScheduler();
+        scheduler.setRate(fast, 100.0);
+        scheduler.setRate(slow, 5.0);
+        scheduler.setRate(never, CodexRateScheduler.kNever);
+
+        int fastCount = 0, slowCount = 0, neverCount = 0, unscheduledCount = 0;
+        for(int i = 0; i < 1000; i++) {
+            // 100hz loop with up to 1ms of jitter
+            double now = (i * 0.01) + ((i % 3) - 1) * 0.001;
+            if(scheduler.isDue(fast, now)) fastCount++;
+            if(scheduler.isDue(slow, now)) slowCount++;
+            if(scheduler.isDue(never, now)) neverCount++;
+            if(scheduler.isDue(unscheduled, now)) unscheduledCount++;
+        }
+        assertEquals(1000, fastCount);
+        // 10 seconds at 5hz, plus the first cycle
+        assertEquals(51, slowCount, 1);
+        assertEquals(0, neverCount);
+        assertEquals(1000, unscheduledCount);
+    }
+
+    @Test
+    public void testOnChange() {
+        Codex<Double, EDriveData> drive = Codex.of.thisEnum(EDriveData.class);
+        CodexRateScheduler scheduler = new CodexRateScheduler();
+        scheduler.setRate(drive, CodexRateScheduler.kOnChange);
+
+        drive.set(EDriveData.LEFT_POS_INCHES, 1.0);
+        assertTrue(scheduler.isDue(drive, 0.0));
+        assertFalse(scheduler.isDue(drive, 0.01));
+
+        drive.set(EDriveData.LEFT_POS_INCHES, 2.0);
+        assertTrue(scheduler.isDue(drive, 0.02));
+        assertFalse(scheduler.isDue(drive, 0.03));
+
+        drive.set(EDriveData.LEFT_POS_INCHES, null);
+        assertTrue(scheduler.isDue(drive, 0.04));
+    }
+
+}
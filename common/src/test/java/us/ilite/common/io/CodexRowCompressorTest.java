@@ -0,0 +1,90 @@
+package us.ilite.common.io;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CodexRowCompressorTest {
+
+    private static final int kFields = 70;
+    private static final int kMaskWords = CodexRow.maskWords(kFields);
+
+    @Test
+    public void testRoundTrip() {
+        Random random = new Random(49);
+        int rows = 500;
+        double[] timestamps = new double[rows];
+        long[] masks = new long[rows * kMaskWords];
+        double[] values = new double[rows * kFields];
+
+        double time = 12.0;
+        for(int r = 0; r < rows; r++) {
+            // Mostly periodic, with the occasional big gap
+            time += r % 100 == 0 ? 1.5 : 0.01 + (random.nextInt(100) / 1e6);
+            timestamps[r] = time;
+            for(int i = 0; i < kFields; i++) {
+                double value;
+                switch(i % 7) {
+                    case 0: value = 4.0; break;
+                    case 1: value = r * 0.25; break;
+                    case 2: value = random.nextGaussian(); break;
+                    case 3: value = r % 50 == 0 ? Double.NaN : -r; break;
+                    case 4: value = r % 2 == 0 ? Double.POSITIVE_INFINITY : -0.0; break;
+                    case 5: value = Double.longBitsToDouble(random.nextLong()); break;
+                    default: value = Double.NaN;
+                }
+                values[(r * kFields) + i] = value;
+                if(!Double.isNaN(value)) {
+                    masks[(r * kMaskWords) + (i >>> 6)] |= 1L << (i & 63);
+                }
+            }
+        }
+
+        // A small block size forces several blocks
+        CodexRowCompressor compressor = new CodexRowCompressor(kFields, kMaskWords, 4096);
+        CodexRowDecompressor decompressor = new CodexRowDecompressor(kFields, kMaskWords);
+        long[] mask = new long[kMaskWords];
+        double[] row = new double[kFields];
+        int decoded = 0;
+        int blocks = 0;
+        for(int r = 0; r <= rows; r++) {
+            if(r == rows || !compressor.hasRoomForRow()) {
+                decompressor.reset(compressor.array().clone(), compressor.byteLength(), compressor.rowCount());
+                while(decompressor.hasNext()) {
+                    double timestamp = decompressor.decompress(mask, 0, row, 0);
+                    assertEquals(timestamps[decoded], timestamp, 1e-6);
+                    for(int w = 0; w < kMaskWords; w++) {
+                        assertEquals(masks[(decoded * kMaskWords) + w], mask[w]);
+                    }
+                    for(int i = 0; i < kFields; i++) {
+                        assertEquals(Double.doubleToRawLongBits(values[(decoded * kFields) + i]), Double.doubleToRawLongBits(row[i]));
+                    }
+                    decoded++;
+                }
+                compressor.reset();
+                blocks++;
+            }
+            if(r < rows) {
+                compressor.compress(timestamps[r], masks, r * kMaskWords, values, r * kFields);
+            }
+        }
+        assertEquals(rows, decoded);
+        assertTrue(blocks > 1);
+    }
+
+    @Test
+    public void testUnchangedRowsAreSmall() {
+        CodexRowCompressor compressor = new CodexRowCompressor(kFields, kMaskWords, 64 * 1024);
+        long[] mask = new long[kMaskWords];
+        double[] row = new double[kFields];
+        for(int r = 0; r < 100; r++) {
+            compressor.compress(r * 0.01, mask, 0, row, 0);
+        }
+        int first = CodexRowCompressor.worstCaseRowBytes(kFields, kMaskWords);
+        // Every row after the first should take one bit for the timestamp, mask words and each field
+        assertTrue(compressor.byteLength() < first + (99 * (1 + kMaskWords + kFields) / 8) + 1);
+    }
+
+}
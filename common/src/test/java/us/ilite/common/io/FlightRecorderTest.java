@@ -0,0 +1,96 @@
+package us.ilite.common.io;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import com.flybotix.hfr.codex.Codex;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import us.ilite.common.types.drive.EDriveData;
+
+public class FlightRecorderTest {
+
+    private File mFile;
+    private File mDumpFolder;
+    private Codex<Double, EDriveData> mDrive;
+
+    @Before
+    public void setup() throws Exception {
+        File folder = Files.createTempDirectory("flight").toFile();
+        folder.deleteOnExit();
+        mFile = new File(folder, "flight_recorder.bin");
+        mFile.deleteOnExit();
+        mDumpFolder = new File(folder, "dumps");
+        mDrive = Codex.of.thisEnum(EDriveData.class);
+    }
+
+    @Test
+    public void testUnsavedRowsAreDumpedOnNextBoot() throws Exception {
+        record(boot());
+        boot();
+        assertEquals(1, previousBootDumps());
+
+        // The rows were dumped and nothing was recorded since, so they aren't dumped again
+        deleteDumps();
+        boot();
+        assertEquals(0, previousBootDumps());
+    }
+
+    @Test
+    public void testDumpedRowsAreNotDumpedOnNextBoot() throws Exception {
+        FlightRecorder recorder = boot();
+        record(recorder);
+        recorder.dumpAsync(FlightRecorder.ETrigger.DISABLED);
+        while(recorder.isFrozen()) {
+            Thread.sleep(1);
+        }
+        boot();
+        assertEquals(0, previousBootDumps());
+    }
+
+    @Test
+    public void testFrozenRecorderIsDumpedOnNextBoot() throws Exception {
+        FlightRecorder recorder = boot();
+        record(recorder);
+        recorder.freeze(FlightRecorder.ETrigger.BROWNOUT);
+        boot();
+        assertEquals(1, previousBootDumps());
+    }
+
+    @Test
+    public void testEmptyRunIsNotDumped() throws Exception {
+        boot();
+        boot();
+        assertEquals(0, previousBootDumps());
+    }
+
+    private FlightRecorder boot() throws Exception {
+        return new FlightRecorder(mFile, mDumpFolder, 0, 64, mDrive);
+    }
+
+    private void record(FlightRecorder pRecorder) {
+        for(int i = 0; i < 10; i++) {
+            mDrive.set(EDriveData.LEFT_POS_INCHES, (double)i);
+            pRecorder.record(mDrive);
+        }
+    }
+
+    private void deleteDumps() {
+        for(File dump : mDumpFolder.listFiles()) {
+            for(File file : dump.listFiles()) {
+                file.delete();
+            }
+            dump.delete();
+        }
+    }
+
+    private int previousBootDumps() {
+        File[] dumps = mDumpFolder.listFiles(file -> file.getName().endsWith(FlightRecorder.ETrigger.PREVIOUS_BOOT.name()));
+        return dumps == null ? 0 : dumps.length;
+    }
+
+}
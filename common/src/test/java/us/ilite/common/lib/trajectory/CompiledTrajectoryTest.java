@@ -0,0 +1,154 @@
+package us.ilite.common.lib.trajectory;
+
+import com.team254.frc2018.planners.DriveMotionPlanner;
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.geometry.Rotation2d;
+import com.team254.lib.physics.DriveOutput;
+import com.team254.lib.trajectory.TimedView;
+import com.team254.lib.trajectory.Trajectory;
+import com.team254.lib.trajectory.TrajectoryIterator;
+import com.team254.lib.trajectory.timing.CentripetalAccelerationConstraint;
+import com.team254.lib.trajectory.timing.TimedState;
+import org.junit.Test;
+import us.ilite.common.lib.control.DriveController;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CompiledTrajectoryTest {
+
+    private static final double kDt = 0.01;
+    private static final double kEpsilon = 1e-9;
+
+    private Trajectory<TimedState<Pose2dWithCurvature>> mTrajectory;
+
+    private void setup(boolean pReversed) {
+        // Not resampled, so the sampler has to search for states
+        TrajectoryGenerator generator = new TrajectoryGenerator(new DriveController(new TestProfile()), 0.0);
+        mTrajectory = generator.generateTrajectory(pReversed, Arrays.asList(
+                new Pose2d(0.0, 0.0, Rotation2d.fromDegrees(0.0)),
+                new Pose2d(120.0, 48.0, Rotation2d.fromDegrees(60.0))),
+                new TrajectoryConstraints(100.0, 40.0, 12.0, new CentripetalAccelerationConstraint(20.0)));
+    }
+
+    private static void assertMatches(TimedState<Pose2dWithCurvature> pExpected, TrajectorySample pActual) {
+        Pose2d pose = pExpected.state().getPose();
+        assertEquals(pExpected.t(), pActual.getT(), kEpsilon);
+        assertEquals(pose.getTranslation().x(), pActual.getX(), kEpsilon);
+        assertEquals(pose.getTranslation().y(), pActual.getY(), kEpsilon);
+        assertEquals(pose.getRotation().cos(), pActual.getCos(), kEpsilon);
+        assertEquals(pose.getRotation().sin(), pActual.getSin(), kEpsilon);
+        assertEquals(pExpected.state().getCurvature(), pActual.getCurvature(), kEpsilon);
+        assertEquals(pExpected.state().getDCurvatureDs(), pActual.getDCurvatureDs(), kEpsilon);
+        assertEquals(pExpected.velocity(), pActual.getVelocity(), kEpsilon);
+        assertEquals(pExpected.acceleration(), pActual.getAcceleration(), kEpsilon);
+    }
+
+    private static void assertMatches(DriveOutput pExpected, DriveOutput pActual) {
+        assertEquals(pExpected.left_velocity, pActual.left_velocity, kEpsilon);
+        assertEquals(pExpected.right_velocity, pActual.right_velocity, kEpsilon);
+        assertEquals(pExpected.left_accel, pActual.left_accel, kEpsilon);
+        assertEquals(pExpected.right_accel, pActual.right_accel, kEpsilon);
+        assertEquals(pExpected.left_feedforward_voltage, pActual.left_feedforward_voltage, kEpsilon);
+        assertEquals(pExpected.right_feedforward_voltage, pActual.right_feedforward_voltage, kEpsilon);
+    }
+
+    private void testSamplerMatchesIterator(boolean pReversed) {
+        setup(pReversed);
+        CompiledTrajectory compiled = CompiledTrajectory.compile(mTrajectory);
+        assertEquals(pReversed, compiled.isReversed());
+
+        TrajectoryIterator<TimedState<Pose2dWithCurvature>> iterator = new TrajectoryIterator<>(new TimedView<>(mTrajectory));
+        TrajectorySampler sampler = new TrajectorySampler(compiled);
+        TrajectorySample sample = new TrajectorySample();
+        while(!iterator.isDone()) {
+            TimedState<Pose2dWithCurvature> expected = iterator.advance(kDt).state();
+            sampler.advance(kDt, sample);
+            assertMatches(expected, sample);
+            assertEquals(iterator.isDone(), sampler.isDone());
+        }
+    }
+
+    @Test
+    public void testSamplerMatchesIterator() {
+        testSamplerMatchesIterator(false);
+        testSamplerMatchesIterator(true);
+    }
+
+    @Test
+    public void testSamplingBackwards() {
+        setup(false);
+        TimedView<Pose2dWithCurvature> view = new TimedView<>(mTrajectory);
+        TrajectorySampler sampler = new TrajectorySampler(CompiledTrajectory.compile(mTrajectory));
+        TrajectorySample sample = new TrajectorySample();
+        for(double t = view.last_interpolant() + 0.5; t > -0.5; t -= 0.037) {
+            sampler.sample(t, sample);
+            assertMatches(view.sample(t).state(), sample);
+        }
+    }
+
+    private void testPlannerMatchesIterator(DriveMotionPlanner.PlannerMode pMode) {
+        setup(false);
+        DriveMotionPlanner iteratorPlanner = new DriveController(new TestProfile()).setPlannerMode(pMode).getDriveMotionPlanner();
+        DriveMotionPlanner compiledPlanner = new DriveController(new TestProfile()).setPlannerMode(pMode).getDriveMotionPlanner();
+        iteratorPlanner.setTrajectory(new TrajectoryIterator<>(new TimedView<>(mTrajectory)));
+        compiledPlanner.setTrajectory(CompiledTrajectory.compile(mTrajectory), false);
+
+        // Trail the setpoint a little, so feedback has something to correct
+        Pose2d pose = mTrajectory.getFirstState().state().getPose();
+        for(double t = 0.0; !iteratorPlanner.isDone(); t += kDt) {
+            DriveOutput expected = iteratorPlanner.update(t, pose);
+            DriveOutput actual = compiledPlanner.update(t, pose);
+            assertMatches(expected, actual);
+            assertEquals(iteratorPlanner.isDone(), compiledPlanner.isDone());
+            assertEquals(iteratorPlanner.error().getTranslation().x(), compiledPlanner.error().getTranslation().x(), kEpsilon);
+            assertEquals(iteratorPlanner.errorY(), compiledPlanner.errorY(), kEpsilon);
+            assertEquals(iteratorPlanner.error().getRotation().getDegrees(), compiledPlanner.error().getRotation().getDegrees(), kEpsilon);
+            assertEquals(iteratorPlanner.setpoint().t(), compiledPlanner.setpoint().t(), kEpsilon);
+            pose = pose.interpolate(iteratorPlanner.setpoint().state().getPose(), 0.9);
+        }
+    }
+
+    @Test
+    public void testPlannerMatchesIterator() {
+        testPlannerMatchesIterator(DriveMotionPlanner.PlannerMode.FEEDFORWARD_ONLY);
+        testPlannerMatchesIterator(DriveMotionPlanner.PlannerMode.FEEDBACK);
+    }
+
+    private void testPlannerDoesNotAllocate(DriveMotionPlanner.PlannerMode pMode) {
+        if(!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        setup(false);
+        DriveMotionPlanner planner = new DriveController(new TestProfile()).setPlannerMode(pMode).getDriveMotionPlanner();
+        CompiledTrajectory compiled = CompiledTrajectory.compile(mTrajectory);
+        Pose2d pose = mTrajectory.getFirstState().state().getPose();
+        double end = compiled.getEndTime();
+
+        planner.setTrajectory(compiled, false);
+        planner.update(0.0, pose);
+        long before = threads.getThreadAllocatedBytes(thread);
+        double error = 0.0;
+        for(double t = kDt; t < end; t += kDt) {
+            planner.update(t, pose);
+            // Read the way Drive publishes it
+            error += planner.errorX() + planner.errorY() + planner.errorCos() + planner.errorSin();
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertEquals(pMode.toString(), 0, allocated);
+        assertTrue(Double.isFinite(error));
+    }
+
+    @Test
+    public void testPlannerDoesNotAllocate() {
+        testPlannerDoesNotAllocate(DriveMotionPlanner.PlannerMode.FEEDFORWARD_ONLY);
+        testPlannerDoesNotAllocate(DriveMotionPlanner.PlannerMode.FEEDBACK);
+    }
+
+}
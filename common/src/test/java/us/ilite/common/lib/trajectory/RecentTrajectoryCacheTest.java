@@ -0,0 +1,82 @@
+package us.ilite.common.lib.trajectory;
+
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.geometry.Rotation2d;
+import com.team254.lib.trajectory.Trajectory;
+import com.team254.lib.trajectory.timing.CentripetalAccelerationConstraint;
+import com.team254.lib.trajectory.timing.TimedState;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RecentTrajectoryCacheTest {
+
+    private static final TrajectoryConstraints kConstraints = new TrajectoryConstraints(100.0, 40.0, 12.0,
+            new CentripetalAccelerationConstraint(20.0));
+
+    private RecentTrajectoryCache mCache;
+
+    @Before
+    public void setup() {
+        mCache = new RecentTrajectoryCache(2, 0.5, 0.5, 0.5);
+    }
+
+    private long key(double pX, double pHeadingDegrees, TrajectoryConstraints pConstraints) {
+        List<Pose2d> waypoints = Arrays.asList(
+                new Pose2d(0.0, 0.0, Rotation2d.fromDegrees(0.0)),
+                new Pose2d(pX, 24.0, Rotation2d.fromDegrees(pHeadingDegrees)));
+        return mCache.key(false, waypoints, 0.0, 0.0, pConstraints, 0L);
+    }
+
+    private static Trajectory<TimedState<Pose2dWithCurvature>> trajectory() {
+        return new Trajectory<>();
+    }
+
+    @Test
+    public void testNearbyRequestsShareKey() {
+        assertEquals(key(100.0, 30.0, kConstraints), key(100.1, 30.1, kConstraints));
+        assertNotEquals(key(100.0, 30.0, kConstraints), key(101.0, 30.0, kConstraints));
+        assertNotEquals(key(100.0, 30.0, kConstraints), key(100.0, 31.0, kConstraints));
+        assertNotEquals(key(100.0, 30.0, kConstraints), key(100.0, 30.0, new TrajectoryConstraints(100.0, 40.0, 12.0,
+                new CentripetalAccelerationConstraint(25.0))));
+    }
+
+    @Test
+    public void testHeadingsWrap() {
+        assertEquals(key(100.0, 180.0, kConstraints), key(100.0, -180.0, kConstraints));
+        assertEquals(key(100.0, 179.9, kConstraints), key(100.0, -179.9, kConstraints));
+
+        RecentTrajectoryCache exact = new RecentTrajectoryCache(2, 0.0, 0.0, 0.0);
+        assertEquals(exact.key(false, Arrays.asList(new Pose2d(0.0, 0.0, Rotation2d.fromDegrees(180.0))), 0.0, 0.0, kConstraints, 0L),
+                exact.key(false, Arrays.asList(new Pose2d(0.0, 0.0, Rotation2d.fromDegrees(-180.0))), 0.0, 0.0, kConstraints, 0L));
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        Trajectory<TimedState<Pose2dWithCurvature>> trajectory = trajectory();
+        assertNull(mCache.get(1L));
+        mCache.put(1L, trajectory);
+        assertSame(trajectory, mCache.get(1L));
+        assertEquals(1, mCache.getHits());
+        assertEquals(1, mCache.getMisses());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        mCache.put(1L, trajectory());
+        mCache.put(2L, trajectory());
+        mCache.get(1L);
+        mCache.put(3L, trajectory());
+
+        assertEquals(2, mCache.size());
+        assertNotNull(mCache.get(1L));
+        assertNull(mCache.get(2L));
+        assertNotNull(mCache.get(3L));
+    }
+
+}
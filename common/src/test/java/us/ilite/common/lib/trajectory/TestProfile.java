@@ -0,0 +1,21 @@
+package us.ilite.common.lib.trajectory;
+
+import us.ilite.common.lib.RobotProfile;
+
+/**
+ * A robot profile for tests that generate trajectories
+ */
+class TestProfile implements RobotProfile {
+    public double getLeftVoltPerAccel() { return 0.0115; }
+    public double getLeftVoltPerSpeed() { return 0.247; }
+    public double getLeftFrictionVoltage() { return 0.61; }
+    public double getRightVoltPerAccel() { return 0.0132; }
+    public double getRightVoltPerSpeed() { return 0.266; }
+    public double getRightFrictionVoltage() { return 0.447; }
+    public double getWheelRadiusMeters() { return 0.0762; }
+    public double getWheelbaseRadiusMeters() { return 0.295; }
+    public double getWheelbaseScrubFactor() { return 1.0; }
+    public double getLinearInertia() { return 45.35; }
+    public double getAngularInertia() { return 1.0; }
+    public double getAngularDrag() { return 0.0; }
+}
@@ -0,0 +1,108 @@
+package us.ilite.common.lib.trajectory;
+
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.geometry.Rotation2d;
+import com.team254.lib.geometry.Translation2d;
+import com.team254.lib.trajectory.Trajectory;
+import com.team254.lib.trajectory.timing.CentripetalAccelerationConstraint;
+import com.team254.lib.trajectory.timing.TimedState;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TrajectoryCacheTest {
+
+    private static final List<Pose2d> kWaypoints = Arrays.asList(
+            new Pose2d(new Translation2d(0.0, 0.0), Rotation2d.fromDegrees(0.0)),
+            new Pose2d(new Translation2d(100.0, 50.0), Rotation2d.fromDegrees(45.0))
+    );
+
+    private static Trajectory<TimedState<Pose2dWithCurvature>> trajectory(int pStates) {
+        List<TimedState<Pose2dWithCurvature>> states = new ArrayList<>();
+        for(int i = 0; i < pStates; i++) {
+            Pose2d pose = new Pose2d(new Translation2d(i, 2.0 * i), Rotation2d.fromDegrees(10.0 * i));
+            states.add(new TimedState<>(new Pose2dWithCurvature(pose, 0.1 * i, -0.01 * i), 0.02 * i, 3.0 * i, -1.5));
+        }
+        return new Trajectory<>(states);
+    }
+
+    private static long hash(List<Pose2d> pWaypoints, TrajectoryConstraints pConstraints) {
+        return new TrajectoryHash().add(false).add(pWaypoints).add(0.0).add(0.0).add(pConstraints).get();
+    }
+
+    private static TrajectoryConstraints constraints(double pCentripetalAcceleration) {
+        return new TrajectoryConstraints(100.0, 40.0, 12.0, new CentripetalAccelerationConstraint(pCentripetalAcceleration));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Map<Long, Trajectory<TimedState<Pose2dWithCurvature>>> trajectories = new LinkedHashMap<>();
+        trajectories.put(1L, trajectory(5));
+        trajectories.put(-7L, trajectory(12));
+
+        File file = File.createTempFile("trajectories", ".bin");
+        file.deleteOnExit();
+        TrajectoryCache.write(file, trajectories);
+        TrajectoryCache cache = TrajectoryCache.load(file);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get(2L));
+        Trajectory<TimedState<Pose2dWithCurvature>> expected = trajectories.get(-7L);
+        Trajectory<TimedState<Pose2dWithCurvature>> actual = cache.get(-7L);
+        assertEquals(expected.length(), actual.length());
+        for(int i = 0; i < expected.length(); i++) {
+            TimedState<Pose2dWithCurvature> e = expected.getState(i);
+            TimedState<Pose2dWithCurvature> a = actual.getState(i);
+            assertEquals(e.state().getTranslation().x(), a.state().getTranslation().x(), 0.0);
+            assertEquals(e.state().getTranslation().y(), a.state().getTranslation().y(), 0.0);
+            assertEquals(e.state().getRotation().getDegrees(), a.state().getRotation().getDegrees(), 1e-9);
+            assertEquals(e.state().getCurvature(), a.state().getCurvature(), 0.0);
+            assertEquals(e.state().getDCurvatureDs(), a.state().getDCurvatureDs(), 0.0);
+            assertEquals(e.t(), a.t(), 0.0);
+            assertEquals(e.velocity(), a.velocity(), 0.0);
+            assertEquals(e.acceleration(), a.acceleration(), 0.0);
+        }
+    }
+
+    @Test
+    public void testMissingFileIsEmpty() {
+        TrajectoryCache cache = TrajectoryCache.load(new File("does/not/exist/trajectories.bin"));
+        assertEquals(0, cache.size());
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    public void testHashChangesWithInputs() {
+        long hash = hash(kWaypoints, constraints(20.0));
+        assertEquals(hash, hash(new ArrayList<>(kWaypoints), constraints(20.0)));
+        assertNotEquals(hash, hash(kWaypoints, constraints(25.0)));
+
+        List<Pose2d> moved = new ArrayList<>(kWaypoints);
+        moved.set(1, new Pose2d(new Translation2d(100.0, 51.0), Rotation2d.fromDegrees(45.0)));
+        assertNotEquals(hash, hash(moved, constraints(20.0)));
+    }
+
+    @Test
+    public void testHeadingHashIgnoresRounding() {
+        Rotation2d heading = Rotation2d.fromDegrees(45.0);
+        // One ulp off, as the cos and sin can be on another JVM
+        Rotation2d rounded = new Rotation2d(Math.nextUp(heading.cos()), Math.nextDown(heading.sin()), false);
+        assertEquals(new TrajectoryHash().add(new Pose2d(new Translation2d(1.0, 2.0), heading)).get(),
+                new TrajectoryHash().add(new Pose2d(new Translation2d(1.0, 2.0), rounded)).get());
+
+        assertEquals(new TrajectoryHash().add(new Pose2d(new Translation2d(), Rotation2d.fromDegrees(180.0))).get(),
+                new TrajectoryHash().add(new Pose2d(new Translation2d(), Rotation2d.fromDegrees(-180.0))).get());
+        assertNotEquals(new TrajectoryHash().add(new Pose2d(new Translation2d(), Rotation2d.fromDegrees(45.0))).get(),
+                new TrajectoryHash().add(new Pose2d(new Translation2d(), Rotation2d.fromDegrees(45.01))).get());
+    }
+
+}
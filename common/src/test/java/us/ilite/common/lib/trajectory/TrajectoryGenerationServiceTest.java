@@ -0,0 +1,64 @@
+package us.ilite.common.lib.trajectory;
+
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.geometry.Rotation2d;
+import com.team254.lib.trajectory.Trajectory;
+import com.team254.lib.trajectory.timing.CentripetalAccelerationConstraint;
+import com.team254.lib.trajectory.timing.TimedState;
+import org.junit.Before;
+import org.junit.Test;
+import us.ilite.common.lib.control.DriveController;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class TrajectoryGenerationServiceTest {
+
+    private static final TrajectoryConstraints kConstraints = new TrajectoryConstraints(100.0, 40.0, 12.0,
+            new CentripetalAccelerationConstraint(20.0));
+
+    private TrajectoryGenerationService mService;
+
+    @Before
+    public void setup() {
+        mService = new TrajectoryGenerationService(new TrajectoryGenerator(new DriveController(new TestProfile())), 2);
+    }
+
+    private static List<Pose2d> path(double pEndX) {
+        return Arrays.asList(
+                new Pose2d(0.0, 0.0, Rotation2d.fromDegrees(0.0)),
+                new Pose2d(pEndX, 36.0, Rotation2d.fromDegrees(45.0)));
+    }
+
+    @Test
+    public void testMatchesSequentialGeneration() {
+        List<CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>>> futures = new ArrayList<>();
+        for(int i = 0; i < 4; i++) {
+            futures.add(mService.submit(i % 2 == 0, path(60.0 + 20.0 * i), kConstraints));
+        }
+        TrajectoryGenerationService.allOf(futures).join();
+
+        TrajectoryGenerator sequential = new TrajectoryGenerator(new DriveController(new TestProfile()));
+        for(int i = 0; i < 4; i++) {
+            Trajectory<TimedState<Pose2dWithCurvature>> expected = sequential.generateTrajectory(i % 2 == 0, path(60.0 + 20.0 * i), kConstraints);
+            Trajectory<TimedState<Pose2dWithCurvature>> actual = futures.get(i).join();
+            assertEquals(expected.length(), actual.length());
+            assertEquals(expected.getLastState().t(), actual.getLastState().t(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testDuplicateRequestsAreGeneratedOnce() {
+        CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>> first = mService.submit(false, path(100.0), kConstraints);
+        CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>> second = mService.submit(false, path(100.0), kConstraints);
+
+        assertSame(first.join(), second.join());
+        assertEquals(1, mService.getGenerator().getRecentTrajectories().getMisses());
+    }
+
+}
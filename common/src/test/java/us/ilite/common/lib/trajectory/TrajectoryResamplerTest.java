@@ -0,0 +1,94 @@
+package us.ilite.common.lib.trajectory;
+
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.geometry.Rotation2d;
+import com.team254.lib.trajectory.TimedView;
+import com.team254.lib.trajectory.Trajectory;
+import com.team254.lib.trajectory.timing.CentripetalAccelerationConstraint;
+import com.team254.lib.trajectory.timing.TimedState;
+import org.junit.Test;
+import us.ilite.common.config.SystemSettings;
+import us.ilite.common.lib.control.DriveController;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TrajectoryResamplerTest {
+
+    private static final double kStep = 0.01;
+    private static final double kEpsilon = 1e-9;
+    private static final TrajectoryConstraints kConstraints = new TrajectoryConstraints(100.0, 40.0, 12.0,
+            new CentripetalAccelerationConstraint(20.0));
+    private static final List<Pose2d> kPath = Arrays.asList(
+            new Pose2d(0.0, 0.0, Rotation2d.fromDegrees(0.0)),
+            new Pose2d(100.0, -40.0, Rotation2d.fromDegrees(-30.0)),
+            new Pose2d(200.0, 20.0, Rotation2d.fromDegrees(45.0)));
+
+    private Trajectory<TimedState<Pose2dWithCurvature>> mTrajectory;
+    private Trajectory<TimedState<Pose2dWithCurvature>> mResampled;
+
+    private void setup(boolean pReversed) {
+        TrajectoryGenerator generator = new TrajectoryGenerator(new DriveController(new TestProfile()), 0.0);
+        mTrajectory = generator.generateTrajectory(pReversed, kPath, kConstraints);
+        mResampled = TrajectoryResampler.resample(mTrajectory, kStep);
+    }
+
+    @Test
+    public void testResampledWithinBounds() {
+        for(boolean reversed : new boolean[] {false, true}) {
+            setup(reversed);
+            CompiledTrajectory compiled = CompiledTrajectory.compile(mResampled);
+            assertTrue(compiled.isUniform());
+            assertEquals(kStep, compiled.getStep(), kEpsilon);
+            assertEquals(reversed, compiled.isReversed());
+            assertEquals(mTrajectory.getFirstState().t(), mResampled.getFirstState().t(), kEpsilon);
+            assertEquals(mTrajectory.getLastState().t(), mResampled.getLastState().t(), kEpsilon);
+            assertEquals(mTrajectory.getLastState().state().getTranslation().x(),
+                    mResampled.getLastState().state().getTranslation().x(), kEpsilon);
+
+            TrajectoryResampler.ResampleError error = TrajectoryResampler.measure(mTrajectory, mResampled, kStep / 10.0);
+            assertTrue(error.toString(), error.getMaxPositionError() < SystemSettings.kTrajectoryResampleMaxPositionError);
+            assertTrue(error.toString(), error.getMaxHeadingError() < SystemSettings.kTrajectoryResampleMaxHeadingError);
+            assertTrue(error.toString(), error.getMaxVelocityError() < SystemSettings.kTrajectoryResampleMaxVelocityError);
+        }
+    }
+
+    @Test
+    public void testIndexedSamplingMatchesTimedView() {
+        setup(false);
+        TimedView<Pose2dWithCurvature> view = new TimedView<>(mResampled);
+        TrajectorySampler sampler = new TrajectorySampler(CompiledTrajectory.compile(mResampled));
+        TrajectorySample sample = new TrajectorySample();
+        Random random = new Random(1234);
+        for(int i = 0; i < 1000; i++) {
+            // Every other time lands exactly on a state, where rounding could pick the wrong neighbour
+            double t = i % 2 == 0 ? random.nextDouble() * (view.last_interpolant() + 1.0) - 0.5 :
+                    mResampled.getState(random.nextInt(mResampled.length())).t();
+            TimedState<Pose2dWithCurvature> expected = view.sample(t).state();
+            sampler.sample(t, sample);
+            assertEquals(expected.t(), sample.getT(), kEpsilon);
+            assertEquals(expected.state().getTranslation().x(), sample.getX(), kEpsilon);
+            assertEquals(expected.state().getTranslation().y(), sample.getY(), kEpsilon);
+            assertEquals(expected.velocity(), sample.getVelocity(), kEpsilon);
+            assertEquals(expected.acceleration(), sample.getAcceleration(), kEpsilon);
+        }
+    }
+
+    @Test
+    public void testGeneratorResamples() {
+        TrajectoryGenerator generator = new TrajectoryGenerator(new DriveController(new TestProfile()), kStep);
+        CompiledTrajectory compiled = CompiledTrajectory.compile(generator.generateTrajectory(false, kPath, kConstraints));
+        assertTrue(compiled.isUniform());
+        assertEquals(kStep, compiled.getStep(), kEpsilon);
+
+        TrajectoryGenerator notResampled = new TrajectoryGenerator(new DriveController(new TestProfile()), 0.0);
+        assertFalse(CompiledTrajectory.compile(notResampled.generateTrajectory(false, kPath, kConstraints)).isUniform());
+        assertNotEquals(generator.hash(false, kPath, 0.0, 0.0, kConstraints),
+                notResampled.hash(false, kPath, 0.0, 0.0, kConstraints));
+    }
+
+}
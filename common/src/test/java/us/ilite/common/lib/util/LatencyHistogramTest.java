@@ -0,0 +1,57 @@
+package us.ilite.common.lib.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        // Buckets are contiguous and every value falls below its bucket's upper bound
+        long previousBucket = -1;
+        for(long micros = 0; micros < 4_000_000; micros += (micros < 1000 ? 1 : 997)) {
+            int bucket = LatencyHistogram.bucket(micros);
+            assertTrue(bucket >= previousBucket);
+            assertTrue(bucket <= previousBucket + 1 || micros >= 1000);
+            assertTrue(micros < LatencyHistogram.upperBound(bucket));
+            if(micros < (1 << 21) - (1 << 17)) {
+                assertTrue(LatencyHistogram.upperBound(bucket) <= Math.max(micros + 1, (long)(micros * 1.125) + 1));
+            }
+            previousBucket = bucket;
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0.0, histogram.getPercentile(0.5), 0.0);
+
+        // 98 fast cycles, a slow one and a very slow one
+        for(int i = 0; i < 98; i++) {
+            histogram.recordNanos(1_000_000);
+        }
+        histogram.recordNanos(8_000_000);
+        histogram.recordNanos(25_000_000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(0.001, histogram.getPercentile(0.5), 0.001 * 0.125);
+        assertEquals(0.008, histogram.getPercentile(0.99), 0.008 * 0.125);
+        assertEquals(0.025, histogram.getPercentile(1.0), 0.0);
+        assertEquals(0.025, histogram.getMax(), 0.0);
+
+        // A stall of a second or more
+        histogram.recordMicros((1 << 20) + 1);
+        histogram.recordMicros((1 << 21) - 1);
+        histogram.recordMicros(5_000_000);
+        assertEquals(103, histogram.getCount());
+        assertEquals(5.0, histogram.getMax(), 0.0);
+        assertEquals(5.0, histogram.getPercentile(1.0), 0.0);
+        assertEquals(((1 << 20) + (1 << 17)) / 1e6, histogram.getPercentile(0.98), 0.0);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0.0, histogram.getMax(), 0.0);
+    }
+
+}
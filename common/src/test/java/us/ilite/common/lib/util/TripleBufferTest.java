@@ -0,0 +1,65 @@
+package us.ilite.common.lib.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TripleBufferTest {
+
+    private static class Pair {
+        private long a = 0, b = 0;
+        private static void copy(Pair pFrom, Pair pTo) {
+            pTo.a = pFrom.a;
+            pTo.b = pFrom.b;
+        }
+    }
+
+    @Test
+    public void testCoalescing() {
+        TripleBuffer<Pair> buffer = new TripleBuffer<>(Pair::new, Pair::copy);
+        assertFalse(buffer.hasNew());
+
+        buffer.write(pair -> pair.a = 1);
+        buffer.write(pair -> pair.b = 2);
+        assertTrue(buffer.hasNew());
+
+        // Both edits are kept, and the first write is counted as overwritten
+        Pair pair = buffer.read();
+        assertEquals(1, pair.a);
+        assertEquals(2, pair.b);
+        assertEquals(1, buffer.getOverwrites());
+        assertFalse(buffer.hasNew());
+        assertSame(pair, buffer.read());
+    }
+
+    @Test
+    public void testNoTornReads() throws InterruptedException {
+        TripleBuffer<Pair> buffer = new TripleBuffer<>(Pair::new, Pair::copy);
+        SeqLock<Pair> seqLock = new SeqLock<>(new Pair());
+        final long writes = 200_000;
+
+        Thread writer = new Thread(() -> {
+            for(long i = 1; i <= writes; i++) {
+                final long value = i;
+                buffer.write(pair -> { pair.a = value; pair.b = -value; });
+                seqLock.write(pair -> { pair.a = value; pair.b = -value; });
+            }
+        });
+        writer.start();
+
+        long newest = 0;
+        while(writer.isAlive() || newest < writes) {
+            Pair pair = buffer.read();
+            assertEquals(pair.a, -pair.b);
+            assertTrue(pair.a >= newest);
+            newest = pair.a;
+
+            long sum = (long)seqLock.readDouble(p -> p.a + p.b);
+            assertEquals(0, sum);
+        }
+        writer.join();
+        assertEquals(writes, buffer.getWrites());
+        assertEquals(writes, seqLock.getWrites());
+    }
+
+}
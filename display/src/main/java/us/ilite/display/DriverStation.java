@@ -33,6 +33,8 @@ import us.ilite.common.config.SystemSettings;
 import us.ilite.common.types.drive.EDriveData;
 import us.ilite.common.types.manipulator.EElevator;
 import us.ilite.common.types.sensor.EPowerDistPanel;
+import us.ilite.display.chart.StripChart;
+import us.ilite.display.io.CodexPropertyPump;
 
 import java.util.*;
 
@@ -44,17 +46,24 @@ public class DriverStation extends Application {
     private static final double sTILE_SIZE_WIDTH_PX = sSCREEN_WIDTH/6d;
 
     private final  IliteCodexReceiver mData =  IliteCodexReceiver.getInstance();
+    private final StripChart mDriveVelocityChart = new StripChart(30.0);
+    private final StripChart mDriveOutputChart = new StripChart(30.0);
 
     @Override
     public void start(Stage stage) throws Exception {
+        CodexPropertyPump.getInstance().start();
 
         BorderPane root = new BorderPane();
 
         root.setLeft(createElevatorPane());
         root.setCenter(createPDPPane());
+        root.setRight(createDriveVelocityPane());
 
         Scene scene = new Scene(root, sSCREEN_WIDTH, sSCREEN_HEIGHT);
         stage.setOnCloseRequest(e -> {
+            CodexPropertyPump.getInstance().stop();
+            mDriveVelocityChart.stop();
+            mDriveOutputChart.stop();
             IliteCodexReceiver.getInstance().disconnect();
             System.exit(0);
         });
@@ -192,6 +201,24 @@ public class DriverStation extends Application {
         return columns;
     }
 
+    private Pane createDriveVelocityPane() {
+        // Traces share the vertical axis, so measured velocity and commanded output go on separate charts
+        mDriveVelocityChart.addTrace(EDriveData.LEFT_VEL_TICKS, Color.DODGERBLUE);
+        mDriveVelocityChart.addTrace(EDriveData.RIGHT_VEL_TICKS, Color.LIMEGREEN);
+        mDriveVelocityChart.setUnits("ticks");
+        mDriveVelocityChart.setPrefSize(sTILE_SIZE_WIDTH_PX, sTILE_SIZE_HEIGHT_PX);
+        mDriveVelocityChart.start();
+
+        mDriveOutputChart.addTrace(EDriveData.LEFT_MESSAGE_OUTPUT, Color.LIGHTBLUE);
+        mDriveOutputChart.addTrace(EDriveData.RIGHT_MESSAGE_OUTPUT, Color.PALEGREEN);
+        mDriveOutputChart.setPrefSize(sTILE_SIZE_WIDTH_PX, sTILE_SIZE_HEIGHT_PX);
+        mDriveOutputChart.start();
+
+        VBox column = new VBox(5, mDriveVelocityChart, mDriveOutputChart);
+        column.setPadding(new Insets(5));
+        return column;
+    }
+
     private void createPlot(String pName, Color pColor) {
         mPlotItems.put(pName, new PlotItem(pName, pColor));
         sortedPlots.add(mPlotItems.get(pName));
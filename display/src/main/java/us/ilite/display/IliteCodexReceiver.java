@@ -1,67 +1,78 @@
 package us.ilite.display;
 
 import com.flybotix.hfr.codex.CodexOf;
-import com.flybotix.hfr.codex.CodexReceiver;
-import com.flybotix.hfr.io.MessageProtocols;
-import com.flybotix.hfr.io.receiver.IReceiveProtocol;
-import org.apache.commons.lang3.EnumUtils;
 import us.ilite.common.config.SystemSettings;
+import us.ilite.common.io.CodexBatchReceiver;
 import us.ilite.common.types.drive.EDriveData;
 import us.ilite.common.types.input.ELogitech310;
 import us.ilite.common.types.manipulator.EElevator;
 import us.ilite.common.types.sensor.EPowerDistPanel;
+import us.ilite.display.io.CodexReceiveCache;
 
+import java.net.SocketException;
 import java.util.HashMap;
 import java.util.Map;
 
 public class IliteCodexReceiver {
 
-    private final IReceiveProtocol mCommsReceiver;
+    private final CodexBatchReceiver mCommsReceiver;
 
-    private Map<Class, CodexReceiver> mReceivers = new HashMap<>();
+    // Only written in the constructor, so it's safe to read from any thread afterwards
+    private final Map<Class, CodexReceiveCache> mCaches = new HashMap<>();
 
-    private Map<String, Double> mCachedValues = new HashMap<>();
+    /**
+     * @return The received values of pEnum, or null if pEnum isn't received
+     */
+    public <E extends Enum<E> & CodexOf<Double>> CodexReceiveCache<E> getCache(Class<E> pEnum) {
+        return mCaches.get(pEnum);
+    }
 
-    public <E extends Enum<E> & CodexOf<Double>> CodexReceiver getReceiver(Class<E> pEnum) {
-        return mReceivers.get(pEnum);
+    /**
+     * @return The transport, for frame loss and reordering statistics
+     */
+    public CodexBatchReceiver getTransport() {
+        return mCommsReceiver;
     }
 
     /**
      * @param pDataElement The data element to return
      * @param <E> The enumeration element
-     * @return double value of the data elment
+     * @return double value of the data elment, or NaN if it hasn't been received
      */
-    public <E extends Enum<E> & CodexOf<Double>> Double get(E pDataElement) {
-        return mCachedValues.get(pDataElement.name());
+    public <E extends Enum<E> & CodexOf<Double>> double get(E pDataElement) {
+        CodexReceiveCache<E> cache = getCache(pDataElement.getDeclaringClass());
+        return cache == null ? Double.NaN : cache.get(pDataElement);
     }
 
     private IliteCodexReceiver() {
-        mCommsReceiver = MessageProtocols.createReceiver(MessageProtocols.EProtocol.UDP, SystemSettings.sCODEX_COMMS_PORT, null);
+        mCommsReceiver = new CodexBatchReceiver(SystemSettings.sCODEX_COMMS_PORT);
         create(EDriveData.class, mCommsReceiver);
         create(EPowerDistPanel.class, mCommsReceiver);
         create(ELogitech310.class, mCommsReceiver);
         create(EElevator.class, mCommsReceiver);
-        create(EPowerDistPanel.class, mCommsReceiver);
 
         // Test data
+        double[] breakers = new double[EPowerDistPanel.values().length];
         for(EPowerDistPanel power : EPowerDistPanel.values()) {
-            mCachedValues.put(power.name(), power.BREAKER_VALUE);
+            breakers[power.ordinal()] = power.BREAKER_VALUE;
+        }
+        getCache(EPowerDistPanel.class).publish(breakers, 0.0, System.nanoTime());
+
+        try {
+            mCommsReceiver.start();
+        } catch (SocketException e) {
+            e.printStackTrace();
         }
     }
 
-    private final <E extends Enum<E> & CodexOf<Double>> void create(Class<E> pEnum, IReceiveProtocol pProtocol) {
-        CodexReceiver<Double, E> rec = new CodexReceiver<Double,E>(pEnum, pProtocol);
-        mReceivers.put(EDriveData.class, rec);
-        rec.addListener(codex -> {
-            for(E e : EnumUtils.getEnumList(pEnum)) {
-                mCachedValues.put(e.name(), codex.get(e));
-            }
-            System.out.println(codex);
-        });
+    private final <E extends Enum<E> & CodexOf<Double>> void create(Class<E> pEnum, CodexBatchReceiver pReceiver) {
+        CodexReceiveCache<E> cache = new CodexReceiveCache<>(pEnum);
+        pReceiver.register(pEnum, 0, cache);
+        mCaches.put(pEnum, cache);
     }
 
     public void disconnect() {
-        mCommsReceiver.disconnect();
+        mCommsReceiver.stop();
     }
 
     private static IliteCodexReceiver INSTNACE;
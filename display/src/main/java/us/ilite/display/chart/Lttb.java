@@ -0,0 +1,81 @@
+package us.ilite.display.chart;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling (Steinarsson, 2013).  Reduces a series to a fixed number of points
+ * while keeping its visual shape - peaks and steps survive, unlike plain decimation or averaging.
+ *
+ * The series is split into equal buckets, and from each bucket the point that forms the largest triangle with the
+ * point kept from the previous bucket and the average of the next bucket is kept.  The first and last points are
+ * always kept.
+ */
+public class Lttb {
+
+    private Lttb() {
+    }
+
+    /**
+     * @param pX Times, increasing
+     * @param pY Values
+     * @param pCount Number of points in pX and pY to use
+     * @param pThreshold Number of points to keep
+     * @param pOutX Kept times.  Must hold pThreshold points, or pCount if that's smaller.
+     * @param pOutY Kept values
+     * @return The number of points kept
+     */
+    public static int downsample(double[] pX, double[] pY, int pCount, int pThreshold, double[] pOutX, double[] pOutY) {
+        if(pThreshold >= pCount || pThreshold < 3) {
+            int n = Math.min(pCount, pThreshold < 3 ? pCount : pThreshold);
+            System.arraycopy(pX, 0, pOutX, 0, n);
+            System.arraycopy(pY, 0, pOutY, 0, n);
+            return n;
+        }
+
+        // The first and last points are kept on their own, so the rest is split into pThreshold - 2 buckets
+        double bucketSize = (double)(pCount - 2) / (pThreshold - 2);
+        int kept = 0;
+        int a = 0;
+        pOutX[kept] = pX[a];
+        pOutY[kept] = pY[a];
+        kept++;
+
+        for(int bucket = 0; bucket < pThreshold - 2; bucket++) {
+            // Average of the next bucket, which is just the last point for the final bucket
+            int nextStart = (int)((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int)((bucket + 2) * bucketSize) + 1, pCount);
+            double avgX = 0.0;
+            double avgY = 0.0;
+            for(int i = nextStart; i < nextEnd; i++) {
+                avgX += pX[i];
+                avgY += pY[i];
+            }
+            int nextLength = nextEnd - nextStart;
+            avgX /= nextLength;
+            avgY /= nextLength;
+
+            int start = (int)(bucket * bucketSize) + 1;
+            int end = (int)((bucket + 1) * bucketSize) + 1;
+            double ax = pX[a];
+            double ay = pY[a];
+            double maxArea = -1.0;
+            int maxIndex = start;
+            for(int i = start; i < end; i++) {
+                // Twice the triangle's area - only the comparison matters
+                double area = Math.abs((ax - avgX) * (pY[i] - ay) - (ax - pX[i]) * (avgY - ay));
+                if(area > maxArea) {
+                    maxArea = area;
+                    maxIndex = i;
+                }
+            }
+            pOutX[kept] = pX[maxIndex];
+            pOutY[kept] = pY[maxIndex];
+            kept++;
+            a = maxIndex;
+        }
+
+        pOutX[kept] = pX[pCount - 1];
+        pOutY[kept] = pY[pCount - 1];
+        kept++;
+        return kept;
+    }
+
+}
@@ -0,0 +1,96 @@
+package us.ilite.display.chart;
+
+/**
+ * A fixed-size ring of (time, value) samples stored in primitive arrays.  One thread adds samples while another
+ * copies out the recent ones, without locking or allocating.
+ *
+ * The writer fills a slot and then bumps a volatile count, so a reader only ever looks at finished slots.  The
+ * oldest {@link #kGuard} slots are never copied, since the writer may be overwriting them - a copy would have to
+ * take longer than that many samples for it to see a torn one.
+ */
+class SampleRing {
+
+    static final int kGuard = 256;
+
+    private final double[] mTimes;
+    private final double[] mValues;
+    private final int mMask;
+
+    private volatile long mCount = 0;
+    // Samples before this were added before a clock reset, and are ignored
+    private volatile long mFirst = 0;
+
+    /**
+     * @param pMinCapacity Number of samples to keep.  Rounded up to a power of two, plus the guard.
+     */
+    SampleRing(int pMinCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(pMinCapacity + kGuard - 1, 1)) << 1;
+        mTimes = new double[capacity];
+        mValues = new double[capacity];
+        mMask = capacity - 1;
+    }
+
+    /**
+     * Adds a sample.  Only call this from one thread.  Times should increase - a time older than the newest
+     * sample means the robot code restarted, so everything before it is dropped.
+     */
+    void add(double pTime, double pValue) {
+        long count = mCount;
+        if(count > mFirst && pTime < mTimes[(int)((count - 1) & mMask)]) {
+            mFirst = count;
+        }
+        int slot = (int)(count & mMask);
+        mTimes[slot] = pTime;
+        mValues[slot] = pValue;
+        mCount = count + 1;
+    }
+
+    /**
+     * @return The time of the newest sample, or NaN if there are none
+     */
+    double getNewestTime() {
+        long count = mCount;
+        return count > mFirst ? mTimes[(int)((count - 1) & mMask)] : Double.NaN;
+    }
+
+    /**
+     * Copies the samples from pStartTime onward, oldest first.  The sample just before pStartTime is included
+     * too, so a trace reaches the edge of the chart.
+     * @return The number of samples copied, at most the length of pTimes
+     */
+    int copySince(double pStartTime, double[] pTimes, double[] pValues) {
+        long count = mCount;
+        long oldest = Math.max(mFirst, count - (mTimes.length - kGuard));
+        if(count <= oldest) {
+            return 0;
+        }
+
+        // Binary search for the first sample at or after the start time
+        long lo = oldest;
+        long hi = count - 1;
+        while(lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if(mTimes[(int)(mid & mMask)] < pStartTime) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        long start = Math.max(oldest, lo - 1);
+        start = Math.max(start, count - pTimes.length);
+
+        int n = 0;
+        for(long i = start; i < count; i++) {
+            int slot = (int)(i & mMask);
+            pTimes[n] = mTimes[slot];
+            pValues[n] = mValues[slot];
+            n++;
+        }
+        return n;
+    }
+
+    int capacity() {
+        return mTimes.length - kGuard;
+    }
+
+}
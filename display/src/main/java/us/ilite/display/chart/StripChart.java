@@ -0,0 +1,266 @@
+package us.ilite.display.chart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.flybotix.hfr.codex.CodexOf;
+
+import javafx.animation.AnimationTimer;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.TextAlignment;
+import us.ilite.common.io.CodexBatchReceiver;
+import us.ilite.display.IliteCodexReceiver;
+import us.ilite.display.io.CodexReceiveCache;
+
+/**
+ * Plots codex fields against time over a sliding window, for signals that are too fast for a gauge.
+ *
+ * Every received sample is stored in a primitive ring buffer on the receive thread.  Once per pulse the window
+ * is copied out, downsampled with {@link Lttb} to one point per horizontal pixel and drawn to a Canvas, so the
+ * cost of a frame depends on the chart's width rather than the sample rate, and nothing is allocated per sample
+ * or per frame.
+ *
+ * The time axis is the robot's clock, ending at the newest sample received.  Every trace shares the vertical axis,
+ * so only plot fields with the same units on one chart.
+ */
+public class StripChart extends Region {
+
+    // Highest sample rate a trace is sized for
+    private static final double kMaxSampleRateHz = 200.0;
+    private static final double kPadding = 4.0;
+    private static final Color kBackground = Color.rgb(30, 30, 30);
+    private static final Color kGridColor = Color.rgb(70, 70, 70);
+    private static final Color kTextColor = Color.LIGHTGRAY;
+
+    private final double mWindowSeconds;
+    private final List<Trace> mTraces = new ArrayList<>();
+    private final Canvas mCanvas = new Canvas();
+
+    private final AnimationTimer mTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            draw();
+        }
+    };
+
+    // Scratch space for copying a trace's window out of its ring
+    private final double[] mWindowTimes;
+    private final double[] mWindowValues;
+
+    private String mUnits = "";
+    private boolean mAutoRange = true;
+    private double mMin = -1.0;
+    private double mMax = 1.0;
+    private String mMinLabel = "";
+    private String mMaxLabel = "";
+    private double mLabelMin = Double.NaN;
+    private double mLabelMax = Double.NaN;
+
+    private double mAverageFrameMillis = 0.0;
+
+    /**
+     * @param pWindowSeconds How much history to show
+     */
+    public StripChart(double pWindowSeconds) {
+        mWindowSeconds = pWindowSeconds;
+        int capacity = (int)Math.ceil(pWindowSeconds * kMaxSampleRateHz);
+        mWindowTimes = new double[capacity];
+        mWindowValues = new double[capacity];
+        getChildren().add(mCanvas);
+    }
+
+    /**
+     * Plots a field received by {@link IliteCodexReceiver}
+     */
+    public <E extends Enum<E> & CodexOf<Double>> void addTrace(E pField, Color pColor) {
+        CodexReceiveCache<E> cache = IliteCodexReceiver.getInstance().getCache(pField.getDeclaringClass());
+        if(cache == null) {
+            throw new IllegalArgumentException(pField.getDeclaringClass().getSimpleName() + " isn't received");
+        }
+        addTrace(cache, pField, pColor);
+    }
+
+    public <E extends Enum<E> & CodexOf<Double>> void addTrace(CodexReceiveCache<E> pCache, E pField, Color pColor) {
+        Trace trace = new Trace(pField.name(), pColor, pField.ordinal(), mWindowTimes.length);
+        mTraces.add(trace);
+        pCache.addListener(trace);
+    }
+
+    /**
+     * Shown after the vertical axis labels
+     */
+    public void setUnits(String pUnits) {
+        mUnits = pUnits.isEmpty() ? "" : " " + pUnits;
+        mLabelMin = Double.NaN;
+    }
+
+    /**
+     * Fixes the vertical axis.  By default it fits the visible samples.
+     */
+    public void setRange(double pMin, double pMax) {
+        mAutoRange = false;
+        mMin = pMin;
+        mMax = pMax;
+    }
+
+    public void setAutoRange() {
+        mAutoRange = true;
+    }
+
+    /**
+     * Starts redrawing every pulse.  Must be called on the FX thread.
+     */
+    public void start() {
+        mTimer.start();
+    }
+
+    public void stop() {
+        mTimer.stop();
+    }
+
+    /**
+     * @return Smoothed time taken to draw a frame, in milliseconds
+     */
+    public double getAverageFrameMillis() {
+        return mAverageFrameMillis;
+    }
+
+    @Override
+    protected void layoutChildren() {
+        mCanvas.setWidth(getWidth());
+        mCanvas.setHeight(getHeight());
+    }
+
+    private void draw() {
+        long start = System.nanoTime();
+        double width = mCanvas.getWidth();
+        double height = mCanvas.getHeight();
+        int pixels = (int)(width - 2 * kPadding);
+
+        double end = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i < mTraces.size(); i++) {
+            double newest = mTraces.get(i).mRing.getNewestTime();
+            if(!Double.isNaN(newest)) {
+                end = Math.max(end, newest);
+            }
+        }
+
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i < mTraces.size(); i++) {
+            Trace trace = mTraces.get(i);
+            trace.mPoints = 0;
+            if(end == Double.NEGATIVE_INFINITY || pixels < 3) {
+                continue;
+            }
+            int n = trace.mRing.copySince(end - mWindowSeconds, mWindowTimes, mWindowValues);
+            trace.ensureCapacity(pixels);
+            trace.mPoints = Lttb.downsample(mWindowTimes, mWindowValues, n, pixels, trace.mX, trace.mY);
+            for(int p = 0; p < trace.mPoints; p++) {
+                min = Math.min(min, trace.mY[p]);
+                max = Math.max(max, trace.mY[p]);
+            }
+        }
+        if(mAutoRange && min <= max) {
+            double margin = Math.max((max - min) * 0.05, 1e-6);
+            mMin = min - margin;
+            mMax = max + margin;
+        }
+
+        GraphicsContext gc = mCanvas.getGraphicsContext2D();
+        gc.setFill(kBackground);
+        gc.fillRect(0, 0, width, height);
+        drawAxes(gc, width, height);
+
+        double xScale = (width - 2 * kPadding) / mWindowSeconds;
+        double yScale = (height - 2 * kPadding) / (mMax - mMin);
+        gc.setLineWidth(1.0);
+        for(int i = 0; i < mTraces.size(); i++) {
+            Trace trace = mTraces.get(i);
+            // Convert to pixels in place
+            for(int p = 0; p < trace.mPoints; p++) {
+                trace.mX[p] = kPadding + (trace.mX[p] - (end - mWindowSeconds)) * xScale;
+                trace.mY[p] = height - kPadding - (trace.mY[p] - mMin) * yScale;
+            }
+            gc.setStroke(trace.mColor);
+            gc.strokePolyline(trace.mX, trace.mY, trace.mPoints);
+
+            gc.setFill(trace.mColor);
+            gc.setTextAlign(TextAlignment.RIGHT);
+            gc.setTextBaseline(VPos.TOP);
+            gc.fillText(trace.mName, width - kPadding, kPadding + (i * 14.0));
+        }
+
+        double frameMillis = (System.nanoTime() - start) / 1e6;
+        mAverageFrameMillis += 0.1 * (frameMillis - mAverageFrameMillis);
+    }
+
+    private void drawAxes(GraphicsContext gc, double pWidth, double pHeight) {
+        gc.setStroke(kGridColor);
+        gc.setLineWidth(0.5);
+        // One vertical line per second
+        double xScale = (pWidth - 2 * kPadding) / mWindowSeconds;
+        for(int s = 0; s <= (int)mWindowSeconds; s++) {
+            double x = pWidth - kPadding - (s * xScale);
+            gc.strokeLine(x, kPadding, x, pHeight - kPadding);
+        }
+        if(mMin < 0.0 && mMax > 0.0) {
+            double zero = pHeight - kPadding - (-mMin * (pHeight - 2 * kPadding) / (mMax - mMin));
+            gc.strokeLine(kPadding, zero, pWidth - kPadding, zero);
+        }
+
+        // Only rebuild the labels when the range changes
+        if(mMin != mLabelMin || mMax != mLabelMax) {
+            mMinLabel = String.format("%.1f", mMin) + mUnits;
+            mMaxLabel = String.format("%.1f", mMax) + mUnits;
+            mLabelMin = mMin;
+            mLabelMax = mMax;
+        }
+        gc.setFill(kTextColor);
+        gc.setTextAlign(TextAlignment.LEFT);
+        gc.setTextBaseline(VPos.TOP);
+        gc.fillText(mMaxLabel, kPadding, kPadding);
+        gc.setTextBaseline(VPos.BOTTOM);
+        gc.fillText(mMinLabel, kPadding, pHeight - kPadding);
+    }
+
+    private static class Trace implements CodexBatchReceiver.IListener {
+        private final String mName;
+        private final Color mColor;
+        private final int mOrdinal;
+        private final SampleRing mRing;
+
+        // Downsampled points, drawn on the FX thread
+        private double[] mX = new double[0];
+        private double[] mY = new double[0];
+        private int mPoints = 0;
+
+        private Trace(String pName, Color pColor, int pOrdinal, int pCapacity) {
+            mName = pName;
+            mColor = pColor;
+            mOrdinal = pOrdinal;
+            mRing = new SampleRing(pCapacity);
+        }
+
+        @Override
+        public void onReceived(long[] pMask, double[] pValues, long pSequence, double pTimestamp) {
+            double value = pValues[mOrdinal];
+            if(!Double.isNaN(value)) {
+                mRing.add(pTimestamp, value);
+            }
+        }
+
+        private void ensureCapacity(int pPoints) {
+            // Only reallocates when the chart is resized wider
+            if(mX.length < pPoints) {
+                mX = new double[pPoints];
+                mY = new double[pPoints];
+            }
+        }
+    }
+
+}
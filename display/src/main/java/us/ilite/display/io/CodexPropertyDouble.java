@@ -5,14 +5,13 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import com.flybotix.hfr.codex.Codex;
 import com.flybotix.hfr.codex.CodexOf;
 import com.flybotix.hfr.util.lang.EnumUtils;
 
-import javafx.application.Platform;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.Property;
 import javafx.beans.property.SimpleBooleanProperty;
@@ -25,43 +24,76 @@ import javafx.beans.value.ObservableValue;
  *
  *  A class which adds thread-safe listeners to a Codex.  This class extends Codex of doubles.
  *
+ *  Values can be set from any thread.  They aren't applied to the JavaFX properties right away - the newest value
+ *  of each field is held until the next pulse of the {@link CodexPropertyPump}, which applies it on the FX thread.
+ *  Any older values set in between are never shown, and are counted as coalesced.
+ *
  * @param <E>
  */
 public class CodexPropertyDouble <E extends Enum<E> & CodexOf<Double>> extends Codex<Double,E> {
 
+    private final List<E> mEnums;
     private final DoubleProperty[] mProperties;
     private final SimpleBooleanProperty[] mIsSetProperties;
     private final Map<E, List<ChangeListener<? super Number>>> mChangeListeners = new HashMap<>();
 
+    // Newest value of each field as raw double bits (NaN when unset), and how many sets it has had since the last pulse
+    private final AtomicLongArray mPendingValues;
+    private final AtomicIntegerArray mPendingSets;
+
     public CodexPropertyDouble(Class<E> pEnum) {
         super(pEnum);
+        mEnums = EnumUtils.getEnums(pEnum, true);
         mProperties = new DoubleProperty[EnumUtils.getLength(pEnum)];
         mIsSetProperties = new SimpleBooleanProperty[EnumUtils.getLength(pEnum)];
+        mPendingValues = new AtomicLongArray(mProperties.length);
+        mPendingSets = new AtomicIntegerArray(mProperties.length);
+        for(int i = 0; i < mProperties.length; i++) {
+            mProperties[i] = new SimpleDoubleProperty(Double.NaN);
+            mIsSetProperties[i] = new SimpleBooleanProperty(false);
+        }
         for(E e : EnumUtils.getEnums(pEnum)) {
             mChangeListeners.put(e, new ArrayList<>());
         }
+        CodexPropertyPump.getInstance().register(this);
     }
 
     public void set(E pData, Double pValue) {
         super.set(pData, pValue);
-        Platform.runLater(() -> {
-            mProperties[pData.ordinal()].set(pValue);
-            mIsSetProperties[pData.ordinal()].set(isSet(pData));
-            for(ChangeListener<? super Number> listener : mChangeListeners.get(pData)) {
-                listener.changed(null, null, pValue);
-            }
-        });
+        queue(pData.ordinal(), pValue);
     }
 
     public void set(int pOrdinal, Double pValue) {
-        Platform.runLater(() -> {
-            mProperties[pOrdinal].set(pValue);
-            mIsSetProperties[pOrdinal].set(isSet(pOrdinal));
-            E e = EnumUtils.getEnums(mMeta.getEnum(), true).get(pOrdinal);
-            for(ChangeListener<? super Number> listener : mChangeListeners.get(e)) {
-                listener.changed(null, null, pValue);
+        super.set(pOrdinal, pValue);
+        queue(pOrdinal, pValue);
+    }
+
+    private void queue(int pOrdinal, Double pValue) {
+        // Write the value before the count, so the pump never sees a count without its value
+        mPendingValues.set(pOrdinal, Double.doubleToRawLongBits(pValue == null ? Double.NaN : pValue));
+        mPendingSets.incrementAndGet(pOrdinal);
+    }
+
+    /**
+     * Applies the newest pending value of each field to its properties and listeners.  Only call this from the FX
+     * thread - {@link CodexPropertyPump} does this once per pulse.
+     * @param pCounts Incremented by the number of sets applied ([0]) and the number of older sets skipped ([1])
+     */
+    void applyPending(long[] pCounts) {
+        for(int i = 0; i < mProperties.length; i++) {
+            int sets = mPendingSets.getAndSet(i, 0);
+            if(sets == 0) {
+                continue;
             }
-        });
+            double value = Double.longBitsToDouble(mPendingValues.get(i));
+            mProperties[i].set(value);
+            mIsSetProperties[i].set(!Double.isNaN(value));
+            for(ChangeListener<? super Number> listener : mChangeListeners.get(mEnums.get(i))) {
+                listener.changed(null, null, value);
+            }
+            pCounts[0]++;
+            pCounts[1] += sets - 1;
+        }
     }
 
     public void bindTo(E pData, DoubleProperty pObservable) {
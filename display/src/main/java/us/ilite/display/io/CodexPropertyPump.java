@@ -0,0 +1,108 @@
+package us.ilite.display.io;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Applies values received by every {@link CodexPropertyDouble} to their JavaFX properties, once per pulse on the
+ * FX thread.  Network threads only store the newest value of each field, so the FX queue gets the same amount of
+ * work no matter how fast the robot streams - values that are replaced before the next pulse are coalesced.
+ *
+ * Call {@link #start()} once the FX toolkit is running, e.g. from Application.start().
+ *
+ * Codexes are only held weakly, so a view that's thrown away doesn't have to unregister its codex - it stops being
+ * pumped once it's garbage collected.
+ */
+public class CodexPropertyPump {
+
+    private final List<WeakReference<CodexPropertyDouble<?>>> mCodexes = new CopyOnWriteArrayList<>();
+    private final long[] mCounts = new long[2];
+    private AnimationTimer mTimer = null;
+
+    // Written only on the FX thread
+    private volatile long mPulses = 0;
+    private volatile long mAppliedUpdates = 0;
+    private volatile long mCoalescedUpdates = 0;
+
+    private CodexPropertyPump() {
+    }
+
+    void register(CodexPropertyDouble<?> pCodex) {
+        mCodexes.add(new WeakReference<>(pCodex));
+    }
+
+    /**
+     * Stops pumping pCodex right away, instead of when it's garbage collected
+     */
+    public void unregister(CodexPropertyDouble<?> pCodex) {
+        mCodexes.removeIf(reference -> reference.get() == pCodex);
+    }
+
+    /**
+     * Starts applying updates every pulse.  Must be called on the FX thread.
+     */
+    public void start() {
+        if(mTimer == null) {
+            mTimer = new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    pulse();
+                }
+            };
+        }
+        mTimer.start();
+    }
+
+    public void stop() {
+        if(mTimer != null) {
+            mTimer.stop();
+        }
+    }
+
+    /**
+     * Applies the newest pending values of every registered codex.  Only call this from the FX thread.
+     */
+    void pulse() {
+        mCounts[0] = 0;
+        mCounts[1] = 0;
+        for(WeakReference<CodexPropertyDouble<?>> reference : mCodexes) {
+            CodexPropertyDouble<?> codex = reference.get();
+            if(codex == null) {
+                mCodexes.remove(reference);
+            } else {
+                codex.applyPending(mCounts);
+            }
+        }
+        mAppliedUpdates += mCounts[0];
+        mCoalescedUpdates += mCounts[1];
+        mPulses++;
+    }
+
+    public long getPulses() {
+        return mPulses;
+    }
+
+    /**
+     * @return Values that were applied to a property
+     */
+    public long getAppliedUpdates() {
+        return mAppliedUpdates;
+    }
+
+    /**
+     * @return Values that were replaced by a newer value before the next pulse, and never applied
+     */
+    public long getCoalescedUpdates() {
+        return mCoalescedUpdates;
+    }
+
+    private static CodexPropertyPump INSTANCE;
+
+    public static synchronized CodexPropertyPump getInstance() {
+        if(INSTANCE == null) INSTANCE = new CodexPropertyPump();
+        return INSTANCE;
+    }
+}
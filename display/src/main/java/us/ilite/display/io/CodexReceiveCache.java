@@ -0,0 +1,183 @@
+package us.ilite.display.io;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.StampedLock;
+
+import com.flybotix.hfr.codex.CodexOf;
+import com.flybotix.hfr.util.lang.EnumUtils;
+
+import us.ilite.common.io.CodexBatchReceiver;
+
+/**
+ * The most recent values received for one codex enum, stored as primitive doubles indexed by ordinal.
+ *
+ * There is a single writer (the receive thread) and any number of readers (JavaFX, charts, etc).  The writer
+ * fills the next buffer of a small ring and then publishes it by bumping a volatile version number, so readers
+ * never block and never see a half-written snapshot:
+ * <ul>
+ *     <li>{@link #get(Enum)} is wait-free - one volatile read and one array read, with no boxing.  The writer would
+ *     have to publish {@link #kBuffers} - 1 more times during that array read for it to see a newer value.</li>
+ *     <li>{@link #snapshot(double[])} copies every field from the same receive.  It's an optimistic read of a
+ *     sequence lock, so it only retries if a receive was published during the copy.</li>
+ * </ul>
+ * Unset fields are NaN.  Anything that needs every received row rather than the newest one, like a chart, can
+ * add a listener that is called on the receive thread.
+ */
+public class CodexReceiveCache<E extends Enum<E> & CodexOf<Double>> implements CodexBatchReceiver.IListener {
+
+    private static final int kBuffers = 4;
+    // Smoothing factor for the rate and latency averages
+    private static final double kAlpha = 0.1;
+
+    private final Class<E> mEnum;
+    private final double[][] mBuffers;
+    private volatile long mVersion = 0;
+    // Only used as a sequence lock - readers never acquire it
+    private final StampedLock mSequence = new StampedLock();
+    private final List<CodexBatchReceiver.IListener> mListeners = new CopyOnWriteArrayList<>();
+
+    // Written only by the receive thread
+    private volatile long mLastReceiveNanos = 0;
+    private double mMinClockOffset = Double.POSITIVE_INFINITY;
+    private volatile long mReceivedCount = 0;
+    private volatile double mReceiveRateHz = 0.0;
+    private volatile double mLatency = 0.0;
+
+    public CodexReceiveCache(Class<E> pEnum) {
+        mEnum = pEnum;
+        mBuffers = new double[kBuffers][EnumUtils.getLength(pEnum)];
+        for(double[] buffer : mBuffers) {
+            Arrays.fill(buffer, Double.NaN);
+        }
+    }
+
+    /**
+     * Publishes a received row.  Only call this from one thread.
+     */
+    @Override
+    public void onReceived(long[] pMask, double[] pValues, long pSequence, double pTimestamp) {
+        publish(pValues, pTimestamp, System.nanoTime());
+        for(CodexBatchReceiver.IListener listener : mListeners) {
+            listener.onReceived(pMask, pValues, pSequence, pTimestamp);
+        }
+    }
+
+    /**
+     * Adds a listener that is called on the receive thread for every received row, after it's published
+     */
+    public void addListener(CodexBatchReceiver.IListener pListener) {
+        mListeners.add(pListener);
+    }
+
+    public void removeListener(CodexBatchReceiver.IListener pListener) {
+        mListeners.remove(pListener);
+    }
+
+    /**
+     * Publishes a row of values.  Only call this from one thread.
+     * @param pValues Values indexed by ordinal.  Unset fields should be NaN.
+     * @param pRemoteTimestamp When the robot sent the values, on the robot's clock
+     * @param pLocalNanos When the values were received, from System.nanoTime()
+     */
+    public void publish(double[] pValues, double pRemoteTimestamp, long pLocalNanos) {
+        long stamp = mSequence.writeLock();
+        long next = mVersion + 1;
+        double[] buffer = mBuffers[(int)(next % kBuffers)];
+        System.arraycopy(pValues, 0, buffer, 0, buffer.length);
+        mVersion = next;
+        mSequence.unlockWrite(stamp);
+
+        updateCounters(pRemoteTimestamp, pLocalNanos);
+    }
+
+    /**
+     * The robot and driver station clocks aren't synchronized, so latency is measured relative to the fastest
+     * delivery seen so far: (local time - robot time) minus its minimum.  A steady link reads ~0, and queueing
+     * or Wi-Fi retries show up as the latency rising above that.
+     */
+    private void updateCounters(double pRemoteTimestamp, long pLocalNanos) {
+        double local = pLocalNanos / 1e9;
+        if(mReceivedCount > 0) {
+            double interval = (pLocalNanos - mLastReceiveNanos) / 1e9;
+            if(interval > 0.0) {
+                double rate = 1.0 / interval;
+                mReceiveRateHz = mReceiveRateHz == 0.0 ? rate : mReceiveRateHz + kAlpha * (rate - mReceiveRateHz);
+            }
+        }
+        mLastReceiveNanos = pLocalNanos;
+
+        double offset = local - pRemoteTimestamp;
+        if(offset < mMinClockOffset) {
+            // Either a faster delivery or the robot code restarted and its clock jumped
+            mMinClockOffset = offset;
+        }
+        mLatency += kAlpha * ((offset - mMinClockOffset) - mLatency);
+        mReceivedCount++;
+    }
+
+    /**
+     * @return The most recent value of pElement, or NaN if it isn't set
+     */
+    public double get(E pElement) {
+        return mBuffers[(int)(mVersion % kBuffers)][pElement.ordinal()];
+    }
+
+    public boolean isSet(E pElement) {
+        return !Double.isNaN(get(pElement));
+    }
+
+    /**
+     * Copies every value from the most recent receive into pValues
+     * @return The version of the snapshot, which increases by one for every receive
+     */
+    public long snapshot(double[] pValues) {
+        while(true) {
+            long stamp = mSequence.tryOptimisticRead();
+            long version = mVersion;
+            double[] buffer = mBuffers[(int)(version % kBuffers)];
+            System.arraycopy(buffer, 0, pValues, 0, Math.min(buffer.length, pValues.length));
+            if(stamp != 0L && mSequence.validate(stamp)) {
+                return version;
+            }
+        }
+    }
+
+    /**
+     * @return The number of receives so far
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    public Class<E> getEnum() {
+        return mEnum;
+    }
+
+    public long getReceivedCount() {
+        return mReceivedCount;
+    }
+
+    /**
+     * @return Smoothed receive rate, in hz
+     */
+    public double getReceiveRateHz() {
+        return mReceiveRateHz;
+    }
+
+    /**
+     * @return Smoothed latency above the fastest delivery seen so far, in seconds
+     */
+    public double getLatency() {
+        return mLatency;
+    }
+
+    /**
+     * @return Seconds since the last receive, or infinity if nothing has been received
+     */
+    public double getAge() {
+        return mReceivedCount == 0 ? Double.POSITIVE_INFINITY : (System.nanoTime() - mLastReceiveNanos) / 1e9;
+    }
+
+}
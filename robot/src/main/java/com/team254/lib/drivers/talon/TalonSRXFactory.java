@@ -1,13 +1,23 @@
 package com.team254.lib.drivers.talon;
 
+import com.ctre.phoenix.ErrorCode;
 import com.ctre.phoenix.ParamEnum;
 import com.ctre.phoenix.motorcontrol.*;
 import com.ctre.phoenix.motorcontrol.can.TalonSRX;
 import com.ctre.phoenix.motorcontrol.can.VictorSPX;
+import us.ilite.common.config.SystemSettings;
+import us.ilite.lib.drivers.CANConfigurator;
+import us.ilite.lib.drivers.CANDeviceConfig;
+import us.ilite.lib.drivers.ECANSignal;
+import us.ilite.lib.drivers.EStatusFrame;
+import us.ilite.lib.drivers.StatusFramePlanner;
 
 /**
  * Creates CANTalon objects and configures all the parameters we care about to factory defaults. Closed-loop and sensor
  * parameters are not set, as these are expected to be set by the application.
+ *
+ * Settings are added to each device's {@link CANDeviceConfig} and sent at robotInit, along with every other device's.
+ * Status frame periods are left to the {@link StatusFramePlanner}.
  */
 public class TalonSRXFactory {
 
@@ -29,11 +39,6 @@ public class TalonSRXFactory {
 
         public int CONTROL_FRAME_PERIOD_MS = 5;
         public int MOTION_CONTROL_FRAME_PERIOD_MS = 100;
-        public int GENERAL_STATUS_FRAME_RATE_MS = 5;
-        public int FEEDBACK_STATUS_FRAME_RATE_MS = 100;
-        public int QUAD_ENCODER_STATUS_FRAME_RATE_MS = 100;
-        public int ANALOG_TEMP_VBAT_STATUS_FRAME_RATE_MS = 100;
-        public int PULSE_WIDTH_STATUS_FRAME_RATE_MS = 100;
 
         public VelocityMeasPeriod VELOCITY_MEASUREMENT_PERIOD = VelocityMeasPeriod.Period_100Ms;
         public int VELOCITY_MEASUREMENT_ROLLING_AVERAGE_WINDOW = 64;
@@ -50,11 +55,6 @@ public class TalonSRXFactory {
         // LEDs behaving erratically.  Potentially try to increase as much as possible.
         kSlaveConfiguration.CONTROL_FRAME_PERIOD_MS = 100;
         kSlaveConfiguration.MOTION_CONTROL_FRAME_PERIOD_MS = 1000;
-        kSlaveConfiguration.GENERAL_STATUS_FRAME_RATE_MS = 1000;
-        kSlaveConfiguration.FEEDBACK_STATUS_FRAME_RATE_MS = 1000;
-        kSlaveConfiguration.QUAD_ENCODER_STATUS_FRAME_RATE_MS = 1000;
-        kSlaveConfiguration.ANALOG_TEMP_VBAT_STATUS_FRAME_RATE_MS = 1000;
-        kSlaveConfiguration.PULSE_WIDTH_STATUS_FRAME_RATE_MS = 1000;
     }
 
     // Create a CANTalon with the default (out of the box) configuration.
@@ -68,19 +68,25 @@ public class TalonSRXFactory {
 
     public static TalonSRX createPermanentSlaveTalon(int id, int master_id) {
         final TalonSRX talon = createTalon(id, kSlaveConfiguration);
-        talon.set(ControlMode.Follower, master_id);
+        CANConfigurator.getInstance().configure(talon).run("follow", () -> talon.set(ControlMode.Follower, master_id));
         return talon;
     }
 
     public static VictorSPX createPermanentSlaveVictor(int id, TalonSRX master) {
         final VictorSPX victor = createVictor(id, kSlaveConfiguration);
-        victor.follow(master);
+        CANConfigurator.getInstance().configure(victor).run("follow", () -> victor.follow(master));
+        // Followers track the master's output
+        StatusFramePlanner.getInstance().consume(master, ECANSignal.APPLIED_OUTPUT, SystemSettings.kCANControlSignalPeriodMs);
         return victor;
     }
 
     public static VictorSPX createVictor(int id, Configuration config) {
         VictorSPX victor = new VictorSPX(id);
-        victor.configFactoryDefault();
+        CANConfigurator.getInstance().configure(victor, "Victor SPX " + id)
+                .ctre("factory defaults", victor::configFactoryDefault);
+        StatusFramePlanner.getInstance().register(victor, "Victor SPX " + id,
+                (frame, period) -> victor.setStatusFramePeriod(toStatusFrame(frame), period, kTimeoutMs) == ErrorCode.OK,
+                EStatusFrame.kVictorSPX);
 
         // victor.set(ControlMode.PercentOutput, 0.0);
 
@@ -155,75 +161,102 @@ public class TalonSRXFactory {
 
     public static TalonSRX createTalon(int id, Configuration config) {
         TalonSRX talon = new LazyTalonSRX(id);
-        talon.configFactoryDefault();
-        talon.set(ControlMode.PercentOutput, 0.0);
+        CANConfigurator.getInstance().configure(talon, "Talon SRX " + id)
+                .ctre("factory defaults", talon::configFactoryDefault)
+                .run("neutral output", () -> talon.set(ControlMode.PercentOutput, 0.0))
 
-        talon.changeMotionControlFramePeriod(config.MOTION_CONTROL_FRAME_PERIOD_MS);
-        talon.clearMotionProfileHasUnderrun(kTimeoutMs);
-        talon.clearMotionProfileTrajectories();
+                .ctre("motion control frame period", () -> talon.changeMotionControlFramePeriod(config.MOTION_CONTROL_FRAME_PERIOD_MS))
+                .ctre("clear motion profile underrun", () -> talon.clearMotionProfileHasUnderrun(kTimeoutMs))
+                .ctre("clear motion profile", talon::clearMotionProfileTrajectories)
 
-        talon.clearStickyFaults(kTimeoutMs);
+                .ctre("clear sticky faults", () -> talon.clearStickyFaults(kTimeoutMs))
 
-        talon.configForwardLimitSwitchSource(LimitSwitchSource.FeedbackConnector,
-                LimitSwitchNormal.NormallyOpen, kTimeoutMs);
-        talon.configReverseLimitSwitchSource(LimitSwitchSource.FeedbackConnector,
-                LimitSwitchNormal.NormallyOpen, kTimeoutMs);
-        talon.overrideLimitSwitchesEnable(config.ENABLE_LIMIT_SWITCH);
+                .ctre("forward limit switch", () -> talon.configForwardLimitSwitchSource(LimitSwitchSource.FeedbackConnector,
+                        LimitSwitchNormal.NormallyOpen, kTimeoutMs))
+                .ctre("reverse limit switch", () -> talon.configReverseLimitSwitchSource(LimitSwitchSource.FeedbackConnector,
+                        LimitSwitchNormal.NormallyOpen, kTimeoutMs))
+                .run("limit switch override", () -> talon.overrideLimitSwitchesEnable(config.ENABLE_LIMIT_SWITCH))
 
-        // Turn off re-zeroing by default.
-        talon.configSetParameter(
-                ParamEnum.eClearPositionOnLimitF, 0, 0, 0, kTimeoutMs);
-        talon.configSetParameter(
-                ParamEnum.eClearPositionOnLimitR, 0, 0, 0, kTimeoutMs);
+                // Turn off re-zeroing by default.
+                .ctre("clear position on forward limit", () -> talon.configSetParameter(
+                        ParamEnum.eClearPositionOnLimitF, 0, 0, 0, kTimeoutMs))
+                .ctre("clear position on reverse limit", () -> talon.configSetParameter(
+                        ParamEnum.eClearPositionOnLimitR, 0, 0, 0, kTimeoutMs))
 
-        talon.configNominalOutputForward(0, kTimeoutMs);
-        talon.configNominalOutputReverse(0, kTimeoutMs);
-        talon.configNeutralDeadband(config.NEUTRAL_DEADBAND, kTimeoutMs);
+                .ctre("nominal output forward", () -> talon.configNominalOutputForward(0, kTimeoutMs))
+                .ctre("nominal output reverse", () -> talon.configNominalOutputReverse(0, kTimeoutMs))
+                .ctre("neutral deadband", () -> talon.configNeutralDeadband(config.NEUTRAL_DEADBAND, kTimeoutMs))
 
-        talon.configPeakOutputForward(1.0, kTimeoutMs);
-        talon.configPeakOutputReverse(-1.0, kTimeoutMs);
+                .ctre("peak output forward", () -> talon.configPeakOutputForward(1.0, kTimeoutMs))
+                .ctre("peak output reverse", () -> talon.configPeakOutputReverse(-1.0, kTimeoutMs))
 
-        talon.setNeutralMode(config.NEUTRAL_MODE);
+                .run("neutral mode", () -> talon.setNeutralMode(config.NEUTRAL_MODE))
 
-        talon.configForwardSoftLimitThreshold(config.FORWARD_SOFT_LIMIT, kTimeoutMs);
-        talon.configForwardSoftLimitEnable(config.ENABLE_SOFT_LIMIT, kTimeoutMs);
+                .ctre("forward soft limit", () -> talon.configForwardSoftLimitThreshold(config.FORWARD_SOFT_LIMIT, kTimeoutMs))
+                .ctre("forward soft limit enable", () -> talon.configForwardSoftLimitEnable(config.ENABLE_SOFT_LIMIT, kTimeoutMs))
 
-        talon.configReverseSoftLimitThreshold(config.REVERSE_SOFT_LIMIT, kTimeoutMs);
-        talon.configReverseSoftLimitEnable(config.ENABLE_SOFT_LIMIT, kTimeoutMs);
-        talon.overrideSoftLimitsEnable(config.ENABLE_SOFT_LIMIT);
+                .ctre("reverse soft limit", () -> talon.configReverseSoftLimitThreshold(config.REVERSE_SOFT_LIMIT, kTimeoutMs))
+                .ctre("reverse soft limit enable", () -> talon.configReverseSoftLimitEnable(config.ENABLE_SOFT_LIMIT, kTimeoutMs))
+                .run("soft limit override", () -> talon.overrideSoftLimitsEnable(config.ENABLE_SOFT_LIMIT))
 
-        talon.setInverted(config.INVERTED);
-        talon.setSensorPhase(config.SENSOR_PHASE);
+                .run("inverted", () -> talon.setInverted(config.INVERTED), () -> talon.getInverted() == config.INVERTED)
+                .run("sensor phase", () -> talon.setSensorPhase(config.SENSOR_PHASE))
 
-        talon.selectProfileSlot(0, 0);
+                .run("profile slot", () -> talon.selectProfileSlot(0, 0))
 
-        talon.configVelocityMeasurementPeriod(config.VELOCITY_MEASUREMENT_PERIOD, kTimeoutMs);
-        talon.configVelocityMeasurementWindow(config.VELOCITY_MEASUREMENT_ROLLING_AVERAGE_WINDOW,
-                kTimeoutMs);
+                .ctre("velocity measurement period", () -> talon.configVelocityMeasurementPeriod(config.VELOCITY_MEASUREMENT_PERIOD, kTimeoutMs))
+                .ctre("velocity measurement window", () -> talon.configVelocityMeasurementWindow(config.VELOCITY_MEASUREMENT_ROLLING_AVERAGE_WINDOW,
+                        kTimeoutMs))
 
-        talon.configOpenloopRamp(config.OPEN_LOOP_RAMP_RATE, kTimeoutMs);
-        talon.configClosedloopRamp(config.CLOSED_LOOP_RAMP_RATE, kTimeoutMs);
+                .ctre("open loop ramp", () -> talon.configOpenloopRamp(config.OPEN_LOOP_RAMP_RATE, kTimeoutMs),
+                        talon, ParamEnum.eOpenloopRamp, config.OPEN_LOOP_RAMP_RATE)
+                .ctre("closed loop ramp", () -> talon.configClosedloopRamp(config.CLOSED_LOOP_RAMP_RATE, kTimeoutMs),
+                        talon, ParamEnum.eClosedloopRamp, config.CLOSED_LOOP_RAMP_RATE)
 
-        talon.configVoltageCompSaturation(0.0, kTimeoutMs);
-        talon.configVoltageMeasurementFilter(32, kTimeoutMs);
-        talon.enableVoltageCompensation(false);
+                .ctre("voltage compensation saturation", () -> talon.configVoltageCompSaturation(0.0, kTimeoutMs),
+                        talon, ParamEnum.eNominalBatteryVoltage, 0.0)
+                .ctre("voltage measurement filter", () -> talon.configVoltageMeasurementFilter(32, kTimeoutMs))
+                .run("voltage compensation", () -> talon.enableVoltageCompensation(false))
 
-        talon.enableCurrentLimit(config.ENABLE_CURRENT_LIMIT);
+                .run("current limit", () -> talon.enableCurrentLimit(config.ENABLE_CURRENT_LIMIT))
 
-        talon.setStatusFramePeriod(StatusFrameEnhanced.Status_1_General,
-                config.GENERAL_STATUS_FRAME_RATE_MS, kTimeoutMs);
-        talon.setStatusFramePeriod(StatusFrameEnhanced.Status_2_Feedback0,
-                config.FEEDBACK_STATUS_FRAME_RATE_MS, kTimeoutMs);
+                .ctre("control frame period", () -> talon.setControlFramePeriod(ControlFrame.Control_3_General, config.CONTROL_FRAME_PERIOD_MS));
 
-        talon.setStatusFramePeriod(StatusFrameEnhanced.Status_3_Quadrature,
-                config.QUAD_ENCODER_STATUS_FRAME_RATE_MS, kTimeoutMs);
-        talon.setStatusFramePeriod(StatusFrameEnhanced.Status_4_AinTempVbat,
-                config.ANALOG_TEMP_VBAT_STATUS_FRAME_RATE_MS, kTimeoutMs);
-        talon.setStatusFramePeriod(StatusFrameEnhanced.Status_8_PulseWidth,
-                config.PULSE_WIDTH_STATUS_FRAME_RATE_MS, kTimeoutMs);
-
-        talon.setControlFramePeriod(ControlFrame.Control_3_General, config.CONTROL_FRAME_PERIOD_MS);
+        // Status frame periods depend on what's read from the Talon
+        StatusFramePlanner.getInstance().register(talon, "Talon SRX " + id,
+                (frame, period) -> talon.setStatusFramePeriod(toStatusFrameEnhanced(frame), period, kTimeoutMs) == ErrorCode.OK,
+                EStatusFrame.kTalonSRX);
 
         return talon;
     }
+
+    private static StatusFrameEnhanced toStatusFrameEnhanced(EStatusFrame pFrame) {
+        switch(pFrame) {
+            case TALON_GENERAL:
+                return StatusFrameEnhanced.Status_1_General;
+            case TALON_FEEDBACK:
+                return StatusFrameEnhanced.Status_2_Feedback0;
+            case TALON_QUADRATURE:
+                return StatusFrameEnhanced.Status_3_Quadrature;
+            case TALON_AIN_TEMP_VBAT:
+                return StatusFrameEnhanced.Status_4_AinTempVbat;
+            case TALON_PULSE_WIDTH:
+                return StatusFrameEnhanced.Status_8_PulseWidth;
+            default:
+                throw new IllegalArgumentException(pFrame + " isn't a Talon SRX status frame");
+        }
+    }
+
+    private static StatusFrame toStatusFrame(EStatusFrame pFrame) {
+        switch(pFrame) {
+            case VICTOR_GENERAL:
+                return StatusFrame.Status_1_General;
+            case VICTOR_FEEDBACK:
+                return StatusFrame.Status_2_Feedback0;
+            case VICTOR_AIN_TEMP_VBAT:
+                return StatusFrame.Status_4_AinTempVbat;
+            default:
+                throw new IllegalArgumentException(pFrame + " isn't a Victor SPX status frame");
+        }
+    }
 }
\ No newline at end of file
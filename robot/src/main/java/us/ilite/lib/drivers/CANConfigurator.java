@@ -0,0 +1,104 @@
+package us.ilite.lib.drivers;
+
+import com.flybotix.hfr.util.log.ILog;
+import com.flybotix.hfr.util.log.Logger;
+
+import us.ilite.common.config.SystemSettings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Configures every CAN device at once.
+ *
+ * Each config call waits for the device to acknowledge it, so configuring devices one after another makes boot time
+ * grow with the number of devices and with every timeout.  Instead, factories and modules describe the configuration
+ * each device should have with a {@link CANDeviceConfig}, and {@link #applyAll()} applies them all at robotInit - one
+ * thread per device, up to {@link SystemSettings#kCANConfigThreads} at a time.  Settings for one device are still
+ * applied in the order they were added.
+ */
+public class CANConfigurator {
+
+    private static final CANConfigurator kInstance = new CANConfigurator();
+
+    private final ILog mLog = Logger.createLog(CANConfigurator.class);
+
+    private final Map<Object, CANDeviceConfig> mConfigs = new IdentityHashMap<>();
+    private final List<CANDeviceConfig> mOrder = new ArrayList<>();
+    private volatile boolean mApplied = false;
+
+    public static CANConfigurator getInstance() {
+        return kInstance;
+    }
+
+    CANConfigurator() {
+    }
+
+    /**
+     * @param pDevice The motor controller or sensor being configured
+     * @param pName Used in logs - only used the first time pDevice is configured
+     * @return pDevice's configuration, to add settings to
+     */
+    public synchronized CANDeviceConfig configure(Object pDevice, String pName) {
+        CANDeviceConfig config = mConfigs.get(pDevice);
+        if(config == null) {
+            // Devices created after applyAll() are configured right away
+            config = new CANDeviceConfig(pName, mApplied);
+            mConfigs.put(pDevice, config);
+            mOrder.add(config);
+        }
+        return config;
+    }
+
+    /**
+     * @return pDevice's configuration, to add settings to
+     */
+    public CANDeviceConfig configure(Object pDevice) {
+        return configure(pDevice, pDevice.getClass().getSimpleName());
+    }
+
+    /**
+     * Applies every held setting, then applies settings as soon as they're added from then on.  Only the first call
+     * does anything.
+     * @return How configuring each device went
+     */
+    public synchronized List<CANDeviceConfig.Result> applyAll() {
+        if(mApplied) {
+            return Collections.emptyList();
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(SystemSettings.kCANConfigThreads, 1), runnable -> {
+            Thread thread = new Thread(runnable, "CANConfigurator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<CANDeviceConfig.Result>> futures = new ArrayList<>();
+        for(CANDeviceConfig config : mOrder) {
+            futures.add(pool.submit(config::apply));
+        }
+
+        List<CANDeviceConfig.Result> results = new ArrayList<>();
+        for(int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (InterruptedException | ExecutionException e) {
+                mLog.error("Configuring ", mOrder.get(i).getName(), " failed: ", e);
+            }
+        }
+        pool.shutdown();
+        mApplied = true;
+        return results;
+    }
+
+    public boolean isApplied() {
+        return mApplied;
+    }
+
+}
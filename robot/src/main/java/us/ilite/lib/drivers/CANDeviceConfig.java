@@ -0,0 +1,235 @@
+package us.ilite.lib.drivers;
+
+import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.ParamEnum;
+import com.ctre.phoenix.motorcontrol.can.BaseMotorController;
+import com.flybotix.hfr.util.log.ILog;
+import com.flybotix.hfr.util.log.Logger;
+import com.revrobotics.CANError;
+
+import us.ilite.common.config.SystemSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The configuration one CAN device should end up with, as an ordered list of settings.  Get one from {@link
+ * CANConfigurator#configure(Object, String)}.
+ *
+ * Settings added before {@link CANConfigurator#applyAll()} are held until then, so every device can be configured at
+ * the same time.  Settings added afterwards are applied right away.
+ *
+ * A setting is applied, then verified by reading it back if it has a read-back - otherwise the device acknowledging
+ * it is enough.  A setting that fails is retried on its own, up to {@link SystemSettings#kCANConfigRetries} times,
+ * before moving on.  If {@link SystemSettings#kCANConfigMaxConsecutiveFailures} settings in a row fail, the device is
+ * assumed to be missing and the rest are skipped, rather than waiting out every timeout.
+ *
+ * Settings can be added from any thread, including while {@link CANConfigurator#applyAll()} is applying them.
+ */
+public class CANDeviceConfig {
+
+    private final ILog mLog = Logger.createLog(CANDeviceConfig.class);
+
+    // CTRE devices store some parameters, like ramp rates, in coarser units than they're set in
+    private static final double kCTREReadBackTolerance = 0.05;
+
+    private final String mName;
+    // Guarded by this
+    private final List<Setting> mSettings = new ArrayList<>();
+    private boolean mApplied;
+    private Runnable mInvalidate = null;
+
+    /**
+     * @param pApplied Whether settings should be applied as soon as they're added, rather than held
+     */
+    CANDeviceConfig(String pName, boolean pApplied) {
+        mName = pName;
+        mApplied = pApplied;
+    }
+
+    /**
+     * @param pInvalidate Called before a setting is retried, e.g. to clear a lazy wrapper's cache so the retry isn't
+     *                    skipped
+     */
+    public synchronized CANDeviceConfig setInvalidate(Runnable pInvalidate) {
+        mInvalidate = pInvalidate;
+        return this;
+    }
+
+    /**
+     * @param pApply Returns whether the device acknowledged the setting
+     * @param pVerify Reads the setting back and returns whether it matches, or null to trust the acknowledgement
+     */
+    public synchronized CANDeviceConfig set(String pName, BooleanSupplier pApply, BooleanSupplier pVerify) {
+        Setting setting = new Setting(pName, pApply, pVerify);
+        if(mApplied) {
+            if(!apply(setting, new Result(mName))) {
+                mLog.error("Failed to configure ", pName, " on ", mName);
+            }
+        } else {
+            mSettings.add(setting);
+        }
+        return this;
+    }
+
+    /**
+     * A Spark MAX setting, acknowledged if it returns {@link CANError#kOK}
+     */
+    public CANDeviceConfig rev(String pName, Supplier<CANError> pApply) {
+        return rev(pName, pApply, null);
+    }
+
+    public CANDeviceConfig rev(String pName, Supplier<CANError> pApply, BooleanSupplier pVerify) {
+        return set(pName, () -> pApply.get() == CANError.kOK, pVerify);
+    }
+
+    /**
+     * A CTRE setting, acknowledged if it returns {@link ErrorCode#OK}
+     */
+    public CANDeviceConfig ctre(String pName, Supplier<ErrorCode> pApply) {
+        return ctre(pName, pApply, null);
+    }
+
+    public CANDeviceConfig ctre(String pName, Supplier<ErrorCode> pApply, BooleanSupplier pVerify) {
+        return set(pName, () -> pApply.get() == ErrorCode.OK, pVerify);
+    }
+
+    /**
+     * A CTRE setting, verified by reading pParameter back from pDevice
+     * @param pExpected What pParameter should read back as, in the units it was set in
+     */
+    public CANDeviceConfig ctre(String pName, Supplier<ErrorCode> pApply, BaseMotorController pDevice, ParamEnum pParameter,
+                                double pExpected) {
+        return ctre(pName, pApply, () -> {
+            double actual = pDevice.configGetParameter(pParameter, 0, SystemSettings.kLongCANTimeoutMs);
+            return Math.abs(actual - pExpected) <= Math.max(kCTREReadBackTolerance * Math.abs(pExpected), 0.01);
+        });
+    }
+
+    /**
+     * A setting the device doesn't acknowledge
+     */
+    public CANDeviceConfig run(String pName, Runnable pApply) {
+        return run(pName, pApply, null);
+    }
+
+    public CANDeviceConfig run(String pName, Runnable pApply, BooleanSupplier pVerify) {
+        return set(pName, () -> {
+            pApply.run();
+            return true;
+        }, pVerify);
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Applies every held setting, in order, and applies settings as soon as they're added from then on.  Settings for
+     * one device are never applied from two threads at once.
+     */
+    synchronized Result apply() {
+        Result result = new Result(mName);
+        long start = System.nanoTime();
+        int consecutiveFailures = 0;
+        for(Setting setting : mSettings) {
+            if(consecutiveFailures >= SystemSettings.kCANConfigMaxConsecutiveFailures) {
+                result.mFailures.add(setting.mName + " (skipped)");
+                continue;
+            }
+            if(apply(setting, result)) {
+                consecutiveFailures = 0;
+            } else {
+                consecutiveFailures++;
+                result.mFailures.add(setting.mName);
+            }
+            result.mSettings++;
+        }
+        mSettings.clear();
+        mApplied = true;
+        result.mSeconds = (System.nanoTime() - start) / 1e9;
+        return result;
+    }
+
+    private boolean apply(Setting pSetting, Result pResult) {
+        for(int attempt = 0; attempt <= SystemSettings.kCANConfigRetries; attempt++) {
+            if(attempt > 0) {
+                pResult.mRetries++;
+                if(mInvalidate != null) {
+                    mInvalidate.run();
+                }
+            }
+            try {
+                if(pSetting.mApply.getAsBoolean() && (pSetting.mVerify == null || pSetting.mVerify.getAsBoolean())) {
+                    return true;
+                }
+            } catch(RuntimeException e) {
+                mLog.exception(e);
+            }
+        }
+        return false;
+    }
+
+    private static class Setting {
+        private final String mName;
+        private final BooleanSupplier mApply;
+        private final BooleanSupplier mVerify;
+
+        private Setting(String pName, BooleanSupplier pApply, BooleanSupplier pVerify) {
+            mName = pName;
+            mApply = pApply;
+            mVerify = pVerify;
+        }
+    }
+
+    /**
+     * How configuring one device went
+     */
+    public static class Result {
+        private final String mName;
+        private double mSeconds = 0.0;
+        private int mSettings = 0;
+        private int mRetries = 0;
+        private final List<String> mFailures = new ArrayList<>();
+
+        private Result(String pName) {
+            mName = pName;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public double getSeconds() {
+            return mSeconds;
+        }
+
+        public int getSettings() {
+            return mSettings;
+        }
+
+        public int getRetries() {
+            return mRetries;
+        }
+
+        /**
+         * @return Settings that couldn't be applied or verified
+         */
+        public List<String> getFailures() {
+            return mFailures;
+        }
+
+        public boolean isSuccessful() {
+            return mFailures.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return mName + ": " + mSettings + " settings in " + mSeconds + "s, " + mRetries + " retries"
+                    + (mFailures.isEmpty() ? "" : ", failed " + mFailures);
+        }
+    }
+
+}
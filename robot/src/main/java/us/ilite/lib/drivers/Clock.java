@@ -9,6 +9,7 @@ import edu.wpi.first.wpilibj.Timer;
  * @author Stephen Welch
  * Provides a consistent time between cycles.
  * The cycleEnded() method must be called at the end of each robot cycle so we know when to update to the next time.
+ * Thread-safe, since the cycle is advanced by the thread running the modules while codexes are timestamped from others.
  */
 public class Clock {
 
@@ -26,7 +27,7 @@ public class Clock {
      *
      * @return A cycle-consistent time, in seconds.
      */
-    public double getCurrentTime() {
+    public synchronized double getCurrentTime() {
         if(hasTimeUpdatedThisCycle == false) {
             mCurrentTime = (mIsSimulated) ? getJavaTime() : getRobotTime();
             mCurrentTime -= mStartTime;
@@ -63,11 +64,11 @@ public class Clock {
     /**
      * Call this to signify the end of a robot cycle and tell the time to update next time it's retrieved.
      */
-    public void cycleEnded() {
+    public synchronized void cycleEnded() {
         hasTimeUpdatedThisCycle = false;
     }
 
-    public void setTime(double time) {
+    public synchronized void setTime(double time) {
         if(mIsSimulated) {
             mStartTime = 0.0;
             mCurrentTime = time;
@@ -76,7 +77,7 @@ public class Clock {
         }
     }
 
-    public Clock simulated() {
+    public synchronized Clock simulated() {
         mStartTime = getJavaTime();
         mIsSimulated = true;
         return this;
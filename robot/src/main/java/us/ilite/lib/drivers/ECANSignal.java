@@ -0,0 +1,20 @@
+package us.ilite.lib.drivers;
+
+/**
+ * Values a motor controller reports in its status frames.  Modules tell the {@link StatusFramePlanner} which of these
+ * they read, and how often.
+ */
+public enum ECANSignal {
+
+    APPLIED_OUTPUT,
+    FAULTS,
+    POSITION,
+    VELOCITY,
+    CURRENT,
+    TEMPERATURE,
+    BUS_VOLTAGE,
+    QUADRATURE,
+    ANALOG,
+    PULSE_WIDTH;
+
+}
@@ -0,0 +1,57 @@
+package us.ilite.lib.drivers;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static us.ilite.lib.drivers.ECANSignal.*;
+
+/**
+ * The status frames each kind of motor controller sends, which signals each one carries, and how often the controller
+ * sends it by default.
+ */
+public enum EStatusFrame {
+
+    TALON_GENERAL(10, APPLIED_OUTPUT, FAULTS),
+    TALON_FEEDBACK(20, POSITION, VELOCITY, CURRENT),
+    TALON_QUADRATURE(160, QUADRATURE),
+    TALON_AIN_TEMP_VBAT(160, ANALOG, TEMPERATURE, BUS_VOLTAGE),
+    TALON_PULSE_WIDTH(160, PULSE_WIDTH),
+
+    VICTOR_GENERAL(10, APPLIED_OUTPUT, FAULTS),
+    VICTOR_FEEDBACK(20, POSITION, VELOCITY),
+    VICTOR_AIN_TEMP_VBAT(160, TEMPERATURE, BUS_VOLTAGE),
+
+    SPARK_STATUS_0(10, APPLIED_OUTPUT, FAULTS),
+    SPARK_STATUS_1(20, VELOCITY, CURRENT, TEMPERATURE, BUS_VOLTAGE),
+    SPARK_STATUS_2(50, POSITION);
+
+    public static final EStatusFrame[] kTalonSRX = { TALON_GENERAL, TALON_FEEDBACK, TALON_QUADRATURE, TALON_AIN_TEMP_VBAT, TALON_PULSE_WIDTH };
+    public static final EStatusFrame[] kVictorSPX = { VICTOR_GENERAL, VICTOR_FEEDBACK, VICTOR_AIN_TEMP_VBAT };
+    public static final EStatusFrame[] kSparkMax = { SPARK_STATUS_0, SPARK_STATUS_1, SPARK_STATUS_2 };
+
+    private final int mDefaultPeriodMs;
+    private final Set<ECANSignal> mSignals;
+
+    EStatusFrame(int pDefaultPeriodMs, ECANSignal... pSignals) {
+        mDefaultPeriodMs = pDefaultPeriodMs;
+        mSignals = Collections.unmodifiableSet(EnumSet.copyOf(Arrays.asList(pSignals)));
+    }
+
+    /**
+     * @return How often the controller sends this frame if it isn't told otherwise
+     */
+    public int getDefaultPeriodMs() {
+        return mDefaultPeriodMs;
+    }
+
+    public Set<ECANSignal> getSignals() {
+        return mSignals;
+    }
+
+    public boolean carries(ECANSignal pSignal) {
+        return mSignals.contains(pSignal);
+    }
+
+}
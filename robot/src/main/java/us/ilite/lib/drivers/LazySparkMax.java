@@ -0,0 +1,344 @@
+package us.ilite.lib.drivers;
+
+import com.revrobotics.CANError;
+import com.revrobotics.CANPIDController;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.ControlType;
+
+import us.ilite.common.config.SystemSettings;
+
+import java.util.Arrays;
+
+/**
+ * A thin wrapper around the Spark MAX that skips writes that wouldn't change anything, like {@link
+ * com.team254.lib.drivers.talon.LazyTalonSRX} does for Talons.  Every set, setReference and config call on a Spark MAX
+ * is a blocking JNI call and a CAN frame.
+ *
+ * The last setpoint (reference, control type, PID slot and feedforward) is cached, and a repeat is skipped - but only
+ * for {@link SystemSettings#kLazySetpointMaxAge}, so a dropped frame doesn't stick.  Ramp rates, idle mode and the PID
+ * controller's per-slot gains are cached until {@link #restoreFactoryDefaults()}.  Writes that fail aren't cached, so
+ * they're tried again.
+ *
+ * {@link #getPIDController()} always returns the same controller, so its calls go through the cache too.
+ */
+public class LazySparkMax extends CANSparkMax {
+
+    private static final int kSlots = 4;
+
+    private enum EGain {
+        P, I, D, FF, IZONE, OUTPUT_MIN, OUTPUT_MAX,
+        SMART_MOTION_MAX_VELOCITY, SMART_MOTION_MAX_ACCEL, SMART_MOTION_MIN_VELOCITY, SMART_MOTION_ALLOWED_ERROR
+    }
+
+    private final LazyPIDController mPidController;
+
+    private double mLastReference = Double.NaN;
+    private ControlType mLastControlType = null;
+    private int mLastPidSlot = -1;
+    private double mLastFeedforward = Double.NaN;
+    private long mLastSetpointNanos = 0;
+
+    private double mOpenLoopRampRate = Double.NaN;
+    private double mClosedLoopRampRate = Double.NaN;
+    private IdleMode mIdleMode = null;
+    private final double[][] mGains = new double[EGain.values().length][kSlots];
+
+    private long mSetpointCalls = 0;
+    private long mSetpointsSent = 0;
+    private long mConfigCalls = 0;
+    private long mConfigsSent = 0;
+
+    public LazySparkMax(int pDeviceId, MotorType pMotorType) {
+        super(pDeviceId, pMotorType);
+        mPidController = new LazyPIDController(this);
+        clearConfigCache();
+    }
+
+    @Override
+    public CANPIDController getPIDController() {
+        return mPidController;
+    }
+
+    @Override
+    public void set(double pSpeed) {
+        if(isNewSetpoint(pSpeed, ControlType.kDutyCycle, 0, 0.0)) {
+            super.set(pSpeed);
+            mSetpointsSent++;
+        }
+    }
+
+    @Override
+    public void disable() {
+        super.disable();
+        clearSetpointCache();
+    }
+
+    @Override
+    public void stopMotor() {
+        super.stopMotor();
+        clearSetpointCache();
+    }
+
+    @Override
+    public CANError setOpenLoopRampRate(double pRate) {
+        mConfigCalls++;
+        if(pRate == mOpenLoopRampRate) {
+            return CANError.kOK;
+        }
+        mConfigsSent++;
+        CANError error = super.setOpenLoopRampRate(pRate);
+        mOpenLoopRampRate = error == CANError.kOK ? pRate : Double.NaN;
+        return error;
+    }
+
+    @Override
+    public CANError setClosedLoopRampRate(double pRate) {
+        mConfigCalls++;
+        if(pRate == mClosedLoopRampRate) {
+            return CANError.kOK;
+        }
+        mConfigsSent++;
+        CANError error = super.setClosedLoopRampRate(pRate);
+        mClosedLoopRampRate = error == CANError.kOK ? pRate : Double.NaN;
+        return error;
+    }
+
+    @Override
+    public CANError setIdleMode(IdleMode pMode) {
+        mConfigCalls++;
+        if(pMode == mIdleMode) {
+            return CANError.kOK;
+        }
+        mConfigsSent++;
+        CANError error = super.setIdleMode(pMode);
+        mIdleMode = error == CANError.kOK ? pMode : null;
+        return error;
+    }
+
+    /**
+     * Resets the device's configuration, so everything cached is forgotten
+     */
+    @Override
+    public CANError restoreFactoryDefaults() {
+        clearConfigCache();
+        clearSetpointCache();
+        return super.restoreFactoryDefaults();
+    }
+
+    /**
+     * Forgets everything cached, so the next call of each kind is sent no matter what
+     */
+    public void invalidateCache() {
+        clearConfigCache();
+        clearSetpointCache();
+    }
+
+    /**
+     * @return Whether a setpoint is new or old enough to send, counting the call either way
+     */
+    private boolean isNewSetpoint(double pReference, ControlType pControlType, int pPidSlot, double pFeedforward) {
+        mSetpointCalls++;
+        long now = System.nanoTime();
+        if(pReference == mLastReference && pControlType == mLastControlType && pPidSlot == mLastPidSlot
+                && pFeedforward == mLastFeedforward
+                && (now - mLastSetpointNanos) < (long)(SystemSettings.kLazySetpointMaxAge * 1e9)) {
+            return false;
+        }
+        mLastReference = pReference;
+        mLastControlType = pControlType;
+        mLastPidSlot = pPidSlot;
+        mLastFeedforward = pFeedforward;
+        mLastSetpointNanos = now;
+        return true;
+    }
+
+    private void clearSetpointCache() {
+        mLastReference = Double.NaN;
+        mLastControlType = null;
+    }
+
+    private void clearConfigCache() {
+        mOpenLoopRampRate = Double.NaN;
+        mClosedLoopRampRate = Double.NaN;
+        mIdleMode = null;
+        for(double[] gain : mGains) {
+            Arrays.fill(gain, Double.NaN);
+        }
+    }
+
+    private boolean isCached(EGain pGain, int pSlot, double pValue) {
+        return pSlot >= 0 && pSlot < kSlots && mGains[pGain.ordinal()][pSlot] == pValue;
+    }
+
+    private CANError cacheGain(EGain pGain, int pSlot, double pValue, CANError pError) {
+        if(pSlot >= 0 && pSlot < kSlots) {
+            mGains[pGain.ordinal()][pSlot] = pError == CANError.kOK ? pValue : Double.NaN;
+        }
+        return pError;
+    }
+
+    /**
+     * @return set() and setReference() calls
+     */
+    public long getSetpointCalls() {
+        return mSetpointCalls;
+    }
+
+    /**
+     * @return Setpoints actually sent to the device
+     */
+    public long getSetpointsSent() {
+        return mSetpointsSent;
+    }
+
+    /**
+     * @return Ramp rate, idle mode and gain calls
+     */
+    public long getConfigCalls() {
+        return mConfigCalls;
+    }
+
+    /**
+     * @return Config calls actually sent to the device
+     */
+    public long getConfigsSent() {
+        return mConfigsSent;
+    }
+
+    private static class LazyPIDController extends CANPIDController {
+
+        private final LazySparkMax mSparkMax;
+
+        private LazyPIDController(LazySparkMax pSparkMax) {
+            super(pSparkMax);
+            mSparkMax = pSparkMax;
+        }
+
+        @Override
+        public CANError setReference(double pValue, ControlType pControlType) {
+            return setReference(pValue, pControlType, 0, 0.0);
+        }
+
+        @Override
+        public CANError setReference(double pValue, ControlType pControlType, int pPidSlot) {
+            return setReference(pValue, pControlType, pPidSlot, 0.0);
+        }
+
+        @Override
+        public CANError setReference(double pValue, ControlType pControlType, int pPidSlot, double pArbFeedforward) {
+            if(!mSparkMax.isNewSetpoint(pValue, pControlType, pPidSlot, pArbFeedforward)) {
+                return CANError.kOK;
+            }
+            mSparkMax.mSetpointsSent++;
+            CANError error = super.setReference(pValue, pControlType, pPidSlot, pArbFeedforward);
+            if(error != CANError.kOK) {
+                mSparkMax.clearSetpointCache();
+            }
+            return error;
+        }
+
+        @Override
+        public CANError setP(double pGain, int pSlot) {
+            mSparkMax.mConfigCalls++;
+            if(mSparkMax.isCached(EGain.P, pSlot, pGain)) return CANError.kOK;
+            mSparkMax.mConfigsSent++;
+            return mSparkMax.cacheGain(EGain.P, pSlot, pGain, super.setP(pGain, pSlot));
+        }
+
+        @Override
+        public CANError setI(double pGain, int pSlot) {
+            mSparkMax.mConfigCalls++;
+            if(mSparkMax.isCached(EGain.I, pSlot, pGain)) return CANError.kOK;
+            mSparkMax.mConfigsSent++;
+            return mSparkMax.cacheGain(EGain.I, pSlot, pGain, super.setI(pGain, pSlot));
+        }
+
+        @Override
+        public CANError setD(double pGain, int pSlot) {
+            mSparkMax.mConfigCalls++;
+            if(mSparkMax.isCached(EGain.D, pSlot, pGain)) return CANError.kOK;
+            mSparkMax.mConfigsSent++;
+            return mSparkMax.cacheGain(EGain.D, pSlot, pGain, super.setD(pGain, pSlot));
+        }
+
+        @Override
+        public CANError setFF(double pGain, int pSlot) {
+            mSparkMax.mConfigCalls++;
+            if(mSparkMax.isCached(EGain.FF, pSlot, pGain)) return CANError.kOK;
+            mSparkMax.mConfigsSent++;
+            return mSparkMax.cacheGain(EGain.FF, pSlot, pGain, super.setFF(pGain, pSlot));
+        }
+
+        @Override
+        public CANError setIZone(double pIZone, int pSlot) {
+            mSparkMax.mConfigCalls++;
+            if(mSparkMax.isCached(EGain.IZONE, pSlot, pIZone)) return CANError.kOK;
+            mSparkMax.mConfigsSent++;
+            return mSparkMax.cacheGain(EGain.IZONE, pSlot, pIZone, super.setIZone(pIZone, pSlot));
+        }
+
+        @Override
+        public CANError setP(double pGain) {
+            return setP(pGain, 0);
+        }
+
+        @Override
+        public CANError setI(double pGain) {
+            return setI(pGain, 0);
+        }
+
+        @Override
+        public CANError setD(double pGain) {
+            return setD(pGain, 0);
+        }
+
+        @Override
+        public CANError setFF(double pGain) {
+            return setFF(pGain, 0);
+        }
+
+        @Override
+        public CANError setOutputRange(double pMin, double pMax, int pSlot) {
+            mSparkMax.mConfigCalls++;
+            if(mSparkMax.isCached(EGain.OUTPUT_MIN, pSlot, pMin) && mSparkMax.isCached(EGain.OUTPUT_MAX, pSlot, pMax)) return CANError.kOK;
+            mSparkMax.mConfigsSent++;
+            CANError error = super.setOutputRange(pMin, pMax, pSlot);
+            mSparkMax.cacheGain(EGain.OUTPUT_MIN, pSlot, pMin, error);
+            return mSparkMax.cacheGain(EGain.OUTPUT_MAX, pSlot, pMax, error);
+        }
+
+        @Override
+        public CANError setSmartMotionMaxVelocity(double pMaxVelocity, int pSlot) {
+            mSparkMax.mConfigCalls++;
+            if(mSparkMax.isCached(EGain.SMART_MOTION_MAX_VELOCITY, pSlot, pMaxVelocity)) return CANError.kOK;
+            mSparkMax.mConfigsSent++;
+            return mSparkMax.cacheGain(EGain.SMART_MOTION_MAX_VELOCITY, pSlot, pMaxVelocity, super.setSmartMotionMaxVelocity(pMaxVelocity, pSlot));
+        }
+
+        @Override
+        public CANError setSmartMotionMaxAccel(double pMaxAccel, int pSlot) {
+            mSparkMax.mConfigCalls++;
+            if(mSparkMax.isCached(EGain.SMART_MOTION_MAX_ACCEL, pSlot, pMaxAccel)) return CANError.kOK;
+            mSparkMax.mConfigsSent++;
+            return mSparkMax.cacheGain(EGain.SMART_MOTION_MAX_ACCEL, pSlot, pMaxAccel, super.setSmartMotionMaxAccel(pMaxAccel, pSlot));
+        }
+
+        @Override
+        public CANError setSmartMotionMinOutputVelocity(double pMinVelocity, int pSlot) {
+            mSparkMax.mConfigCalls++;
+            if(mSparkMax.isCached(EGain.SMART_MOTION_MIN_VELOCITY, pSlot, pMinVelocity)) return CANError.kOK;
+            mSparkMax.mConfigsSent++;
+            return mSparkMax.cacheGain(EGain.SMART_MOTION_MIN_VELOCITY, pSlot, pMinVelocity, super.setSmartMotionMinOutputVelocity(pMinVelocity, pSlot));
+        }
+
+        @Override
+        public CANError setSmartMotionAllowedClosedLoopError(double pAllowedError, int pSlot) {
+            mSparkMax.mConfigCalls++;
+            if(mSparkMax.isCached(EGain.SMART_MOTION_ALLOWED_ERROR, pSlot, pAllowedError)) return CANError.kOK;
+            mSparkMax.mConfigsSent++;
+            return mSparkMax.cacheGain(EGain.SMART_MOTION_ALLOWED_ERROR, pSlot, pAllowedError, super.setSmartMotionAllowedClosedLoopError(pAllowedError, pSlot));
+        }
+
+    }
+
+}
@@ -0,0 +1,180 @@
+package us.ilite.lib.drivers;
+
+import com.flybotix.hfr.codex.Codex;
+import com.flybotix.hfr.util.log.ILog;
+import com.flybotix.hfr.util.log.Logger;
+import edu.wpi.first.wpilibj.PowerDistributionPanel;
+import edu.wpi.first.wpilibj.Timer;
+import us.ilite.common.config.SystemSettings;
+import us.ilite.common.lib.util.SeqLock;
+import us.ilite.common.types.sensor.EPowerDistPanel;
+import us.ilite.robot.modules.ModuleTiming;
+
+import java.util.Arrays;
+
+/**
+ * Reads the PDP on its own low priority thread, so the ~5ms it takes to read every channel never lands on the
+ * control loop.
+ *
+ * Only the channels some consumer has registered for are read.  Each sample is published as a timestamped
+ * snapshot, and {@link #map(Codex, double)} copies the newest snapshot into the PDP codex - but only if it's
+ * recent enough, so a stalled sampler shows up as unset channels rather than old currents.
+ */
+public class PdpSampler implements Runnable {
+
+    private final ILog mLog = Logger.createLog(PdpSampler.class);
+
+    private static final int kChannels = EPowerDistPanel.values().length;
+
+    private final PowerDistributionPanel mPdp;
+    private final SeqLock<Snapshot> mSnapshot = new SeqLock<>(new Snapshot());
+    // Read by the sampler thread, so registering is safe at any time
+    private volatile boolean[] mRegistered = new boolean[kChannels];
+
+    private Thread mThread = null;
+    private volatile boolean mRunning = false;
+    // Only used by map()
+    private final double[] mMapValues = new double[kChannels];
+    private boolean mWasStale = true;
+
+    public PdpSampler(PowerDistributionPanel pPdp) {
+        mPdp = pPdp;
+    }
+
+    /**
+     * Starts reading pChannels, on top of any channels that were already registered
+     */
+    public synchronized void register(EPowerDistPanel ... pChannels) {
+        boolean[] registered = Arrays.copyOf(mRegistered, kChannels);
+        for(EPowerDistPanel channel : pChannels) {
+            registered[channel.ordinal()] = true;
+        }
+        mRegistered = registered;
+    }
+
+    public synchronized void start() {
+        if(mThread != null) {
+            return;
+        }
+        mRunning = true;
+        mThread = new Thread(this, "PdpSampler");
+        mThread.setDaemon(true);
+        mThread.setPriority(Thread.MIN_PRIORITY);
+        mThread.start();
+    }
+
+    public synchronized void stop() {
+        mRunning = false;
+        mThread = null;
+    }
+
+    @Override
+    public void run() {
+        ModuleTiming timing = new ModuleTiming("PdpSampler");
+        double[] values = new double[kChannels];
+        while(mRunning) {
+            long start = System.nanoTime();
+            sample(values);
+            long elapsed = System.nanoTime() - start;
+            timing.recordInput(elapsed);
+            timing.endCycle();
+            timing.report(Timer.getFPGATimestamp());
+
+            long sleepMillis = (long)(SystemSettings.kPdpSamplePeriod * 1000.0) - (elapsed / 1_000_000);
+            try {
+                Thread.sleep(Math.max(sleepMillis, 1));
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void sample(double[] pValues) {
+        boolean[] registered = mRegistered;
+        for(int i = 0; i < kChannels; i++) {
+            if(!registered[i]) {
+                pValues[i] = Double.NaN;
+            } else if(i == EPowerDistPanel.VOLTAGE.ordinal()) {
+                pValues[i] = mPdp.getVoltage();
+            } else if(i == EPowerDistPanel.TEMPERATURE.ordinal()) {
+                pValues[i] = mPdp.getTemperature();
+            } else {
+                pValues[i] = mPdp.getCurrent(i);
+            }
+        }
+        double timestamp = Timer.getFPGATimestamp();
+        mSnapshot.write(snapshot -> {
+            System.arraycopy(pValues, 0, snapshot.mValues, 0, kChannels);
+            snapshot.mTimestamp = timestamp;
+        });
+    }
+
+    /**
+     * @return The newest sample of pChannel, or NaN if it isn't registered or hasn't been read yet
+     */
+    public double get(EPowerDistPanel pChannel) {
+        int channel = pChannel.ordinal();
+        return mSnapshot.readDouble(snapshot -> snapshot.mValues[channel]);
+    }
+
+    /**
+     * @return When the newest sample was taken, on the FPGA clock
+     */
+    public double getTimestamp() {
+        return mSnapshot.readDouble(snapshot -> snapshot.mTimestamp);
+    }
+
+    /**
+     * @return Seconds between the newest sample and pNow
+     */
+    public double getAge(double pNow) {
+        return pNow - getTimestamp();
+    }
+
+    /**
+     * Sets the registered channels of pCodex from the newest sample.  Leaves them unset if the sample is older than
+     * {@link SystemSettings#kPdpMaxSampleAge}.  Only call this from one thread.
+     * @return Whether the sample was recent enough to use
+     */
+    public boolean map(Codex<Double, EPowerDistPanel> pCodex, double pNow) {
+        double[] values = mMapValues;
+        double timestamp = mSnapshot.readDouble(snapshot -> {
+            System.arraycopy(snapshot.mValues, 0, values, 0, kChannels);
+            return snapshot.mTimestamp;
+        });
+
+        boolean isStale = (pNow - timestamp) > SystemSettings.kPdpMaxSampleAge;
+        if(isStale != mWasStale) {
+            if(isStale) {
+                mLog.warn("PDP sample is ", pNow - timestamp, "s old - not using it");
+            } else {
+                mLog.warn("PDP samples are current");
+            }
+            mWasStale = isStale;
+        }
+        if(isStale) {
+            return false;
+        }
+
+        for(int i = 0; i < kChannels; i++) {
+            if(!Double.isNaN(values[i])) {
+                pCodex.set(i, values[i]);
+            }
+        }
+        return true;
+    }
+
+    public long getSamples() {
+        return mSnapshot.getWrites();
+    }
+
+    private static class Snapshot {
+        private final double[] mValues = new double[kChannels];
+        private double mTimestamp = Double.NEGATIVE_INFINITY;
+
+        private Snapshot() {
+            Arrays.fill(mValues, Double.NaN);
+        }
+    }
+
+}
@@ -1,5 +1,7 @@
 package us.ilite.lib.drivers;
 
+import com.flybotix.hfr.util.log.ILog;
+import com.flybotix.hfr.util.log.Logger;
 import com.revrobotics.CANEncoder;
 import com.revrobotics.CANPIDController;
 import com.revrobotics.CANSparkMax;
@@ -11,22 +13,31 @@ import com.revrobotics.CANSparkMaxLowLevel.PeriodicFrame;
 
 import us.ilite.common.config.SystemSettings;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * This is a factory class for the Spark MAX motor controller that re-configures
  * all settings to our defaults. Note that settings must be explicitly flashed
  * to the Spark MAX in order to persisten across power cycles.
  * 
+ * Every Spark MAX is a {@link LazySparkMax}, so redundant writes are skipped.  The factory keeps track of each one
+ * it creates, so their call counts can be logged.
+ *
+ * Settings aren't sent right away - they're added to the device's {@link CANDeviceConfig}, and sent along with
+ * every other device's at robotInit.  Anything that configures a Spark MAX after creating it should do the same.
+ * Status frame periods are left to the {@link StatusFramePlanner}.
  */
 public class SparkMaxFactory {
 
+    private static final ILog sLog = Logger.createLog(SparkMaxFactory.class);
+    private static final List<LazySparkMax> kSparkMaxes = new ArrayList<>();
+
     public static class Configuration {
         public int CAN_TIMEOUT = 100;
         public int CONTROL_FRAME_PERIOD = 10;
         public IdleMode IDLE_MODE = IdleMode.kBrake;
         public boolean IS_INVERTED = false;
-        public int STATUS_0_PERIOD_MS = 10;
-        public int STATUS_1_PERIOD_MS = 20;
-        public int STATUS_2_PERIOD_MS = 50;
         public double RAMP_RATE = 0.0;
         public int SMART_CURRENT_LIMIT = 80;
         public double SECONDARY_CURRENT_LIMIT = 0.0;
@@ -39,31 +50,66 @@ public class SparkMaxFactory {
         // kSlaveConfiguration.CONTROL_FRAME_PERIOD = 100;
     }
 
-    public static CANSparkMax createDefaultSparkMax(int pId, MotorType pMotorType) {
+    public static LazySparkMax createDefaultSparkMax(int pId, MotorType pMotorType) {
         return createSparkMax(pId, pMotorType, kDefaultConfiguration);
     }
 
-    public static CANSparkMax createPermanentSlaveSparkMax(int pId, CANSparkMax pMaster, MotorType pMotorType) {
-        CANSparkMax spark = createSparkMax(pId, pMotorType, kSlaveConfiguration);
-        spark.follow(pMaster);
+    public static LazySparkMax createPermanentSlaveSparkMax(int pId, CANSparkMax pMaster, MotorType pMotorType) {
+        LazySparkMax spark = createSparkMax(pId, pMotorType, kSlaveConfiguration);
+        CANConfigurator.getInstance().configure(spark).rev("follow", () -> spark.follow(pMaster));
+        // Followers get the master's output from its status 0 frame
+        StatusFramePlanner.getInstance().consume(pMaster, ECANSignal.APPLIED_OUTPUT, SystemSettings.kCANControlSignalPeriodMs);
         return spark;
     }
 
-    public static CANSparkMax createSparkMax(int pId, MotorType pMotorType, Configuration pConfiguration) {
-        CANSparkMax spark = new CANSparkMax(pId, pMotorType);
-        spark.restoreFactoryDefaults();
-        spark.setCANTimeout(pConfiguration.CAN_TIMEOUT);
-//        spark.setControlFramePeriod(pConfiguration.CONTROL_FRAME_PERIOD);
-        spark.setIdleMode(pConfiguration.IDLE_MODE);
-        spark.setInverted(pConfiguration.IS_INVERTED);
-        spark.setPeriodicFramePeriod(PeriodicFrame.kStatus0, pConfiguration.STATUS_0_PERIOD_MS);
-        spark.setPeriodicFramePeriod(PeriodicFrame.kStatus1, pConfiguration.STATUS_1_PERIOD_MS);
-        spark.setPeriodicFramePeriod(PeriodicFrame.kStatus2, pConfiguration.STATUS_2_PERIOD_MS);
-//        spark.setRampRate(pConfiguration.RAMP_RATE);
-        spark.setSecondaryCurrentLimit(pConfiguration.SECONDARY_CURRENT_LIMIT);
-        spark.setSmartCurrentLimit(pConfiguration.SMART_CURRENT_LIMIT);
+    public static LazySparkMax createSparkMax(int pId, MotorType pMotorType, Configuration pConfiguration) {
+        LazySparkMax spark = new LazySparkMax(pId, pMotorType);
+        CANConfigurator.getInstance().configure(spark, "Spark MAX " + pId)
+                .setInvalidate(spark::invalidateCache)
+                // Sets how long every other setting waits to be acknowledged
+                .run("CAN timeout", () -> spark.setCANTimeout(pConfiguration.CAN_TIMEOUT))
+                .rev("factory defaults", spark::restoreFactoryDefaults)
+//                .run("control frame period", () -> spark.setControlFramePeriod(pConfiguration.CONTROL_FRAME_PERIOD))
+                .rev("idle mode", () -> spark.setIdleMode(pConfiguration.IDLE_MODE), () -> spark.getIdleMode() == pConfiguration.IDLE_MODE)
+                .run("inverted", () -> spark.setInverted(pConfiguration.IS_INVERTED), () -> spark.getInverted() == pConfiguration.IS_INVERTED)
+//                .rev("ramp rate", () -> spark.setRampRate(pConfiguration.RAMP_RATE))
+                .rev("secondary current limit", () -> spark.setSecondaryCurrentLimit(pConfiguration.SECONDARY_CURRENT_LIMIT))
+                .rev("smart current limit", () -> spark.setSmartCurrentLimit(pConfiguration.SMART_CURRENT_LIMIT));
+        // Status frame periods depend on what's read from the Spark MAX
+        StatusFramePlanner.getInstance().register(spark, "Spark MAX " + pId, (frame, period) -> {
+            spark.setPeriodicFramePeriod(toPeriodicFrame(frame), period);
+            return true;
+        }, EStatusFrame.kSparkMax);
 
+        synchronized(kSparkMaxes) {
+            kSparkMaxes.add(spark);
+        }
         return spark;
     }
 
+    private static PeriodicFrame toPeriodicFrame(EStatusFrame pFrame) {
+        switch(pFrame) {
+            case SPARK_STATUS_0:
+                return PeriodicFrame.kStatus0;
+            case SPARK_STATUS_1:
+                return PeriodicFrame.kStatus1;
+            case SPARK_STATUS_2:
+                return PeriodicFrame.kStatus2;
+            default:
+                throw new IllegalArgumentException(pFrame + " isn't a Spark MAX status frame");
+        }
+    }
+
+    /**
+     * Logs how many set and config calls each Spark MAX was given, and how many were actually sent
+     */
+    public static void logCallCounts() {
+        synchronized(kSparkMaxes) {
+            for(LazySparkMax spark : kSparkMaxes) {
+                sLog.warn("Spark MAX ", spark.getDeviceId(), ": sent ", spark.getSetpointsSent(), "/", spark.getSetpointCalls(),
+                        " setpoints and ", spark.getConfigsSent(), "/", spark.getConfigCalls(), " config calls");
+            }
+        }
+    }
+
 }
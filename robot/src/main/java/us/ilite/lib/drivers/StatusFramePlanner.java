@@ -0,0 +1,194 @@
+package us.ilite.lib.drivers;
+
+import com.flybotix.hfr.util.log.ILog;
+import com.flybotix.hfr.util.log.Logger;
+
+import us.ilite.common.config.SystemSettings;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks every motor controller's status frame periods from the signals the code actually reads.
+ *
+ * Factories register each controller they create, along with the frames it sends.  Modules then say which signals
+ * they read from it and how often - e.g. drive velocity every {@link SystemSettings#kCANControlSignalPeriodMs}, or a
+ * current that is only logged every {@link SystemSettings#kCANTelemetrySignalPeriodMs}.  {@link #plan()} sends each
+ * frame as slowly as its most demanding reader allows, and slows frames nobody reads to
+ * {@link SystemSettings#kStatusFrameMaxPeriodMs}.  The periods are added to each controller's
+ * {@link CANDeviceConfig}, so call it before {@link CANConfigurator#applyAll()}.
+ */
+public class StatusFramePlanner {
+
+    private static final StatusFramePlanner kInstance = new StatusFramePlanner(CANConfigurator.getInstance());
+
+    private final ILog mLog = Logger.createLog(StatusFramePlanner.class);
+
+    private final CANConfigurator mConfigurator;
+    private final Map<Object, Device> mDevices = new IdentityHashMap<>();
+    private final List<Device> mOrder = new ArrayList<>();
+    private boolean mPlanned = false;
+    private double mPlannedUtilization = 0.0;
+    private double mDefaultUtilization = 0.0;
+
+    public static StatusFramePlanner getInstance() {
+        return kInstance;
+    }
+
+    StatusFramePlanner(CANConfigurator pConfigurator) {
+        mConfigurator = pConfigurator;
+    }
+
+    /**
+     * Sets the period of one status frame
+     */
+    public interface FrameWriter {
+        /**
+         * @return Whether the controller acknowledged the new period
+         */
+        boolean write(EStatusFrame pFrame, int pPeriodMs);
+    }
+
+    /**
+     * @param pDevice The motor controller
+     * @param pName Used in the report
+     * @param pWriter Sets the controller's status frame periods
+     * @param pFrames Every status frame the controller sends
+     */
+    public synchronized void register(Object pDevice, String pName, FrameWriter pWriter, EStatusFrame... pFrames) {
+        if(mDevices.containsKey(pDevice)) {
+            return;
+        }
+        Device device = new Device(pDevice, pName, pWriter, pFrames);
+        mDevices.put(pDevice, device);
+        mOrder.add(device);
+    }
+
+    /**
+     * Tells the planner a signal is read from pDevice every pPeriodMs.  If the signal is read at several rates, the
+     * fastest one wins.
+     */
+    public synchronized void consume(Object pDevice, ECANSignal pSignal, int pPeriodMs) {
+        Device device = mDevices.get(pDevice);
+        if(device == null) {
+            mLog.error("Can't plan ", pSignal, " for a device no factory registered");
+            return;
+        }
+        Integer current = device.mRequested.get(pSignal);
+        if(current == null || pPeriodMs < current) {
+            device.mRequested.put(pSignal, pPeriodMs);
+        }
+        if(mPlanned) {
+            mLog.error(pSignal, " on ", device.mName, " was requested after status frames were planned");
+        }
+    }
+
+    public void consume(Object pDevice, int pPeriodMs, ECANSignal... pSignals) {
+        for(ECANSignal signal : pSignals) {
+            consume(pDevice, signal, pPeriodMs);
+        }
+    }
+
+    /**
+     * Picks every frame's period, adds them to each controller's configuration and logs the projected bus load.
+     * Only the first call does anything.
+     */
+    public synchronized void plan() {
+        if(mPlanned) {
+            return;
+        }
+        double plannedFramesPerSecond = 0.0;
+        double defaultFramesPerSecond = 0.0;
+        for(Device device : mOrder) {
+            StringBuilder report = new StringBuilder(device.mName).append(":");
+            double deviceFramesPerSecond = 0.0;
+            for(EStatusFrame frame : device.mFrames) {
+                int period = planPeriod(device, frame);
+                device.mPlanned.put(frame, period);
+                deviceFramesPerSecond += 1000.0 / period;
+                defaultFramesPerSecond += 1000.0 / frame.getDefaultPeriodMs();
+                report.append(" ").append(frame).append("=").append(period).append("ms");
+
+                FrameWriter writer = device.mWriter;
+                mConfigurator.configure(device.mDevice, device.mName)
+                        .set(frame + " period", () -> writer.write(frame, period), null);
+            }
+            plannedFramesPerSecond += deviceFramesPerSecond;
+            mLog.warn(report, " (", Math.round(deviceFramesPerSecond), " frames/s)");
+        }
+
+        mPlannedUtilization = utilization(plannedFramesPerSecond);
+        mDefaultUtilization = utilization(defaultFramesPerSecond);
+        mLog.warn("Projected CAN utilization from status frames: ", percent(mPlannedUtilization), "% (",
+                Math.round(plannedFramesPerSecond), " frames/s), vs ", percent(mDefaultUtilization), "% (",
+                Math.round(defaultFramesPerSecond), " frames/s) with default periods");
+        if(mPlannedUtilization > SystemSettings.kCANMaxUtilization) {
+            mLog.error("Status frames alone are projected to use more than ",
+                    percent(SystemSettings.kCANMaxUtilization), "% of the CAN bus");
+        }
+        mPlanned = true;
+    }
+
+    /**
+     * @return The planned period of pFrame on pDevice, or -1 if it hasn't been planned
+     */
+    public synchronized int getPeriodMs(Object pDevice, EStatusFrame pFrame) {
+        Device device = mDevices.get(pDevice);
+        if(device == null || !device.mPlanned.containsKey(pFrame)) {
+            return -1;
+        }
+        return device.mPlanned.get(pFrame);
+    }
+
+    /**
+     * @return The fraction of the bus status frames are projected to use
+     */
+    public synchronized double getPlannedUtilization() {
+        return mPlannedUtilization;
+    }
+
+    /**
+     * @return The fraction of the bus status frames would use at their default periods
+     */
+    public synchronized double getDefaultUtilization() {
+        return mDefaultUtilization;
+    }
+
+    private int planPeriod(Device pDevice, EStatusFrame pFrame) {
+        int period = SystemSettings.kStatusFrameMaxPeriodMs;
+        for(Map.Entry<ECANSignal, Integer> request : pDevice.mRequested.entrySet()) {
+            if(pFrame.carries(request.getKey())) {
+                period = Math.min(period, request.getValue());
+            }
+        }
+        return Math.max(period, SystemSettings.kStatusFrameMinPeriodMs);
+    }
+
+    private static double percent(double pFraction) {
+        return Math.round(pFraction * 1000.0) / 10.0;
+    }
+
+    private static double utilization(double pFramesPerSecond) {
+        return pFramesPerSecond * SystemSettings.kCANFrameBits / SystemSettings.kCANBitRate;
+    }
+
+    private static class Device {
+        private final Object mDevice;
+        private final String mName;
+        private final FrameWriter mWriter;
+        private final EStatusFrame[] mFrames;
+        private final Map<ECANSignal, Integer> mRequested = new EnumMap<>(ECANSignal.class);
+        private final Map<EStatusFrame, Integer> mPlanned = new EnumMap<>(EStatusFrame.class);
+
+        private Device(Object pDevice, String pName, FrameWriter pWriter, EStatusFrame[] pFrames) {
+            mDevice = pDevice;
+            mName = pName;
+            mWriter = pWriter;
+            mFrames = pFrames;
+        }
+    }
+
+}
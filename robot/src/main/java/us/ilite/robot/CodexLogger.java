@@ -0,0 +1,102 @@
+package us.ilite.robot;
+
+import com.flybotix.hfr.codex.Codex;
+import com.flybotix.hfr.util.log.ILog;
+import com.flybotix.hfr.util.log.Logger;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import us.ilite.common.Data;
+import us.ilite.common.config.SystemSettings;
+import us.ilite.common.io.CodexLogPipeline;
+import us.ilite.common.io.FlightRecorder;
+import us.ilite.robot.loops.Loop;
+import us.ilite.robot.modules.EModulePriority;
+
+/**
+ * Publishes a per-cycle snapshot of a set of codexes to the asynchronous log pipeline and the flight recorder in <code>Data</code>.
+ * Runs on the module scheduler thread alongside the modules that write the codexes, at the fastest telemetry rate.
+ * Snapshots never block on USB I/O - the pipeline's writer thread handles that.
+ * Each codex is only snapshotted when it's due at its log rate in <code>Data</code>.
+ */
+public class CodexLogger extends Loop {
+    private ILog mLog = Logger.createLog(CodexLogger.class);
+    private Data mData;
+    private final Codex[] mCodexes;
+
+    public CodexLogger( Data pData, Codex ... pCodexes ) {
+        mData = pData;
+        mCodexes = pCodexes;
+    }
+
+    /**
+     * Starts the pipeline's writer thread if it isn't running yet
+     */
+    @Override
+    public void modeInit(double pNow) {
+        CodexLogPipeline pipeline = mData.getLogPipeline();
+        if(pipeline == null) {
+            mLog.warn("Codex logging is disabled - no log pipeline.");
+        } else {
+            pipeline.start();
+        }
+    }
+
+    @Override
+    public void periodicInput(double pNow) {
+    }
+
+    @Override
+    public void update(double pNow) {
+        log(pNow);
+        CodexLogPipeline pipeline = mData.getLogPipeline();
+        if(pipeline != null) {
+            SmartDashboard.putNumber("log_dropped_rows", pipeline.getDroppedRows());
+        }
+    }
+
+    @Override
+    public void loop(double pNow) {
+        update(pNow);
+    }
+
+    @Override
+    public double getRateHz() {
+        return SystemSettings.kTelemetryFastHz;
+    }
+
+    /**
+     * Logging can wait when the loop is overloaded - codexes due at their log rate are picked up on the next run
+     */
+    @Override
+    public EModulePriority getPriority() {
+        return EModulePriority.DEFERRABLE;
+    }
+
+    private void log(double pNow) {
+        CodexLogPipeline pipeline = mData.getLogPipeline();
+        FlightRecorder flightRecorder = mData.getFlightRecorder();
+        for(Codex codex : mCodexes) {
+            if(!mData.isLogDue(codex, pNow)) {
+                continue;
+            }
+            if(flightRecorder != null) {
+                flightRecorder.record(codex);
+            }
+            if(pipeline != null) {
+                pipeline.publish(codex);
+            }
+        }
+    }
+
+    /**
+     * Stops the writer thread once it has drained the pipeline
+     */
+    @Override
+    public void shutdown(double pNow) {
+        CodexLogPipeline pipeline = mData.getLogPipeline();
+        if(pipeline != null) {
+            pipeline.stop();
+        }
+    }
+
+}
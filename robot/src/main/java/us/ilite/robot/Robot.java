@@ -1,5 +1,8 @@
 package us.ilite.robot;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.flybotix.hfr.codex.Codex;
@@ -20,32 +23,41 @@ import edu.wpi.first.wpilibj.Timer;
 import us.ilite.common.Data;
 import us.ilite.common.config.AbstractSystemSettingsUtils;
 import us.ilite.common.config.SystemSettings;
+import us.ilite.common.io.FlightRecorder;
 import us.ilite.common.lib.control.DriveController;
+import us.ilite.common.lib.trajectory.RecentTrajectoryCache;
+import us.ilite.common.lib.trajectory.TrajectoryCache;
 import us.ilite.common.lib.trajectory.TrajectoryGenerator;
 import us.ilite.common.lib.util.PerfTimer;
 import us.ilite.common.types.MatchMetadata;
 import us.ilite.common.types.sensor.EPowerDistPanel;
+import us.ilite.lib.drivers.CANConfigurator;
+import us.ilite.lib.drivers.CANDeviceConfig;
 import us.ilite.lib.drivers.Clock;
 import us.ilite.lib.drivers.GetLocalIP;
+import us.ilite.lib.drivers.PdpSampler;
+import us.ilite.lib.drivers.SparkMaxFactory;
+import us.ilite.lib.drivers.StatusFramePlanner;
 import us.ilite.lib.drivers.VisionGyro;
 import us.ilite.robot.auto.AutonomousRoutines;
 import us.ilite.robot.commands.CharacterizeDrive;
 import us.ilite.robot.driverinput.DriverInput;
-import us.ilite.robot.loops.LoopManager;
+import us.ilite.robot.hardware.OutputStage;
+import us.ilite.robot.loops.ModuleScheduler;
 import us.ilite.robot.modules.*;
+import us.ilite.robot.modules.Module;
 
 public class Robot extends TimedRobot {
 
     private final ILog mLogger = Logger.createLog(this.getClass());
 
-    private final LoopManager mLoopManager = new LoopManager(SystemSettings.kControlLoopPeriod);
-    private final ModuleList mRunningModules = new ModuleList();
+    private final ModuleScheduler mScheduler = new ModuleScheduler(SystemSettings.kSchedulerBaseHz);
 
     private final Timer initTimer = new Timer();
     private final Clock mClock = new Clock();
     private final Data mData = new Data();
     private final SystemSettings mSettings = new SystemSettings();
-    private final PowerDistributionPanel pdp = new PowerDistributionPanel(SystemSettings.kPowerDistPanelAddress);
+    private final PdpSampler mPdpSampler = new PdpSampler(new PowerDistributionPanel(SystemSettings.kPowerDistPanelAddress));
     private final DriveController mDriveController = new DriveController(new HenryProfile());
 
     // Module declarations here
@@ -62,6 +74,11 @@ public class Robot extends TimedRobot {
     private final PneumaticIntake mPneumaticIntake = new PneumaticIntake(mData);
     private final LEDControl mLEDControl = new LEDControl(mDrive, mElevator, mPneumaticIntake, mCargoSpit, mHatchFlower, mFourBar, mLimelight, mData);
     private final DriverInput mDriverInput = new DriverInput( mDrive, mElevator, mHatchFlower, mIntake, mPneumaticIntake, mCargoSpit, mLimelight, mData, mTeleopCommandManager, mAutonomousCommandManager, mFourBar, false  );
+    private final CodexLogger mCodexLogger = new CodexLogger(mData, mData.driverinput, mData.elevator, mData.cargospit, mData.pdp, mData.intake, mData.fourbar, mData.imu, mData.drive, mData.limelight);
+    private final RobotInputs mRobotInputs = new RobotInputs();
+    private final RobotTelemetry mRobotTelemetry = new RobotTelemetry();
+    // Keep running from autonomous into teleop
+    private final List<Module> mContinuousModules = Arrays.asList(mLimelight, mDrive, mCodexLogger);
 
     private final TrajectoryGenerator mTrajectoryGenerator = new TrajectoryGenerator(mDriveController);
     private final AutonomousRoutines mAutonomousRoutines = new AutonomousRoutines(mTrajectoryGenerator, mDrive, mElevator,
@@ -69,6 +86,7 @@ public class Robot extends TimedRobot {
     private MatchMetadata mMatchMeta = null;
 
     private final PerfTimer mClockUpdateTimer = new PerfTimer();
+    private boolean mWasBrownedOut = false;
 
     @Override
     public void robotInit() {
@@ -97,18 +115,62 @@ public class Robot extends TimedRobot {
         };
         CodexMetadata.overrideTimeProvider(provider);
 
+        // Every module has been constructed, so configure all of their CAN devices at once
+        StatusFramePlanner.getInstance().plan();
+        double configStart = Timer.getFPGATimestamp();
+        double configDeviceSeconds = 0.0;
+        for(CANDeviceConfig.Result result : CANConfigurator.getInstance().applyAll()) {
+            configDeviceSeconds += result.getSeconds();
+            if(result.isSuccessful()) {
+                mLogger.warn("Configured ", result);
+            } else {
+                mLogger.error("Configured ", result);
+            }
+        }
+        mLogger.warn("Configured CAN devices in ", Timer.getFPGATimestamp() - configStart, "s (", configDeviceSeconds,
+                "s one at a time)");
+
+        // Only read the PDP channels something uses
+        mPdpSampler.register(SystemSettings.kDrivePdpSlots);
+        mPdpSampler.register(SystemSettings.kElevatorPdpSlots);
+        mPdpSampler.register(SystemSettings.kFourBarPdpSlots);
+        mPdpSampler.register(SystemSettings.kCargoSpitLeftPdpSlot, SystemSettings.kCargoSpitRightPdpSlot);
+        mPdpSampler.register(EPowerDistPanel.VOLTAGE);
+        mPdpSampler.start();
+
         // Clear out running modules
-        mRunningModules.setModules();
+        mScheduler.setModules();
 
         // Generate trajectories on power-on on there's no delay when autonomous is started
+        TrajectoryCache trajectoryCache = TrajectoryCache.load(
+                new File(Filesystem.getDeployDirectory(), SystemSettings.kTrajectoryCacheFile));
+        mTrajectoryGenerator.setCache(trajectoryCache);
+        // They're generated in the background, so boot doesn't wait on them
+        double trajectoryStart = Timer.getFPGATimestamp();
         try {
-            mAutonomousRoutines.generateTrajectories();
+            mAutonomousRoutines.generateTrajectories().whenComplete((result, error) -> {
+                if(error != null) {
+                    mLogger.error("Couldn't generate trajectories: ", error);
+                }
+                mLogger.warn("Trajectories: ", mTrajectoryGenerator.getCacheHits(), " loaded from the cache, ",
+                        mTrajectoryGenerator.getCacheMisses(), " generated, in ",
+                        Timer.getFPGATimestamp() - trajectoryStart, "s");
+                if(trajectoryCache.size() > 0 && mTrajectoryGenerator.getCacheHits() == 0) {
+                    mLogger.warn("None of the ", trajectoryCache.size(), " cached trajectories matched - the cache is ",
+                            "stale or was hashed differently, redeploy to regenerate it");
+                }
+            });
         } catch(Exception e) {
             mLogger.exception(e);
         }
 
         // Handle telemetry initialization
         mData.registerCodices();
+        mData.initFlightRecorder();
+        mScheduler.setFlightRecorder(mData.getFlightRecorder());
+        // Codexes are timestamped from the clock, so it has to advance with the scheduler's ticks
+        mScheduler.setClock(mClock);
+        mScheduler.setOutputStage(OutputStage.getInstance());
         LiveWindow.disableAllTelemetry();
 
         initTimer.stop();
@@ -121,7 +183,15 @@ public class Robot extends TimedRobot {
      */
     @Override
     public void robotPeriodic() {
-        mClock.cycleEnded();
+        boolean isBrownedOut = RobotController.isBrownedOut();
+        if(isBrownedOut && !mWasBrownedOut) {
+            dumpFlightRecorder(FlightRecorder.ETrigger.BROWNOUT);
+        }
+        mWasBrownedOut = isBrownedOut;
+        // The scheduler advances the clock while it's running
+        if(!mScheduler.isRunning()) {
+            mClock.cycleEnded();
+        }
     }
 
     @Override
@@ -135,12 +205,9 @@ public class Robot extends TimedRobot {
         mSettings.loadFromNetworkTables();
 
         // Init modules after commands are set
-        mRunningModules.setModules(mDriverInput, mAutonomousCommandManager, mTeleopCommandManager, mElevator, mHatchFlower, /*mIntake,*/ mCargoSpit, mPneumaticIntake, mFourBar/*, mLEDControl*/);
-        mRunningModules.modeInit(mClock.getCurrentTime());
-        mRunningModules.periodicInput(mClock.getCurrentTime());
-
-        mLoopManager.setRunningLoops(mLimelight, mDrive);
-        mLoopManager.start();
+        mRobotTelemetry.setSendCodices(false);
+        startModules(mRobotInputs, mDriverInput, mAutonomousCommandManager, mTeleopCommandManager, mElevator, mHatchFlower, /*mIntake,*/ mCargoSpit, mPneumaticIntake, mFourBar/*, mLEDControl*/,
+                     mLimelight, mDrive, mCodexLogger, mRobotTelemetry);
 
 //        mAutonomousCommandManager.startCommands(new CharacterizeDrive(mDrive, false, true));
 
@@ -150,7 +217,6 @@ public class Robot extends TimedRobot {
 
     @Override
     public void autonomousPeriodic() {
-        commonPeriodic();
     }
 
     @Override
@@ -159,26 +225,25 @@ public class Robot extends TimedRobot {
 
         mSettings.loadFromNetworkTables();
 
-        mRunningModules.setModules(mDriverInput, mTeleopCommandManager, mElevator, mHatchFlower, /*mIntake,*/ mCargoSpit, mPneumaticIntake, mFourBar, mLEDControl);
-        mRunningModules.modeInit(mClock.getCurrentTime());
-        mRunningModules.periodicInput(mClock.getCurrentTime());
-
-        mLoopManager.setRunningLoops(mLimelight, mDrive);
-        mLoopManager.start();
+        mRobotTelemetry.setSendCodices(true);
+        startModules(mRobotInputs, mDriverInput, mTeleopCommandManager, mElevator, mHatchFlower, /*mIntake,*/ mCargoSpit, mPneumaticIntake, mFourBar, mLEDControl,
+                     mLimelight, mDrive, mCodexLogger, mRobotTelemetry);
 
     }
 
     @Override
     public void teleopPeriodic() {
-        commonPeriodic();
-//        mData.sendCodices();
     }
 
     @Override
     public void disabledInit() {
         mLogger.info("Disabled Initialization");
-        mRunningModules.shutdown(mClock.getCurrentTime());
-        mLoopManager.stop();
+        mScheduler.stop();
+        SparkMaxFactory.logCallCounts();
+        RecentTrajectoryCache recentTrajectories = mTrajectoryGenerator.getRecentTrajectories();
+        mLogger.warn("Recent trajectory cache: ", recentTrajectories.getHits(), " hits, ",
+                recentTrajectories.getMisses(), " misses, ", recentTrajectories.size(), " kept");
+        dumpFlightRecorder(FlightRecorder.ETrigger.DISABLED);
     }
 
     @Override
@@ -187,12 +252,10 @@ public class Robot extends TimedRobot {
 
     @Override
     public void testInit() {
-        mRunningModules.setModules(mDrive);
-        mRunningModules.modeInit(mClock.getCurrentTime());
-        mRunningModules.periodicInput(mClock.getCurrentTime());
-        mRunningModules.checkModule(mClock.getCurrentTime());
-
-        mLoopManager.start();
+        mScheduler.stop();
+        mScheduler.setModules(mDrive);
+        mScheduler.checkModules(mClock.getCurrentTime());
+        mScheduler.start();
     }
 
     @Override
@@ -201,16 +264,32 @@ public class Robot extends TimedRobot {
 
     }
 
-    private void commonPeriodic() {
-        double start = Timer.getFPGATimestamp();
-        for(Codex c : mData.mAllCodexes) {
-            c.reset();
+    /**
+     * Runs pModules on the scheduler.  If the scheduler is already running - e.g. going from autonomous straight
+     * into teleop - the continuous modules keep running without being initialized again, so the drive doesn't
+     * re-zero its sensors mid-match.
+     */
+    private void startModules(Module ... pModules) {
+        if(mScheduler.isRunning()) {
+            mScheduler.setModules(pModules);
+            List<Module> reinit = new ArrayList<>();
+            for(Module module : pModules) {
+                if(!mContinuousModules.contains(module)) {
+                    reinit.add(module);
+                }
+            }
+            mScheduler.modeInit(Timer.getFPGATimestamp(), reinit.toArray(new Module[0]));
+        } else {
+            mScheduler.setModules(pModules);
+            mScheduler.start();
+        }
+    }
+
+    private void dumpFlightRecorder(FlightRecorder.ETrigger pTrigger) {
+        FlightRecorder flightRecorder = mData.getFlightRecorder();
+        if(flightRecorder != null) {
+            flightRecorder.dumpAsync(pTrigger);
         }
-        EPowerDistPanel.map(mData.pdp, pdp);
-        mRunningModules.periodicInput(mClock.getCurrentTime());
-        mRunningModules.update(mClock.getCurrentTime());
-//        mData.sendCodicesToNetworkTables();
-        SmartDashboard.putNumber("common_periodic_dt", Timer.getFPGATimestamp() - start);
     }
 
     private void initMatchMetadata() {
@@ -250,6 +329,81 @@ public class Robot extends TimedRobot {
 
     }
 
+    /**
+     * Resets the codexes written at the default module rate and copies in the newest PDP sample.  Runs before every
+     * other module at that rate.  Codexes written by faster modules are overwritten by those modules, so they're
+     * left alone.
+     */
+    private class RobotInputs extends Module {
+        private final Codex[] mResetCodexes = new Codex[] {
+                mData.driverinput, mData.operatorinput, mData.elevator, mData.fourbar, mData.cargospit, mData.pdp, mData.intake
+        };
+
+        @Override
+        public void modeInit(double pNow) {
+        }
+
+        @Override
+        public void periodicInput(double pNow) {
+            for(Codex c : mResetCodexes) {
+                c.reset();
+            }
+            mPdpSampler.map(mData.pdp, pNow);
+        }
+
+        @Override
+        public void update(double pNow) {
+        }
+
+        @Override
+        public void shutdown(double pNow) {
+        }
+
+        @Override
+        public EModulePriority getPriority() {
+            return EModulePriority.CRITICAL;
+        }
+    }
+
+    /**
+     * Publishes the codexes once every other module at the default rate has updated them
+     */
+    private class RobotTelemetry extends Module {
+        private volatile boolean mSendCodices = false;
+
+        /**
+         * @param pSendCodices Whether to send the codexes to the driver station as well as NetworkTables
+         */
+        public void setSendCodices(boolean pSendCodices) {
+            mSendCodices = pSendCodices;
+        }
+
+        @Override
+        public void modeInit(double pNow) {
+        }
+
+        @Override
+        public void periodicInput(double pNow) {
+        }
+
+        @Override
+        public void update(double pNow) {
+            mData.sendCodicesToNetworkTables(pNow);
+            if(mSendCodices) {
+                mData.sendCodices(pNow);
+            }
+        }
+
+        @Override
+        public void shutdown(double pNow) {
+        }
+
+        @Override
+        public EModulePriority getPriority() {
+            return EModulePriority.DEFERRABLE;
+        }
+    }
+
     private class DSConnectInitThread implements Runnable {
 
         @Override
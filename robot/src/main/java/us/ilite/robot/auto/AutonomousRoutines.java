@@ -1,18 +1,24 @@
 package us.ilite.robot.auto;
 
 import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.trajectory.Trajectory;
 import com.team254.lib.trajectory.timing.CentripetalAccelerationConstraint;
+import com.team254.lib.trajectory.timing.TimedState;
 import com.team254.lib.trajectory.timing.TimingConstraint;
 import us.ilite.common.Data;
 import us.ilite.common.lib.trajectory.TrajectoryConstraints;
+import us.ilite.common.lib.trajectory.TrajectoryGenerationService;
 import us.ilite.common.lib.trajectory.TrajectoryGenerator;
 import us.ilite.lib.drivers.VisionGyro;
+import us.ilite.robot.auto.paths.AutoSequence;
 import us.ilite.robot.auto.paths.middle.MiddleToMiddleCargoToSideRocket;
 import us.ilite.robot.commands.*;
 import us.ilite.robot.modules.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class AutonomousRoutines {
 
@@ -24,6 +30,7 @@ public class AutonomousRoutines {
     );
 
     private TrajectoryGenerator mTrajectoryGenerator;
+    private TrajectoryGenerationService mTrajectoryService;
 
     private Drive mDrive;
     private Elevator mElevator;
@@ -47,12 +54,34 @@ public class AutonomousRoutines {
         this.mLimelight = mLimelight;
         this.mVisionGyro = mVisionGyro;
         this.mData = mData;
+        this.mTrajectoryService = new TrajectoryGenerationService(mTrajectoryGenerator);
 
-        this.mMiddleToMiddleCargoToSideRocket = new MiddleToMiddleCargoToSideRocket(mTrajectoryGenerator, mData, mDrive, mHatchFlower, mLimelight, mVisionGyro);
+        this.mMiddleToMiddleCargoToSideRocket = new MiddleToMiddleCargoToSideRocket(mTrajectoryService, mData, mDrive, mHatchFlower, mLimelight, mVisionGyro);
     }
 
-    public void generateTrajectories() {
-        mMiddleToMiddleCargoToSideRocketSequence = mMiddleToMiddleCargoToSideRocket.generateSequence();
+    /**
+     * Builds every sequence without waiting for its trajectories, which are generated in parallel in the background.
+     * @return A future that completes once every sequence's trajectories have been generated
+     */
+    public CompletableFuture<Void> generateTrajectories() {
+        List<CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>>> trajectories = new ArrayList<>();
+        for(AutoSequence sequence : getSequences()) {
+            List<CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>>> sequenceTrajectories = sequence.generateTrajectories();
+            trajectories.addAll(sequenceTrajectories);
+            // Built from the futures that were just submitted, so no trajectory is submitted twice
+            if(sequence == mMiddleToMiddleCargoToSideRocket) {
+                mMiddleToMiddleCargoToSideRocketSequence = sequence.generateSequence(sequenceTrajectories);
+            }
+        }
+
+        return TrajectoryGenerationService.allOf(trajectories);
+    }
+
+    /**
+     * @return Every sequence that can be run in autonomous
+     */
+    public List<AutoSequence> getSequences() {
+        return Arrays.asList(mMiddleToMiddleCargoToSideRocket);
     }
 
     public ICommand[] getDefault() {
@@ -0,0 +1,246 @@
+package us.ilite.robot.auto;
+
+import com.flybotix.hfr.util.log.ELevel;
+import com.flybotix.hfr.util.log.Logger;
+import com.team254.frc2018.planners.DriveMotionPlanner;
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.geometry.Rotation2d;
+import com.team254.lib.geometry.Twist2d;
+import com.team254.lib.physics.DifferentialDrive;
+import com.team254.lib.physics.DriveOutput;
+import com.team254.lib.trajectory.TimedView;
+import com.team254.lib.trajectory.Trajectory;
+import com.team254.lib.trajectory.TrajectoryIterator;
+import com.team254.lib.trajectory.timing.TimedState;
+import com.team254.lib.util.Units;
+import us.ilite.common.config.SystemSettings;
+import us.ilite.common.lib.control.DriveController;
+import us.ilite.common.lib.trajectory.CompiledTrajectory;
+import us.ilite.common.lib.trajectory.TrajectoryGenerationService;
+import us.ilite.common.lib.trajectory.TrajectoryGenerator;
+import us.ilite.common.lib.trajectory.TrajectoryResampler;
+import us.ilite.common.lib.trajectory.TrajectorySample;
+import us.ilite.common.lib.trajectory.TrajectorySampler;
+import us.ilite.robot.HenryProfile;
+import us.ilite.robot.auto.paths.AutoSequence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Compares following every auto trajectory three ways:
+ * <ul>
+ *     <li>iterator - a TrajectoryIterator over the generated trajectory, what DriveMotionPlanner used to follow</li>
+ *     <li>compiled - a {@link TrajectorySampler} over the generated trajectory, which searches from the last sample</li>
+ *     <li>resampled - a {@link TrajectorySampler} over the trajectory resampled at a fixed step, which finds samples
+ *     by index</li>
+ * </ul>
+ * For each, it reports the cost of looking up every setpoint along the trajectory in order, of looking up setpoints
+ * at random times (which the iterator can only do by searching from the start), of a whole planner update, and how
+ * far a simulated robot strays from the generated trajectory while following it.  The simulated robot's left wheels
+ * are a little slow, so feedback has something to correct.  The resampled trajectory's largest differences from the
+ * generated one are reported too.
+ *
+ * Usage: <code>./gradlew :robot:benchmarkTrajectoryLookup [-PresampleStep=seconds]</code>
+ * Without a step, SystemSettings.kTrajectoryResampleStep is used, or kControlLoopPeriod if resampling is off.
+ */
+public class TrajectoryLookupBenchmark {
+
+    private static final int kWarmupIterations = 200;
+    private static final int kTimedIterations = 500;
+    private static final double kDt = SystemSettings.kControlLoopPeriod;
+    private static final double kLeftWheelSlip = 0.97;
+    private static final int kSeeks = 1000;
+
+    // A long path with several segments, so the cost of searching from the start of the trajectory shows
+    private static final List<Pose2d> kLongPath = Arrays.asList(
+            new Pose2d(0.0, 0.0, Rotation2d.fromDegrees(0.0)),
+            new Pose2d(120.0, -40.0, Rotation2d.fromDegrees(-30.0)),
+            new Pose2d(240.0, 20.0, Rotation2d.fromDegrees(45.0)),
+            new Pose2d(300.0, 140.0, Rotation2d.fromDegrees(90.0)),
+            new Pose2d(220.0, 260.0, Rotation2d.fromDegrees(180.0)),
+            new Pose2d(60.0, 240.0, Rotation2d.fromDegrees(-150.0)));
+
+    private final double mStep;
+    // Keeps the JIT from throwing away samples nothing reads
+    private double mSink = 0.0;
+
+    private TrajectoryLookupBenchmark(double pStep) {
+        mStep = pStep;
+    }
+
+    public static void main(String[] args) {
+        Logger.setLevel(ELevel.WARN);
+        double step = args.length > 0 ? Double.parseDouble(args[0]) :
+                SystemSettings.kTrajectoryResampleStep > 0.0 ? SystemSettings.kTrajectoryResampleStep : kDt;
+
+        // Generated without resampling, so there's something to compare the resampled trajectories to
+        TrajectoryGenerator generator = new TrajectoryGenerator(new DriveController(new HenryProfile()), 0.0);
+        AutonomousRoutines routines = new AutonomousRoutines(generator, null, null, null, null, null, null, null, null);
+        Map<String, CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>>> futures = new LinkedHashMap<>();
+        for(AutoSequence sequence : routines.getSequences()) {
+            List<CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>>> trajectories = sequence.generateTrajectories();
+            for(int i = 0; i < trajectories.size(); i++) {
+                futures.put(sequence.getClass().getSimpleName() + " #" + i, trajectories.get(i));
+            }
+        }
+        futures.put("Long path", CompletableFuture.completedFuture(
+                generator.generateTrajectory(false, kLongPath, AutonomousRoutines.kDefaultTrajectoryConstraints)));
+        TrajectoryGenerationService.allOf(new ArrayList<>(futures.values())).join();
+
+        TrajectoryLookupBenchmark benchmark = new TrajectoryLookupBenchmark(step);
+        for(Map.Entry<String, CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>>> entry : futures.entrySet()) {
+            benchmark.run(entry.getKey(), entry.getValue().join());
+        }
+    }
+
+    public void run(String pName, Trajectory<TimedState<Pose2dWithCurvature>> pTrajectory) {
+        Trajectory<TimedState<Pose2dWithCurvature>> resampled = TrajectoryResampler.resample(pTrajectory, mStep);
+        CompiledTrajectory compiled = CompiledTrajectory.compile(pTrajectory);
+        CompiledTrajectory compiledResampled = CompiledTrajectory.compile(resampled);
+        TimedView<Pose2dWithCurvature> view = new TimedView<>(pTrajectory);
+        double[] seeks = new double[kSeeks];
+        Random random = new Random(1234);
+        for(int i = 0; i < kSeeks; i++) {
+            seeks[i] = compiled.getStartTime() + random.nextDouble() * (compiled.getEndTime() - compiled.getStartTime());
+        }
+
+        System.out.println(String.format("%s: %.2fs, %d states, %d resampled every %.4fs", pName,
+                compiled.getEndTime() - compiled.getStartTime(), pTrajectory.length(), resampled.length(), mStep));
+        System.out.println("  resampled error: " + TrajectoryResampler.measure(pTrajectory, resampled, mStep / 10.0));
+        System.out.println(String.format("  %-10s %12s %12s %12s %12s %12s %12s %12s", "", "lookup ns", "seek ns",
+                "update ns", "ff max in", "ff rms in", "fb max in", "fb rms in"));
+        report("iterator", pTrajectory, () -> lookupIterator(pTrajectory), () -> seekView(view, seeks),
+                (pPlanner) -> pPlanner.setTrajectory(new TrajectoryIterator<>(new TimedView<>(pTrajectory))));
+        report("compiled", pTrajectory, () -> lookupCompiled(compiled), () -> seekCompiled(compiled, seeks),
+                (pPlanner) -> pPlanner.setTrajectory(compiled, false));
+        report("resampled", pTrajectory, () -> lookupCompiled(compiledResampled), () -> seekCompiled(compiledResampled, seeks),
+                (pPlanner) -> pPlanner.setTrajectory(compiledResampled, false));
+    }
+
+    private interface ILookup {
+        /**
+         * @return The number of setpoints looked up
+         */
+        int lookupAll();
+    }
+
+    private interface IFollower {
+        void setTrajectory(DriveMotionPlanner pPlanner);
+    }
+
+    private void report(String pName, Trajectory<TimedState<Pose2dWithCurvature>> pTrajectory, ILookup pLookup,
+                        ILookup pSeek, IFollower pFollower) {
+        double lookupNs = time(pLookup);
+        double seekNs = time(pSeek);
+        double updateNs = time(() -> follow(pTrajectory, pFollower, DriveMotionPlanner.PlannerMode.FEEDBACK, null));
+        double[] feedforwardError = new double[2];
+        double[] feedbackError = new double[2];
+        follow(pTrajectory, pFollower, DriveMotionPlanner.PlannerMode.FEEDFORWARD_ONLY, feedforwardError);
+        follow(pTrajectory, pFollower, DriveMotionPlanner.PlannerMode.FEEDBACK, feedbackError);
+        System.out.println(String.format("  %-10s %12.1f %12.1f %12.1f %12.4f %12.4f %12.4f %12.4f", pName, lookupNs, seekNs, updateNs,
+                feedforwardError[0], feedforwardError[1], feedbackError[0], feedbackError[1]));
+    }
+
+    /**
+     * @return ns per setpoint
+     */
+    private double time(ILookup pLookup) {
+        for(int i = 0; i < kWarmupIterations; i++) {
+            pLookup.lookupAll();
+        }
+        long lookups = 0;
+        long start = System.nanoTime();
+        for(int i = 0; i < kTimedIterations; i++) {
+            lookups += pLookup.lookupAll();
+        }
+        return (System.nanoTime() - start) / (double)lookups;
+    }
+
+    private int lookupIterator(Trajectory<TimedState<Pose2dWithCurvature>> pTrajectory) {
+        TrajectoryIterator<TimedState<Pose2dWithCurvature>> iterator = new TrajectoryIterator<>(new TimedView<>(pTrajectory));
+        int lookups = 0;
+        while(!iterator.isDone()) {
+            mSink += iterator.advance(kDt).state().velocity();
+            lookups++;
+        }
+        return lookups;
+    }
+
+    private int lookupCompiled(CompiledTrajectory pTrajectory) {
+        TrajectorySampler sampler = new TrajectorySampler(pTrajectory);
+        TrajectorySample sample = new TrajectorySample();
+        int lookups = 0;
+        while(!sampler.isDone()) {
+            sampler.advance(kDt, sample);
+            mSink += sample.getVelocity();
+            lookups++;
+        }
+        return lookups;
+    }
+
+    private int seekView(TimedView<Pose2dWithCurvature> pView, double[] pTimes) {
+        for(double time : pTimes) {
+            mSink += pView.sample(time).state().velocity();
+        }
+        return pTimes.length;
+    }
+
+    private int seekCompiled(CompiledTrajectory pTrajectory, double[] pTimes) {
+        TrajectorySampler sampler = new TrajectorySampler(pTrajectory);
+        TrajectorySample sample = new TrajectorySample();
+        for(double time : pTimes) {
+            sampler.sample(time, sample);
+            mSink += sample.getVelocity();
+        }
+        return pTimes.length;
+    }
+
+    /**
+     * Follows the trajectory with a simulated robot, which drives exactly as commanded except for its slow left wheels
+     * @param pError If not null, filled with the max and RMS distance from the generated trajectory, in inches
+     * @return The number of planner updates
+     */
+    private int follow(Trajectory<TimedState<Pose2dWithCurvature>> pTrajectory, IFollower pFollower,
+                       DriveMotionPlanner.PlannerMode pMode, double[] pError) {
+        DriveMotionPlanner planner = new DriveController(new HenryProfile()).setPlannerMode(pMode).getDriveMotionPlanner();
+        DifferentialDrive model = planner.getDriveModel();
+        TimedView<Pose2dWithCurvature> reference = pError == null ? null : new TimedView<>(pTrajectory);
+        pFollower.setTrajectory(planner);
+
+        Pose2d pose = pTrajectory.getFirstState().state().getPose();
+        double maxError = 0.0;
+        double sumSquaredError = 0.0;
+        int updates = 0;
+        for(double time = 0.0; !planner.isDone(); time += kDt) {
+            DriveOutput output = planner.update(time, pose);
+            double left = output.left_velocity * kLeftWheelSlip;
+            double right = output.right_velocity;
+            double linear = Units.meters_to_inches(model.wheel_radius() * (left + right) / 2.0);
+            double angular = model.wheel_radius() * (right - left) / (2.0 * model.effective_wheelbase_radius());
+            pose = pose.transformBy(Pose2d.exp(new Twist2d(linear * kDt, 0.0, angular * kDt)));
+            updates++;
+
+            if(reference != null) {
+                Pose2d target = reference.sample(Math.min(time + kDt, reference.last_interpolant())).state().state().getPose();
+                double error = target.getTranslation().translateBy(pose.getTranslation().inverse()).norm();
+                maxError = Math.max(maxError, error);
+                sumSquaredError += error * error;
+            }
+        }
+        mSink += pose.getTranslation().x();
+
+        if(pError != null) {
+            pError[0] = maxError;
+            pError[1] = Math.sqrt(sumSquaredError / Math.max(1, updates));
+        }
+        return updates;
+    }
+
+}
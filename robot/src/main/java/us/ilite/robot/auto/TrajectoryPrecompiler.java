@@ -0,0 +1,58 @@
+package us.ilite.robot.auto;
+
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.trajectory.Trajectory;
+import com.team254.lib.trajectory.timing.TimedState;
+import us.ilite.common.config.SystemSettings;
+import us.ilite.common.lib.control.DriveController;
+import us.ilite.common.lib.trajectory.TrajectoryCache;
+import us.ilite.common.lib.trajectory.TrajectoryGenerationService;
+import us.ilite.common.lib.trajectory.TrajectoryGenerator;
+import us.ilite.robot.HenryProfile;
+import us.ilite.robot.auto.paths.AutoSequence;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Generates every auto trajectory on a dev machine and writes them to a {@link TrajectoryCache}, which is deployed
+ * with the code.  Run by the precompileTrajectories gradle task before every deploy.
+ *
+ * Usage: TrajectoryPrecompiler [output file]
+ */
+public class TrajectoryPrecompiler {
+
+    public static void main(String[] args) throws IOException {
+        File output = new File(args.length > 0 ? args[0] : "src/main/deploy/" + SystemSettings.kTrajectoryCacheFile);
+
+        // Must be the same profile Robot uses - if it isn't, nothing will be found in the cache and the robot will
+        // generate every trajectory itself
+        TrajectoryGenerator generator = new TrajectoryGenerator(new DriveController(new HenryProfile()));
+        generator.startRecording();
+
+        // Sequences only need the generator to make their trajectories - their commands are never built
+        AutonomousRoutines routines = new AutonomousRoutines(generator, null, null, null, null, null, null, null, null);
+        long start = System.nanoTime();
+        List<CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>>> futures = new ArrayList<>();
+        for(AutoSequence sequence : routines.getSequences()) {
+            futures.addAll(sequence.generateTrajectories());
+        }
+        TrajectoryGenerationService.allOf(futures).join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Map<Long, Trajectory<TimedState<Pose2dWithCurvature>>> trajectories = generator.getRecorded();
+        TrajectoryCache.write(output, trajectories);
+
+        int states = 0;
+        for(Trajectory<TimedState<Pose2dWithCurvature>> trajectory : trajectories.values()) {
+            states += trajectory.length();
+        }
+        System.out.println("Wrote " + trajectories.size() + " trajectories (" + states + " states, " + output.length()
+                + " bytes) to " + output + " - took " + seconds + "s to generate");
+    }
+
+}
@@ -1,17 +1,43 @@
 package us.ilite.robot.auto.paths;
 
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.trajectory.Trajectory;
+import com.team254.lib.trajectory.timing.TimedState;
+import us.ilite.common.lib.trajectory.TrajectoryGenerationService;
 import us.ilite.common.lib.trajectory.TrajectoryGenerator;
 import us.ilite.robot.commands.ICommand;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public abstract class AutoSequence {
 
+    protected final TrajectoryGenerationService mTrajectoryService;
     protected final TrajectoryGenerator mTrajectoryGenerator;
 
-    public AutoSequence(TrajectoryGenerator pTrajectoryGenerator) {
-        mTrajectoryGenerator = pTrajectoryGenerator;
+    /**
+     * @param pTrajectoryService Shared by every sequence, so all of their trajectories are generated in parallel
+     */
+    public AutoSequence(TrajectoryGenerationService pTrajectoryService) {
+        mTrajectoryService = pTrajectoryService;
+        mTrajectoryGenerator = pTrajectoryService.getGenerator();
     }
 
-    public abstract ICommand[] generateSequence();
+    /**
+     * Builds the commands that follow this sequence's trajectories
+     * @param pTrajectories What {@link #generateTrajectories()} returned, in the same order
+     */
+    public abstract ICommand[] generateSequence(List<CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>>> pTrajectories);
+
+    /**
+     * Starts generating every trajectory this sequence follows without building any commands, e.g. so they can be
+     * precompiled into the trajectory cache.  Each call submits them again, so pass the result on to
+     * {@link #generateSequence(List)} rather than calling this twice.
+     */
+    public List<CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>>> generateTrajectories() {
+        return Collections.emptyList();
+    }
 
 
 }
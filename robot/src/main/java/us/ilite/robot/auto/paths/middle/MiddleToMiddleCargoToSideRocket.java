@@ -2,6 +2,7 @@ package us.ilite.robot.auto.paths.middle;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import com.team254.lib.geometry.Pose2d;
 import com.team254.lib.geometry.Pose2dWithCurvature;
@@ -11,7 +12,7 @@ import com.team254.lib.geometry.Translation2d;
 import com.team254.lib.trajectory.Trajectory;
 import com.team254.lib.trajectory.timing.TimedState;
 import us.ilite.common.Data;
-import us.ilite.common.lib.trajectory.TrajectoryGenerator;
+import us.ilite.common.lib.trajectory.TrajectoryGenerationService;
 import us.ilite.common.types.ETrackingType;
 import us.ilite.lib.drivers.VisionGyro;
 import us.ilite.robot.auto.AutonomousRoutines;
@@ -35,8 +36,8 @@ public class MiddleToMiddleCargoToSideRocket extends AutoSequence {
     private final Limelight mLimelight;
     private final VisionGyro mVisionGyro;
 
-    public MiddleToMiddleCargoToSideRocket(TrajectoryGenerator pTrajectoryGenerator, Data mData, Drive mDrive, HatchFlower mHatchFlower, Limelight mLimelight, VisionGyro mVisionGyro) {
-        super(pTrajectoryGenerator);
+    public MiddleToMiddleCargoToSideRocket(TrajectoryGenerationService pTrajectoryService, Data mData, Drive mDrive, HatchFlower mHatchFlower, Limelight mLimelight, VisionGyro mVisionGyro) {
+        super(pTrajectoryService);
         this.mData = mData;
         this.mDrive = mDrive;
         this.mHatchFlower = mHatchFlower;
@@ -73,32 +74,41 @@ public class MiddleToMiddleCargoToSideRocket extends AutoSequence {
         kLeftRocketHatchFromLoadingStation
     );
 
-    public Trajectory<TimedState<Pose2dWithCurvature>> getStartToMiddleLeftHatchTrajectory() {
-        return mTrajectoryGenerator.generateTrajectory(false, kStartToMiddleLeftHatchPath, AutonomousRoutines.kDefaultTrajectoryConstraints);
+    public CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>> getStartToMiddleLeftHatchTrajectory() {
+        return mTrajectoryService.submit(false, kStartToMiddleLeftHatchPath, AutonomousRoutines.kDefaultTrajectoryConstraints);
     }
 
-    public Trajectory<TimedState<Pose2dWithCurvature>> getMiddleLeftHatchToLoadingStationPath() {
-        return mTrajectoryGenerator.generateTrajectory(true, kMiddleLeftHatchToLoadingStationPath, AutonomousRoutines.kDefaultTrajectoryConstraints);
+    public CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>> getMiddleLeftHatchToLoadingStationPath() {
+        return mTrajectoryService.submit(true, kMiddleLeftHatchToLoadingStationPath, AutonomousRoutines.kDefaultTrajectoryConstraints);
     }
 
-    public Trajectory<TimedState<Pose2dWithCurvature>> getLoadingStationToSideRocketPath() {
-        return mTrajectoryGenerator.generateTrajectory(false, kLoadingStationToSideRocketPath, AutonomousRoutines.kDefaultTrajectoryConstraints);
+    public CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>> getLoadingStationToSideRocketPath() {
+        return mTrajectoryService.submit(false, kLoadingStationToSideRocketPath, AutonomousRoutines.kDefaultTrajectoryConstraints);
     }
 
     @Override
-    public ICommand[] generateSequence() {
+    public List<CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>>> generateTrajectories() {
+        return Arrays.asList(
+                getStartToMiddleLeftHatchTrajectory(),
+                getMiddleLeftHatchToLoadingStationPath(),
+                getLoadingStationToSideRocketPath()
+        );
+    }
+
+    @Override
+    public ICommand[] generateSequence(List<CompletableFuture<Trajectory<TimedState<Pose2dWithCurvature>>>> pTrajectories) {
 
 //        new FollowTrajectoryUntilCommandFinished(getStartToMiddleLeftHatchTrajectory(), mDrive, true,
 //                new WaitForVisionTarget(mData, mLimelight, 3.5)),
 
         return new ICommand[] {
-                new FollowTrajectory(getStartToMiddleLeftHatchTrajectory(), mDrive, true),
+                new FollowTrajectory(pTrajectories.get(0), mDrive, true),
                 new FunctionalCommand(() -> System.out.println("TRAJECTORY DONE")),
                 new Delay(1),
                 new FunctionalCommand(() -> System.out.println("DELAY DONE")),
                 new ReleaseHatch(mHatchFlower),
                 new FunctionalCommand(() -> System.out.println("RELEASE DONE")),
-                new FollowTrajectory(getMiddleLeftHatchToLoadingStationPath(), mDrive, true)
+                new FollowTrajectory(pTrajectories.get(1), mDrive, true)
                 /*new DriveStraight(mDrive, mData, DriveStraight.EDriveControlMode.PERCENT_OUTPUT,
                         MiddleToMiddleCargoToSideRocket.kMiddleLeftHatchFromStart.getTranslation().translateBy(StartingPoses.kMiddleStart.getTranslation().inverse()).norm()),
                 new Delay(5),*/
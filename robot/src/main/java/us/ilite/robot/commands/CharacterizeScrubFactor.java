@@ -41,6 +41,12 @@ public class CharacterizeScrubFactor implements ICommand {
     @Override
     public boolean update(double pNow) {
 
+        // Readings from before the zero would throw off the measurement
+        if(!mDrive.isResetApplied()) {
+            mDrive.setDriveMessage(DriveMessage.kNeutral);
+            return false;
+        }
+
         Codex<Double, EDriveData> driveData = mData.drive;
         double yaw = mDrive.getHeading().getRadians();
 
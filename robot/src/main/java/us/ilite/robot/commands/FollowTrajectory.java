@@ -10,36 +10,59 @@ import com.team254.lib.trajectory.timing.TimedState;
 import edu.wpi.first.wpilibj.Timer;
 import us.ilite.common.Data;
 import us.ilite.robot.modules.Drive;
+import us.ilite.robot.modules.DriveMessage;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class FollowTrajectory implements ICommand {
 
     private final ILog mLog = Logger.createLog(FollowTrajectory.class);
 
+    private Future<Trajectory<TimedState<Pose2dWithCurvature>>> mTrajectoryFuture;
     private Trajectory<TimedState<Pose2dWithCurvature>> mTrajectory;
     private Drive mDrive;
     private boolean mResetPose;
+    private boolean mStarted = false;
 
     public FollowTrajectory(Trajectory<TimedState<Pose2dWithCurvature>> pTrajectory, Drive pDrive, boolean pResetPose) {
-        mTrajectory = pTrajectory;
+        this(CompletableFuture.completedFuture(pTrajectory), pDrive, pResetPose);
+    }
+
+    /**
+     * @param pTrajectory A trajectory that's still being generated.  If it isn't done when the command starts, the
+     *                    drive is held neutral until it is.
+     */
+    public FollowTrajectory(Future<Trajectory<TimedState<Pose2dWithCurvature>>> pTrajectory, Drive pDrive, boolean pResetPose) {
+        mTrajectoryFuture = pTrajectory;
         mDrive = pDrive;
         mResetPose = pResetPose;
     }
 
     @Override
     public void init(double pNow) {
-        mLog.warn("Starting trajectory.");
-        mDrive.setPathFollowing();
-        mDrive.setPath(mTrajectory, mResetPose);
-        if(mResetPose) {
-            mDrive.setHeading(mTrajectory.getFirstState().state().getRotation());
+        mStarted = false;
+        mTrajectory = null;
+        if(!mTrajectoryFuture.isDone()) {
+            mLog.warn("Waiting for trajectory to finish generating.");
         }
     }
 
     @Override
     public boolean update(double pNow) {
+        if(!mStarted) {
+            // Never blocks the control loop - the drive holds still until the trajectory is ready
+            if(!mTrajectoryFuture.isDone()) {
+                mDrive.setDriveMessage(DriveMessage.kNeutral);
+                return false;
+            }
+            // The drive starts following on its next update
+            return !start();
+        }
 
-        Pose2d current = mDrive.getDriveController().getCurrentPose();
-        Pose2d setpoint = mDrive.getDriveController().getTargetPose();
+        Pose2d current = mDrive.getCurrentPose();
+        Pose2d setpoint = mDrive.getTargetPose();
 
         Data.kSmartDashboard.putDouble("Heading", current.getRotation().getDegrees());
         Data.kSmartDashboard.putDouble("X", current.getTranslation().x());
@@ -48,8 +71,8 @@ public class FollowTrajectory implements ICommand {
         Data.kSmartDashboard.putDouble("Target X", setpoint.getTranslation().x());
         Data.kSmartDashboard.putDouble("Target Y", setpoint.getTranslation().y());
 
-        if(mDrive.getDriveController().isDone()) {
-            Pose2d error = mDrive.getDriveController().getDriveMotionPlanner().error();
+        if(mDrive.isPathDone()) {
+            Pose2d error = mDrive.getPathError();
             mLog.warn("Trajectory finished.");
             mLog.warn("Cross-track error: ", error);
             mLog.warn("Along-track error: ", error.getTranslation().norm());
@@ -58,8 +81,36 @@ public class FollowTrajectory implements ICommand {
         return false;
     }
 
+    /**
+     * @return Whether the trajectory was generated and is being followed
+     */
+    private boolean start() {
+        mStarted = true;
+        try {
+            mTrajectory = mTrajectoryFuture.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mLog.error("Interrupted while getting trajectory");
+            return false;
+        } catch (ExecutionException e) {
+            mLog.error("Couldn't generate trajectory: ", e);
+            return false;
+        }
+
+        mLog.warn("Starting trajectory.");
+        mDrive.setPathFollowing();
+        mDrive.setPath(mTrajectory, mResetPose);
+        if(mResetPose) {
+            mDrive.setHeading(mTrajectory.getFirstState().state().getRotation());
+        }
+        return true;
+    }
+
     @Override
     public void shutdown(double pNow) {
+        if(mTrajectory == null) {
+            return;
+        }
         mDrive.setNormal();
     }
 
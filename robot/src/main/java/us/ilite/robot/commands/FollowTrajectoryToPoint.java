@@ -71,7 +71,7 @@ public class FollowTrajectoryToPoint implements ICommand {
          of whether the trajectory is complete.
          */
         if(mTrajectory != null) {
-            return mDrive.getDriveController().isDone();
+            return mDrive.isPathDone();
         }
 
         return false;
@@ -87,7 +87,7 @@ public class FollowTrajectoryToPoint implements ICommand {
      * @return The trajectory from the robot's current location to an arbitrary pose.
      */
     private Trajectory<TimedState<Pose2dWithCurvature>> generateTrajectory() {
-        Pose2d currentPose = mDrive.getDriveController().getCurrentPose();
+        Pose2d currentPose = mDrive.getCurrentPose();
         List<Pose2d> waypoints = Arrays.asList(currentPose, mTargetPose);
         return mTrajectoryGenerator.generateTrajectory(mIsReversed, waypoints, AutonomousRoutines.kDefaultTrajectoryConstraints);
     }
@@ -105,6 +105,14 @@ public class DriverInput extends Module implements IThrottleProvider, ITurnProvi
         ELogitech310.map(mData.operatorinput, mOperatorJoystick);
     }
 
+    /**
+     * The driver's commands are never shed
+     */
+    @Override
+    public EModulePriority getPriority() {
+        return EModulePriority.CRITICAL;
+    }
+
     @Override
     public void update(double pNow) {
 
@@ -0,0 +1,162 @@
+package us.ilite.robot.hardware;
+
+import com.team254.lib.geometry.Rotation2d;
+
+import us.ilite.lib.drivers.ECommonControlMode;
+import us.ilite.lib.drivers.IMU;
+import us.ilite.robot.modules.DriveMessage;
+
+/**
+ * Wraps drive hardware so each sensor is read at most once per drive cycle - see {@link SensorCache}.  Outputs and
+ * configuration go straight through.  Call {@link #beginCycle(double)} at the start of each drive cycle.
+ */
+public class CachedDriveHardware implements IDriveHardware {
+
+    private final IDriveHardware mHardware;
+    private final SensorCache mCache = new SensorCache();
+
+    private final SensorCache.Signal mHeadingDegrees;
+    private final SensorCache.Signal mLeftInches, mRightInches;
+    private final SensorCache.Signal mLeftVelInches, mRightVelInches;
+    private final SensorCache.Signal mLeftVelTicks, mRightVelTicks;
+    private final SensorCache.Signal mLeftTarget, mRightTarget;
+    private final SensorCache.Signal mLeftCurrent, mRightCurrent;
+    private final SensorCache.Signal mLeftVoltage, mRightVoltage;
+
+    public CachedDriveHardware(IDriveHardware pHardware) {
+        mHardware = pHardware;
+        mHeadingDegrees = mCache.add(() -> mHardware.getHeading().getDegrees());
+        mLeftInches = mCache.add(mHardware::getLeftInches);
+        mRightInches = mCache.add(mHardware::getRightInches);
+        mLeftVelInches = mCache.add(mHardware::getLeftVelInches);
+        mRightVelInches = mCache.add(mHardware::getRightVelInches);
+        mLeftVelTicks = mCache.add(mHardware::getLeftVelTicks);
+        mRightVelTicks = mCache.add(mHardware::getRightVelTicks);
+        mLeftTarget = mCache.add(mHardware::getLeftTarget);
+        mRightTarget = mCache.add(mHardware::getRightTarget);
+        mLeftCurrent = mCache.add(mHardware::getLeftCurrent);
+        mRightCurrent = mCache.add(mHardware::getRightCurrent);
+        mLeftVoltage = mCache.add(mHardware::getLeftVoltage);
+        mRightVoltage = mCache.add(mHardware::getRightVoltage);
+    }
+
+    public void beginCycle(double pNow) {
+        mCache.beginCycle(pNow);
+    }
+
+    public SensorCache getCache() {
+        return mCache;
+    }
+
+    @Override
+    public void init() {
+        mHardware.init();
+        mCache.beginCycle(mCache.getTimestamp());
+    }
+
+    /**
+     * Zeroing changes the sensors, so the rest of the cycle reads them again
+     */
+    @Override
+    public void zero() {
+        mHardware.zero();
+        mCache.beginCycle(mCache.getTimestamp());
+    }
+
+    @Override
+    public boolean checkHardware() {
+        return mHardware.checkHardware();
+    }
+
+    @Override
+    public void set(DriveMessage pDriveMessage) {
+        mHardware.set(pDriveMessage);
+    }
+
+    @Override
+    public void configureMode(ECommonControlMode pControlMode) {
+        mHardware.configureMode(pControlMode);
+    }
+
+    @Override
+    public void setImu(IMU pImu) {
+        mHardware.setImu(pImu);
+        mCache.beginCycle(mCache.getTimestamp());
+    }
+
+    @Override
+    public IMU getImu() {
+        return mHardware.getImu();
+    }
+
+    @Override
+    public Rotation2d getHeading() {
+        return Rotation2d.fromDegrees(mHeadingDegrees.get());
+    }
+
+    @Override
+    public double getLeftInches() {
+        return mLeftInches.get();
+    }
+
+    @Override
+    public double getRightInches() {
+        return mRightInches.get();
+    }
+
+    @Override
+    public double getLeftVelInches() {
+        return mLeftVelInches.get();
+    }
+
+    @Override
+    public double getRightVelInches() {
+        return mRightVelInches.get();
+    }
+
+    @Override
+    public double getLeftVelTicks() {
+        return mLeftVelTicks.get();
+    }
+
+    @Override
+    public double getRightVelTicks() {
+        return mRightVelTicks.get();
+    }
+
+    @Override
+    public double getLeftTarget() {
+        return mLeftTarget.get();
+    }
+
+    @Override
+    public double getRightTarget() {
+        return mRightTarget.get();
+    }
+
+    @Override
+    public double getLeftCurrent() {
+        return mLeftCurrent.get();
+    }
+
+    @Override
+    public double getRightCurrent() {
+        return mRightCurrent.get();
+    }
+
+    @Override
+    public double getLeftVoltage() {
+        return mLeftVoltage.get();
+    }
+
+    @Override
+    public double getRightVoltage() {
+        return mRightVoltage.get();
+    }
+
+    @Override
+    public void setOpenLoopRampRate(double pOpenLoopRampRate) {
+        mHardware.setOpenLoopRampRate(pOpenLoopRampRate);
+    }
+
+}
@@ -11,10 +11,13 @@ import com.team254.lib.geometry.Rotation2d;
 import us.ilite.common.config.SystemSettings;
 import us.ilite.common.lib.util.Conversions;
 import us.ilite.common.lib.util.RangeScale;
+import us.ilite.lib.drivers.CANConfigurator;
+import us.ilite.lib.drivers.ECANSignal;
 import us.ilite.lib.drivers.ECommonControlMode;
 import us.ilite.lib.drivers.IMU;
 import us.ilite.lib.drivers.Pigeon;
 import us.ilite.lib.drivers.SparkMaxFactory;
+import us.ilite.lib.drivers.StatusFramePlanner;
 import us.ilite.robot.modules.DriveMessage;
 import us.ilite.robot.modules.Elevator;
 
@@ -31,6 +34,7 @@ public class NeoDriveHardware implements IDriveHardware {
     private int mPidSlot = SystemSettings.kDriveVelocityLoopSlot;
     private double mCurrentOpenLoopRampRate = SystemSettings.kDriveMinOpenLoopVoltageRampRate;
     private RangeScale mRangeScale;
+    private final OutputStage.Slot mLeftOutput, mRightOutput;
 
     public NeoDriveHardware(double pGearRatio) {
         kGearRatio = pGearRatio;
@@ -55,20 +59,17 @@ public class NeoDriveHardware implements IDriveHardware {
         configureMotor(mRightMiddle);
         configureMotor(mRightRear);
 
-        mLeftMaster.setInverted(true);
-        mLeftMiddle.setInverted(true);
-        mLeftRear.setInverted(true);
+        configureInverted(mLeftMaster, true);
+        configureInverted(mLeftMiddle, true);
+        configureInverted(mLeftRear, true);
 
-        mRightMaster.setInverted(false);
-        mRightMiddle.setInverted(false);
-        mRightRear.setInverted(true);
+        configureInverted(mRightMaster, false);
+        configureInverted(mRightMiddle, false);
+        configureInverted(mRightRear, true);
 
         // Invert sensor readings by multiplying by 1 or -1
-        mLeftMaster.getEncoder().setPositionConversionFactor(1.0 * kGearRatio);
-        mLeftMaster.getEncoder().setVelocityConversionFactor(1.0 * kGearRatio);
-
-        mRightMaster.getEncoder().setPositionConversionFactor(1.0 * kGearRatio);
-        mRightMaster.getEncoder().setVelocityConversionFactor(1.0 * kGearRatio);
+        configureConversionFactors(mLeftMaster, 1.0 * kGearRatio);
+        configureConversionFactors(mRightMaster, 1.0 * kGearRatio);
 
 
         reloadVelocityGains(mLeftMaster);
@@ -78,6 +79,18 @@ public class NeoDriveHardware implements IDriveHardware {
                 SystemSettings.kDriveMaxOpenLoopVoltageRampRate,
                 Elevator.EElevatorPosition.CARGO_BOTTOM.getEncoderRotations(),
                 Elevator.EElevatorPosition.CARGO_TOP.getEncoderRotations());
+
+        // Demands are sent at the end of the cycle, and only if they changed
+        mLeftOutput = OutputStage.getInstance().register("DriveLeft", (value, mode, feedforward, neutralMode) -> {
+            mLeftControlMode = configForControlMode(mLeftMaster, mLeftControlMode, mode.kRevControlType);
+            mLeftNeutralMode = configForNeutralMode(mLeftNeutralMode, neutralMode.kRevIdleMode, mLeftMaster, mLeftMiddle, mLeftRear);
+            mLeftMaster.getPIDController().setReference(value, mLeftControlMode, mPidSlot, feedforward);
+        });
+        mRightOutput = OutputStage.getInstance().register("DriveRight", (value, mode, feedforward, neutralMode) -> {
+            mRightControlMode = configForControlMode(mRightMaster, mRightControlMode, mode.kRevControlType);
+            mRightNeutralMode = configForNeutralMode(mRightNeutralMode, neutralMode.kRevIdleMode, mRightMaster, mRightMiddle, mRightRear);
+            mRightMaster.getPIDController().setReference(value, mRightControlMode, mPidSlot, feedforward);
+        });
     }
 
     @Override
@@ -104,19 +117,16 @@ public class NeoDriveHardware implements IDriveHardware {
 
         mLeftMaster.set(0.0);
         mRightMaster.set(0.0);
+        mLeftOutput.clear();
+        mRightOutput.clear();
     }
 
+    /**
+     * Posts the message to the {@link OutputStage}, which sends it at the end of the cycle
+     */
     public void set(DriveMessage pDriveMessage) {
-
-        mLeftControlMode = configForControlMode(mLeftMaster, mLeftControlMode, pDriveMessage.leftControlMode.kRevControlType);
-        mRightControlMode = configForControlMode(mRightMaster, mRightControlMode, pDriveMessage.rightControlMode.kRevControlType);
-
-        mLeftNeutralMode = configForNeutralMode(mLeftNeutralMode, pDriveMessage.leftNeutralMode.kRevIdleMode, mLeftMaster, mLeftMiddle, mLeftRear);
-        mRightNeutralMode = configForNeutralMode(mRightNeutralMode, pDriveMessage.rightNeutralMode.kRevIdleMode, mRightMaster, mRightMiddle, mRightRear);
-
-        mLeftMaster.getPIDController().setReference(pDriveMessage.leftOutput, mLeftControlMode, mPidSlot, pDriveMessage.leftDemand);
-        mRightMaster.getPIDController().setReference(pDriveMessage.rightOutput, mRightControlMode, mPidSlot, pDriveMessage.rightDemand);
-
+        mLeftOutput.set(pDriveMessage.leftOutput, pDriveMessage.leftControlMode, pDriveMessage.leftDemand, pDriveMessage.leftNeutralMode);
+        mRightOutput.set(pDriveMessage.rightOutput, pDriveMessage.rightControlMode, pDriveMessage.rightDemand, pDriveMessage.rightNeutralMode);
     }
 
     /**
@@ -180,13 +190,13 @@ public class NeoDriveHardware implements IDriveHardware {
     }
 
     private void configureMaster(CANSparkMax sparkMax, boolean pIsLeft) {
-        // Velocity, temperature, voltage, and current according the REV docs
-        sparkMax.setPeriodicFramePeriod(CANSparkMaxLowLevel.PeriodicFrame.kStatus1, 5);
-        // Position according to REV docs
-        sparkMax.setPeriodicFramePeriod(CANSparkMaxLowLevel.PeriodicFrame.kStatus2, 5);
+        // Drive reads these every cycle
+        StatusFramePlanner.getInstance().consume(sparkMax, SystemSettings.kCANControlSignalPeriodMs,
+                ECANSignal.POSITION, ECANSignal.VELOCITY, ECANSignal.CURRENT, ECANSignal.APPLIED_OUTPUT);
 
-        sparkMax.setSmartCurrentLimit(SystemSettings.kDriveCurrentLimitAmps);
-        sparkMax.setSecondaryCurrentLimit(SystemSettings.kDriveCurrentLimitAmps);
+        CANConfigurator.getInstance().configure(sparkMax)
+                .rev("smart current limit", () -> sparkMax.setSmartCurrentLimit(SystemSettings.kDriveCurrentLimitAmps))
+                .rev("secondary current limit", () -> sparkMax.setSecondaryCurrentLimit(SystemSettings.kDriveCurrentLimitAmps));
         // Set a peak current limit duration??
     }
 
@@ -197,11 +207,23 @@ public class NeoDriveHardware implements IDriveHardware {
          */
 //        motorController.enableVoltageCompensation(12.0);
         // No velocity measurement filter
-        motorController.setOpenLoopRampRate(SystemSettings.kDriveMaxOpenLoopVoltageRampRate);
-        motorController.setClosedLoopRampRate(SystemSettings.kDriveClosedLoopVoltageRampRate);
+        CANConfigurator.getInstance().configure(motorController)
+                .rev("open loop ramp", () -> motorController.setOpenLoopRampRate(SystemSettings.kDriveMaxOpenLoopVoltageRampRate))
+                .rev("closed loop ramp", () -> motorController.setClosedLoopRampRate(SystemSettings.kDriveClosedLoopVoltageRampRate));
         // motorController.configNeutralDeadband(0.04, 0);
     }
 
+    private void configureInverted(CANSparkMax pSparkMax, boolean pInverted) {
+        CANConfigurator.getInstance().configure(pSparkMax)
+                .run("inverted", () -> pSparkMax.setInverted(pInverted), () -> pSparkMax.getInverted() == pInverted);
+    }
+
+    private void configureConversionFactors(CANSparkMax pSparkMax, double pFactor) {
+        CANConfigurator.getInstance().configure(pSparkMax)
+                .rev("position conversion factor", () -> pSparkMax.getEncoder().setPositionConversionFactor(pFactor))
+                .rev("velocity conversion factor", () -> pSparkMax.getEncoder().setVelocityConversionFactor(pFactor));
+    }
+
     private void configSparkForPercentOutput(CANSparkMax pSparkMax) {
         // talon.configNeutralDeadband(0.04, 0);
     }
@@ -217,11 +239,12 @@ public class NeoDriveHardware implements IDriveHardware {
 
         CANPIDController sparkMaxPid = pSparkMax.getPIDController();
 
-        sparkMaxPid.setSmartMotionAllowedClosedLoopError(SystemSettings.kDriveVelocityTolerance, SystemSettings.kDriveVelocityLoopSlot);
-        sparkMaxPid.setP(SystemSettings.kDriveVelocity_kP, SystemSettings.kDriveVelocityLoopSlot);
-        sparkMaxPid.setI(SystemSettings.kDriveVelocity_kI, SystemSettings.kDriveVelocityLoopSlot);
-        sparkMaxPid.setD(SystemSettings.kDriveVelocity_kD, SystemSettings.kDriveVelocityLoopSlot);
-        sparkMaxPid.setFF(SystemSettings.kDriveVelocity_kF, SystemSettings.kDriveVelocityLoopSlot);
+        CANConfigurator.getInstance().configure(pSparkMax)
+                .rev("allowed error", () -> sparkMaxPid.setSmartMotionAllowedClosedLoopError(SystemSettings.kDriveVelocityTolerance, SystemSettings.kDriveVelocityLoopSlot))
+                .rev("P", () -> sparkMaxPid.setP(SystemSettings.kDriveVelocity_kP, SystemSettings.kDriveVelocityLoopSlot))
+                .rev("I", () -> sparkMaxPid.setI(SystemSettings.kDriveVelocity_kI, SystemSettings.kDriveVelocityLoopSlot))
+                .rev("D", () -> sparkMaxPid.setD(SystemSettings.kDriveVelocity_kD, SystemSettings.kDriveVelocityLoopSlot))
+                .rev("FF", () -> sparkMaxPid.setFF(SystemSettings.kDriveVelocity_kF, SystemSettings.kDriveVelocityLoopSlot));
     }
 
     private void configSparkForSmartMotion(CANSparkMax talon) {
@@ -0,0 +1,215 @@
+package us.ilite.robot.hardware;
+
+import com.flybotix.hfr.util.log.ILog;
+import com.flybotix.hfr.util.log.Logger;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import us.ilite.common.config.SystemSettings;
+import us.ilite.lib.drivers.ECommonControlMode;
+import us.ilite.lib.drivers.ECommonNeutralMode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects every motor output demanded during a cycle and sends them all at once at the end of it.
+ *
+ * Each motor controller gets a {@link Slot}.  Modules post demands to their slots as often as they like during a
+ * cycle - only the last one counts.  {@link #flush(double)} then sends each slot whose demand changed by more than
+ * its epsilon, or whose control mode, feedforward or neutral mode changed.  A demand that hasn't changed is only sent
+ * again every {@link SystemSettings#kOutputRefreshPeriod}, in case a frame was dropped.  A demand of exactly zero is
+ * always sent, so a motor is never left running because its stop was within the epsilon.
+ *
+ * Only post demands and flush from the thread that runs the modules - the {@link us.ilite.robot.loops.ModuleScheduler}
+ * flushes at the end of every tick.
+ */
+public class OutputStage {
+
+    private static final OutputStage kInstance = new OutputStage();
+
+    private final ILog mLog = Logger.createLog(OutputStage.class);
+
+    private final List<Slot> mSlots = new ArrayList<>();
+
+    private long mPosts = 0;
+    private long mWrites = 0;
+    private double mWindowStart = Double.NaN;
+    private long mWindowPosts = 0;
+    private long mWindowWrites = 0;
+    private double mSavedPerSecond = 0.0;
+
+    public static OutputStage getInstance() {
+        return kInstance;
+    }
+
+    OutputStage() {
+    }
+
+    /**
+     * Sends one demand to a motor controller
+     */
+    public interface Writer {
+        void write(double pValue, ECommonControlMode pControlMode, double pFeedforward, ECommonNeutralMode pNeutralMode);
+    }
+
+    /**
+     * @param pName Used in logs
+     * @param pWriter Sends the demand to the motor controller
+     */
+    public Slot register(String pName, Writer pWriter) {
+        return register(pName, SystemSettings.kOutputEpsilon, pWriter);
+    }
+
+    /**
+     * @param pName Used in logs
+     * @param pEpsilon Changes in value or feedforward smaller than this aren't sent
+     * @param pWriter Sends the demand to the motor controller
+     */
+    public Slot register(String pName, double pEpsilon, Writer pWriter) {
+        Slot slot = new Slot(pName, pEpsilon, pWriter);
+        mSlots.add(slot);
+        return slot;
+    }
+
+    /**
+     * Sends every demand that changed since it was last sent
+     */
+    public void flush(double pNow) {
+        for(int i = 0; i < mSlots.size(); i++) {
+            mSlots.get(i).flush(pNow);
+        }
+
+        if(Double.isNaN(mWindowStart)) {
+            mWindowStart = pNow;
+        } else if(pNow - mWindowStart >= SystemSettings.kTimingReportPeriod) {
+            mSavedPerSecond = ((mPosts - mWindowPosts) - (mWrites - mWindowWrites)) / (pNow - mWindowStart);
+            mWindowStart = pNow;
+            mWindowPosts = mPosts;
+            mWindowWrites = mWrites;
+            SmartDashboard.putNumber("can_frames_saved_per_sec", mSavedPerSecond);
+        }
+    }
+
+    /**
+     * Sends every slot's demand at the next flush, whether it changed or not - e.g. when the robot is enabled.
+     */
+    public void invalidate() {
+        for(int i = 0; i < mSlots.size(); i++) {
+            mSlots.get(i).invalidate();
+        }
+    }
+
+    /**
+     * @return Demands posted by modules - what would have been sent without this stage
+     */
+    public long getPosts() {
+        return mPosts;
+    }
+
+    /**
+     * @return Demands actually sent to a motor controller
+     */
+    public long getWrites() {
+        return mWrites;
+    }
+
+    /**
+     * @return Frames saved per second over the last report period
+     */
+    public double getSavedPerSecond() {
+        return mSavedPerSecond;
+    }
+
+    public void logStats() {
+        mLog.warn("Output stage: ", mPosts, " demands posted, ", mWrites, " sent, ", mSavedPerSecond, " frames/s saved");
+    }
+
+    public class Slot {
+        private final String mName;
+        private final double mEpsilon;
+        private final Writer mWriter;
+
+        private double mValue = 0.0;
+        private ECommonControlMode mControlMode = ECommonControlMode.PERCENT_OUTPUT;
+        private double mFeedforward = 0.0;
+        private ECommonNeutralMode mNeutralMode = ECommonNeutralMode.BRAKE;
+        private boolean mHasDemand = false;
+
+        private boolean mWritten = false;
+        private double mWrittenValue, mWrittenFeedforward;
+        private ECommonControlMode mWrittenControlMode;
+        private ECommonNeutralMode mWrittenNeutralMode;
+        private double mWrittenTime;
+
+        private Slot(String pName, double pEpsilon, Writer pWriter) {
+            mName = pName;
+            mEpsilon = pEpsilon;
+            mWriter = pWriter;
+        }
+
+        public void set(double pValue, ECommonControlMode pControlMode) {
+            set(pValue, pControlMode, 0.0, mNeutralMode);
+        }
+
+        public void set(double pValue, ECommonControlMode pControlMode, double pFeedforward) {
+            set(pValue, pControlMode, pFeedforward, mNeutralMode);
+        }
+
+        /**
+         * Replaces any demand posted earlier in the cycle
+         */
+        public void set(double pValue, ECommonControlMode pControlMode, double pFeedforward, ECommonNeutralMode pNeutralMode) {
+            mValue = pValue;
+            mControlMode = pControlMode;
+            mFeedforward = pFeedforward;
+            mNeutralMode = pNeutralMode;
+            mHasDemand = true;
+            mPosts++;
+        }
+
+        /**
+         * Sends the demand at the next flush, whether it changed or not
+         */
+        public void invalidate() {
+            mWritten = false;
+        }
+
+        /**
+         * Call this after writing to the motor controller directly.  Drops the demand, so it isn't sent again over
+         * whatever was written, and sends the next one no matter what.
+         */
+        public void clear() {
+            mHasDemand = false;
+            mWritten = false;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        private void flush(double pNow) {
+            if(!mHasDemand) {
+                return;
+            }
+            if(mWritten && !hasChanged() && pNow - mWrittenTime < SystemSettings.kOutputRefreshPeriod) {
+                return;
+            }
+            mWriter.write(mValue, mControlMode, mFeedforward, mNeutralMode);
+            mWritten = true;
+            mWrittenValue = mValue;
+            mWrittenControlMode = mControlMode;
+            mWrittenFeedforward = mFeedforward;
+            mWrittenNeutralMode = mNeutralMode;
+            mWrittenTime = pNow;
+            mWrites++;
+        }
+
+        private boolean hasChanged() {
+            return mControlMode != mWrittenControlMode
+                    || mNeutralMode != mWrittenNeutralMode
+                    || (mValue == 0.0 && mWrittenValue != 0.0)
+                    || Math.abs(mValue - mWrittenValue) > mEpsilon
+                    || Math.abs(mFeedforward - mWrittenFeedforward) > mEpsilon;
+        }
+    }
+
+}
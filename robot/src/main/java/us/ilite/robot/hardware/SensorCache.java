@@ -0,0 +1,91 @@
+package us.ilite.robot.hardware;
+
+import java.util.Arrays;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Reads each hardware signal at most once per cycle.  Every read of a sensor getter on a Spark MAX, Talon or IMU is
+ * a JNI call, and often a CAN transaction - a module that reads its encoder in periodicInput(), again in update(),
+ * and again from another module, pays for it three times.
+ *
+ * Signals are registered once with {@link #add(DoubleSupplier)}.  The first {@link Signal#get()} in a cycle reads
+ * the hardware, and every later one returns the same value, so everything in a cycle sees one consistent snapshot
+ * stamped with the cycle's time.  Signals nobody reads in a cycle are never read at all.  Reads served from the
+ * snapshot are counted, to show how many hardware reads were saved.
+ *
+ * Not thread-safe - only use it from the thread that runs the module.
+ */
+public class SensorCache {
+
+    private DoubleSupplier[] mReaders = new DoubleSupplier[0];
+    private double[] mValues = new double[0];
+    private long[] mReadCycles = new long[0];
+
+    private long mCycle = 0;
+    private double mTimestamp = Double.NaN;
+    private long mHardwareReads = 0;
+    private long mCachedReads = 0;
+
+    /**
+     * @param pReader Reads the signal from the hardware
+     */
+    public Signal add(DoubleSupplier pReader) {
+        int index = mReaders.length;
+        mReaders = Arrays.copyOf(mReaders, index + 1);
+        mValues = Arrays.copyOf(mValues, index + 1);
+        mReadCycles = Arrays.copyOf(mReadCycles, index + 1);
+        mReaders[index] = pReader;
+        mReadCycles[index] = -1;
+        return new Signal(index);
+    }
+
+    /**
+     * Starts a new cycle - the next read of each signal goes to the hardware.  Call this at the start of the
+     * module's periodicInput(), and after anything that changes the sensors, like zeroing them.
+     */
+    public void beginCycle(double pNow) {
+        mCycle++;
+        mTimestamp = pNow;
+    }
+
+    /**
+     * @return When the current cycle started
+     */
+    public double getTimestamp() {
+        return mTimestamp;
+    }
+
+    /**
+     * @return Signals actually read from the hardware
+     */
+    public long getHardwareReads() {
+        return mHardwareReads;
+    }
+
+    /**
+     * @return Reads served from the snapshot that would otherwise have gone to the hardware again
+     */
+    public long getCachedReads() {
+        return mCachedReads;
+    }
+
+    public class Signal {
+        private final int mIndex;
+
+        private Signal(int pIndex) {
+            mIndex = pIndex;
+        }
+
+        public double get() {
+            if(mReadCycles[mIndex] != mCycle) {
+                mValues[mIndex] = mReaders[mIndex].getAsDouble();
+                mReadCycles[mIndex] = mCycle;
+                mHardwareReads++;
+            } else {
+                mCachedReads++;
+            }
+            return mValues[mIndex];
+        }
+    }
+
+}
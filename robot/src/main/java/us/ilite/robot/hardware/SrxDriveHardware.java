@@ -1,6 +1,6 @@
 package us.ilite.robot.hardware;
 
-import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.ParamEnum;
 import com.ctre.phoenix.motorcontrol.*;
 import com.ctre.phoenix.motorcontrol.can.BaseMotorController;
 import com.ctre.phoenix.motorcontrol.can.TalonSRX;
@@ -13,9 +13,12 @@ import com.team254.lib.geometry.Rotation2d;
 
 import us.ilite.common.config.SystemSettings;
 import us.ilite.common.lib.util.Conversions;
+import us.ilite.lib.drivers.CANConfigurator;
+import us.ilite.lib.drivers.ECANSignal;
 import us.ilite.lib.drivers.ECommonControlMode;
 import us.ilite.lib.drivers.IMU;
 import us.ilite.lib.drivers.Pigeon;
+import us.ilite.lib.drivers.StatusFramePlanner;
 import us.ilite.robot.modules.DriveMessage;
 
 /**
@@ -34,6 +37,7 @@ public class SrxDriveHardware implements IDriveHardware {
     private final VictorSPX mLeftMiddle, mRightMiddle, mLeftRear, mRightRear;
     private ControlMode mLeftControlMode, mRightControlMode;
     private NeutralMode mLeftNeutralMode, mRightNeutralMode;
+    private final OutputStage.Slot mLeftOutput, mRightOutput;
 
     public SrxDriveHardware() {
         mGyro = new Pigeon(new PigeonIMU(SystemSettings.kPigeonId), SystemSettings.kGyroCollisionThreshold);
@@ -57,20 +61,31 @@ public class SrxDriveHardware implements IDriveHardware {
         configureMotor(mRightMiddle);
         configureMotor(mRightRear);
 
-        mLeftMaster.setInverted(true);
-        mLeftMiddle.setInverted(true);
-        mLeftRear.setInverted(true);
+        configureInverted(mLeftMaster, true);
+        configureInverted(mLeftMiddle, true);
+        configureInverted(mLeftRear, true);
 
-        mRightMaster.setInverted(false);
-        mRightMiddle.setInverted(false);
-        mRightRear.setInverted(false);
+        configureInverted(mRightMaster, false);
+        configureInverted(mRightMiddle, false);
+        configureInverted(mRightRear, false);
 
-        mLeftMaster.setSensorPhase(false);
-        mRightMaster.setSensorPhase(false);
+        CANConfigurator.getInstance().configure(mLeftMaster).run("sensor phase", () -> mLeftMaster.setSensorPhase(false));
+        CANConfigurator.getInstance().configure(mRightMaster).run("sensor phase", () -> mRightMaster.setSensorPhase(false));
 
         reloadGains(mLeftMaster);
         reloadGains(mRightMaster);
 
+        // Demands are sent at the end of the cycle, and only if they changed
+        mLeftOutput = OutputStage.getInstance().register("DriveLeft", (value, mode, feedforward, neutralMode) -> {
+            mLeftControlMode = configForControlMode(mLeftMaster, mLeftControlMode, mode.kCtreControlMode);
+            mLeftNeutralMode = configForNeutralMode(mLeftNeutralMode, neutralMode.kCtreNeutralMode, mLeftMaster, mLeftMiddle, mLeftRear);
+            mLeftMaster.set(mLeftControlMode, value, DemandType.ArbitraryFeedForward, feedforward);
+        });
+        mRightOutput = OutputStage.getInstance().register("DriveRight", (value, mode, feedforward, neutralMode) -> {
+            mRightControlMode = configForControlMode(mRightMaster, mRightControlMode, mode.kCtreControlMode);
+            mRightNeutralMode = configForNeutralMode(mRightNeutralMode, neutralMode.kCtreNeutralMode, mRightMaster, mRightMiddle, mRightRear);
+            mRightMaster.set(mRightControlMode, value, DemandType.ArbitraryFeedForward, feedforward);
+        });
     }
 
     @Override
@@ -97,18 +112,16 @@ public class SrxDriveHardware implements IDriveHardware {
 
         mLeftMaster.set(ControlMode.PercentOutput, 0.0);
         mRightMaster.set(ControlMode.PercentOutput, 0.0);
+        mLeftOutput.clear();
+        mRightOutput.clear();
     }
 
+    /**
+     * Posts the message to the {@link OutputStage}, which sends it at the end of the cycle
+     */
     public void set(DriveMessage pDriveMessage) {
-
-        mLeftControlMode = configForControlMode(mLeftMaster, mLeftControlMode, pDriveMessage.leftControlMode.kCtreControlMode);
-        mRightControlMode = configForControlMode(mRightMaster, mRightControlMode, pDriveMessage.rightControlMode.kCtreControlMode);
-
-        mLeftNeutralMode = configForNeutralMode(mLeftNeutralMode, pDriveMessage.leftNeutralMode.kCtreNeutralMode, mLeftMaster, mLeftMiddle, mLeftRear);
-        mRightNeutralMode = configForNeutralMode(mRightNeutralMode, pDriveMessage.rightNeutralMode.kCtreNeutralMode, mRightMaster, mRightMiddle, mRightRear);
-
-        mLeftMaster.set(mLeftControlMode, pDriveMessage.leftOutput, DemandType.ArbitraryFeedForward, pDriveMessage.leftDemand);
-        mRightMaster.set(mRightControlMode, pDriveMessage.rightOutput, DemandType.ArbitraryFeedForward, pDriveMessage.rightDemand);
+        mLeftOutput.set(pDriveMessage.leftOutput, pDriveMessage.leftControlMode, pDriveMessage.leftDemand, pDriveMessage.leftNeutralMode);
+        mRightOutput.set(pDriveMessage.rightOutput, pDriveMessage.rightControlMode, pDriveMessage.rightDemand, pDriveMessage.rightNeutralMode);
     }
 
     /**
@@ -176,29 +189,43 @@ public class SrxDriveHardware implements IDriveHardware {
     }
 
     private void configureMaster(TalonSRX talon, boolean pIsLeft) {
-        talon.setStatusFramePeriod(StatusFrameEnhanced.Status_2_Feedback0, 5, SystemSettings.kLongCANTimeoutMs);
-        final ErrorCode sensorPresent = talon.configSelectedFeedbackSensor(FeedbackDevice
-                .QuadEncoder, 0, 100); //primary closed-loop, 100 ms timeout
-        if (sensorPresent != ErrorCode.OK) {
-            mLogger.error("Could not detect " + (pIsLeft ? "left" : "right") + " encoder: " + sensorPresent);
-        }
+        // Drive reads these every cycle
+        StatusFramePlanner.getInstance().consume(talon, SystemSettings.kCANControlSignalPeriodMs,
+                ECANSignal.POSITION, ECANSignal.VELOCITY, ECANSignal.CURRENT, ECANSignal.APPLIED_OUTPUT);
+
+        CANConfigurator.getInstance().configure(talon)
+                // Fails if the encoder can't be detected
+                .ctre((pIsLeft ? "left" : "right") + " encoder", () -> talon.configSelectedFeedbackSensor(FeedbackDevice
+                        .QuadEncoder, 0, 100)) //primary closed-loop, 100 ms timeout
 
-        talon.enableCurrentLimit(true);
-        talon.configContinuousCurrentLimit(SystemSettings.kDriveCurrentLimitAmps, SystemSettings.kLongCANTimeoutMs);
-        talon.configPeakCurrentLimit(SystemSettings.kDriveCurrentLimitAmps, SystemSettings.kLongCANTimeoutMs);
-        talon.configPeakCurrentDuration(SystemSettings.kDriveCurrentLimitTriggerDurationMs, SystemSettings.kLongCANTimeoutMs);
+                .run("current limit", () -> talon.enableCurrentLimit(true))
+                .ctre("continuous current limit", () -> talon.configContinuousCurrentLimit(SystemSettings.kDriveCurrentLimitAmps, SystemSettings.kLongCANTimeoutMs),
+                        talon, ParamEnum.eContinuousCurrentLimitAmps, SystemSettings.kDriveCurrentLimitAmps)
+                .ctre("peak current limit", () -> talon.configPeakCurrentLimit(SystemSettings.kDriveCurrentLimitAmps, SystemSettings.kLongCANTimeoutMs),
+                        talon, ParamEnum.ePeakCurrentLimitAmps, SystemSettings.kDriveCurrentLimitAmps)
+                .ctre("peak current duration", () -> talon.configPeakCurrentDuration(SystemSettings.kDriveCurrentLimitTriggerDurationMs, SystemSettings.kLongCANTimeoutMs),
+                        talon, ParamEnum.ePeakCurrentLimitMs, SystemSettings.kDriveCurrentLimitTriggerDurationMs);
     }
 
     private void configureMotor(BaseMotorController motorController) {
-        motorController.enableVoltageCompensation(true);
-        motorController.configVoltageCompSaturation(12.0, SystemSettings.kLongCANTimeoutMs);
-        motorController.configVelocityMeasurementPeriod(VelocityMeasPeriod.Period_100Ms, SystemSettings.kLongCANTimeoutMs);
-        motorController.configVelocityMeasurementWindow(64, SystemSettings.kLongCANTimeoutMs);
-        motorController.configOpenloopRamp(SystemSettings.kDriveMinOpenLoopVoltageRampRate, SystemSettings.kLongCANTimeoutMs);
-        motorController.configClosedloopRamp(SystemSettings.kDriveClosedLoopVoltageRampRate, SystemSettings.kLongCANTimeoutMs);
+        CANConfigurator.getInstance().configure(motorController)
+                .run("voltage compensation", () -> motorController.enableVoltageCompensation(true))
+                .ctre("voltage compensation saturation", () -> motorController.configVoltageCompSaturation(12.0, SystemSettings.kLongCANTimeoutMs),
+                        motorController, ParamEnum.eNominalBatteryVoltage, 12.0)
+                .ctre("velocity measurement period", () -> motorController.configVelocityMeasurementPeriod(VelocityMeasPeriod.Period_100Ms, SystemSettings.kLongCANTimeoutMs))
+                .ctre("velocity measurement window", () -> motorController.configVelocityMeasurementWindow(64, SystemSettings.kLongCANTimeoutMs))
+                .ctre("open loop ramp", () -> motorController.configOpenloopRamp(SystemSettings.kDriveMinOpenLoopVoltageRampRate, SystemSettings.kLongCANTimeoutMs),
+                        motorController, ParamEnum.eOpenloopRamp, SystemSettings.kDriveMinOpenLoopVoltageRampRate)
+                .ctre("closed loop ramp", () -> motorController.configClosedloopRamp(SystemSettings.kDriveClosedLoopVoltageRampRate, SystemSettings.kLongCANTimeoutMs),
+                        motorController, ParamEnum.eClosedloopRamp, SystemSettings.kDriveClosedLoopVoltageRampRate);
         // motorController.configNeutralDeadband(0.04, 0);
     }
 
+    private void configureInverted(BaseMotorController pMotorController, boolean pInverted) {
+        CANConfigurator.getInstance().configure(pMotorController)
+                .run("inverted", () -> pMotorController.setInverted(pInverted), () -> pMotorController.getInverted() == pInverted);
+    }
+
     private void configTalonForPercentOutput(TalonSRX talon) {
         // talon.configNeutralDeadband(0.04, 0);
     }
@@ -217,17 +244,18 @@ public class SrxDriveHardware implements IDriveHardware {
     private void reloadGains(TalonSRX talon) {
         mLogger.info("Reloading gains for Talon ID ", talon.getDeviceID());
 
-        talon.configAllowableClosedloopError(SystemSettings.kDriveVelocityLoopSlot, SystemSettings.kDriveVelocityTolerance, SystemSettings.kLongCANTimeoutMs);
-        talon.config_kP(SystemSettings.kDriveVelocityLoopSlot, SystemSettings.kDriveVelocity_kP, SystemSettings.kLongCANTimeoutMs);
-        talon.config_kI(SystemSettings.kDriveVelocityLoopSlot, SystemSettings.kDriveVelocity_kI, SystemSettings.kLongCANTimeoutMs);
-        talon.config_kD(SystemSettings.kDriveVelocityLoopSlot, SystemSettings.kDriveVelocity_kD, SystemSettings.kLongCANTimeoutMs);
-        talon.config_kF(SystemSettings.kDriveVelocityLoopSlot, SystemSettings.kDriveVelocity_kF, SystemSettings.kLongCANTimeoutMs);
-
-        talon.configAllowableClosedloopError(SystemSettings.kDrivePositionLoopSlot, SystemSettings.kDrivePositionTolerance, SystemSettings.kLongCANTimeoutMs);
-        talon.config_kP(SystemSettings.kDrivePositionLoopSlot, SystemSettings.kDrivePosition_kP, SystemSettings.kLongCANTimeoutMs);
-        talon.config_kI(SystemSettings.kDrivePositionLoopSlot, SystemSettings.kDrivePosition_kI, SystemSettings.kLongCANTimeoutMs);
-        talon.config_kD(SystemSettings.kDrivePositionLoopSlot, SystemSettings.kDrivePosition_kD, SystemSettings.kLongCANTimeoutMs);
-        talon.config_kF(SystemSettings.kDrivePositionLoopSlot, SystemSettings.kDrivePosition_kD, SystemSettings.kLongCANTimeoutMs);
+        CANConfigurator.getInstance().configure(talon)
+                .ctre("velocity allowable error", () -> talon.configAllowableClosedloopError(SystemSettings.kDriveVelocityLoopSlot, SystemSettings.kDriveVelocityTolerance, SystemSettings.kLongCANTimeoutMs))
+                .ctre("velocity kP", () -> talon.config_kP(SystemSettings.kDriveVelocityLoopSlot, SystemSettings.kDriveVelocity_kP, SystemSettings.kLongCANTimeoutMs))
+                .ctre("velocity kI", () -> talon.config_kI(SystemSettings.kDriveVelocityLoopSlot, SystemSettings.kDriveVelocity_kI, SystemSettings.kLongCANTimeoutMs))
+                .ctre("velocity kD", () -> talon.config_kD(SystemSettings.kDriveVelocityLoopSlot, SystemSettings.kDriveVelocity_kD, SystemSettings.kLongCANTimeoutMs))
+                .ctre("velocity kF", () -> talon.config_kF(SystemSettings.kDriveVelocityLoopSlot, SystemSettings.kDriveVelocity_kF, SystemSettings.kLongCANTimeoutMs))
+
+                .ctre("position allowable error", () -> talon.configAllowableClosedloopError(SystemSettings.kDrivePositionLoopSlot, SystemSettings.kDrivePositionTolerance, SystemSettings.kLongCANTimeoutMs))
+                .ctre("position kP", () -> talon.config_kP(SystemSettings.kDrivePositionLoopSlot, SystemSettings.kDrivePosition_kP, SystemSettings.kLongCANTimeoutMs))
+                .ctre("position kI", () -> talon.config_kI(SystemSettings.kDrivePositionLoopSlot, SystemSettings.kDrivePosition_kI, SystemSettings.kLongCANTimeoutMs))
+                .ctre("position kD", () -> talon.config_kD(SystemSettings.kDrivePositionLoopSlot, SystemSettings.kDrivePosition_kD, SystemSettings.kLongCANTimeoutMs))
+                .ctre("position kF", () -> talon.config_kF(SystemSettings.kDrivePositionLoopSlot, SystemSettings.kDrivePosition_kD, SystemSettings.kLongCANTimeoutMs));
     }
 
     private void configTalonForMotionMagic(TalonSRX talon) {
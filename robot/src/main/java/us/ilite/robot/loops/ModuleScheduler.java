@@ -0,0 +1,502 @@
+package us.ilite.robot.loops;
+
+import com.flybotix.hfr.util.log.ILog;
+import com.flybotix.hfr.util.log.Logger;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+import us.ilite.common.io.FlightRecorder;
+import us.ilite.lib.drivers.Clock;
+import us.ilite.robot.hardware.OutputStage;
+import us.ilite.robot.modules.LoadShedder;
+import us.ilite.robot.modules.Module;
+import us.ilite.robot.modules.ModuleTiming;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs every module on a single WPILib Notifier thread, each at the rate it declares with {@link Module#getRateHz()}.
+ *
+ * The scheduler ticks at a base rate, and a module runs every (base rate / module rate) ticks, so module rates
+ * should divide the base rate evenly - e.g. 200/100/50/10hz modules on a 200hz base.  On each tick, periodicInput()
+ * runs for every module that is due, then update() - or loop() for a {@link Loop} - in the order the modules were given.
+ *
+ * Modules with the same rate are spread over the ticks of their period by how long they take, on top of the load the
+ * faster rates already put on each tick.  Their phases never decrease in the order the modules were given, so within
+ * a period a module can still rely on the ones before it at its rate.  A module can pin its own offset with
+ * {@link Module#getPhase()}.  Modules are weighed by how long they took the last time they were scheduled, or all the
+ * same before they've run.
+ *
+ * Every module is timed, and low priority modules are shed while ticks keep overrunning - see {@link LoadShedder}.  A
+ * tick only overruns if it takes longer than the period of the fastest module due on it, since that's the first
+ * module that would miss a cycle.  Motor outputs posted to the {@link OutputStage} during a tick are flushed once at
+ * the end of it.
+ */
+public class ModuleScheduler implements Runnable {
+    private ILog mLog = Logger.createLog(ModuleScheduler.class);
+
+    // Hyperperiods longer than this mean the rates aren't harmonic - fall back to spreading over the slowest rate
+    private static final int kMaxHyperperiodTicks = 1000;
+
+    private final double mBaseHz;
+    private final double kTickPeriodSeconds;
+
+    private final Notifier mWpiNotifier;
+
+    private final Object mTaskLock = new Object();
+    private boolean mIsRunning = false;
+    private long mTick = 0;
+    private long numTicks = 0;
+    private long numOverruns = 0;
+
+    private final List<Module> mModules = new ArrayList<>();
+    // Parallel to mModules.  Each module keeps its timing across calls to setModules().
+    private final List<ModuleTiming> mTimings = new ArrayList<>();
+    private final Map<Module, ModuleTiming> mAllTimings = new HashMap<>();
+    private int[] mDivisors = new int[0];
+    private int[] mPhases = new int[0];
+    private boolean[] mDue = new boolean[0];
+    private boolean[] mRun = new boolean[0];
+    // How many times each module has been due since the scheduler started, so it's decimated over its own runs
+    private long[] mDueRuns = new long[0];
+
+    private final ModuleTiming mTiming = new ModuleTiming("ModuleScheduler");
+    private final LoadShedder mLoadShedder;
+    private ModuleTiming mSlowestTiming = null;
+    private double mTickBudgetSeconds;
+    private Clock mClock = null;
+    private FlightRecorder mFlightRecorder = null;
+    private OutputStage mOutputStage = null;
+
+    public ModuleScheduler(double pBaseHz) {
+        this(pBaseHz, new LoadShedder("ModuleScheduler", 1.0 / pBaseHz));
+    }
+
+    ModuleScheduler(double pBaseHz, LoadShedder pLoadShedder) {
+        mWpiNotifier = new Notifier(this);
+        mBaseHz = pBaseHz;
+        kTickPeriodSeconds = 1.0 / pBaseHz;
+        mTickBudgetSeconds = kTickPeriodSeconds;
+        mLoadShedder = pLoadShedder;
+    }
+
+    /**
+     * Replaces the running modules.  Modules that are already running keep running without being initialized again -
+     * use {@link #modeInit(double, Module...)} for that.
+     */
+    public void setModules(Module ... pModules) {
+        synchronized(mTaskLock) {
+            mModules.clear();
+            mModules.addAll(Arrays.asList(pModules));
+            mTimings.clear();
+            for(Module module : pModules) {
+                mTimings.add(mAllTimings.computeIfAbsent(module, ModuleTiming::new));
+            }
+            mDivisors = new int[pModules.length];
+            mDue = new boolean[pModules.length];
+            mRun = new boolean[pModules.length];
+            mDueRuns = new long[pModules.length];
+            for(int i = 0; i < pModules.length; i++) {
+                mDivisors[i] = divisor(pModules[i]);
+            }
+            mPhases = assignPhases(pModules, mDivisors, costs(mTimings));
+        }
+    }
+
+    /**
+     * @param pClock Advanced at the start of every tick, on the scheduler's thread
+     */
+    public void setClock(Clock pClock) {
+        mClock = pClock;
+    }
+
+    /**
+     * @param pFlightRecorder Dumped if a module throws an exception
+     */
+    public void setFlightRecorder(FlightRecorder pFlightRecorder) {
+        mFlightRecorder = pFlightRecorder;
+    }
+
+    /**
+     * @param pOutputStage Flushed at the end of every tick, and after modules are initialized or shut down
+     */
+    public void setOutputStage(OutputStage pOutputStage) {
+        mOutputStage = pOutputStage;
+    }
+
+    /**
+     * Initializes every module and starts ticking, if the scheduler isn't running already
+     */
+    public synchronized void start() {
+
+        if(!mIsRunning) {
+            mLog.info("Starting module scheduler at ", mBaseHz, "hz");
+            synchronized(mTaskLock) {
+                double now = Timer.getFPGATimestamp();
+                if(mOutputStage != null) {
+                    mOutputStage.invalidate();
+                }
+                for(Module module : mModules) {
+                    module.modeInit(now);
+                }
+                for(Module module : mModules) {
+                    module.periodicInput(now);
+                }
+                flushOutputs(now);
+                mTick = 0;
+                Arrays.fill(mDueRuns, 0);
+                mIsRunning = true;
+            }
+            mWpiNotifier.startPeriodic(kTickPeriodSeconds);
+        }
+
+    }
+
+    /**
+     * Initializes pModules again without stopping the scheduler, e.g. when switching from autonomous to teleop.
+     */
+    public void modeInit(double pNow, Module ... pModules) {
+        synchronized(mTaskLock) {
+            for(Module module : pModules) {
+                module.modeInit(pNow);
+            }
+            for(Module module : pModules) {
+                module.periodicInput(pNow);
+            }
+            flushOutputs(pNow);
+        }
+    }
+
+    public synchronized void stop() {
+
+        if(mIsRunning) {
+            mLog.info("Stopping module scheduler");
+            mWpiNotifier.stop();
+            synchronized(mTaskLock) {
+                mIsRunning = false;
+                double now = Timer.getFPGATimestamp();
+                for(Module module : mModules) {
+                    module.shutdown(now);
+                }
+                flushOutputs(now);
+            }
+
+            if(numTicks != 0) {
+                mLog.error("Experienced ", numOverruns, "/", numTicks, " timing overruns, or ", ((double)numOverruns/(double)numTicks) * 100.0, "%.");
+                mLog.error("Shed load ", mLoadShedder.getShedEvents(), " times, ending at ", mLoadShedder.getLevel());
+            }
+            if(mOutputStage != null) {
+                mOutputStage.logStats();
+            }
+        }
+
+    }
+
+    public synchronized boolean isRunning() {
+        return mIsRunning;
+    }
+
+    /**
+     * Runs a self-test on every module
+     */
+    public boolean checkModules(double pNow) {
+        boolean allSuccessful = true;
+        synchronized(mTaskLock) {
+            for(Module module : mModules) {
+                boolean moduleSuccessful = module.checkModule(pNow);
+                allSuccessful = allSuccessful && moduleSuccessful;
+                if (!moduleSuccessful) {
+                    mLog.error("Self-check failure for module: ", module.getClass());
+                } else {
+                    mLog.warn("Self-check success for module: ", module.getClass());
+                }
+            }
+        }
+        return allSuccessful;
+    }
+
+    @Override
+    public void run() {
+        if(mIsRunning) {
+            double start = Timer.getFPGATimestamp();
+            synchronized (mTaskLock) {
+                try {
+                    if (mIsRunning) {
+                        if(mClock != null) {
+                            mClock.cycleEnded();
+                        }
+                        tick(start);
+                    }
+                } catch (Throwable t) {
+                    t.printStackTrace();
+                    if(mFlightRecorder != null) {
+                        mFlightRecorder.dumpAsync(FlightRecorder.ETrigger.LOOP_EXCEPTION);
+                    }
+                }
+            }
+
+            double dt = Timer.getFPGATimestamp() - start;
+            numTicks++;
+            mTiming.recordLoop((long)(dt * 1e9));
+            mTiming.endCycle();
+            mTiming.report(start);
+            if (dt > kTickPeriodSeconds) {
+                numOverruns++;
+            }
+            mLoadShedder.endCycle(dt, mTickBudgetSeconds, mSlowestTiming);
+        }
+    }
+
+    private void tick(double pNow) {
+        long tick = mTick++;
+        int fastestDue = Integer.MAX_VALUE;
+        for(int i = 0; i < mModules.size(); i++) {
+            mDue[i] = (tick % mDivisors[i]) == mPhases[i];
+            if(mDue[i]) {
+                fastestDue = Math.min(fastestDue, mDivisors[i]);
+            }
+        }
+        mTickBudgetSeconds = (fastestDue == Integer.MAX_VALUE ? 1 : fastestDue) * kTickPeriodSeconds;
+
+        for(int i = 0; i < mModules.size(); i++) {
+            mRun[i] = mDue[i] && mLoadShedder.shouldRun(mModules.get(i), mDueRuns[i]++);
+        }
+
+        for(int i = 0; i < mModules.size(); i++) {
+            Module module = mModules.get(i);
+            if(mRun[i]) {
+                long start = System.nanoTime();
+                module.periodicInput(pNow);
+                mTimings.get(i).recordInput(System.nanoTime() - start);
+            }
+        }
+
+        long slowestNanos = -1;
+        mSlowestTiming = null;
+        for(int i = 0; i < mModules.size(); i++) {
+            if(!mDue[i]) {
+                continue;
+            }
+            Module module = mModules.get(i);
+            ModuleTiming timing = mTimings.get(i);
+            if(mRun[i]) {
+                long start = System.nanoTime();
+                if(module instanceof Loop) {
+                    ((Loop)module).loop(pNow);
+                    timing.recordLoop(System.nanoTime() - start);
+                } else {
+                    module.update(pNow);
+                    timing.recordUpdate(System.nanoTime() - start);
+                }
+            } else {
+                timing.recordShed();
+            }
+            long cycleNanos = timing.endCycle();
+            if(cycleNanos > slowestNanos) {
+                slowestNanos = cycleNanos;
+                mSlowestTiming = timing;
+            }
+            timing.report(pNow);
+        }
+
+        flushOutputs(pNow);
+    }
+
+    private void flushOutputs(double pNow) {
+        if(mOutputStage != null) {
+            mOutputStage.flush(pNow);
+        }
+    }
+
+    /**
+     * @return How many ticks apart pModule runs
+     */
+    private int divisor(Module pModule) {
+        double rate = pModule.getRateHz();
+        if(rate <= 0.0 || rate >= mBaseHz) {
+            return 1;
+        }
+        int divisor = (int)Math.round(mBaseHz / rate);
+        if(Math.abs((mBaseHz / divisor) - rate) > 1e-6) {
+            mLog.warn(pModule.getClass().getSimpleName(), " runs at ", rate, "hz, which doesn't divide the ",
+                      mBaseHz, "hz scheduler - running at ", mBaseHz / divisor, "hz instead");
+        }
+        return divisor;
+    }
+
+    /**
+     * @return How long each module took the last time it was scheduled.  Modules that haven't run yet are assumed to
+     *         take as long as the average of the ones that have, or all the same if none have.
+     */
+    private static double[] costs(List<ModuleTiming> pTimings) {
+        double[] costs = new double[pTimings.size()];
+        double total = 0.0;
+        int measured = 0;
+        for(int i = 0; i < costs.length; i++) {
+            costs[i] = pTimings.get(i).getAverageCycleNanos();
+            if(costs[i] > 0.0) {
+                total += costs[i];
+                measured++;
+            }
+        }
+        double unmeasured = measured == 0 ? 1.0 : total / measured;
+        for(int i = 0; i < costs.length; i++) {
+            if(costs[i] <= 0.0) {
+                costs[i] = unmeasured;
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * Gives every module the same cost - see {@link #assignPhases(Module[], int[], double[])}
+     */
+    static int[] assignPhases(Module[] pModules, int[] pDivisors) {
+        double[] costs = new double[pModules.length];
+        Arrays.fill(costs, 1.0);
+        return assignPhases(pModules, pDivisors, costs);
+    }
+
+    /**
+     * Spreads the modules of each rate over the ticks of its period, fastest rates first, so the load on every tick is
+     * as even as possible.  Modules at the same rate are split into runs in the order they were given, and each run
+     * gets a later phase than the one before it.
+     * @param pCosts How long each module takes, in any unit
+     */
+    static int[] assignPhases(Module[] pModules, int[] pDivisors, double[] pCosts) {
+        int hyperperiod = 1;
+        int slowest = 1;
+        for(int divisor : pDivisors) {
+            slowest = Math.max(slowest, divisor);
+            hyperperiod = lcm(hyperperiod, divisor);
+            if(hyperperiod > kMaxHyperperiodTicks) {
+                hyperperiod = -1;
+                break;
+            }
+        }
+        if(hyperperiod < 0) {
+            hyperperiod = slowest;
+        }
+        double[] load = new double[hyperperiod];
+        int[] phases = new int[pModules.length];
+
+        // Modules with a fixed phase go first, since they don't get a choice
+        for(int i = 0; i < pModules.length; i++) {
+            int phase = pModules[i].getPhase();
+            if(phase != Module.kAutoPhase) {
+                phases[i] = Math.floorMod(phase, pDivisors[i]);
+                addLoad(load, pDivisors[i], phases[i], pCosts[i]);
+            } else {
+                phases[i] = -1;
+            }
+        }
+
+        int[] divisors = Arrays.stream(pDivisors).distinct().sorted().toArray();
+        for(int divisor : divisors) {
+            List<Integer> modules = new ArrayList<>();
+            for(int i = 0; i < pModules.length; i++) {
+                if(phases[i] < 0 && pDivisors[i] == divisor) modules.add(i);
+            }
+            if(modules.isEmpty()) {
+                continue;
+            }
+            double[] costs = new double[modules.size()];
+            for(int m = 0; m < costs.length; m++) {
+                costs[m] = pCosts[modules.get(m)];
+            }
+            int[] spread = spread(load, divisor, costs);
+            for(int m = 0; m < costs.length; m++) {
+                int i = modules.get(m);
+                phases[i] = spread[m];
+                addLoad(load, divisor, phases[i], pCosts[i]);
+            }
+        }
+        return phases;
+    }
+
+    /**
+     * Splits modules into runs on increasing phases so the sum of the squared load on every tick is lowest, which
+     * evens out the ticks.  There are few enough modules and phases to try every split.
+     * @return The phase of each module
+     */
+    private static int[] spread(double[] pLoad, int pDivisor, double[] pCosts) {
+        int count = pCosts.length;
+        double[] before = new double[count + 1];
+        for(int m = 0; m < count; m++) {
+            before[m + 1] = before[m] + pCosts[m];
+        }
+
+        // best[p][m] is the least load the first m modules can add on phases below p, and first[p][m] the first of
+        // those modules on phase p - 1
+        double[][] best = new double[pDivisor + 1][count + 1];
+        int[][] first = new int[pDivisor + 1][count + 1];
+        Arrays.fill(best[0], Double.POSITIVE_INFINITY);
+        best[0][0] = 0.0;
+        for(int p = 0; p < pDivisor; p++) {
+            for(int end = 0; end <= count; end++) {
+                best[p + 1][end] = Double.POSITIVE_INFINITY;
+                for(int start = 0; start <= end; start++) {
+                    double cost = best[p][start] + addedLoad(pLoad, pDivisor, p, before[end] - before[start]);
+                    if(cost < best[p + 1][end]) {
+                        best[p + 1][end] = cost;
+                        first[p + 1][end] = start;
+                    }
+                }
+            }
+        }
+
+        int[] phases = new int[count];
+        int end = count;
+        for(int p = pDivisor; p > 0; p--) {
+            int start = first[p][end];
+            Arrays.fill(phases, start, end, p - 1);
+            end = start;
+        }
+        return phases;
+    }
+
+    /**
+     * @return How much adding pCost to every tick of a phase raises the sum of the squared tick loads
+     */
+    private static double addedLoad(double[] pLoad, int pDivisor, int pPhase, double pCost) {
+        double added = 0.0;
+        for(int t = pPhase; t < pLoad.length; t += pDivisor) {
+            added += ((2.0 * pLoad[t]) + pCost) * pCost;
+        }
+        return added;
+    }
+
+    private static void addLoad(double[] pLoad, int pDivisor, int pPhase, double pCost) {
+        for(int t = pPhase; t < pLoad.length; t += pDivisor) {
+            pLoad[t] += pCost;
+        }
+    }
+
+    private static int lcm(int a, int b) {
+        int x = a, y = b;
+        while(y != 0) {
+            int r = x % y;
+            x = y;
+            y = r;
+        }
+        return (a / x) * b;
+    }
+
+    /**
+     * @return The phase each running module was given, in the same order as the modules
+     */
+    public int[] getPhases() {
+        return mPhases;
+    }
+
+    /**
+     * @return Execution time of each running module, in the same order as the modules
+     */
+    public List<ModuleTiming> getTimings() {
+        return mTimings;
+    }
+
+}
@@ -1,7 +1,6 @@
 package us.ilite.robot.modules;
 
-import com.ctre.phoenix.motorcontrol.ControlMode;
-import com.ctre.phoenix.motorcontrol.StatusFrame;
+import com.ctre.phoenix.ParamEnum;
 import com.ctre.phoenix.motorcontrol.can.VictorSPX;
 import com.flybotix.hfr.util.log.ILog;
 import com.flybotix.hfr.util.log.Logger;
@@ -12,6 +11,9 @@ import us.ilite.common.Data;
 import us.ilite.common.config.SystemSettings;
 import us.ilite.common.types.manipulator.ECargoSpit;
 import us.ilite.common.types.sensor.EPowerDistPanel;
+import us.ilite.lib.drivers.CANConfigurator;
+import us.ilite.lib.drivers.ECommonControlMode;
+import us.ilite.robot.hardware.OutputStage;
 
 
 public class CargoSpit extends Module {
@@ -22,6 +24,7 @@ public class CargoSpit extends Module {
     private ILog mLog = Logger.createLog(CargoSpit.class);
 
     private VictorSPX mLeftMotor, mRightMotor;
+    private OutputStage.Slot mLeftOutput, mRightOutput;
     private DigitalInput mBeambreak;
     private Data mData;
     private boolean mEmergencyStopped;
@@ -41,29 +44,31 @@ public class CargoSpit extends Module {
         mRightMotor = TalonSRXFactory.createDefaultVictor(SystemSettings.kCargoSpitRightSPXAddress);
 //        mRightMotor = new VictorSPX(SystemSettings.kCargoSpitRightSPXAddress);
 
-        mLeftMotor.enableVoltageCompensation(true);
-        mRightMotor.enableVoltageCompensation(true);
-        mLeftMotor.configVoltageCompSaturation(12.0);
-        mRightMotor.configVoltageCompSaturation(12.0);
-
-        mLeftMotor.setStatusFramePeriod(StatusFrame.Status_4_AinTempVbat, 5);
-        mRightMotor.setStatusFramePeriod(StatusFrame.Status_4_AinTempVbat, 5);
+        configureMotor( mLeftMotor, false );
+        configureMotor( mRightMotor, true ); //Set one motor inverted
+        // mRightMotor.follow( mLeftMotor );
 
         mBeambreak = new DigitalInput(SystemSettings.kCargoSpitBeamBreakAddress);
 
-        //TODO figure out these values and make them constants
-        mRightMotor.configOpenloopRamp( mPower, 5 );
-        mLeftMotor.configOpenloopRamp( mPower, 5 );
-
-        // mRightMotor.follow( mLeftMotor );
-        mLeftMotor.setInverted(false);
-        mRightMotor.setInverted( true ); //Set one motor inverted
+        mLeftOutput = OutputStage.getInstance().register( "CargoSpitLeft", ( value, mode, feedforward, neutralMode ) -> mLeftMotor.set( mode.kCtreControlMode, value ) );
+        mRightOutput = OutputStage.getInstance().register( "CargoSpitRight", ( value, mode, feedforward, neutralMode ) -> mRightMotor.set( mode.kCtreControlMode, value ) );
 
         mIntaking = false;
         mOuttaking = false;
         mEmergencyStopped = true;
     }
 
+    private void configureMotor( VictorSPX pMotor, boolean pInverted ) {
+        CANConfigurator.getInstance().configure( pMotor )
+                .run( "voltage compensation", () -> pMotor.enableVoltageCompensation( true ) )
+                .ctre( "voltage compensation saturation", () -> pMotor.configVoltageCompSaturation( 12.0 ),
+                       pMotor, ParamEnum.eNominalBatteryVoltage, 12.0 )
+                //TODO figure out these values and make them constants
+                .ctre( "open loop ramp", () -> pMotor.configOpenloopRamp( mPower, 5 ),
+                       pMotor, ParamEnum.eOpenloopRamp, mPower )
+                .run( "inverted", () -> pMotor.setInverted( pInverted ), () -> pMotor.getInverted() == pInverted );
+    }
+
     @Override
     public void modeInit(double pNow) {
         mLog.error("MODE INIT");
@@ -84,8 +89,9 @@ public class CargoSpit extends Module {
 
     @Override
     public void update(double pNow) {
-        mLeftCurrent = mData.pdp.get(EPowerDistPanel.CURRENT10);
-        mRightCurrent = mData.pdp.get(EPowerDistPanel.CURRENT5);
+        // Unset if the last PDP sample was too old
+        mLeftCurrent = mData.pdp.isSet(SystemSettings.kCargoSpitLeftPdpSlot) ? mData.pdp.get(SystemSettings.kCargoSpitLeftPdpSlot) : 0.0;
+        mRightCurrent = mData.pdp.isSet(SystemSettings.kCargoSpitRightPdpSlot) ? mData.pdp.get(SystemSettings.kCargoSpitRightPdpSlot) : 0.0;
         mHasCargo = shouldStop();
         if ( mHasCargo ) {
             stop();
@@ -96,11 +102,11 @@ public class CargoSpit extends Module {
         if ( !mEmergencyStopped || !shouldStop() ) {
             mIntaking = true;
             mOuttaking = false;
-            mLeftMotor.set( ControlMode.PercentOutput, mPower );
-            mRightMotor.set( ControlMode.PercentOutput, mPower );
+            mLeftOutput.set( mPower, ECommonControlMode.PERCENT_OUTPUT );
+            mRightOutput.set( mPower, ECommonControlMode.PERCENT_OUTPUT );
             if ( shouldStop() ) {
-                mLeftMotor.set( ControlMode.PercentOutput, kZero );
-                mRightMotor.set( ControlMode.PercentOutput, kZero );
+                mLeftOutput.set( kZero, ECommonControlMode.PERCENT_OUTPUT );
+                mRightOutput.set( kZero, ECommonControlMode.PERCENT_OUTPUT );
             }
         }
         mEmergencyStopped = false;
@@ -110,8 +116,8 @@ public class CargoSpit extends Module {
         if ( !mEmergencyStopped ) {
             mIntaking = false;
             mOuttaking = true;
-            mLeftMotor.set( ControlMode.PercentOutput, -kLaunchPower );
-            mRightMotor.set( ControlMode. PercentOutput, -kLaunchPower );
+            mLeftOutput.set( -kLaunchPower, ECommonControlMode.PERCENT_OUTPUT );
+            mRightOutput.set( -kLaunchPower, ECommonControlMode.PERCENT_OUTPUT );
         }
         mEmergencyStopped = false;
     }
@@ -146,8 +152,8 @@ public class CargoSpit extends Module {
     public boolean isOuttaking() { return mOuttaking; }
     
     public void stop() {
-        mLeftMotor.set( ControlMode.PercentOutput, kZero );
-        mRightMotor.set( ControlMode.PercentOutput, kZero );
+        mLeftOutput.set( kZero, ECommonControlMode.PERCENT_OUTPUT );
+        mRightOutput.set( kZero, ECommonControlMode.PERCENT_OUTPUT );
         mIntaking = false;
         mOuttaking = false;
     }
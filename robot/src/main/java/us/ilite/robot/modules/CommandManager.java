@@ -37,6 +37,14 @@ public class CommandManager extends Module {
         updateCommands(pNow);
     }
 
+    /**
+     * Runs autonomous commands and path following, so it's never shed
+     */
+    @Override
+    public EModulePriority getPriority() {
+        return EModulePriority.CRITICAL;
+    }
+
     private void updateCommands(double pNow) {
 
         // Don't initialize and update on same cycle
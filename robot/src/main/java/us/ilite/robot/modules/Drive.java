@@ -4,8 +4,10 @@ import com.flybotix.hfr.codex.Codex;
 import com.flybotix.hfr.util.log.ILog;
 import com.flybotix.hfr.util.log.LogOutput;
 import com.flybotix.hfr.util.log.Logger;
+import com.team254.lib.geometry.Pose2d;
 import com.team254.lib.geometry.Pose2dWithCurvature;
 import com.team254.lib.geometry.Rotation2d;
+import com.team254.lib.geometry.Translation2d;
 import com.team254.lib.trajectory.Trajectory;
 import com.team254.lib.trajectory.timing.TimedState;
 import com.team254.lib.util.ReflectingCSVWriter;
@@ -18,6 +20,8 @@ import com.team254.frc2018.planners.DriveMotionPlanner;
 import com.team254.lib.physics.DriveOutput;
 import us.ilite.common.lib.control.PIDController;
 import us.ilite.common.lib.util.Conversions;
+import us.ilite.common.lib.util.SeqLock;
+import us.ilite.common.lib.util.TripleBuffer;
 import us.ilite.common.types.ETargetingData;
 import us.ilite.common.types.drive.EDriveData;
 import us.ilite.common.types.sensor.EGyro;
@@ -25,6 +29,7 @@ import us.ilite.common.types.sensor.EPowerDistPanel;
 import us.ilite.lib.drivers.Clock;
 import us.ilite.lib.drivers.ECommonControlMode;
 import us.ilite.lib.drivers.ECommonNeutralMode;
+import us.ilite.robot.hardware.CachedDriveHardware;
 import us.ilite.robot.hardware.NeoDriveHardware;
 import us.ilite.robot.hardware.SrxDriveHardware;
 import us.ilite.robot.hardware.IDriveHardware;
@@ -37,6 +42,10 @@ import java.util.List;
 /**
  * Class for running all drive train control operations from both autonomous and
  * driver-control.
+ *
+ * Other modules and commands never touch the drive's state directly.  Their commands go into a triple-buffered
+ * mailbox that the drive loop drains at the start of each cycle, and the loop publishes its sensors and controller
+ * state through a sequence lock.  Neither side ever waits on the other.
  * TODO Support for rotation trajectories
  * TODO Turn-to-heading with Motion Magic
  */
@@ -45,12 +54,23 @@ public class Drive extends Loop {
 
 	private Data mData;
 
-	private IDriveHardware mDriveHardware;
+	// Each sensor is read at most once per drive cycle
+	private CachedDriveHardware mDriveHardware;
 	private Rotation2d mGyroOffset = new Rotation2d();
 
+	// Only touched by the drive loop
 	private EDriveState mDriveState;
 	private DriveMessage mDriveMessage;
 	private double mTargetTrackingThrottle = 0;
+	private double mRampRate = Double.NaN;
+	private final DriveCommand mApplied = new DriveCommand();
+
+	private final TripleBuffer<DriveCommand> mCommands = new TripleBuffer<>(DriveCommand::new, DriveCommand::copy);
+	private final SeqLock<DriveSensors> mSensors = new SeqLock<>(new DriveSensors());
+	// Written inside mCommands, so readers can tell whether the loop has taken the latest path yet
+	private volatile int mPathRequests = 0;
+	// zero() and setHeading() calls
+	private volatile int mResetRequests = 0;
 
 	private PIDController mTargetAngleLockPid;
 	private DriveController mDriveController;
@@ -71,12 +91,12 @@ public class Drive extends Loop {
 		this.mDriveController = pDriveController;
 		if(pSimulated) {
 			this.mSimClock = pSimClock;
-			this.mDriveHardware = new SimDriveHardware(mSimClock, mDriveController.getRobotProfile());
+			this.mDriveHardware = new CachedDriveHardware(new SimDriveHardware(mSimClock, mDriveController.getRobotProfile()));
 		} else {
 			if(AbstractSystemSettingsUtils.isPracticeBot()) {
-				this.mDriveHardware = new SrxDriveHardware();
+				this.mDriveHardware = new CachedDriveHardware(new SrxDriveHardware());
 			} else {
-				this.mDriveHardware = new NeoDriveHardware(SystemSettings.kDriveGearboxRatio);
+				this.mDriveHardware = new CachedDriveHardware(new NeoDriveHardware(SystemSettings.kDriveGearboxRatio));
 			}
 		}
 
@@ -113,14 +133,18 @@ public class Drive extends Loop {
 
 		mDriveHardware.zero();
 
-	  	setDriveMessage(DriveMessage.kNeutral);
-	  	setDriveState(EDriveState.NORMAL);
+		setNormal();
+		setDriveMessage(DriveMessage.kNeutral);
+		takeCommands();
+		publishSensors();
 
 //	  	startCsvLogging();
 	}
 
 	@Override
 	public void periodicInput(double pNow) {
+		mDriveHardware.beginCycle(pNow);
+		takeCommands();
 
 		mData.drive.set(EDriveData.LEFT_POS_INCHES, mDriveHardware.getLeftInches());
 		mData.drive.set(EDriveData.RIGHT_POS_INCHES, mDriveHardware.getRightInches());
@@ -160,7 +184,7 @@ public class Drive extends Loop {
 		mData.drive.set(EDriveData.LEFT_MESSAGE_DEMAND, mDriveMessage.leftDemand);
 		mData.drive.set(EDriveData.RIGHT_MESSAGE_DEMAND, mDriveMessage.rightDemand);
 //
-		mData.imu.set(EGyro.YAW_DEGREES, getHeading().getDegrees());
+		mData.imu.set(EGyro.YAW_DEGREES, readHeading().getDegrees());
 		mData.drive.meta().next(true);
 		mData.imu.meta().next(true);
 //		SimpleNetworkTable.writeCodexToSmartDashboard(EDriveData.class, mData.drive, mClock.getCurrentTime());
@@ -176,12 +200,30 @@ public class Drive extends Loop {
 		}
 
 		mPreviousTime = pNow;
+		publishSensors();
 	}
 	
 	@Override
 	public void shutdown(double pNow) {
 		stopCsvLogging();
 		mDriveHardware.zero();
+		mLogger.warn("Drive mailbox: ", mCommands.getWrites(), " commands, ", mCommands.getOverwrites(), " coalesced, ",
+				mCommands.getContentions(), " writer contentions, ", mSensors.getContentions(), " sensor read retries");
+		mLogger.warn("Drive sensors: ", mDriveHardware.getCache().getHardwareReads(), " hardware reads, ",
+				mDriveHardware.getCache().getCachedReads(), " redundant reads served from the cycle snapshot");
+	}
+
+	/**
+	 * Drive control and path following are never shed
+	 */
+	@Override
+	public EModulePriority getPriority() {
+		return EModulePriority.CRITICAL;
+	}
+
+	@Override
+	public double getRateHz() {
+		return 1.0 / SystemSettings.kControlLoopPeriod;
 	}
 
 	@Override
@@ -254,34 +296,111 @@ public class Drive extends Loop {
 		}
 		mDriveHardware.set(mDriveMessage);
 		mPreviousTime = pNow;
+		publishSensors();
 //		mUpdateTimer.stop();
 	}
 
-	public synchronized void setTargetAngleLock() {
-		mDriveState = EDriveState.TARGET_ANGLE_LOCK;
-		mDriveHardware.configureMode(ECommonControlMode.PERCENT_OUTPUT);
-		mDriveHardware.set(DriveMessage.kNeutral);
+	/**
+	 * Applies everything written to the mailbox since the last cycle.  Requests are applied in the order commands
+	 * depend on: state, output, path, zero, heading.
+	 */
+	private void takeCommands() {
+		if(!mCommands.hasNew()) {
+			return;
+		}
+		DriveCommand command = mCommands.read();
+
+		if(command.mStateRequests != mApplied.mStateRequests) {
+			mDriveState = command.mState;
+			switch(mDriveState) {
+				case TARGET_ANGLE_LOCK:
+					mDriveHardware.configureMode(ECommonControlMode.PERCENT_OUTPUT);
+					mDriveHardware.set(DriveMessage.kNeutral);
+					break;
+				case PATH_FOLLOWING:
+					mDriveHardware.configureMode(ECommonControlMode.VELOCITY);
+					mDriveHardware.set(new DriveMessage(0.0, 0.0, ECommonControlMode.VELOCITY));
+					break;
+				default:
+					break;
+			}
+		}
+		if(command.mMessageRequests != mApplied.mMessageRequests) {
+			mDriveMessage = command.mMessage;
+		}
+		if(command.mPathRequests != mApplied.mPathRequests) {
+			mDriveController.setTrajectory(command.mPath, command.mResetPoseToStart);
+			if(command.mResetPoseToStart) {
+				mDriveHardware.zero();
+			}
+		}
+		if(command.mZeroRequests != mApplied.mZeroRequests) {
+			mDriveHardware.zero();
+		}
+		if(command.mHeadingRequests != mApplied.mHeadingRequests) {
+			mGyroOffset = command.mHeading.rotateBy(mDriveHardware.getHeading().inverse());
+		}
+		if(Double.compare(command.mRampRate, mRampRate) != 0 && !Double.isNaN(command.mRampRate)) {
+			mDriveHardware.setOpenLoopRampRate(command.mRampRate);
+			mRampRate = command.mRampRate;
+		}
+		mTargetTrackingThrottle = command.mTargetTrackingThrottle;
+
+		DriveCommand.copy(command, mApplied);
+	}
+
+	private void publishSensors() {
+		mSensors.write(sensors -> {
+			sensors.mHeading = readHeading();
+			sensors.mCurrentPose = mDriveController.getCurrentPose();
+			sensors.mTargetPose = mDriveController.getTargetPose();
+			// By component, since error() would make a new pose every cycle
+			DriveMotionPlanner planner = mDriveController.getDriveMotionPlanner();
+			sensors.mPathErrorX = planner.errorX();
+			sensors.mPathErrorY = planner.errorY();
+			sensors.mPathErrorCos = planner.errorCos();
+			sensors.mPathErrorSin = planner.errorSin();
+			sensors.mPathDone = mDriveController.isDone();
+			sensors.mPathRequests = mApplied.mPathRequests;
+			sensors.mResetRequests = mApplied.mZeroRequests + mApplied.mHeadingRequests;
+			sensors.mDriveMessage = mDriveMessage;
+		});
 	}
 
-	public synchronized void setPathFollowing() {
-		mDriveState = EDriveState.PATH_FOLLOWING;
-		mDriveHardware.configureMode(ECommonControlMode.VELOCITY);
-		mDriveHardware.set(new DriveMessage(0.0, 0.0, ECommonControlMode.VELOCITY));
+	private Rotation2d readHeading() {
+		return mDriveHardware.getHeading().rotateBy(mGyroOffset);
 	}
 
-	public synchronized void setNormal() {
-		mDriveState = EDriveState.NORMAL;
+	public void setTargetAngleLock() {
+		setState(EDriveState.TARGET_ANGLE_LOCK);
 	}
 
-	public synchronized void setPath(Trajectory<TimedState<Pose2dWithCurvature>> pPath, boolean pResetPoseToStart) {
-		mDriveController.setTrajectory(pPath, pResetPoseToStart);
-		if(pResetPoseToStart) {
-			mDriveHardware.zero();
-		}
+	public void setPathFollowing() {
+		setState(EDriveState.PATH_FOLLOWING);
+	}
+
+	public void setNormal() {
+		setState(EDriveState.NORMAL);
+	}
+
+	private void setState(EDriveState pDriveState) {
+		mCommands.write(command -> {
+			command.mState = pDriveState;
+			command.mStateRequests++;
+		});
+	}
+
+	public void setPath(Trajectory<TimedState<Pose2dWithCurvature>> pPath, boolean pResetPoseToStart) {
+		mCommands.write(command -> {
+			command.mPath = pPath;
+			command.mResetPoseToStart = pResetPoseToStart;
+			command.mPathRequests++;
+			mPathRequests = command.mPathRequests;
+		});
 	}
 
-	public synchronized void setTargetTrackingThrottle(double pTargetTrackingThrottle) {
-		mTargetTrackingThrottle = pTargetTrackingThrottle;
+	public void setTargetTrackingThrottle(double pTargetTrackingThrottle) {
+		mCommands.write(command -> command.mTargetTrackingThrottle = pTargetTrackingThrottle);
 	}
 
 	public synchronized void flushTelemetry() {
@@ -296,36 +415,112 @@ public class Drive extends Loop {
 	}
 
 
-	public synchronized void zero() {
-		mDriveHardware.zero();
+	/**
+	 * Zeroes the encoders and gyro on the drive loop's next cycle.  The sensor getters return the old readings until
+	 * {@link #isResetApplied()}.
+	 */
+	public void zero() {
+		mCommands.write(command -> {
+			command.mZeroRequests++;
+			mResetRequests = command.mZeroRequests + command.mHeadingRequests;
+		});
 	}
 
-	private void setDriveState(EDriveState pDriveState) {
-		this.mDriveState = pDriveState;
+	/**
+	 * @param pDriveMessage Must not be modified after it's passed in
+	 */
+	public void setDriveMessage(DriveMessage pDriveMessage) {
+		mCommands.write(command -> {
+			command.mMessage = pDriveMessage;
+			command.mMessageRequests++;
+		});
 	}
 
-	public synchronized void setDriveMessage(DriveMessage pDriveMessage) {
-		this.mDriveMessage = pDriveMessage;
-	}
-
-	public synchronized DriveController getDriveController() {
+	public DriveController getDriveController() {
 		return mDriveController;
 	}
 
-	public synchronized IDriveHardware getDriveHardware() {
+	public IDriveHardware getDriveHardware() {
 	    return mDriveHardware;
     }
 
-    public synchronized DriveMessage getDriveMessage() {
-		return mDriveMessage;
+	/**
+	 * @return The output the drive loop sent on its last cycle
+	 */
+    public DriveMessage getDriveMessage() {
+		return mSensors.read(sensors -> sensors.mDriveMessage);
 	}
 
-	public synchronized Rotation2d getHeading() {
-		return mDriveHardware.getHeading().rotateBy(mGyroOffset);
+	/**
+	 * @return The heading as of the drive loop's last cycle
+	 */
+	public Rotation2d getHeading() {
+		return mSensors.read(sensors -> sensors.mHeading);
+	}
+
+	/**
+	 * Resets the heading on the drive loop's next cycle.  {@link #getHeading()} returns the old heading until
+	 * {@link #isResetApplied()}.
+	 */
+	public void setHeading(Rotation2d pHeading) {
+		mCommands.write(command -> {
+			command.mHeading = pHeading;
+			command.mHeadingRequests++;
+			mResetRequests = command.mZeroRequests + command.mHeadingRequests;
+		});
+	}
+
+	/**
+	 * @return Whether the drive loop has applied the last {@link #zero()} and {@link #setHeading(Rotation2d)}, and
+	 * published sensor readings taken after them
+	 */
+	public boolean isResetApplied() {
+		int requests = mResetRequests;
+		return mSensors.read(sensors -> sensors.mResetRequests == requests);
+	}
+
+	/**
+	 * @return The odometry pose as of the drive loop's last cycle
+	 */
+	public Pose2d getCurrentPose() {
+		return mSensors.read(sensors -> sensors.mCurrentPose);
 	}
 
-	public synchronized void setHeading(Rotation2d pHeading) {
-		mGyroOffset = pHeading.rotateBy(mDriveHardware.getHeading().inverse());
+	/**
+	 * @return The path setpoint as of the drive loop's last cycle
+	 */
+	public Pose2d getTargetPose() {
+		return mSensors.read(sensors -> sensors.mTargetPose);
+	}
+
+	/**
+	 * @return The path setpoint relative to the robot, as of the drive loop's last cycle
+	 */
+	public Pose2d getPathError() {
+		return mSensors.read(sensors -> new Pose2d(new Translation2d(sensors.mPathErrorX, sensors.mPathErrorY),
+				new Rotation2d(sensors.mPathErrorCos, sensors.mPathErrorSin, false)));
+	}
+
+	/**
+	 * @return Whether the drive loop has taken the last path passed to {@link #setPath} and finished following it
+	 */
+	public boolean isPathDone() {
+		int requests = mPathRequests;
+		return mSensors.read(sensors -> sensors.mPathRequests == requests && sensors.mPathDone);
+	}
+
+	/**
+	 * @return Drive commands that had to wait for another thread's command
+	 */
+	public long getCommandContentions() {
+		return mCommands.getContentions();
+	}
+
+	/**
+	 * @return Sensor reads that overlapped the drive loop publishing and were retried
+	 */
+	public long getSensorContentions() {
+		return mSensors.getContentions();
 	}
 
 	public boolean isCurrentLimiting() {
@@ -381,8 +576,62 @@ public class Drive extends Loop {
 
 	}
 
+	/**
+	 * Only sent to the motor controllers when it changes
+	 */
 	public void setRampRate(double pOpenLoopRampRate) {
-		mDriveHardware.setOpenLoopRampRate(pOpenLoopRampRate);
+		mCommands.write(command -> command.mRampRate = pOpenLoopRampRate);
+	}
+
+	/**
+	 * Everything other threads can ask the drive loop to do.  Requests that must happen once per call, rather than
+	 * just taking the newest value, are counted so coalesced writes aren't lost.
+	 */
+	private static class DriveCommand {
+		private EDriveState mState = EDriveState.NORMAL;
+		private int mStateRequests = 0;
+		private DriveMessage mMessage = DriveMessage.kNeutral;
+		private int mMessageRequests = 0;
+		private Trajectory<TimedState<Pose2dWithCurvature>> mPath = null;
+		private boolean mResetPoseToStart = false;
+		private int mPathRequests = 0;
+		private Rotation2d mHeading = null;
+		private int mHeadingRequests = 0;
+		private int mZeroRequests = 0;
+		private double mTargetTrackingThrottle = 0.0;
+		private double mRampRate = Double.NaN;
+
+		private static void copy(DriveCommand pFrom, DriveCommand pTo) {
+			pTo.mState = pFrom.mState;
+			pTo.mStateRequests = pFrom.mStateRequests;
+			pTo.mMessage = pFrom.mMessage;
+			pTo.mMessageRequests = pFrom.mMessageRequests;
+			pTo.mPath = pFrom.mPath;
+			pTo.mResetPoseToStart = pFrom.mResetPoseToStart;
+			pTo.mPathRequests = pFrom.mPathRequests;
+			pTo.mHeading = pFrom.mHeading;
+			pTo.mHeadingRequests = pFrom.mHeadingRequests;
+			pTo.mZeroRequests = pFrom.mZeroRequests;
+			pTo.mTargetTrackingThrottle = pFrom.mTargetTrackingThrottle;
+			pTo.mRampRate = pFrom.mRampRate;
+		}
+	}
+
+	/**
+	 * What the drive loop publishes each cycle.  Only immutable objects, so readers can keep them.
+	 */
+	private static class DriveSensors {
+		private Rotation2d mHeading = new Rotation2d();
+		private Pose2d mCurrentPose = new Pose2d();
+		private Pose2d mTargetPose = new Pose2d();
+		private double mPathErrorX = 0.0;
+		private double mPathErrorY = 0.0;
+		private double mPathErrorCos = 1.0;
+		private double mPathErrorSin = 0.0;
+		private boolean mPathDone = true;
+		private int mPathRequests = 0;
+		private int mResetRequests = 0;
+		private DriveMessage mDriveMessage = DriveMessage.kNeutral;
 	}
 
 }
@@ -0,0 +1,20 @@
+package us.ilite.robot.modules;
+
+/**
+ * How important it is that a module runs every cycle.  When the control loop keeps overrunning, a
+ * {@link LoadShedder} runs lower priority modules less often so the critical ones stay on time.
+ */
+public enum EModulePriority {
+    /**
+     * Never shed - anything that drives an actuator, plus driver input and path following.  The default.
+     */
+    CRITICAL,
+    /**
+     * Only shed as a last resort - sensors and vision that don't drive an actuator
+     */
+    NORMAL,
+    /**
+     * Shed first - LEDs, telemetry and logging
+     */
+    DEFERRABLE
+}
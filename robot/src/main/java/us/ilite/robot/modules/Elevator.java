@@ -7,13 +7,18 @@ import com.revrobotics.CANPIDController;
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.CANSparkMax.IdleMode;
 import com.revrobotics.CANSparkMaxLowLevel.MotorType;
-import com.revrobotics.ControlType;
 import com.team254.lib.util.Util;
 import us.ilite.common.Data;
 import us.ilite.common.config.SystemSettings;
 import us.ilite.common.types.manipulator.EElevator;
 import us.ilite.common.types.sensor.EPowerDistPanel;
+import us.ilite.lib.drivers.CANConfigurator;
+import us.ilite.lib.drivers.ECANSignal;
+import us.ilite.lib.drivers.ECommonControlMode;
 import us.ilite.lib.drivers.SparkMaxFactory;
+import us.ilite.lib.drivers.StatusFramePlanner;
+import us.ilite.robot.hardware.OutputStage;
+import us.ilite.robot.hardware.SensorCache;
 
 
 public class Elevator extends Module {
@@ -29,6 +34,11 @@ public class Elevator extends Module {
     EElevatorState mCurrentState;
     EElevatorPosition mDesiredPosition;
     CANSparkMax mMasterElevator;
+    // Each sensor is read at most once per cycle
+    private final SensorCache mSensors = new SensorCache();
+    private SensorCache.Signal mEncoderPosition;
+    private SensorCache.Signal mOutputCurrent;
+    private OutputStage.Slot mOutput;
 //    private boolean mDifferentAcceleration = true;
 //    private mLastUp;
 
@@ -80,30 +90,39 @@ public class Elevator extends Module {
 
         // Create default NEO
         mMasterElevator = SparkMaxFactory.createDefaultSparkMax(SystemSettings.kElevatorNEOAddress, MotorType.kBrushless);
-        mMasterElevator.setIdleMode(IdleMode.kBrake);
-        mMasterElevator.setClosedLoopRampRate(0);
-        mMasterElevator.setInverted(true);
-
         this.mCanController = mMasterElevator.getPIDController();
-
-        mMasterElevator.setOpenLoopRampRate(SystemSettings.kElevatorOpenLoopRampRate);
-        mMasterElevator.setSmartCurrentLimit(SystemSettings.kElevatorSmartCurrentLimit);
-        mMasterElevator.setSecondaryCurrentLimit(SystemSettings.kElevatorSecondaryCurrentLimit);
-        mCanController.setOutputRange(SystemSettings.kElevatorClosedLoopMinPower, SystemSettings.kElevatorClosedLoopMaxPower, SystemSettings.kElevatorSmartMotionSlot);
-
-        //Setting PID Coefficients for Motion Magic
-        mCanController.setP(SystemSettings.kElevatorMotionP);
-        mCanController.setI(SystemSettings.kElevatorMotionI);
-        mCanController.setD(SystemSettings.kElevatorMotionD);
-        mCanController.setFF(SystemSettings.kElevatorMotionFF);
-
-        mCanController.setSmartMotionMaxAccel(SystemSettings.kMaxElevatorUpAcceleration, SystemSettings.kElevatorSmartMotionSlot);
-        mCanController.setSmartMotionMinOutputVelocity(SystemSettings.kMinElevatorVelocity, SystemSettings.kElevatorSmartMotionSlot);
-        mCanController.setSmartMotionMaxVelocity(SystemSettings.kMaxElevatorVelocity, SystemSettings.kElevatorSmartMotionSlot);
-        mCanController.setSmartMotionMinOutputVelocity(0, SystemSettings.kElevatorSmartMotionSlot);
-        mCanController.setSmartMotionAllowedClosedLoopError(SystemSettings.kElevatorClosedLoopAllowableError, SystemSettings.kElevatorSmartMotionSlot);
-
-        mMasterElevator.burnFlash();
+        mEncoderPosition = mSensors.add(() -> mMasterElevator.getEncoder().getPosition());
+        mOutputCurrent = mSensors.add(mMasterElevator::getOutputCurrent);
+        mOutput = OutputStage.getInstance().register("Elevator", (value, mode, feedforward, neutralMode) ->
+                mCanController.setReference(value, mode.kRevControlType, SystemSettings.kElevatorSmartMotionSlot, feedforward));
+
+        StatusFramePlanner.getInstance().consume(mMasterElevator, ECANSignal.POSITION, SystemSettings.kCANControlSignalPeriodMs);
+        // Current limiting uses the PDP - this is only logged
+        StatusFramePlanner.getInstance().consume(mMasterElevator, ECANSignal.CURRENT, SystemSettings.kCANTelemetrySignalPeriodMs);
+
+        CANConfigurator.getInstance().configure(mMasterElevator)
+                .rev("idle mode", () -> mMasterElevator.setIdleMode(IdleMode.kBrake), () -> mMasterElevator.getIdleMode() == IdleMode.kBrake)
+                .rev("closed loop ramp", () -> mMasterElevator.setClosedLoopRampRate(0))
+                .run("inverted", () -> mMasterElevator.setInverted(true), () -> mMasterElevator.getInverted())
+
+                .rev("open loop ramp", () -> mMasterElevator.setOpenLoopRampRate(SystemSettings.kElevatorOpenLoopRampRate))
+                .rev("smart current limit", () -> mMasterElevator.setSmartCurrentLimit(SystemSettings.kElevatorSmartCurrentLimit))
+                .rev("secondary current limit", () -> mMasterElevator.setSecondaryCurrentLimit(SystemSettings.kElevatorSecondaryCurrentLimit))
+                .rev("output range", () -> mCanController.setOutputRange(SystemSettings.kElevatorClosedLoopMinPower, SystemSettings.kElevatorClosedLoopMaxPower, SystemSettings.kElevatorSmartMotionSlot))
+
+                //Setting PID Coefficients for Motion Magic
+                .rev("P", () -> mCanController.setP(SystemSettings.kElevatorMotionP))
+                .rev("I", () -> mCanController.setI(SystemSettings.kElevatorMotionI))
+                .rev("D", () -> mCanController.setD(SystemSettings.kElevatorMotionD))
+                .rev("FF", () -> mCanController.setFF(SystemSettings.kElevatorMotionFF))
+
+                .rev("max accel", () -> mCanController.setSmartMotionMaxAccel(SystemSettings.kMaxElevatorUpAcceleration, SystemSettings.kElevatorSmartMotionSlot))
+                .rev("min output velocity", () -> mCanController.setSmartMotionMinOutputVelocity(SystemSettings.kMinElevatorVelocity, SystemSettings.kElevatorSmartMotionSlot))
+                .rev("max velocity", () -> mCanController.setSmartMotionMaxVelocity(SystemSettings.kMaxElevatorVelocity, SystemSettings.kElevatorSmartMotionSlot))
+                .rev("min output velocity", () -> mCanController.setSmartMotionMinOutputVelocity(0, SystemSettings.kElevatorSmartMotionSlot))
+                .rev("allowed error", () -> mCanController.setSmartMotionAllowedClosedLoopError(SystemSettings.kElevatorClosedLoopAllowableError, SystemSettings.kElevatorSmartMotionSlot))
+
+                .rev("burn flash", mMasterElevator::burnFlash);
 
         zeroEncoder();
 
@@ -113,19 +132,21 @@ public class Elevator extends Module {
     }
 
     public void shutdown(double pNow) {
-
+        mLog.warn("Elevator sensors: ", mSensors.getHardwareReads(), " hardware reads, ", mSensors.getCachedReads(),
+                " redundant reads served from the cycle snapshot");
     }
 
     public void modeInit(double pNow) {
     }
 
     public void periodicInput(double pNow) {
+        mSensors.beginCycle(pNow);
 
         mData.elevator.set(EElevator.DESIRED_POWER, mDesiredPower);
 //        mData.elevator.set(EElevator.OUTPUT_POWER, mMasterElevator.getAppliedOutput());
         mData.elevator.set(EElevator.DESIRED_ENCODER_TICKS, mSetPoint);
         mData.elevator.set(EElevator.CURRENT_ENCODER_TICKS, getEncoderPosition());
-        mData.elevator.set(EElevator.CURRENT, mMasterElevator.getOutputCurrent());
+        mData.elevator.set(EElevator.CURRENT, mOutputCurrent.get());
 //        mData.elevator.set(EElevator.BUS_VOLTAGE, mMasterElevator.getBusVoltage());
         mData.elevator.set(EElevator.DESIRED_POSITION_TYPE, (double) mDesiredPosition.ordinal());
         mData.elevator.set(EElevator.CURRENT_STATE, (double) mCurrentState.ordinal());
@@ -137,7 +158,7 @@ public class Elevator extends Module {
         switch (mCurrentState) {
             case NORMAL:
                 mDesiredPower = Util.limit(mDesiredPower, SystemSettings.kElevatorOpenLoopMinPower, SystemSettings.kElevatorOpenLoopMaxPower);
-                mMasterElevator.set(mDesiredPower);
+                mOutput.set(mDesiredPower, ECommonControlMode.PERCENT_OUTPUT);
                 break;
             case STOP:
                 mDesiredPower = 0;
@@ -145,7 +166,7 @@ public class Elevator extends Module {
             case SET_POSITION:
                 mSetPoint = mRequestedStop ? mData.elevator.get(EElevator.CURRENT_ENCODER_TICKS) : mDesiredPosition.getEncoderRotations();
                 mDesiredPower = 0;
-                mCanController.setReference(mSetPoint, ControlType.kSmartMotion, 0, SystemSettings.kElevatorFrictionVoltage);
+                mOutput.set(mSetPoint, ECommonControlMode.MOTION_MAGIC, SystemSettings.kElevatorFrictionVoltage);
                 gainSchedule();
                 break;
             default:
@@ -165,6 +186,7 @@ public class Elevator extends Module {
      */
     public void zeroEncoder() {
         mMasterElevator.getEncoder().setPosition(0);
+        mSensors.beginCycle(mSensors.getTimestamp());
         mData.elevator.set(EElevator.CURRENT_ENCODER_TICKS, 0.0);
     }
 
@@ -178,8 +200,11 @@ public class Elevator extends Module {
         return mDesiredPower;
     }
 
+    /**
+     * @return The encoder position as of this cycle
+     */
     public double getEncoderPosition() {
-        return mMasterElevator.getEncoder().getPosition();
+        return mEncoderPosition.get();
     }
 
     public EElevatorPosition getDesiredPosition() {
@@ -200,9 +225,13 @@ public class Elevator extends Module {
     }
 
     public boolean isCurrentLimiting() {
-        return mData.pdp.get(EPowerDistPanel.CURRENT9) > SystemSettings.kElevatorWarnCurrentLimitThreshold;
+        // Unset when the last PDP sample is too old
+        return mData.pdp.isSet(EPowerDistPanel.CURRENT9) && mData.pdp.get(EPowerDistPanel.CURRENT9) > SystemSettings.kElevatorWarnCurrentLimitThreshold;
     }
 
+    /**
+     * Runs every cycle - the Spark MAX is lazy, so the gain is only sent when it changes
+     */
     public void gainSchedule() {
         if ( getDesiredPosition().getEncoderRotations() > getEncoderPosition() /*&& mDifferentAcceleration*/) {
             mCanController.setSmartMotionMaxAccel(SystemSettings.kMaxElevatorUpAcceleration, SystemSettings.kElevatorSmartMotionSlot);
@@ -11,7 +11,13 @@ import us.ilite.common.Data;
 import us.ilite.common.config.SystemSettings;
 import us.ilite.common.types.EFourBarData;
 import us.ilite.common.types.sensor.EPowerDistPanel;
+import us.ilite.lib.drivers.CANConfigurator;
+import us.ilite.lib.drivers.ECANSignal;
+import us.ilite.lib.drivers.ECommonControlMode;
 import us.ilite.lib.drivers.SparkMaxFactory;
+import us.ilite.lib.drivers.StatusFramePlanner;
+import us.ilite.robot.hardware.OutputStage;
+import us.ilite.robot.hardware.SensorCache;
 import us.ilite.robot.hardware.SolenoidWrapper;
 
 
@@ -35,6 +41,14 @@ public class FourBar extends Module {
 
     private CANPIDController mCanController;
 
+    // Each sensor is read at most once per cycle
+    private final SensorCache mSensors = new SensorCache();
+    private final SensorCache.Signal mNeo1Position;
+    private final SensorCache.Signal mNeo2Position;
+    private final SensorCache.Signal mNeo1Current;
+    private final SensorCache.Signal mNeo2Current;
+    private final OutputStage.Slot mNeoOutput;
+
     private double mAngularPosition;
     private double mNeoARotations = 0;
     private double mNeoBRotations = 0;
@@ -48,7 +62,9 @@ public class FourBar extends Module {
         // Later: SystemSettings address
         mNeos = SparkMaxFactory.createDefaultSparkMax(SystemSettings.kFourBarNEO1Address, CANSparkMaxLowLevel.MotorType.kBrushless);
         mNeo2 = SparkMaxFactory.createDefaultSparkMax(SystemSettings.kFourBarNEO2Address, CANSparkMaxLowLevel.MotorType.kBrushless);
-        mNeo2.follow( mNeos, true );
+        CANConfigurator.getInstance().configure( mNeo2 ).rev( "follow", () -> mNeo2.follow( mNeos, true ) );
+        // The follower gets mNeos' output from its status 0 frame
+        StatusFramePlanner.getInstance().consume( mNeos, ECANSignal.APPLIED_OUTPUT, SystemSettings.kCANControlSignalPeriodMs );
     
         mPusher = new Solenoid(SystemSettings.kCANAddressPCM, SystemSettings.kFourBarPusherAddress);
         mPusherSolenoid = new SolenoidWrapper( mPusher );
@@ -58,17 +74,25 @@ public class FourBar extends Module {
         mNeo2Encoder = mNeo2.getEncoder();
         mNeo1Encoder.setPosition(0);
         mNeo1Encoder.setPosition(0);
-        mNeo1Encoder.setPositionConversionFactor(-1.0);
-        mNeo2Encoder.setPositionConversionFactor(-1.0);
         mCanController = mNeos.getPIDController();
+        mNeo1Position = mSensors.add(mNeo1Encoder::getPosition);
+        mNeo2Position = mSensors.add(mNeo2Encoder::getPosition);
+        mNeo1Current = mSensors.add(mNeos::getOutputCurrent);
+        mNeo2Current = mSensors.add(mNeo2::getOutputCurrent);
+        mNeoOutput = OutputStage.getInstance().register("FourBar", (value, mode, feedforward, neutralMode) -> mNeos.set(value));
 
         mNeos.getEncoder().setPosition(0.0);
         mNeo2.getEncoder().setPosition(0.0);
 
-        mNeos.setIdleMode(CANSparkMax.IdleMode.kBrake);
-        mNeo2.setIdleMode(CANSparkMax.IdleMode.kBrake);
-        mNeos.burnFlash();
-        mNeo2.burnFlash();
+        for ( CANSparkMax neo : new CANSparkMax[] { mNeos, mNeo2 } ) {
+            StatusFramePlanner.getInstance().consume( neo, ECANSignal.POSITION, SystemSettings.kCANControlSignalPeriodMs );
+            // Current limiting uses the PDP - this is only logged
+            StatusFramePlanner.getInstance().consume( neo, ECANSignal.CURRENT, SystemSettings.kCANTelemetrySignalPeriodMs );
+            CANConfigurator.getInstance().configure( neo )
+                    .rev( "position conversion factor", () -> neo.getEncoder().setPositionConversionFactor( -1.0 ) )
+                    .rev( "idle mode", () -> neo.setIdleMode( CANSparkMax.IdleMode.kBrake ), () -> neo.getIdleMode() == CANSparkMax.IdleMode.kBrake )
+                    .rev( "burn flash", neo::burnFlash );
+        }
 
 
         updateAngularPosition();
@@ -97,6 +121,7 @@ public class FourBar extends Module {
 
     @Override
     public void periodicInput( double pNow ) {
+        mSensors.beginCycle(pNow);
         updateCodex();
     }
 
@@ -106,18 +131,21 @@ public class FourBar extends Module {
 //            System.out.println("POSITION: " + mAngularPosition);
 //            mCanController.setReference(mNeo1Encoder.getPosition(), ControlType.kPosition);
             if ( -35 < mAngularPosition && mAngularPosition < 25) {
-                mNeos.set( SystemSettings.kFourbarStallPower );
+                mNeoOutput.set( SystemSettings.kFourbarStallPower, ECommonControlMode.PERCENT_OUTPUT );
             } else {
-                mNeos.set( 0 );
+                mNeoOutput.set( 0, ECommonControlMode.PERCENT_OUTPUT );
             }
         } else {
-            mNeos.set( mOutput );
+            mNeoOutput.set( mOutput, ECommonControlMode.PERCENT_OUTPUT );
         }
     }
 
     @Override
     public void shutdown( double pNow ) {
         mNeos.disable();
+        mNeoOutput.clear();
+        mLog.warn("FourBar sensors: ", mSensors.getHardwareReads(), " hardware reads, ", mSensors.getCachedReads(),
+                " redundant reads served from the cycle snapshot");
     }
 
     /**
@@ -153,8 +181,8 @@ public class FourBar extends Module {
      * Update angular position based on current rotations
      */
     public void updateAngularPosition() {
-        mNeoARotations = -mNeo1Encoder.getPosition() + mNeo1Encoder.getPosition();
-        mNeoBRotations = mNeo2Encoder.getPosition();
+        mNeoARotations = -mNeo1Position.get() + mNeo1Position.get();
+        mNeoBRotations = mNeo2Position.get();
         mAngularPosition = (mNeoARotations + mNeoBRotations) * 360.0 / 300 / 2;
     }
     
@@ -193,12 +221,12 @@ public class FourBar extends Module {
         mData.fourbar.set( EFourBarData.A_TICKS, mNeoARotations );
 //        mData.fourbar.set( EFourBarData.A_OUTPUT, mNeos.get() );
 //        mData.fourbar.set( EFourBarData.A_VOLTAGE, mNeos.getAppliedOutput() * 12.0 );
-        mData.fourbar.set( EFourBarData.A_CURRENT, mNeos.getOutputCurrent() );
+        mData.fourbar.set( EFourBarData.A_CURRENT, mNeo1Current.get() );
 
         mData.fourbar.set( EFourBarData.B_TICKS, mNeoBRotations);
 //        mData.fourbar.set( EFourBarData.B_OUTPUT, mNeo2.get() );
 //        mData.fourbar.set( EFourBarData.B_VOLTAGE, mNeo2.getAppliedOutput() * 12.0 );
-        mData.fourbar.set( EFourBarData.B_CURRENT, mNeo2.getOutputCurrent() );
+        mData.fourbar.set( EFourBarData.B_CURRENT, mNeo2Current.get() );
 
         mData.fourbar.set( EFourBarData.ANGLE, mAngularPosition );
     }
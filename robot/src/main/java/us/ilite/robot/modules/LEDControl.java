@@ -141,6 +141,16 @@ public class LEDControl extends Module {
     }
 
 
+    @Override
+    public EModulePriority getPriority() {
+        return EModulePriority.DEFERRABLE;
+    }
+
+    @Override
+    public double getRateHz() {
+        return SystemSettings.kLEDControlRateHz;
+    }
+
     /**
      * Updates LED strip based on mechanism states. We check mechanisms in order of lowest to highest priority.
      */
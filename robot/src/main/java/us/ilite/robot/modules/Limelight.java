@@ -84,6 +84,19 @@ public class Limelight extends Loop implements ITargetDataProvider {
         update(pNow);
     }
 
+    @Override
+    public double getRateHz() {
+        return 1.0 / SystemSettings.kControlLoopPeriod;
+    }
+
+    /**
+     * Only reads the camera, so it can be shed before anything that drives an actuator
+     */
+    @Override
+    public EModulePriority getPriority() {
+        return EModulePriority.NORMAL;
+    }
+
     @Override
     public void shutdown(double pNow) {
 
@@ -0,0 +1,155 @@
+package us.ilite.robot.modules;
+
+import com.flybotix.hfr.util.log.ILog;
+import com.flybotix.hfr.util.log.Logger;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import us.ilite.common.config.SystemSettings;
+
+/**
+ * Watches a loop's cycle times against its budget, and sheds low priority work when it keeps overrunning.
+ *
+ * Each time <code>SystemSettings.kLoadShedOverrunCycles</code> of the last <code>kLoadShedWindowCycles</code>
+ * cycles overrun, one more level of work is shed - first {@link EModulePriority#DEFERRABLE} modules are
+ * decimated, then skipped, then {@link EModulePriority#NORMAL} modules are decimated.
+ * {@link EModulePriority#CRITICAL} modules - by default, every module - always run.  After <code>kLoadShedRecoveryCycles</code> on-time cycles
+ * in a row, one level is restored.
+ *
+ * Every overrun is charged to the module that took the longest that cycle, and every change of level is logged
+ * along with that module.
+ */
+public class LoadShedder {
+
+    public enum ELevel {
+        NONE,
+        DECIMATE_DEFERRABLE,
+        SKIP_DEFERRABLE,
+        DECIMATE_NORMAL
+    }
+
+    private final ILog mLog = Logger.createLog(LoadShedder.class);
+
+    // The overrun history is one bit per cycle in a long, and the window mask needs one more bit
+    private static final int kMaxWindowCycles = Long.SIZE - 1;
+
+    private final String mName;
+    private final double mBudgetSeconds;
+    private final int mWindowCycles;
+    private final long mWindowMask;
+
+    private ELevel mLevel = ELevel.NONE;
+    private long mCycles = 0;
+    // One bit per recent cycle, set if it overran
+    private long mOverrunHistory = 0;
+    private long mOnTimeStreak = 0;
+    private long mOverruns = 0;
+    private long mShedEvents = 0;
+
+    /**
+     * @param pName Name of the loop, for logging
+     * @param pBudgetSeconds How long a cycle may take before it's an overrun
+     */
+    public LoadShedder(String pName, double pBudgetSeconds) {
+        mName = pName;
+        mBudgetSeconds = pBudgetSeconds;
+        mWindowCycles = Math.max(1, Math.min(SystemSettings.kLoadShedWindowCycles, kMaxWindowCycles));
+        if(mWindowCycles != SystemSettings.kLoadShedWindowCycles) {
+            mLog.warn("kLoadShedWindowCycles must be between 1 and ", kMaxWindowCycles, ", was ",
+                      SystemSettings.kLoadShedWindowCycles, " - using ", mWindowCycles);
+        }
+        mWindowMask = (1L << mWindowCycles) - 1;
+        if(SystemSettings.kLoadShedOverrunCycles > mWindowCycles) {
+            mLog.warn("kLoadShedOverrunCycles (", SystemSettings.kLoadShedOverrunCycles, ") is more than the ",
+                      mWindowCycles, " cycle window, so ", mName, " will never shed");
+        }
+    }
+
+    /**
+     * @param pDueRun How many times pModule has been due before this, so a decimated module runs once every
+     *                <code>kLoadShedDecimation</code> of its own runs whatever its rate
+     * @return Whether pModule should run this time it's due.  Call once per due run.
+     */
+    public boolean shouldRun(Module pModule, long pDueRun) {
+        switch(pModule.getPriority()) {
+            case DEFERRABLE:
+                return mLevel == ELevel.NONE || (mLevel == ELevel.DECIMATE_DEFERRABLE && isDecimatedRun(pDueRun));
+            case NORMAL:
+                return mLevel != ELevel.DECIMATE_NORMAL || isDecimatedRun(pDueRun);
+            default:
+                return true;
+        }
+    }
+
+    private static boolean isDecimatedRun(long pDueRun) {
+        return pDueRun % SystemSettings.kLoadShedDecimation == 0;
+    }
+
+    /**
+     * @param pCycleSeconds How long the cycle took
+     * @param pSlowest The module that took the longest this cycle, or null if unknown
+     */
+    public void endCycle(double pCycleSeconds, ModuleTiming pSlowest) {
+        endCycle(pCycleSeconds, mBudgetSeconds, pSlowest);
+    }
+
+    /**
+     * @param pCycleSeconds How long the cycle took
+     * @param pBudgetSeconds How long this cycle was allowed to take, if it differs from cycle to cycle
+     * @param pSlowest The module that took the longest this cycle, or null if unknown
+     */
+    public void endCycle(double pCycleSeconds, double pBudgetSeconds, ModuleTiming pSlowest) {
+        mCycles++;
+        boolean overrun = pCycleSeconds > pBudgetSeconds;
+        mOverrunHistory = ((mOverrunHistory << 1) | (overrun ? 1 : 0)) & mWindowMask;
+
+        if(overrun) {
+            mOverruns++;
+            mOnTimeStreak = 0;
+            if(pSlowest != null) {
+                pSlowest.recordOverrun();
+            }
+            if(SystemSettings.kLoadSheddingEnabled && mLevel != ELevel.DECIMATE_NORMAL &&
+                    Long.bitCount(mOverrunHistory) >= SystemSettings.kLoadShedOverrunCycles) {
+                mShedEvents++;
+                setLevel(ELevel.values()[mLevel.ordinal() + 1]);
+                mLog.warn(mName, " overran ", Long.bitCount(mOverrunHistory), " of the last ",
+                          mWindowCycles, " cycles (", pCycleSeconds * 1000.0, "ms) - shedding to ",
+                          mLevel, ". Slowest module: ", pSlowest == null ? "unknown" : pSlowest.getName());
+                // Shed at most one level per window
+                mOverrunHistory = 0;
+            }
+        } else {
+            mOnTimeStreak++;
+            if(mLevel != ELevel.NONE && mOnTimeStreak >= SystemSettings.kLoadShedRecoveryCycles) {
+                setLevel(ELevel.values()[mLevel.ordinal() - 1]);
+                mLog.warn(mName, " recovered after ", mOnTimeStreak, " on-time cycles - restoring to ", mLevel);
+                mOnTimeStreak = 0;
+            }
+        }
+    }
+
+    private void setLevel(ELevel pLevel) {
+        mLevel = pLevel;
+        SmartDashboard.putNumber(mName + "_load_shed_level", pLevel.ordinal());
+    }
+
+    public ELevel getLevel() {
+        return mLevel;
+    }
+
+    public long getCycles() {
+        return mCycles;
+    }
+
+    public long getOverruns() {
+        return mOverruns;
+    }
+
+    /**
+     * @return How many times a level of work has been shed
+     */
+    public long getShedEvents() {
+        return mShedEvents;
+    }
+
+}
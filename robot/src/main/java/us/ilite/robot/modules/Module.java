@@ -1,5 +1,7 @@
 package us.ilite.robot.modules;
 
+import us.ilite.common.config.SystemSettings;
+
 /**
  * The Module class defines how code written to control a specific subsystem (shooter, elevator, arm, etc.).
  * It also contains optional design patterns to adhere to.
@@ -7,6 +9,11 @@ package us.ilite.robot.modules;
  */
 public abstract class Module {
 
+    /**
+     * Returned by {@link #getPhase()} to let the scheduler pick the phase
+     */
+    public static final int kAutoPhase = -1;
+
     /*
     Although the Clock class removes the need for the now parameter, we will keep it since it may be useful to have
     in order to simulate certain conditions or edge cases.
@@ -25,7 +32,7 @@ public abstract class Module {
     public abstract void periodicInput(double pNow);
 
     /**
-     * The module's update function. Runs every time [mode]Periodic() is called (Roughly ~50Hz), or in a loop running at a custom frequency.
+     * The module's update function. Runs at the rate returned by {@link #getRateHz()}.
      * @param pNow
      */
     public abstract void update(double pNow);
@@ -56,4 +63,26 @@ public abstract class Module {
     public void zeroSensors(double pNow) {
     }
 
+    /**
+     * @return How important it is that this module runs every cycle when the loop is overloaded.  See {@link LoadShedder}.
+     *         Modules are assumed to drive actuators, so they're never shed unless they override this.
+     */
+    public EModulePriority getPriority() {
+        return EModulePriority.CRITICAL;
+    }
+
+    /**
+     * @return How often this module runs, in hz.  This should divide the scheduler's base rate evenly.
+     */
+    public double getRateHz() {
+        return SystemSettings.kDefaultModuleRateHz;
+    }
+
+    /**
+     * @return Which scheduler tick within this module's period it runs on, or {@link #kAutoPhase} to spread the load
+     */
+    public int getPhase() {
+        return kAutoPhase;
+    }
+
 }
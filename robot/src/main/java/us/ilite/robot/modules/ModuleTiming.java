@@ -0,0 +1,149 @@
+package us.ilite.robot.modules;
+
+import com.flybotix.hfr.codex.Codex;
+
+import us.ilite.common.config.SystemSettings;
+import us.ilite.common.io.CodexNetworkTables;
+import us.ilite.common.lib.util.LatencyHistogram;
+import us.ilite.common.types.ETimingData;
+
+/**
+ * Records how long each phase of a module takes, and periodically publishes the p50/p99/max of each phase to
+ * NetworkTables as an {@link ETimingData} codex named after the module.  Recording doesn't allocate, so it's always
+ * on - when the control loop overruns, these show which module was responsible.
+ *
+ * Record and report from the thread that runs the module.
+ */
+public class ModuleTiming {
+
+    private final String mName;
+    private final LatencyHistogram mInput = new LatencyHistogram();
+    private final LatencyHistogram mUpdate = new LatencyHistogram();
+    private final LatencyHistogram mLoop = new LatencyHistogram();
+    private final Codex<Double, ETimingData> mCodex = Codex.of.thisEnum(ETimingData.class);
+
+    private long mCycleNanos = 0;
+    private long mCycles = 0;
+    private long mOverruns = 0;
+    private long mShedCycles = 0;
+    // Smoothed over the cycles the module actually ran, for balancing the scheduler's ticks
+    private double mAverageCycleNanos = 0.0;
+    private double mLastReportTime = Double.NEGATIVE_INFINITY;
+
+    public ModuleTiming(String pName) {
+        mName = pName;
+        CodexNetworkTables.getInstance().registerCodex(pName, mCodex);
+    }
+
+    public ModuleTiming(Module pModule) {
+        this(pModule.getClass().getSimpleName());
+    }
+
+    public void recordInput(long pNanos) {
+        mInput.recordNanos(pNanos);
+        mCycleNanos += pNanos;
+    }
+
+    public void recordUpdate(long pNanos) {
+        mUpdate.recordNanos(pNanos);
+        mCycleNanos += pNanos;
+    }
+
+    public void recordLoop(long pNanos) {
+        mLoop.recordNanos(pNanos);
+        mCycleNanos += pNanos;
+    }
+
+    /**
+     * Charges an overrun to this module, because it was the slowest module in a cycle that overran
+     */
+    public void recordOverrun() {
+        mOverruns++;
+    }
+
+    /**
+     * Records a cycle where the module was skipped by a {@link LoadShedder}
+     */
+    public void recordShed() {
+        mShedCycles++;
+    }
+
+    /**
+     * Marks the end of a cycle.  Call once per cycle, after the module's phases have been recorded.
+     * @return The total time the module took this cycle, in nanoseconds
+     */
+    public long endCycle() {
+        long cycleNanos = mCycleNanos;
+        mCycleNanos = 0;
+        mCycles++;
+        if(cycleNanos > 0) {
+            mAverageCycleNanos = mAverageCycleNanos == 0.0 ? cycleNanos :
+                                 mAverageCycleNanos + (0.05 * (cycleNanos - mAverageCycleNanos));
+        }
+        return cycleNanos;
+    }
+
+    /**
+     * Publishes and resets the histograms if <code>SystemSettings.kTimingReportPeriod</code> has passed since the
+     * last report.
+     */
+    public void report(double pNow) {
+        if(pNow - mLastReportTime < SystemSettings.kTimingReportPeriod) {
+            return;
+        }
+        mLastReportTime = pNow;
+
+        mCodex.reset();
+        set(mInput, ETimingData.INPUT_P50, ETimingData.INPUT_P99, ETimingData.INPUT_MAX);
+        set(mUpdate, ETimingData.UPDATE_P50, ETimingData.UPDATE_P99, ETimingData.UPDATE_MAX);
+        set(mLoop, ETimingData.LOOP_P50, ETimingData.LOOP_P99, ETimingData.LOOP_MAX);
+        mCodex.set(ETimingData.CYCLES, (double)mCycles);
+        mCodex.set(ETimingData.OVERRUNS, (double)mOverruns);
+        mCodex.set(ETimingData.SHED_CYCLES, (double)mShedCycles);
+        CodexNetworkTables.getInstance().send(mName, mCodex);
+
+        mInput.reset();
+        mUpdate.reset();
+        mLoop.reset();
+        mCycles = 0;
+        mOverruns = 0;
+        mShedCycles = 0;
+    }
+
+    private void set(LatencyHistogram pHistogram, ETimingData pP50, ETimingData pP99, ETimingData pMax) {
+        if(pHistogram.getCount() > 0) {
+            mCodex.set(pP50, pHistogram.getPercentile(0.5) * 1000.0);
+            mCodex.set(pP99, pHistogram.getPercentile(0.99) * 1000.0);
+            mCodex.set(pMax, pHistogram.getMax() * 1000.0);
+        }
+    }
+
+    /**
+     * @return Smoothed time the module takes when it runs, in nanoseconds, or 0 if it hasn't run yet.  Unlike the
+     *         histograms, this isn't reset by {@link #report(double)}.
+     */
+    public double getAverageCycleNanos() {
+        return mAverageCycleNanos;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public LatencyHistogram getInputHistogram() {
+        return mInput;
+    }
+
+    public LatencyHistogram getUpdateHistogram() {
+        return mUpdate;
+    }
+
+    public LatencyHistogram getLoopHistogram() {
+        return mLoop;
+    }
+
+    public Codex<Double, ETimingData> getCodex() {
+        return mCodex;
+    }
+
+}
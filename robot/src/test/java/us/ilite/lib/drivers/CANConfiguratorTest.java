@@ -0,0 +1,129 @@
+package us.ilite.lib.drivers;
+
+import org.junit.Before;
+import org.junit.Test;
+import us.ilite.common.config.SystemSettings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CANConfiguratorTest {
+
+    private CANConfigurator mConfigurator;
+    private List<String> mApplied;
+
+    @Before
+    public void setup() {
+        mConfigurator = new CANConfigurator();
+        mApplied = new ArrayList<>();
+    }
+
+    @Test
+    public void testSettingsAreHeldUntilApplyAll() {
+        Object device = new Object();
+        mConfigurator.configure(device, "Device")
+                .run("a", () -> mApplied.add("a"))
+                .run("b", () -> mApplied.add("b"));
+        assertTrue(mApplied.isEmpty());
+
+        List<CANDeviceConfig.Result> results = mConfigurator.applyAll();
+        assertEquals(1, results.size());
+        assertTrue(results.get(0).isSuccessful());
+        assertEquals(2, results.get(0).getSettings());
+        assertEquals("[a, b]", mApplied.toString());
+
+        // After applyAll, settings are applied right away
+        mConfigurator.configure(device).run("c", () -> mApplied.add("c"));
+        assertEquals("[a, b, c]", mApplied.toString());
+        assertTrue(mConfigurator.applyAll().isEmpty());
+    }
+
+    @Test
+    public void testSameDeviceSharesOneConfig() {
+        Object device = new Object();
+        assertTrue(mConfigurator.configure(device, "Device") == mConfigurator.configure(device));
+        assertFalse(mConfigurator.configure(device) == mConfigurator.configure(new Object()));
+    }
+
+    @Test
+    public void testFailedSettingIsRetried() {
+        int[] attempts = { 0 };
+        int[] invalidations = { 0 };
+        mConfigurator.configure(new Object(), "Device")
+                .setInvalidate(() -> invalidations[0]++)
+                .set("flaky", () -> ++attempts[0] > 1, null);
+
+        CANDeviceConfig.Result result = mConfigurator.applyAll().get(0);
+        assertTrue(result.isSuccessful());
+        assertEquals(2, attempts[0]);
+        assertEquals(1, result.getRetries());
+        assertEquals(1, invalidations[0]);
+    }
+
+    @Test
+    public void testSettingThatDoesNotReadBackFails() {
+        mConfigurator.configure(new Object(), "Device").run("inverted", () -> {}, () -> false);
+
+        CANDeviceConfig.Result result = mConfigurator.applyAll().get(0);
+        assertFalse(result.isSuccessful());
+        assertEquals(SystemSettings.kCANConfigRetries, result.getRetries());
+    }
+
+    @Test
+    public void testMissingDeviceIsSkipped() {
+        CANDeviceConfig config = mConfigurator.configure(new Object(), "Missing");
+        int settings = SystemSettings.kCANConfigMaxConsecutiveFailures + 2;
+        for(int i = 0; i < settings; i++) {
+            config.set("setting " + i, () -> false, null);
+        }
+
+        CANDeviceConfig.Result result = mConfigurator.applyAll().get(0);
+        assertEquals(SystemSettings.kCANConfigMaxConsecutiveFailures, result.getSettings());
+        assertEquals(settings, result.getFailures().size());
+    }
+
+    @Test
+    public void testSettingsAddedDuringApplyAllAreApplied() throws Exception {
+        Object device = new Object();
+        List<String> applied = Collections.synchronizedList(mApplied);
+        CountDownLatch applying = new CountDownLatch(1);
+        mConfigurator.configure(device, "Device").run("slow", () -> {
+            applying.countDown();
+            try {
+                Thread.sleep(50);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            applied.add("slow");
+        });
+
+        Thread other = new Thread(() -> {
+            try {
+                applying.await();
+            } catch(InterruptedException e) {
+                return;
+            }
+            for(int i = 0; i < 10; i++) {
+                String name = "late " + i;
+                mConfigurator.configure(device).run(name, () -> applied.add(name));
+            }
+        });
+        other.start();
+        mConfigurator.applyAll();
+        other.join();
+
+        // Every setting is applied exactly once, in order, whether it was held or added after its device was applied
+        assertEquals(11, applied.size());
+        assertEquals("slow", applied.get(0));
+        for(int i = 0; i < 10; i++) {
+            assertEquals("late " + i, applied.get(i + 1));
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+package us.ilite.lib.drivers;
+
+import org.junit.Before;
+import org.junit.Test;
+import us.ilite.common.config.SystemSettings;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StatusFramePlannerTest {
+
+    private CANConfigurator mConfigurator;
+    private StatusFramePlanner mPlanner;
+    private Object mSpark;
+    private Map<EStatusFrame, Integer> mWritten;
+
+    @Before
+    public void setup() {
+        mConfigurator = new CANConfigurator();
+        mPlanner = new StatusFramePlanner(mConfigurator);
+        mSpark = new Object();
+        mWritten = new EnumMap<>(EStatusFrame.class);
+        mPlanner.register(mSpark, "Spark", (frame, period) -> {
+            mWritten.put(frame, period);
+            return true;
+        }, EStatusFrame.kSparkMax);
+    }
+
+    @Test
+    public void testFastestReaderWins() {
+        mPlanner.consume(mSpark, ECANSignal.CURRENT, 100);
+        mPlanner.consume(mSpark, ECANSignal.VELOCITY, 10);
+        mPlanner.consume(mSpark, ECANSignal.VELOCITY, 40);
+        mPlanner.plan();
+        assertEquals(10, mPlanner.getPeriodMs(mSpark, EStatusFrame.SPARK_STATUS_1));
+    }
+
+    @Test
+    public void testUnreadFramesAreSlowed() {
+        mPlanner.consume(mSpark, ECANSignal.POSITION, 10);
+        mPlanner.plan();
+        assertEquals(10, mPlanner.getPeriodMs(mSpark, EStatusFrame.SPARK_STATUS_2));
+        assertEquals(SystemSettings.kStatusFrameMaxPeriodMs, mPlanner.getPeriodMs(mSpark, EStatusFrame.SPARK_STATUS_0));
+        assertEquals(SystemSettings.kStatusFrameMaxPeriodMs, mPlanner.getPeriodMs(mSpark, EStatusFrame.SPARK_STATUS_1));
+    }
+
+    @Test
+    public void testPeriodsAreClampedToMinimum() {
+        mPlanner.consume(mSpark, ECANSignal.POSITION, 1);
+        mPlanner.plan();
+        assertEquals(SystemSettings.kStatusFrameMinPeriodMs, mPlanner.getPeriodMs(mSpark, EStatusFrame.SPARK_STATUS_2));
+    }
+
+    @Test
+    public void testPeriodsAreSentWithDeviceConfig() {
+        mPlanner.consume(mSpark, ECANSignal.POSITION, 20);
+        mPlanner.plan();
+        assertTrue(mWritten.isEmpty());
+
+        mConfigurator.applyAll();
+        assertEquals(3, mWritten.size());
+        assertEquals(20, (int) mWritten.get(EStatusFrame.SPARK_STATUS_2));
+    }
+
+    @Test
+    public void testUtilization() {
+        mPlanner.consume(mSpark, ECANSignal.POSITION, 10);
+        mPlanner.plan();
+
+        double planned = (1000.0 / 10 + 2 * 1000.0 / SystemSettings.kStatusFrameMaxPeriodMs)
+                * SystemSettings.kCANFrameBits / SystemSettings.kCANBitRate;
+        double defaults = (1000.0 / 10 + 1000.0 / 20 + 1000.0 / 50)
+                * SystemSettings.kCANFrameBits / SystemSettings.kCANBitRate;
+        assertEquals(planned, mPlanner.getPlannedUtilization(), 1e-9);
+        assertEquals(defaults, mPlanner.getDefaultUtilization(), 1e-9);
+    }
+
+}
@@ -0,0 +1,90 @@
+package us.ilite.robot.hardware;
+
+import org.junit.Before;
+import org.junit.Test;
+import us.ilite.common.config.SystemSettings;
+import us.ilite.lib.drivers.ECommonControlMode;
+import us.ilite.lib.drivers.ECommonNeutralMode;
+
+import static org.junit.Assert.assertEquals;
+
+public class OutputStageTest {
+
+    private OutputStage mStage;
+    private OutputStage.Slot mSlot;
+    private int mWrites;
+    private double mLastValue;
+
+    @Before
+    public void setup() {
+        mStage = new OutputStage();
+        mWrites = 0;
+        mLastValue = Double.NaN;
+        mSlot = mStage.register("Test", 0.01, (value, mode, feedforward, neutralMode) -> {
+            mWrites++;
+            mLastValue = value;
+        });
+    }
+
+    @Test
+    public void testOnlyLastDemandInCycleIsSent() {
+        mSlot.set(0.2, ECommonControlMode.PERCENT_OUTPUT);
+        mSlot.set(0.5, ECommonControlMode.PERCENT_OUTPUT);
+        mStage.flush(0.0);
+        assertEquals(1, mWrites);
+        assertEquals(0.5, mLastValue, 0.0);
+        assertEquals(2, mStage.getPosts());
+        assertEquals(1, mStage.getWrites());
+    }
+
+    @Test
+    public void testUnchangedDemandIsSkipped() {
+        mSlot.set(0.5, ECommonControlMode.PERCENT_OUTPUT);
+        mStage.flush(0.0);
+        mSlot.set(0.505, ECommonControlMode.PERCENT_OUTPUT);
+        mStage.flush(0.005);
+        assertEquals(1, mWrites);
+
+        // Anything else about the demand changing gets it sent
+        mSlot.set(0.505, ECommonControlMode.VELOCITY);
+        mStage.flush(0.01);
+        assertEquals(2, mWrites);
+        mSlot.set(0.505, ECommonControlMode.VELOCITY, 0.0, ECommonNeutralMode.COAST);
+        mStage.flush(0.015);
+        assertEquals(3, mWrites);
+    }
+
+    @Test
+    public void testStopIsAlwaysSent() {
+        mSlot.set(0.005, ECommonControlMode.PERCENT_OUTPUT);
+        mStage.flush(0.0);
+        mSlot.set(0.0, ECommonControlMode.PERCENT_OUTPUT);
+        mStage.flush(0.005);
+        assertEquals(2, mWrites);
+        assertEquals(0.0, mLastValue, 0.0);
+    }
+
+    @Test
+    public void testHeldDemandIsRefreshed() {
+        mSlot.set(0.5, ECommonControlMode.PERCENT_OUTPUT);
+        mStage.flush(0.0);
+        mStage.flush(SystemSettings.kOutputRefreshPeriod / 2.0);
+        assertEquals(1, mWrites);
+        mStage.flush(SystemSettings.kOutputRefreshPeriod);
+        assertEquals(2, mWrites);
+    }
+
+    @Test
+    public void testClearedDemandIsNotSent() {
+        mSlot.set(0.5, ECommonControlMode.PERCENT_OUTPUT);
+        mStage.flush(0.0);
+        mSlot.clear();
+        mStage.flush(SystemSettings.kOutputRefreshPeriod);
+        assertEquals(1, mWrites);
+
+        mSlot.set(0.5, ECommonControlMode.PERCENT_OUTPUT);
+        mStage.flush(SystemSettings.kOutputRefreshPeriod + 0.005);
+        assertEquals(2, mWrites);
+    }
+
+}
@@ -0,0 +1,49 @@
+package us.ilite.robot.hardware;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SensorCacheTest {
+
+    private SensorCache mCache;
+    private int mReads;
+    private double mValue;
+    private SensorCache.Signal mSignal;
+
+    @Before
+    public void setup() {
+        mCache = new SensorCache();
+        mReads = 0;
+        mValue = 1.0;
+        mSignal = mCache.add(() -> {
+            mReads++;
+            return mValue;
+        });
+    }
+
+    @Test
+    public void testReadsOncePerCycle() {
+        mCache.beginCycle(0.0);
+        assertEquals(1.0, mSignal.get(), 0.0);
+        mValue = 2.0;
+        assertEquals(1.0, mSignal.get(), 0.0);
+        assertEquals(1, mReads);
+        assertEquals(1, mCache.getHardwareReads());
+        assertEquals(1, mCache.getCachedReads());
+
+        mCache.beginCycle(0.01);
+        assertEquals(2.0, mSignal.get(), 0.0);
+        assertEquals(2, mReads);
+        assertEquals(0.01, mCache.getTimestamp(), 0.0);
+    }
+
+    @Test
+    public void testUnreadSignalsAreNeverRead() {
+        mCache.beginCycle(0.0);
+        mCache.beginCycle(0.01);
+        assertEquals(0, mReads);
+    }
+
+}
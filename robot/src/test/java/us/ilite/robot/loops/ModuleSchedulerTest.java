@@ -0,0 +1,130 @@
+package us.ilite.robot.loops;
+
+import org.junit.Test;
+import us.ilite.common.config.SystemSettings;
+import us.ilite.robot.modules.EModulePriority;
+import us.ilite.robot.modules.LoadShedder;
+import us.ilite.robot.modules.Module;
+
+import static org.junit.Assert.*;
+
+public class ModuleSchedulerTest {
+
+    private static class TestModule extends Module {
+        private final int mPhase;
+        private TestModule(int pPhase) { mPhase = pPhase; }
+        @Override public void modeInit(double pNow) {}
+        @Override public void periodicInput(double pNow) {}
+        @Override public void update(double pNow) {}
+        @Override public void shutdown(double pNow) {}
+        @Override public int getPhase() { return mPhase; }
+    }
+
+    private static class CountingModule extends Module {
+        private final double mRateHz;
+        private final EModulePriority mPriority;
+        private int mUpdates = 0;
+        private CountingModule(double pRateHz, EModulePriority pPriority) { mRateHz = pRateHz; mPriority = pPriority; }
+        @Override public void modeInit(double pNow) {}
+        @Override public void periodicInput(double pNow) {}
+        @Override public void update(double pNow) { mUpdates++; }
+        @Override public void shutdown(double pNow) {}
+        @Override public double getRateHz() { return mRateHz; }
+        @Override public EModulePriority getPriority() { return mPriority; }
+    }
+
+    private static Module[] modules(int ... pPhases) {
+        Module[] modules = new Module[pPhases.length];
+        for(int i = 0; i < pPhases.length; i++) {
+            modules[i] = new TestModule(pPhases[i]);
+        }
+        return modules;
+    }
+
+    @Test
+    public void testPhasesSpreadLoad() {
+        int auto = Module.kAutoPhase;
+        // e.g. 200hz, 100hz, 100hz, 50hz, 50hz, 10hz on a 200hz base
+        int[] divisors = {1, 2, 2, 4, 4, 20};
+        int[] phases = ModuleScheduler.assignPhases(modules(auto, auto, auto, auto, auto, auto), divisors);
+
+        // Modules at the same rate are spread over their period, in order
+        assertTrue(phases[1] < phases[2]);
+        assertTrue(phases[3] < phases[4]);
+
+        int maxLoad = 0;
+        for(int tick = 0; tick < 20; tick++) {
+            int load = 0;
+            for(int i = 0; i < divisors.length; i++) {
+                if(tick % divisors[i] == phases[i]) load++;
+            }
+            maxLoad = Math.max(maxLoad, load);
+        }
+        assertEquals(3, maxLoad);
+    }
+
+    @Test
+    public void testPhasesSpreadByCost() {
+        int auto = Module.kAutoPhase;
+        // One slow module and two fast ones at the same rate - the slow one gets a tick to itself
+        int[] phases = ModuleScheduler.assignPhases(modules(auto, auto, auto), new int[] {2, 2, 2},
+                                                    new double[] {4.0, 1.0, 1.0});
+        assertArrayEquals(new int[] {0, 1, 1}, phases);
+
+        // Order is kept even when the slow module is last
+        phases = ModuleScheduler.assignPhases(modules(auto, auto, auto, auto), new int[] {4, 4, 4, 4},
+                                              new double[] {1.0, 1.0, 1.0, 6.0});
+        for(int i = 1; i < phases.length; i++) {
+            assertTrue(phases[i - 1] <= phases[i]);
+        }
+        assertTrue(phases[2] < phases[3]);
+    }
+
+    @Test
+    public void testSlowModulesAreDecimatedOverTheirOwnRuns() {
+        int recoveryCycles = SystemSettings.kLoadShedRecoveryCycles;
+        // Ticks are never timed as overrunning here, so hold the shed level for the whole test
+        SystemSettings.kLoadShedRecoveryCycles = Integer.MAX_VALUE;
+        try {
+            LoadShedder shedder = new LoadShedder("Test", 0.005);
+            for(int i = 0; i < SystemSettings.kLoadShedOverrunCycles; i++) {
+                shedder.endCycle(1.0, null);
+            }
+            assertEquals(LoadShedder.ELevel.DECIMATE_DEFERRABLE, shedder.getLevel());
+
+            // A 10hz deferrable module, like LEDControl, is due every 20 ticks on a 200hz base
+            CountingModule critical = new CountingModule(200.0, EModulePriority.CRITICAL);
+            CountingModule deferrable = new CountingModule(10.0, EModulePriority.DEFERRABLE);
+            ModuleScheduler scheduler = new ModuleScheduler(200.0, shedder);
+            scheduler.setModules(critical, deferrable);
+
+            int dueRuns = SystemSettings.kLoadShedDecimation * 10;
+            // Restarting resets the tick count, which mustn't change how often the module runs
+            for(int start = 0; start < 3; start++) {
+                critical.mUpdates = 0;
+                deferrable.mUpdates = 0;
+                scheduler.start();
+                for(int tick = 0; tick < dueRuns * 20 + start * 7; tick++) {
+                    scheduler.run();
+                }
+                scheduler.stop();
+                assertEquals(dueRuns * 20 + start * 7, critical.mUpdates);
+                assertEquals(10, deferrable.mUpdates);
+            }
+        } finally {
+            SystemSettings.kLoadShedRecoveryCycles = recoveryCycles;
+        }
+    }
+
+    @Test
+    public void testFixedPhase() {
+        int auto = Module.kAutoPhase;
+        int[] phases = ModuleScheduler.assignPhases(modules(0, auto, 5), new int[] {2, 2, 4});
+        assertEquals(0, phases[0]);
+        // The automatic module avoids the tick that's already taken
+        assertEquals(1, phases[1]);
+        // Wrapped into the module's period
+        assertEquals(1, phases[2]);
+    }
+
+}
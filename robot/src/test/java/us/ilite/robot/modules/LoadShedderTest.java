@@ -0,0 +1,86 @@
+package us.ilite.robot.modules;
+
+import org.junit.Test;
+import us.ilite.common.config.SystemSettings;
+
+import static org.junit.Assert.*;
+
+public class LoadShedderTest {
+
+    private static class TestModule extends Module {
+        private final EModulePriority mPriority;
+        private TestModule(EModulePriority pPriority) { mPriority = pPriority; }
+        @Override public void modeInit(double pNow) {}
+        @Override public void periodicInput(double pNow) {}
+        @Override public void update(double pNow) {}
+        @Override public void shutdown(double pNow) {}
+        @Override public EModulePriority getPriority() { return mPriority; }
+    }
+
+    private final Module mCritical = new TestModule(EModulePriority.CRITICAL);
+    private final Module mNormal = new TestModule(EModulePriority.NORMAL);
+    private final Module mDeferrable = new TestModule(EModulePriority.DEFERRABLE);
+
+    @Test
+    public void testShedAndRecover() {
+        LoadShedder shedder = new LoadShedder("Test", 0.01);
+
+        // Isolated overruns aren't enough to shed anything
+        for(int i = 0; i < SystemSettings.kLoadShedWindowCycles * 2; i++) {
+            shedder.endCycle(i % SystemSettings.kLoadShedWindowCycles == 0 ? 0.02 : 0.005, null);
+        }
+        assertEquals(LoadShedder.ELevel.NONE, shedder.getLevel());
+
+        // Sustained overruns shed one level per window, down to decimating normal modules
+        for(int i = 0; i < SystemSettings.kLoadShedOverrunCycles * 10; i++) {
+            shedder.endCycle(0.02, null);
+        }
+        assertEquals(LoadShedder.ELevel.DECIMATE_NORMAL, shedder.getLevel());
+        assertEquals(3, shedder.getShedEvents());
+
+        int criticalRuns = 0, normalRuns = 0, deferrableRuns = 0;
+        for(int i = 0; i < SystemSettings.kLoadShedDecimation * 10; i++) {
+            if(shedder.shouldRun(mCritical, i)) criticalRuns++;
+            if(shedder.shouldRun(mNormal, i)) normalRuns++;
+            if(shedder.shouldRun(mDeferrable, i)) deferrableRuns++;
+            shedder.endCycle(0.02, null);
+        }
+        assertEquals(SystemSettings.kLoadShedDecimation * 10, criticalRuns);
+        assertEquals(10, normalRuns);
+        assertEquals(0, deferrableRuns);
+
+        // Each level is restored after enough on-time cycles
+        for(int i = 0; i < SystemSettings.kLoadShedRecoveryCycles * 3; i++) {
+            shedder.endCycle(0.005, null);
+        }
+        assertEquals(LoadShedder.ELevel.NONE, shedder.getLevel());
+        assertTrue(shedder.shouldRun(mDeferrable, 1));
+    }
+
+    @Test
+    public void testWindowIsClamped() {
+        int windowCycles = SystemSettings.kLoadShedWindowCycles;
+        SystemSettings.kLoadShedWindowCycles = 64;
+        try {
+            LoadShedder shedder = new LoadShedder("Test", 0.01);
+            for(int i = 0; i < SystemSettings.kLoadShedOverrunCycles; i++) {
+                shedder.endCycle(0.02, null);
+            }
+            assertEquals(LoadShedder.ELevel.DECIMATE_DEFERRABLE, shedder.getLevel());
+        } finally {
+            SystemSettings.kLoadShedWindowCycles = windowCycles;
+        }
+    }
+
+    @Test
+    public void testModulesAreCriticalByDefault() {
+        Module module = new Module() {
+            @Override public void modeInit(double pNow) {}
+            @Override public void periodicInput(double pNow) {}
+            @Override public void update(double pNow) {}
+            @Override public void shutdown(double pNow) {}
+        };
+        assertEquals(EModulePriority.CRITICAL, module.getPriority());
+    }
+
+}